@@ -0,0 +1,389 @@
+package assignment.csv;
+
+/**
+ * The POJOs used by the benchmarks.
+ *
+ * @author sergey
+ *
+ */
+public class BenchmarkPojos
+{
+
+    /**
+     * Four columns set through setter methods.
+     */
+    @FileMetaData
+    public static class Narrow
+    {
+
+        @CSVColumn(indx = 1)
+        private String f1;
+
+        @CSVColumn(indx = 2)
+        private String f2;
+
+        @CSVColumn(indx = 3)
+        private String f3;
+
+        @CSVColumn(indx = 4)
+        private String f4;
+
+        public void setF1(String f1)
+        {
+            this.f1 = f1;
+        }
+
+        public void setF2(String f2)
+        {
+            this.f2 = f2;
+        }
+
+        public void setF3(String f3)
+        {
+            this.f3 = f3;
+        }
+
+        public void setF4(String f4)
+        {
+            this.f4 = f4;
+        }
+
+        @Override
+        public String toString()
+        {
+            return f1 + f2 + f3 + f4;
+        }
+
+    }
+
+    /**
+     * Thirty two public fields without setters.
+     */
+    @FileMetaData
+    public static class Wide
+    {
+
+        @CSVColumn(indx = 1)
+        public String f1;
+
+        @CSVColumn(indx = 2)
+        public String f2;
+
+        @CSVColumn(indx = 3)
+        public String f3;
+
+        @CSVColumn(indx = 4)
+        public String f4;
+
+        @CSVColumn(indx = 5)
+        public String f5;
+
+        @CSVColumn(indx = 6)
+        public String f6;
+
+        @CSVColumn(indx = 7)
+        public String f7;
+
+        @CSVColumn(indx = 8)
+        public String f8;
+
+        @CSVColumn(indx = 9)
+        public String f9;
+
+        @CSVColumn(indx = 10)
+        public String f10;
+
+        @CSVColumn(indx = 11)
+        public String f11;
+
+        @CSVColumn(indx = 12)
+        public String f12;
+
+        @CSVColumn(indx = 13)
+        public String f13;
+
+        @CSVColumn(indx = 14)
+        public String f14;
+
+        @CSVColumn(indx = 15)
+        public String f15;
+
+        @CSVColumn(indx = 16)
+        public String f16;
+
+        @CSVColumn(indx = 17)
+        public String f17;
+
+        @CSVColumn(indx = 18)
+        public String f18;
+
+        @CSVColumn(indx = 19)
+        public String f19;
+
+        @CSVColumn(indx = 20)
+        public String f20;
+
+        @CSVColumn(indx = 21)
+        public String f21;
+
+        @CSVColumn(indx = 22)
+        public String f22;
+
+        @CSVColumn(indx = 23)
+        public String f23;
+
+        @CSVColumn(indx = 24)
+        public String f24;
+
+        @CSVColumn(indx = 25)
+        public String f25;
+
+        @CSVColumn(indx = 26)
+        public String f26;
+
+        @CSVColumn(indx = 27)
+        public String f27;
+
+        @CSVColumn(indx = 28)
+        public String f28;
+
+        @CSVColumn(indx = 29)
+        public String f29;
+
+        @CSVColumn(indx = 30)
+        public String f30;
+
+        @CSVColumn(indx = 31)
+        public String f31;
+
+        @CSVColumn(indx = 32)
+        public String f32;
+    }
+
+    /**
+     * Three columns out of thirty two, the rest of the layout is made of no-op columns.
+     */
+    @FileMetaData
+    public static class Sparse
+    {
+
+        @CSVColumn(indx = 1)
+        public String first;
+
+        @CSVColumn(indx = 16)
+        public String middle;
+
+        @CSVColumn(indx = 32)
+        public String last;
+
+    }
+
+    @FileMetaData
+    public static class Base
+    {
+
+        @CSVColumn(indx = 1)
+        public String b1;
+
+        @CSVColumn(indx = 2)
+        public String b2;
+
+    }
+
+    public static class Middle extends Base
+    {
+
+        @CSVColumn(indx = 3)
+        public String m1;
+
+        @CSVColumn(indx = 4)
+        public String m2;
+
+    }
+
+    /**
+     * Six columns spread over three levels of inheritance.
+     */
+    public static class Inherited extends Middle
+    {
+
+        @CSVColumn(indx = 5)
+        public String i1;
+
+        @CSVColumn(indx = 6)
+        public String i2;
+
+    }
+
+    /**
+     * Numbers only, set through setter methods, see the {@link BindBenchmark}.
+     */
+    @FileMetaData
+    public static class Trade
+    {
+
+        @CSVColumn(indx = 1)
+        private long id;
+
+        @CSVColumn(indx = 2)
+        private int quantity;
+
+        @CSVColumn(indx = 3)
+        private double price;
+
+        @CSVColumn(indx = 4)
+        private boolean buy;
+
+        @CSVColumn(indx = 5)
+        private long time;
+
+        @CSVColumn(indx = 6)
+        private int venue;
+
+        public void setId(long id)
+        {
+            this.id = id;
+        }
+
+        public void setQuantity(int quantity)
+        {
+            this.quantity = quantity;
+        }
+
+        public void setPrice(double price)
+        {
+            this.price = price;
+        }
+
+        public void setBuy(boolean buy)
+        {
+            this.buy = buy;
+        }
+
+        public void setTime(long time)
+        {
+            this.time = time;
+        }
+
+        public void setVenue(int venue)
+        {
+            this.venue = venue;
+        }
+
+    }
+
+    /**
+     * Numbers only, set through setter methods.
+     */
+    @FileMetaData
+    public static class Reading
+    {
+
+        @CSVColumn(indx = 1)
+        private int sensor;
+
+        @CSVColumn(indx = 2)
+        private double value;
+
+        @CSVColumn(indx = 3)
+        private double min;
+
+        @CSVColumn(indx = 4)
+        private double max;
+
+        @CSVColumn(indx = 5)
+        private long time;
+
+        @CSVColumn(indx = 6)
+        private boolean valid;
+
+        public void setSensor(int sensor)
+        {
+            this.sensor = sensor;
+        }
+
+        public void setValue(double value)
+        {
+            this.value = value;
+        }
+
+        public void setMin(double min)
+        {
+            this.min = min;
+        }
+
+        public void setMax(double max)
+        {
+            this.max = max;
+        }
+
+        public void setTime(long time)
+        {
+            this.time = time;
+        }
+
+        public void setValid(boolean valid)
+        {
+            this.valid = valid;
+        }
+
+    }
+
+    /**
+     * Numbers only, set through setter methods.
+     */
+    @FileMetaData
+    public static class Position
+    {
+
+        @CSVColumn(indx = 1)
+        private int account;
+
+        @CSVColumn(indx = 2)
+        private long instrument;
+
+        @CSVColumn(indx = 3)
+        private long quantity;
+
+        @CSVColumn(indx = 4)
+        private double cost;
+
+        @CSVColumn(indx = 5)
+        private boolean open;
+
+        @CSVColumn(indx = 6)
+        private int book;
+
+        public void setAccount(int account)
+        {
+            this.account = account;
+        }
+
+        public void setInstrument(long instrument)
+        {
+            this.instrument = instrument;
+        }
+
+        public void setQuantity(long quantity)
+        {
+            this.quantity = quantity;
+        }
+
+        public void setCost(double cost)
+        {
+            this.cost = cost;
+        }
+
+        public void setOpen(boolean open)
+        {
+            this.open = open;
+        }
+
+        public void setBook(int book)
+        {
+            this.book = book;
+        }
+
+    }
+
+}
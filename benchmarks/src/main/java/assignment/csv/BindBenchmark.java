@@ -0,0 +1,72 @@
+package assignment.csv;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import assignment.csv.BenchmarkPojos.Position;
+import assignment.csv.BenchmarkPojos.Reading;
+import assignment.csv.BenchmarkPojos.Trade;
+
+/**
+ * Binds lines of numbers, split already, to re-used POJOs of three classes in turn, which isolates the calls of the
+ * setters from the tokenizing and the allocation. Compares the binders spun per POJO class to the loop over the
+ * columns they replace. The score is rounds (a row of each class) per second.
+ *
+ * @author sergey
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog-level=WARN")
+@State(Scope.Thread)
+public class BindBenchmark
+{
+
+    private static final Class< ? >[] POJOS = { Trade.class, Reading.class, Position.class };
+
+    /** every value parses as any of the types of the columns */
+    private static final String LINE = "7,42,125,1,1700000000,3";
+
+    @Param({ "true", "false" })
+    public boolean spun;
+
+    private final RowBinder[] binders = new RowBinder[POJOS.length];
+    private final Fields[] fields = new Fields[POJOS.length];
+    private final Object[] pojos = new Object[POJOS.length];
+
+    @Setup
+    public void setUp() throws ReflectiveOperationException
+    {
+        for (int i = 0; i < POJOS.length; i++ )
+        {
+            SomeCoolCsvReader.Setup setup = SomeCoolCsvReader.setup(POJOS[i]);
+            binders[i] = spun ? setup.binder : new RowBinder(setup.columns);
+            fields[i] = new Fields(setup.dialect).split(LINE);
+            pojos[i] = POJOS[i].getConstructor().newInstance();
+        }
+    }
+
+    @Benchmark
+    public Object[] bind()
+    {
+        for (int i = 0; i < binders.length; i++ )
+        {
+            binders[i].bind(pojos[i], fields[i], binders[i].columns.length);
+        }
+        return pojos;
+    }
+
+}
@@ -0,0 +1,149 @@
+package assignment.csv;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * Generates synthetic delimited files. The contents only depend on the parameters (the random generator is seeded), so
+ * the results of different runs and versions are comparable.
+ *
+ * @author sergey
+ *
+ */
+public class CsvGenerator
+{
+
+    private static final char[] ALPHABET = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789".toCharArray();
+
+    private int columns = 8;
+    private int rows = 100_000;
+    private int fieldLength = 8;
+    private double emptyRatio = 0.0;
+    private char delimiter = ',';
+    private long seed = 42;
+
+    /**
+     * @param columns the number of fields in every line
+     * @return this generator
+     */
+    public CsvGenerator columns(int columns)
+    {
+        this.columns = columns;
+        return this;
+    }
+
+    /**
+     * @param rows the number of lines
+     * @return this generator
+     */
+    public CsvGenerator rows(int rows)
+    {
+        this.rows = rows;
+        return this;
+    }
+
+    /**
+     * @param fieldLength the length of a non empty field
+     * @return this generator
+     */
+    public CsvGenerator fieldLength(int fieldLength)
+    {
+        this.fieldLength = fieldLength;
+        return this;
+    }
+
+    /**
+     * @param emptyRatio the probability of a field to be empty, between 0 and 1
+     * @return this generator
+     */
+    public CsvGenerator emptyRatio(double emptyRatio)
+    {
+        this.emptyRatio = emptyRatio;
+        return this;
+    }
+
+    /**
+     * @param delimiter the field separator, e.g. <code>,</code> for CSV or <code>\t</code> for TSV
+     * @return this generator
+     */
+    public CsvGenerator delimiter(char delimiter)
+    {
+        this.delimiter = delimiter;
+        return this;
+    }
+
+    /**
+     * @param seed the seed of the random generator
+     * @return this generator
+     */
+    public CsvGenerator seed(long seed)
+    {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Writes the data to a temporary file which is deleted when the JVM exits.
+     *
+     * @return the file
+     * @throws IOException if writing fails
+     */
+    public File generate() throws IOException
+    {
+        File file = File.createTempFile("benchmark", delimiter == '\t' ? ".tsv" : ".csv");
+        file.deleteOnExit();
+        Random random = new Random(seed);
+        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))
+        {
+            for (int row = 0; row < rows; row++ )
+            {
+                line(writer, random);
+                writer.write('\n');
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Generates the first line of the file, without the terminator.
+     *
+     * @return the line
+     */
+    public String line()
+    {
+        StringBuilder line = new StringBuilder();
+        try
+        {
+            line(line, new Random(seed));
+        }
+        catch (IOException e)
+        {
+            // a StringBuilder does not throw
+            throw new IllegalStateException(e);
+        }
+        return line.toString();
+    }
+
+    private void line(Appendable out, Random random) throws IOException
+    {
+        for (int column = 0; column < columns; column++ )
+        {
+            if (column > 0)
+            {
+                out.append(delimiter);
+            }
+            if (random.nextDouble() >= emptyRatio)
+            {
+                for (int i = 0; i < fieldLength; i++ )
+                {
+                    out.append(ALPHABET[random.nextInt(ALPHABET.length)]);
+                }
+            }
+        }
+    }
+
+}
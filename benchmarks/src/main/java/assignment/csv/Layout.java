@@ -0,0 +1,40 @@
+package assignment.csv;
+
+import assignment.csv.BenchmarkPojos.Inherited;
+import assignment.csv.BenchmarkPojos.Narrow;
+import assignment.csv.BenchmarkPojos.Sparse;
+import assignment.csv.BenchmarkPojos.Wide;
+
+/**
+ * A POJO and the width of the file it is read from.
+ *
+ * @author sergey
+ *
+ */
+public enum Layout
+{
+
+    NARROW(Narrow.class, 4),
+
+    WIDE(Wide.class, 32),
+
+    SPARSE(Sparse.class, 32),
+
+    INHERITED(Inherited.class, 6);
+
+    final Class< ? > pojoClass;
+    final int width;
+
+    private Layout(Class< ? > pojoClass, int width)
+    {
+        this.pojoClass = pojoClass;
+        this.width = width;
+    }
+
+    @SuppressWarnings("unchecked")
+    <T> Class<T> pojoClass()
+    {
+        return (Class<T>) pojoClass;
+    }
+
+}
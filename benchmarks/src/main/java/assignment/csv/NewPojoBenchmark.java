@@ -0,0 +1,59 @@
+package assignment.csv;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Tokenizes and binds a single line which is already in memory, no I/O involved. The score is rows per second.
+ *
+ * @author sergey
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog-level=WARN")
+@State(Scope.Thread)
+public class NewPojoBenchmark
+{
+
+    @Param({ "NARROW", "WIDE", "SPARSE", "INHERITED" })
+    public Layout layout;
+
+    @Param("8")
+    public int fieldLength;
+
+    @Param("0.1")
+    public double emptyRatio;
+
+    private String line;
+    private Function<CharSequence, Object> parser;
+
+    @Setup
+    public void setUp()
+    {
+        line = new CsvGenerator().columns(layout.width).fieldLength(fieldLength).emptyRatio(emptyRatio).line();
+        parser = new SomeCoolCsvReader<>(new File("unused"), layout.pojoClass()).parser();
+    }
+
+    @Benchmark
+    public Object newPojo()
+    {
+        return parser.apply(line);
+    }
+
+}
@@ -0,0 +1,118 @@
+package assignment.csv;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import assignment.csv.SomeCoolCsvReader.Engine;
+
+/**
+ * Reads whole files. The primary score is files per second, the <code>rows</code> and <code>bytes</code> secondary
+ * scores are the rows and bytes per second.
+ *
+ * @author sergey
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlog-level=WARN")
+@State(Scope.Benchmark)
+public class ReaderBenchmark
+{
+
+    @Param({ "NARROW", "WIDE", "SPARSE", "INHERITED" })
+    public Layout layout;
+
+    @Param({ "LINES", "BYTES" })
+    public Engine engine;
+
+    @Param("100000")
+    public int rows;
+
+    @Param("8")
+    public int fieldLength;
+
+    @Param("0.1")
+    public double emptyRatio;
+
+    private File file;
+    private SomeCoolCsvReader<Object> reader;
+
+    /**
+     * Rows and bytes processed, reported as rates.
+     */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Counters
+    {
+
+        public long rows;
+        public long bytes;
+
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException
+    {
+        file = new CsvGenerator().columns(layout.width).rows(rows).fieldLength(fieldLength).emptyRatio(emptyRatio)
+                .generate();
+        reader = new SomeCoolCsvReader<>(file, layout.pojoClass()).withEngine(engine);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        file.delete();
+    }
+
+    @Benchmark
+    public void iterator(Counters counters, Blackhole blackhole)
+    {
+        long count = 0;
+        for (Object pojo : reader)
+        {
+            blackhole.consume(pojo);
+            count++ ;
+        }
+        counters.rows += count;
+        counters.bytes += file.length();
+    }
+
+    @Benchmark
+    public void forEachRowView(Counters counters, Blackhole blackhole)
+    {
+        long[] count = new long[1];
+        reader.forEachRow(row -> {
+            blackhole.consume(row.isEmpty(1));
+            count[0]++ ;
+        });
+        counters.rows += count[0];
+        counters.bytes += file.length();
+    }
+
+    @Benchmark
+    public void parallelStream(Counters counters)
+    {
+        counters.rows += reader.parallelStream(false).count();
+        counters.bytes += file.length();
+    }
+
+}
@@ -0,0 +1,307 @@
+package assignment.csv;
+
+import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the rows of a file to {@link Flow.Subscriber subscribers}, honouring their demand: a row is only read and
+ * parsed once it has been requested, so a slow subscriber never makes rows pile up in memory, and no thread is blocked
+ * while there is no demand. Every subscriber gets its own pass over the file, the file is opened on the first request
+ * and closed at the end of the file, when an error occurs or when the subscription is cancelled. The completion is
+ * signalled as soon as the last row has been published, without further demand: the next row is always looked for
+ * (and parsed) right after a row has been published, though the error of a bad row is only signalled once that row
+ * has been requested.
+ *
+ * <p>
+ * The rows are published by tasks submitted to an executor, the common {@link ForkJoinPool} by default. The signals of
+ * a subscription are never concurrent, and a subscriber may call {@link Flow.Subscription#request(long)} from within
+ * <code>onSubscribe</code> or <code>onNext</code> without the calls nesting: no row is published before
+ * <code>onSubscribe</code> has returned.
+ *
+ * @param <Pojo> the type of the rows
+ *
+ * @author sergey
+ */
+public final class CsvPublisher<Pojo> implements Flow.Publisher<Pojo>
+{
+
+    private final SomeCoolCsvReader<Pojo> reader;
+    private final Executor executor;
+
+    /**
+     * Creates a publisher which publishes from the common {@link ForkJoinPool}.
+     *
+     * @param reader the reader of the file
+     */
+    public CsvPublisher(SomeCoolCsvReader<Pojo> reader)
+    {
+        this(reader, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param reader the reader of the file
+     * @param executor runs the tasks which read and publish the rows
+     * @throws IllegalArgumentException if either parameter is <code>null</code>
+     */
+    public CsvPublisher(SomeCoolCsvReader<Pojo> reader, Executor executor)
+    {
+        this.reader = Utils.checkNotNull(reader, "Reader cannot be null");
+        this.executor = Utils.checkNotNull(executor, "Executor cannot be null");
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber< ? super Pojo> subscriber)
+    {
+        Objects.requireNonNull(subscriber, "Subscriber cannot be null");
+        RowSubscription<Pojo> subscription = new RowSubscription<>(reader, subscriber, executor);
+        try
+        {
+            subscriber.onSubscribe(subscription);
+        }
+        catch (Throwable e)
+        {
+            subscription.broken(e);
+        }
+        subscription.start();
+    }
+
+    /**
+     * The state of a subscriber. The demand and the flags are written by any thread, everything else is only touched
+     * by the task which holds the work in progress counter.
+     */
+    private static final class RowSubscription<Pojo> implements Flow.Subscription, Runnable
+    {
+
+        private final SomeCoolCsvReader<Pojo> reader;
+        private final Flow.Subscriber< ? super Pojo> subscriber;
+        private final Executor executor;
+
+        private final AtomicLong demand = new AtomicLong();
+        // held by the subscribing thread until onSubscribe has returned
+        private final AtomicInteger wip = new AtomicInteger(1);
+        private volatile boolean cancelled;
+        private volatile Throwable failure;
+
+        private CloseableIterator<Pojo> rows;
+        /** the error of the row after the last one published, signalled once that row is requested */
+        private Throwable ahead;
+        private boolean done;
+
+        RowSubscription(SomeCoolCsvReader<Pojo> reader, Flow.Subscriber< ? super Pojo> subscriber, Executor executor)
+        {
+            this.reader = reader;
+            this.subscriber = subscriber;
+            this.executor = executor;
+        }
+
+        @Override
+        public void request(long n)
+        {
+            if (n <= 0)
+            {
+                // rule 3.9 of the reactive streams specification
+                failure = new IllegalArgumentException(
+                        String.format("The number of requested rows must be positive: %d", n));
+            }
+            else
+            {
+                demand.getAndUpdate(d -> d + n < 0 ? Long.MAX_VALUE : d + n);
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel()
+        {
+            cancelled = true;
+            schedule();
+        }
+
+        /*
+         * releases the hold of the subscribing thread, drains what has been requested from within onSubscribe
+         */
+        void start()
+        {
+            if (wip.decrementAndGet() != 0)
+            {
+                execute();
+            }
+        }
+
+        private void schedule()
+        {
+            if (wip.getAndIncrement() == 0)
+            {
+                execute();
+            }
+        }
+
+        private void execute()
+        {
+            try
+            {
+                executor.execute(this);
+            }
+            catch (RejectedExecutionException e)
+            {
+                failure = e;
+                run();
+            }
+        }
+
+        /*
+         * drains until no signal has been missed while draining
+         */
+        @Override
+        public void run()
+        {
+            int missed = 1;
+            do
+            {
+                drain();
+                missed = wip.addAndGet(-missed);
+            }
+            while (missed != 0);
+        }
+
+        private void drain()
+        {
+            if (done)
+            {
+                return;
+            }
+            if (cancelled)
+            {
+                finish();
+                return;
+            }
+            Throwable error = failure;
+            if (error != null)
+            {
+                fail(error);
+                return;
+            }
+            if (ahead != null)
+            {
+                if (demand.get() > 0)
+                {
+                    fail(ahead);
+                }
+                return;
+            }
+            try
+            {
+                if (rows == null)
+                {
+                    rows = reader.rows();
+                }
+                while (!cancelled && failure == null)
+                {
+                    // looked for even without demand, so that the end is signalled right after the last row (rule 1.5)
+                    if (!rows.hasNext())
+                    {
+                        complete();
+                        return;
+                    }
+                    if (demand.get() == 0)
+                    {
+                        return;
+                    }
+                    Pojo row = rows.next();
+                    demand.decrementAndGet();
+                    if (!emit(row))
+                    {
+                        return;
+                    }
+                }
+            }
+            catch (Throwable e)
+            {
+                // the IO errors of the reader are not declared, they come through as they are
+                if (demand.get() > 0)
+                {
+                    fail(e);
+                }
+                else
+                {
+                    ahead = e;
+                }
+            }
+        }
+
+        /*
+         * a subscriber which throws is broken (rule 2.13), the subscription is cancelled then
+         */
+        private boolean emit(Pojo row)
+        {
+            try
+            {
+                subscriber.onNext(row);
+                return true;
+            }
+            catch (Throwable e)
+            {
+                broken(e);
+                return false;
+            }
+        }
+
+        private void complete()
+        {
+            finish();
+            try
+            {
+                subscriber.onComplete();
+            }
+            catch (Throwable e)
+            {
+                broken(e);
+            }
+        }
+
+        private void fail(Throwable error)
+        {
+            finish();
+            try
+            {
+                subscriber.onError(error);
+            }
+            catch (Throwable e)
+            {
+                broken(e);
+            }
+        }
+
+        private void broken(Throwable e)
+        {
+            SomeCoolCsvReader.logger.error("The subscriber {} failed, cancelling its subscription", subscriber, e);
+            cancelled = true;
+            finish();
+        }
+
+        private void finish()
+        {
+            done = true;
+            if (rows != null)
+            {
+                try
+                {
+                    rows.close();
+                }
+                catch (IOException e)
+                {
+                    SomeCoolCsvReader.logger.warn("Unable to close the file", e);
+                }
+                rows = null;
+            }
+        }
+
+    }
+
+}
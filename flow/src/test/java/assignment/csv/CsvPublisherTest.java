@@ -0,0 +1,388 @@
+package assignment.csv;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import assignment.csv.SomeCoolCsvReader.Engine;
+
+/**
+ * Subscribes to the rows of a file with different demand patterns.
+ *
+ * @author sergey
+ *
+ */
+public class CsvPublisherTest
+{
+
+    @FileMetaData
+    public static class Row
+    {
+
+        @CSVColumn(indx = 1)
+        public String name;
+
+    }
+
+    @FileMetaData
+    public static class Numbered
+    {
+
+        @CSVColumn(indx = 1)
+        public int number;
+
+    }
+
+    /**
+     * Fails hard on the fourth row.
+     */
+    @FileMetaData
+    public static class Exploding
+    {
+
+        @CSVColumn(indx = 1)
+        private String name;
+
+        public void setName(String name)
+        {
+            if (name.equals("row3"))
+            {
+                throw new AssertionError("boom");
+            }
+            this.name = name;
+        }
+
+    }
+
+    /**
+     * Records the signals, requests a fixed number of rows whenever the previous batch has been received.
+     */
+    private static class Recorder implements Flow.Subscriber<Row>
+    {
+
+        final List<String> names = new ArrayList<>();
+        final CountDownLatch terminated = new CountDownLatch(1);
+        final int batch;
+        Flow.Subscription subscription;
+        boolean subscribing;
+        boolean overlapped;
+        boolean completed;
+        Throwable error;
+
+        Recorder(int batch)
+        {
+            this.batch = batch;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription)
+        {
+            this.subscription = subscription;
+            subscribing = true;
+            if (batch > 0)
+            {
+                subscription.request(batch);
+            }
+            subscribing = false;
+        }
+
+        @Override
+        public void onNext(Row item)
+        {
+            overlapped |= subscribing;
+            names.add(item.name);
+            if (batch > 0 && names.size() % batch == 0)
+            {
+                subscription.request(batch);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable)
+        {
+            error = throwable;
+            terminated.countDown();
+        }
+
+        @Override
+        public void onComplete()
+        {
+            completed = true;
+            terminated.countDown();
+        }
+
+    }
+
+    @Test
+    public void testBatches() throws IOException
+    {
+        Recorder recorder = new Recorder(3);
+        publisher(10).subscribe(recorder);
+        assertEquals(10, recorder.names.size());
+        assertEquals("row9", recorder.names.get(9));
+        assertTrue(recorder.completed);
+    }
+
+    @Test
+    public void testDemandIsHonoured() throws IOException
+    {
+        Recorder recorder = new Recorder(0);
+        publisher(10).subscribe(recorder);
+        assertEquals(0, recorder.names.size());
+        recorder.subscription.request(4);
+        assertEquals(4, recorder.names.size());
+        recorder.subscription.request(6);
+        assertEquals(10, recorder.names.size());
+        // the end is signalled without further demand
+        assertTrue(recorder.completed);
+    }
+
+    @Test
+    public void testExactDemand() throws IOException
+    {
+        Recorder recorder = new Recorder(0);
+        publisher(3).subscribe(recorder);
+        recorder.subscription.request(3);
+        assertEquals(3, recorder.names.size());
+        assertTrue(recorder.completed);
+
+        recorder = new Recorder(0);
+        publisher(0).subscribe(recorder);
+        recorder.subscription.request(1);
+        assertTrue(recorder.completed);
+    }
+
+    @Test
+    public void testRequestWithinOnSubscribe() throws IOException
+    {
+        Recorder recorder = new Recorder(4);
+        publisher(10).subscribe(recorder);
+        // the rows come once onSubscribe has returned, on the same thread here
+        assertFalse(recorder.overlapped);
+        assertEquals(10, recorder.names.size());
+        assertTrue(recorder.completed);
+    }
+
+    @Test
+    public void testParserError() throws IOException
+    {
+        List<Throwable> errors = new ArrayList<>();
+        new CsvPublisher<>(new SomeCoolCsvReader<>(file(10), Exploding.class), Runnable::run)
+                .subscribe(new Flow.Subscriber<Exploding>()
+                {
+
+                    @Override
+                    public void onSubscribe(Flow.Subscription subscription)
+                    {
+                        subscription.request(Long.MAX_VALUE);
+                    }
+
+                    @Override
+                    public void onNext(Exploding item)
+                    {}
+
+                    @Override
+                    public void onError(Throwable throwable)
+                    {
+                        errors.add(throwable);
+                    }
+
+                    @Override
+                    public void onComplete()
+                    {}
+
+                });
+        assertEquals(1, errors.size());
+        assertEquals("boom", errors.get(0).getMessage());
+    }
+
+    @Test
+    public void testSubscriberError() throws IOException
+    {
+        List<String> names = new ArrayList<>();
+        Flow.Subscription[] subscription = new Flow.Subscription[1];
+        publisher(10).subscribe(new Flow.Subscriber<Row>()
+        {
+
+            @Override
+            public void onSubscribe(Flow.Subscription s)
+            {
+                subscription[0] = s;
+            }
+
+            @Override
+            public void onNext(Row item)
+            {
+                names.add(item.name);
+                throw new AssertionError("boom");
+            }
+
+            @Override
+            public void onError(Throwable throwable)
+            {
+                fail("A broken subscriber has been signalled");
+            }
+
+            @Override
+            public void onComplete()
+            {
+                fail("A broken subscriber has been signalled");
+            }
+
+        });
+        // the subscription is cancelled, the error does not reach the caller
+        subscription[0].request(2);
+        subscription[0].request(2);
+        assertEquals(Arrays.asList("row0"), names);
+    }
+
+    @Test
+    public void testNoRowAhead() throws IOException
+    {
+        File file = File.createTempFile("test", ".csv");
+        file.deleteOnExit();
+        Files.write(file.toPath(), "1\n2\nbad\n".getBytes(US_ASCII));
+        CountDownLatch failed = new CountDownLatch(1);
+        List<Integer> numbers = new ArrayList<>();
+        Flow.Subscription[] subscription = new Flow.Subscription[1];
+        new CsvPublisher<>(new SomeCoolCsvReader<>(file, Numbered.class), Runnable::run)
+                .subscribe(new Flow.Subscriber<Numbered>()
+                {
+
+                    @Override
+                    public void onSubscribe(Flow.Subscription s)
+                    {
+                        subscription[0] = s;
+                    }
+
+                    @Override
+                    public void onNext(Numbered item)
+                    {
+                        numbers.add(item.number);
+                    }
+
+                    @Override
+                    public void onError(Throwable throwable)
+                    {
+                        failed.countDown();
+                    }
+
+                    @Override
+                    public void onComplete()
+                    {}
+
+                });
+        // the bad row is not parsed before it is requested
+        subscription[0].request(2);
+        assertEquals(1, failed.getCount());
+        subscription[0].request(1);
+        assertEquals(0, failed.getCount());
+        assertEquals(2, numbers.size());
+    }
+
+    @Test
+    public void testMissingFile() throws IOException, InterruptedException
+    {
+        File file = File.createTempFile("test", ".csv");
+        file.delete();
+        for (Engine engine : Engine.values())
+        {
+            Recorder recorder = new Recorder(1);
+            new CsvPublisher<>(new SomeCoolCsvReader<>(file, Row.class).withEngine(engine)).subscribe(recorder);
+            assertTrue(recorder.terminated.await(10, TimeUnit.SECONDS));
+            assertTrue(engine + ": " + recorder.error, recorder.error instanceof NoSuchFileException);
+            assertFalse(recorder.completed);
+        }
+    }
+
+    @Test
+    public void testIOError() throws IOException
+    {
+        // a directory cannot be read as a file
+        File directory = Files.createTempDirectory("test").toFile();
+        directory.deleteOnExit();
+        for (Engine engine : Engine.values())
+        {
+            Recorder recorder = new Recorder(1);
+            new CsvPublisher<>(new SomeCoolCsvReader<>(directory, Row.class).withEngine(engine), Runnable::run)
+                    .subscribe(recorder);
+            assertTrue(engine + ": " + recorder.error, recorder.error instanceof IOException);
+            assertFalse(recorder.completed);
+        }
+    }
+
+    @Test
+    public void testCancel() throws IOException
+    {
+        Recorder recorder = new Recorder(0);
+        publisher(10).subscribe(recorder);
+        recorder.subscription.request(2);
+        recorder.subscription.cancel();
+        recorder.subscription.request(5);
+        assertEquals(2, recorder.names.size());
+        assertFalse(recorder.completed);
+    }
+
+    @Test
+    public void testInvalidRequest() throws IOException
+    {
+        Recorder recorder = new Recorder(0);
+        publisher(10).subscribe(recorder);
+        recorder.subscription.request(0);
+        assertTrue(recorder.error instanceof IllegalArgumentException);
+    }
+
+    @Test
+    public void testUnboundedOnPool() throws IOException, InterruptedException
+    {
+        Recorder recorder = new Recorder(0);
+        new CsvPublisher<>(reader(10000)).subscribe(recorder);
+        recorder.subscription.request(Long.MAX_VALUE);
+        recorder.subscription.request(Long.MAX_VALUE);
+        assertTrue(recorder.terminated.await(10, TimeUnit.SECONDS));
+        assertEquals(10000, recorder.names.size());
+        assertTrue(recorder.completed);
+    }
+
+    /*
+     * publishes on the calling thread, which makes the signals easy to check
+     */
+    private static CsvPublisher<Row> publisher(int rows) throws IOException
+    {
+        return new CsvPublisher<>(reader(rows), Runnable::run);
+    }
+
+    private static SomeCoolCsvReader<Row> reader(int rows) throws IOException
+    {
+        return new SomeCoolCsvReader<>(file(rows), Row.class);
+    }
+
+    private static File file(int rows) throws IOException
+    {
+        StringBuilder contents = new StringBuilder();
+        for (int i = 0; i < rows; i++ )
+        {
+            contents.append("row").append(i).append('\n');
+        }
+        File temp = File.createTempFile("test", ".csv");
+        temp.deleteOnExit();
+        Files.write(temp.toPath(), contents.toString().getBytes(US_ASCII));
+        return temp;
+    }
+
+}
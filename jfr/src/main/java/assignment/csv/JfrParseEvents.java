@@ -0,0 +1,135 @@
+package assignment.csv;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Emits the {@link ParseEvents} as Java Flight Recorder events, found by the {@link SomeCoolCsvReader} through the
+ * {@link java.util.ServiceLoader}. Both events are disabled by default, enable them in the settings of a recording:
+ *
+ * <pre>
+ * java -XX:StartFlightRecording:filename=csv.jfr,settings=csv.jfc ...
+ * </pre>
+ *
+ * with <code>assignment.csv.Batch#enabled=true</code> and <code>assignment.csv.SlowRow#enabled=true</code> in
+ * <code>csv.jfc</code>, or with {@link jdk.jfr.Recording#enable(String)}. The batches take a threshold too, the
+ * threshold of the slow rows is set on the reader, see
+ * {@link SomeCoolCsvReader#withSlowRowThreshold(long, java.util.concurrent.TimeUnit)}.
+ *
+ * @author sergey
+ *
+ */
+public final class JfrParseEvents implements ParseEvents
+{
+
+    private static final EventType BATCH = EventType.getEventType(BatchEvent.class);
+    private static final EventType SLOW_ROW = EventType.getEventType(SlowRowEvent.class);
+
+    @Override
+    public Object beginBatch()
+    {
+        if (!BATCH.isEnabled())
+        {
+            return null;
+        }
+        BatchEvent event = new BatchEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endBatch(Object batch, String file, long rows, long length)
+    {
+        BatchEvent event = (BatchEvent) batch;
+        event.end();
+        if (event.shouldCommit())
+        {
+            event.file = file;
+            event.rows = rows;
+            event.length = length;
+            event.commit();
+        }
+    }
+
+    @Override
+    public boolean slowRowsEnabled()
+    {
+        return SLOW_ROW.isEnabled();
+    }
+
+    @Override
+    public void slowRow(String file, long row, int length, long nanos)
+    {
+        SlowRowEvent event = new SlowRowEvent();
+        event.file = file;
+        event.row = row;
+        event.length = length;
+        event.parseTime = nanos;
+        event.commit();
+    }
+
+    /**
+     * A batch of rows parsed by an iterator or by a chunk of a parallel stream, its duration includes the time the
+     * consumer of the rows has spent on them.
+     */
+    @Name("assignment.csv.Batch")
+    @Label("CSV Batch")
+    @Category("CSV")
+    @Description("A batch of rows parsed by an iterator or by a chunk of a parallel stream")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class BatchEvent extends Event
+    {
+
+        @Label("File")
+        String file;
+
+        @Label("Rows")
+        long rows;
+
+        @Label("Length")
+        @Description("The length of the rows without line terminators, in characters for the LINES engine")
+        @DataAmount
+        long length;
+
+    }
+
+    /**
+     * A row which took longer to parse than the threshold of the reader.
+     */
+    @Name("assignment.csv.SlowRow")
+    @Label("CSV Slow Row")
+    @Category("CSV")
+    @Description("A row which took longer to parse than the threshold of the reader")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class SlowRowEvent extends Event
+    {
+
+        @Label("File")
+        String file;
+
+        @Label("Row")
+        @Description("The number of the row within its iterator or chunk, blank lines are not counted")
+        long row;
+
+        @Label("Length")
+        @Description("The length of the row without the line terminator, in characters for the LINES engine")
+        @DataAmount
+        int length;
+
+        @Label("Parse Time")
+        @Timespan
+        long parseTime;
+
+    }
+
+}
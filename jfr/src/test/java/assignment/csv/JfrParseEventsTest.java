@@ -0,0 +1,130 @@
+package assignment.csv;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import assignment.csv.SomeCoolCsvReader.Engine;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Records the events of the parsing with a flight recording.
+ *
+ * @author sergey
+ *
+ */
+public class JfrParseEventsTest
+{
+
+    private static final int ROWS = 20000;
+
+    @FileMetaData
+    public static class Row
+    {
+
+        @CSVColumn(indx = 1)
+        public String name;
+
+    }
+
+    @Test
+    public void testBatches() throws IOException
+    {
+        File file = file(ROWS);
+        for (Engine engine : Engine.values())
+        {
+            List<RecordedEvent> events = record(() -> new SomeCoolCsvReader<>(file, Row.class).withEngine(engine)
+                    .stream().count(), "assignment.csv.Batch");
+            // two full batches and the rest
+            assertEquals(3, events.size());
+            assertEquals(Meter.BATCH, events.get(0).getLong("rows"));
+            assertEquals(ROWS - 2 * Meter.BATCH, events.get(2).getLong("rows"));
+            long length = events.stream().mapToLong(event -> event.getLong("length")).sum();
+            assertEquals(file.length() - ROWS, length);
+            assertEquals(file.getPath(), events.get(0).getString("file"));
+        }
+    }
+
+    @Test
+    public void testSlowRows() throws IOException
+    {
+        File file = file(10);
+        List<RecordedEvent> events = record(() -> new SomeCoolCsvReader<>(file, Row.class)
+                .withSlowRowThreshold(0, TimeUnit.NANOSECONDS).getObjects(), "assignment.csv.SlowRow");
+        assertEquals(10, events.size());
+        assertEquals(10, events.get(9).getLong("row"));
+        assertEquals("row9".length(), events.get(9).getInt("length"));
+        assertTrue(events.get(9).getLong("parseTime") > 0);
+
+        // the default threshold of 10ms is not reached by such short rows
+        events = record(() -> new SomeCoolCsvReader<>(file, Row.class).getObjects(), "assignment.csv.SlowRow");
+        assertEquals(0, events.size());
+    }
+
+    @Test
+    public void testDisabled() throws IOException
+    {
+        File file = file(ROWS);
+        assertEquals(ROWS, new SomeCoolCsvReader<>(file, Row.class).withSlowRowThreshold(0, TimeUnit.NANOSECONDS)
+                .getObjects().size());
+        // the rows are not timed while the slow rows are not recorded
+        List<RecordedEvent> events = record(() -> new SomeCoolCsvReader<>(file, Row.class)
+                .withSlowRowThreshold(0, TimeUnit.NANOSECONDS).getObjects(), "assignment.csv.Batch");
+        assertEquals(3, events.size());
+        assertTrue(events.stream().allMatch(event -> event.getEventType().getName().equals("assignment.csv.Batch")));
+    }
+
+    /*
+     * runs the action within a recording of the given event, returns the events of the parser in the order they
+     * were committed
+     */
+    private static List<RecordedEvent> record(Runnable action, String name) throws IOException
+    {
+        Path dump = Files.createTempFile("test", ".jfr");
+        try
+        {
+            try (Recording recording = new Recording())
+            {
+                recording.enable(name);
+                recording.start();
+                action.run();
+                recording.stop();
+                recording.dump(dump);
+            }
+            return RecordingFile.readAllEvents(dump).stream()
+                    .filter(event -> event.getEventType().getName().startsWith("assignment.csv."))
+                    .sorted((a, b) -> a.getEndTime().compareTo(b.getEndTime()))
+                    .collect(Collectors.toList());
+        }
+        finally
+        {
+            Files.delete(dump);
+        }
+    }
+
+    private static File file(int rows) throws IOException
+    {
+        StringBuilder contents = new StringBuilder();
+        for (int i = 0; i < rows; i++ )
+        {
+            contents.append("row").append(i).append('\n');
+        }
+        File file = File.createTempFile("test", ".csv");
+        file.deleteOnExit();
+        Files.write(file.toPath(), contents.toString().getBytes(US_ASCII));
+        return file;
+    }
+
+}
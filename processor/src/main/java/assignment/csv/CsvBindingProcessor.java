@@ -0,0 +1,476 @@
+package assignment.csv;
+
+import static java.lang.String.format;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates a {@link CsvBinding} for every class annotated with {@link FileMetaData}, or inheriting the annotation, so
+ * that reading the class needs no reflection. The annotated fields are checked the way the reader checks them at
+ * runtime: an index shared by several fields or lower than 1, an unsupported type, a misplaced dedup, a field which
+ * has neither a public setter nor can be assigned, and an invalid separator are compile errors.
+ *
+ * <p>
+ * A binding is only generated for a class the generated code can instantiate: a concrete, non generic, top level or
+ * static nested class which is not private and has a no-args constructor which is not private. Other classes are still
+ * checked, and read by reflection.
+ *
+ * @author sergey
+ *
+ */
+@SupportedAnnotationTypes("assignment.csv.FileMetaData")
+public final class CsvBindingProcessor extends AbstractProcessor
+{
+
+    /**
+     * The setter a column is set with, see the <code>setX</code> methods of {@link CsvBinding}.
+     */
+    private enum Kind
+    {
+
+        OBJECT("Object", "Object"), INT("Int", "int"), LONG("Long", "long"), DOUBLE("Double", "double"),
+        BOOLEAN("Boolean", "boolean");
+
+        final String method;
+        final String type;
+
+        Kind(String method, String type)
+        {
+            this.method = method;
+            this.type = type;
+        }
+
+    }
+
+    /**
+     * An annotated field.
+     */
+    private static final class Column
+    {
+
+        VariableElement field;
+        String name;
+        int indx;
+        int dedup;
+        Kind kind;
+        /** the class literal of the field type */
+        String type;
+        /** the setter method, <code>null</code> if the field is assigned */
+        String setter;
+
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion()
+    {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set< ? extends TypeElement> annotations, RoundEnvironment round)
+    {
+        for (Element element : round.getElementsAnnotatedWith(FileMetaData.class))
+        {
+            if (element.getKind() == ElementKind.CLASS)
+            {
+                process((TypeElement) element);
+            }
+        }
+        // the annotations may be of interest to other processors
+        return false;
+    }
+
+    private void process(TypeElement type)
+    {
+        boolean valid = true;
+        FileMetaData metaData = metaData(type);
+        String separator = metaData.separator().trim();
+        if (separator.isEmpty())
+        {
+            valid = error(type, "The field delimiter of %s is empty. Please use something sensible, like a comma.",
+                    type);
+        }
+        else if (separator.length() > 1)
+        {
+            valid = error(type, "Delimiter must be a single character");
+        }
+        else if (metaData.quote() == separator.charAt(0))
+        {
+            valid = error(type, "The quote must differ from the delimiter");
+        }
+        if (!metaData.charset().isEmpty() && !supported(metaData.charset()))
+        {
+            valid = error(type, "Unknown charset %s (found in %s)", metaData.charset(), type);
+        }
+
+        List<Column> columns = new ArrayList<>();
+        for (TypeElement t = type; t != null; t = superclass(t))
+        {
+            for (VariableElement field : ElementFilter.fieldsIn(t.getEnclosedElements()))
+            {
+                if (field.getAnnotation(CSVColumn.class) != null)
+                {
+                    Column column = column(type, field);
+                    valid &= column != null;
+                    if (column != null)
+                    {
+                        columns.add(column);
+                    }
+                }
+            }
+        }
+        Map<Integer, List<Column>> byIndex = new TreeMap<>();
+        for (Column column : columns)
+        {
+            byIndex.computeIfAbsent(column.indx, indx -> new ArrayList<>()).add(column);
+        }
+        for (Entry<Integer, List<Column>> entry : byIndex.entrySet())
+        {
+            for (Column column : entry.getValue())
+            {
+                if (entry.getKey() < 1)
+                {
+                    valid = error(column.field, "The annotated field %s has an index of %d, minimum value is 1",
+                            column.name, entry.getKey());
+                }
+                else if (entry.getValue().size() > 1)
+                {
+                    valid = error(column.field, "Fields %s share the same index %d",
+                            entry.getValue().stream().map(c -> c.name).collect(Collectors.toList()), entry.getKey());
+                }
+            }
+        }
+        if (valid && instantiable(type))
+        {
+            generate(type, metaData, separator.charAt(0), columns);
+        }
+    }
+
+    /*
+     * the annotation of the class or of the closest superclass which has one
+     */
+    private FileMetaData metaData(TypeElement type)
+    {
+        for (TypeElement t = type; t != null; t = superclass(t))
+        {
+            FileMetaData metaData = t.getAnnotation(FileMetaData.class);
+            if (metaData != null)
+            {
+                return metaData;
+            }
+        }
+        throw new IllegalStateException("Unable to find @FileMetaData in the hierarchy of " + type);
+    }
+
+    private TypeElement superclass(TypeElement type)
+    {
+        TypeMirror superclass = type.getSuperclass();
+        return superclass.getKind() == TypeKind.DECLARED ? (TypeElement) ((DeclaredType) superclass).asElement() : null;
+    }
+
+    /*
+     * checks an annotated field, returns null if it is not valid
+     */
+    private Column column(TypeElement type, VariableElement field)
+    {
+        TypeElement declaring = (TypeElement) field.getEnclosingElement();
+        CSVColumn annotation = field.getAnnotation(CSVColumn.class);
+        Column column = new Column();
+        column.field = field;
+        column.name = processingEnv.getElementUtils().getBinaryName(declaring) + "." + field.getSimpleName();
+        column.indx = annotation.indx();
+        column.dedup = annotation.dedup();
+
+        TypeMirror fieldType = field.asType();
+        column.type = processingEnv.getTypeUtils().erasure(fieldType) + ".class";
+        column.kind = kind(fieldType);
+        if (column.kind == null)
+        {
+            return invalid(field,
+                    "The type %s of the annotated field %s is not supported. Supported types are String, int, long, double, boolean, BigDecimal and enums.",
+                    fieldType, column.name);
+        }
+        if (column.dedup < 0 || column.dedup > 0 && !isClass(fieldType, "java.lang.String"))
+        {
+            return invalid(field, "The dedup of the annotated field %s must be zero or, for a String, positive",
+                    column.name);
+        }
+        column.setter = setter(field);
+        if (column.setter == null && !assignable(type, field))
+        {
+            return invalid(field, "Unable to find a public setter method for the annotated field %s", column.name);
+        }
+        return column;
+    }
+
+    private static Kind kind(TypeMirror type)
+    {
+        switch (type.getKind())
+        {
+            case INT:
+                return Kind.INT;
+            case LONG:
+                return Kind.LONG;
+            case DOUBLE:
+                return Kind.DOUBLE;
+            case BOOLEAN:
+                return Kind.BOOLEAN;
+            case DECLARED:
+                if (isClass(type, "java.lang.String") || isClass(type, "java.math.BigDecimal")
+                        || ((DeclaredType) type).asElement().getKind() == ElementKind.ENUM)
+                {
+                    return Kind.OBJECT;
+                }
+                return null;
+            default:
+                return null;
+        }
+    }
+
+    private static boolean supported(String charset)
+    {
+        try
+        {
+            return Charset.isSupported(charset);
+        }
+        catch (IllegalArgumentException e)
+        {
+            // an illegal name
+            return false;
+        }
+    }
+
+    private static boolean isClass(TypeMirror type, String name)
+    {
+        return type.getKind() == TypeKind.DECLARED
+                && ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().contentEquals(name);
+    }
+
+    /*
+     * the public setter the reader would call, null if there is none
+     */
+    private String setter(VariableElement field)
+    {
+        String name = field.getSimpleName().toString();
+        name = "set" + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        TypeElement declaring = (TypeElement) field.getEnclosingElement();
+        for (ExecutableElement method : ElementFilter
+                .methodsIn(processingEnv.getElementUtils().getAllMembers(declaring)))
+        {
+            if (method.getSimpleName().contentEquals(name) && method.getModifiers().contains(Modifier.PUBLIC)
+                    && !method.getModifiers().contains(Modifier.STATIC) && method.getParameters().size() == 1
+                    && processingEnv.getTypeUtils().isSameType(method.getParameters().get(0).asType(),
+                            field.asType()))
+            {
+                return name;
+            }
+        }
+        return null;
+    }
+
+    /*
+     * the generated class lives in the package of the POJO class, which is not always the package of the field
+     */
+    private boolean assignable(TypeElement type, VariableElement field)
+    {
+        Set<Modifier> modifiers = field.getModifiers();
+        if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.FINAL)
+                || modifiers.contains(Modifier.STATIC))
+        {
+            return false;
+        }
+        return modifiers.contains(Modifier.PUBLIC) || processingEnv.getElementUtils().getPackageOf(field)
+                .equals(processingEnv.getElementUtils().getPackageOf(type));
+    }
+
+    private boolean instantiable(TypeElement type)
+    {
+        if (type.getModifiers().contains(Modifier.ABSTRACT) || !type.getTypeParameters().isEmpty())
+        {
+            return false;
+        }
+        for (Element e = type; e instanceof TypeElement; e = e.getEnclosingElement())
+        {
+            NestingKind nesting = ((TypeElement) e).getNestingKind();
+            if (e.getModifiers().contains(Modifier.PRIVATE) || nesting == NestingKind.LOCAL
+                    || nesting == NestingKind.ANONYMOUS
+                    || nesting == NestingKind.MEMBER && !e.getModifiers().contains(Modifier.STATIC))
+            {
+                return false;
+            }
+        }
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements()))
+        {
+            if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void generate(TypeElement type, FileMetaData metaData, char separator, List<Column> columns)
+    {
+        PackageElement pkg = processingEnv.getElementUtils().getPackageOf(type);
+        String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+        String bindingName = CsvBinding.bindingName(binaryName);
+        String simpleName = bindingName.substring(bindingName.lastIndexOf('.') + 1);
+        String pojo = type.getQualifiedName().toString();
+        try (PrintWriter out = new PrintWriter(processingEnv.getFiler().createSourceFile(bindingName, type).openWriter()))
+        {
+            if (!pkg.isUnnamed())
+            {
+                out.println("package " + pkg.getQualifiedName() + ";");
+                out.println();
+            }
+            out.println("/**");
+            out.println(" * Generated by " + getClass().getName() + " from " + pojo + ", do not edit.");
+            out.println(" */");
+            out.println("public final class " + simpleName + " extends assignment.csv.CsvBinding<" + pojo + ">");
+            out.println("{");
+            out.println();
+            out.println("    public " + simpleName + "()");
+            out.println("    {");
+            out.println("        super(" + pojo + ".class, " + literal(separator) + ", " + literal(metaData.quote())
+                    + ", assignment.csv.FileMetaData.Escape." + metaData.escape().name() + ", "
+                    + literal(metaData.charset()) + ");");
+            for (Column column : columns)
+            {
+                out.println("        column(" + column.indx + ", " + literal(column.name) + ", " + column.type + ", "
+                        + column.dedup + ");");
+            }
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public " + pojo + " newInstance()");
+            out.println("    {");
+            out.println("        return new " + pojo + "();");
+            out.println("    }");
+            for (Kind kind : Kind.values())
+            {
+                List<Column> ofKind = columns.stream().filter(c -> c.kind == kind).collect(Collectors.toList());
+                if (!ofKind.isEmpty())
+                {
+                    out.println();
+                    setter(out, type, pojo, kind, ofKind);
+                }
+            }
+            out.println();
+            out.println("}");
+        }
+        catch (IOException e)
+        {
+            error(type, "Unable to generate the binding of %s: %s", pojo, e);
+        }
+    }
+
+    private void setter(PrintWriter out, TypeElement type, String pojo, Kind kind, List<Column> columns)
+    {
+        out.println("    @Override");
+        out.println("    protected void set" + kind.method + "(" + pojo + " target, int indx, " + kind.type
+                + " value)");
+        out.println("    {");
+        out.println("        switch (indx)");
+        out.println("        {");
+        for (Column column : columns)
+        {
+            String value = kind == Kind.OBJECT
+                    ? "(" + column.type.substring(0, column.type.length() - ".class".length()) + ") value"
+                    : "value";
+            out.println("            case " + column.indx + ":");
+            if (column.setter != null)
+            {
+                out.println("                target." + column.setter + "(" + value + ");");
+            }
+            else
+            {
+                TypeElement declaring = (TypeElement) column.field.getEnclosingElement();
+                // a field of a superclass may be hidden by a field of the same name
+                String target = declaring.equals(type) ? "target" : "((" + declaring.getQualifiedName() + ") target)";
+                out.println("                " + target + "." + column.field.getSimpleName() + " = " + value + ";");
+            }
+            out.println("                break;");
+        }
+        out.println("            default:");
+        out.println("                super.set" + kind.method + "(target, indx, value);");
+        out.println("        }");
+        out.println("    }");
+    }
+
+    /*
+     * a char as a Java expression, unicode escapes are avoided as they are translated before the source is parsed
+     */
+    private static String literal(char c)
+    {
+        if (c == '\'' || c == '\\')
+        {
+            return "'\\" + c + "'";
+        }
+        if (c >= 0x20 && c < 0x7f)
+        {
+            return "'" + c + "'";
+        }
+        return "(char) " + (int) c;
+    }
+
+    private static String literal(String s)
+    {
+        StringBuilder literal = new StringBuilder("\"");
+        for (char c : s.toCharArray())
+        {
+            if (c == '"' || c == '\\')
+            {
+                literal.append('\\').append(c);
+            }
+            else if (c >= 0x20 && c < 0x7f)
+            {
+                literal.append(c);
+            }
+            else
+            {
+                literal.append(format("\\u%04x", (int) c));
+            }
+        }
+        return literal.append('"').toString();
+    }
+
+    private boolean error(Element element, String message, Object... arguments)
+    {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, format(message, arguments), element);
+        return false;
+    }
+
+    private Column invalid(Element element, String message, Object... arguments)
+    {
+        error(element, message, arguments);
+        return null;
+    }
+
+}
@@ -0,0 +1,222 @@
+package assignment.csv;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaCompiler.CompilationTask;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import assignment.csv.SomeCoolCsvReader.Engine;
+
+/**
+ * Compiles POJO classes with the processor, checks the errors it reports and reads files through the generated
+ * bindings.
+ *
+ * @author sergey
+ *
+ */
+public class CsvBindingProcessorTest
+{
+
+    private static final String TRADE = "package other;\n"
+            + "import assignment.csv.*;\n"
+            + "import java.math.BigDecimal;\n"
+            + "public class Outer {\n"
+            + "  public enum Side { BUY, SELL }\n"
+            // package private fields of another package, only the generated binding can set them
+            + "  @FileMetaData(separator = \";\", quote = '\\'', charset = \"UTF-8\")\n"
+            + "  public static class Trade {\n"
+            + "    @CSVColumn(indx = 1, dedup = 16) String id;\n"
+            + "    @CSVColumn(indx = 2) int quantity;\n"
+            + "    @CSVColumn(indx = 3) long time;\n"
+            + "    @CSVColumn(indx = 4) double rate;\n"
+            + "    @CSVColumn(indx = 5) boolean settled;\n"
+            + "    @CSVColumn(indx = 6) BigDecimal price;\n"
+            + "    @CSVColumn(indx = 8) Side side;\n"
+            + "    private String note;\n"
+            + "    @CSVColumn(indx = 9) private String comment;\n"
+            + "    public void setComment(String comment) { this.comment = \"<\" + comment + \">\"; }\n"
+            + "  }\n"
+            + "}\n";
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        directory = Files.createTempDirectory("test");
+        directory.toFile().deleteOnExit();
+    }
+
+    @Test
+    public void testBinding() throws Exception
+    {
+        assertEquals(Collections.emptyList(), compile("other/Outer.java", TRADE));
+        assertTrue(Files.exists(directory.resolve("classes/other/Outer_Trade_CsvBinding.class")));
+
+        File file = File.createTempFile("test", ".csv");
+        file.deleteOnExit();
+        Files.write(file.toPath(), ("a;1;2;2.5;true;1.25;skipped;SELL;x\n" + "'b;c';;;;;;;;\n").getBytes(US_ASCII));
+        try (URLClassLoader loader = new URLClassLoader(new URL[] { directory.resolve("classes").toUri().toURL() },
+                getClass().getClassLoader()))
+        {
+            Class< ? > trade = loader.loadClass("other.Outer$Trade");
+            assertNotNull(CsvBinding.find(trade));
+            for (Engine engine : Engine.values())
+            {
+                List< ? > rows = new SomeCoolCsvReader<>(file, trade).withEngine(engine).getObjects();
+                assertEquals(2, rows.size());
+                Object first = rows.get(0);
+                assertEquals("a", get(first, "id"));
+                assertEquals(1, get(first, "quantity"));
+                assertEquals(2L, get(first, "time"));
+                assertEquals(2.5, get(first, "rate"));
+                assertEquals(true, get(first, "settled"));
+                assertEquals(new BigDecimal("1.25"), get(first, "price"));
+                assertEquals("SELL", get(first, "side").toString());
+                assertEquals("<x>", get(first, "comment"));
+                Object second = rows.get(1);
+                assertEquals("b;c", get(second, "id"));
+                assertEquals(0, get(second, "quantity"));
+                assertEquals(null, get(second, "price"));
+                assertEquals("<null>", get(second, "comment"));
+            }
+        }
+    }
+
+    @Test
+    public void testDuplicateIndex() throws IOException
+    {
+        List<String> errors = compile("Duplicate.java",
+                "@assignment.csv.FileMetaData public class Duplicate {\n"
+                        + "  @assignment.csv.CSVColumn(indx = 1) public String a;\n"
+                        + "  @assignment.csv.CSVColumn(indx = 1) public String b;\n"
+                        + "}\n");
+        assertEquals(Arrays.asList("Fields [Duplicate.a, Duplicate.b] share the same index 1",
+                "Fields [Duplicate.a, Duplicate.b] share the same index 1"), errors);
+    }
+
+    @Test
+    public void testInheritedDuplicateIndex() throws IOException
+    {
+        List<String> errors = compile("Child.java",
+                "@assignment.csv.FileMetaData class Parent {\n"
+                        + "  @assignment.csv.CSVColumn(indx = 2) public String a;\n"
+                        + "}\n"
+                        + "public class Child extends Parent {\n"
+                        + "  @assignment.csv.CSVColumn(indx = 2) public String b;\n"
+                        + "}\n");
+        assertEquals(Arrays.asList("Fields [Child.b, Parent.a] share the same index 2",
+                "Fields [Child.b, Parent.a] share the same index 2"), errors);
+    }
+
+    @Test
+    public void testZeroIndex() throws IOException
+    {
+        List<String> errors = compile("Zero.java",
+                "@assignment.csv.FileMetaData public class Zero {\n"
+                        + "  @assignment.csv.CSVColumn(indx = 0) public String a;\n"
+                        + "}\n");
+        assertEquals(Arrays.asList("The annotated field Zero.a has an index of 0, minimum value is 1"), errors);
+    }
+
+    @Test
+    public void testInvalidFields() throws IOException
+    {
+        List<String> errors = compile("Invalid.java",
+                "@assignment.csv.FileMetaData(separator = \"\\t\", charset = \"nonsense\") public class Invalid {\n"
+                        + "  @assignment.csv.CSVColumn(indx = 1) public java.util.Date a;\n"
+                        + "  @assignment.csv.CSVColumn(indx = 2, dedup = 4) public int b;\n"
+                        + "  @assignment.csv.CSVColumn(indx = 3) private String c;\n"
+                        + "  @assignment.csv.CSVColumn(indx = 4) public final String d = null;\n"
+                        + "}\n");
+        assertEquals(Arrays.asList("The field delimiter of Invalid is empty. Please use something sensible, like a comma.",
+                "Unknown charset nonsense (found in Invalid)",
+                "The type java.util.Date of the annotated field Invalid.a is not supported. Supported types are String, int, long, double, boolean, BigDecimal and enums.",
+                "The dedup of the annotated field Invalid.b must be zero or, for a String, positive",
+                "Unable to find a public setter method for the annotated field Invalid.c",
+                "Unable to find a public setter method for the annotated field Invalid.d"), errors);
+    }
+
+    @Test
+    public void testNotInstantiable() throws IOException
+    {
+        assertEquals(Collections.emptyList(), compile("Abstract.java",
+                "@assignment.csv.FileMetaData public abstract class Abstract {\n"
+                        + "  @assignment.csv.CSVColumn(indx = 1) public String a;\n"
+                        + "  public class Inner extends Abstract {}\n"
+                        + "}\n"));
+        try (Stream<Path> classes = Files.list(directory.resolve("classes")))
+        {
+            assertEquals(Arrays.asList("Abstract$Inner.class", "Abstract.class"), classes
+                    .map(path -> path.getFileName().toString()).sorted().collect(Collectors.toList()));
+        }
+    }
+
+    private static Object get(Object target, String name) throws ReflectiveOperationException
+    {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        return field.get(target);
+    }
+
+    /*
+     * compiles a source with the processor, returns the errors
+     */
+    private List<String> compile(String name, String source) throws IOException
+    {
+        Path sources = directory.resolve("sources");
+        Path classes = directory.resolve("classes");
+        Path file = sources.resolve(name);
+        Files.createDirectories(file.getParent());
+        Files.createDirectories(classes);
+        Files.write(file, source.getBytes(US_ASCII));
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        try (StandardJavaFileManager files = compiler.getStandardFileManager(diagnostics, null, US_ASCII))
+        {
+            List<String> options = Arrays.asList("-d", classes.toString(), "-s", sources.toString(), "-classpath",
+                    System.getProperty("java.class.path"), "-Xlint:none");
+            CompilationTask task = compiler.getTask(null, files, diagnostics, options, null,
+                    files.getJavaFileObjects(file.toFile()));
+            task.setProcessors(Collections.singletonList(new CsvBindingProcessor()));
+            task.call();
+        }
+        List<String> errors = new ArrayList<>();
+        for (Diagnostic< ? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics())
+        {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR)
+            {
+                errors.add(diagnostic.getMessage(null));
+            }
+        }
+        return errors;
+    }
+
+}
@@ -0,0 +1,499 @@
+package assignment.csv;
+
+import static assignment.csv.Utils.unchecked;
+import static java.lang.invoke.MethodType.methodType;
+
+import java.lang.invoke.LambdaConversionException;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandleInfo;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Modifier;
+
+/**
+ * Turns the constructor, the setters and the getters of a POJO into instances of small functional interfaces. The
+ * implementations are spun at runtime by the {@link LambdaMetafactory}, each one is a class whose single method calls
+ * the constructor or the accessor directly, exactly like handwritten code would, so the JIT can inline it just the
+ * same. This is what the JDK does for method references, it needs neither javassist nor cglib.
+ *
+ * <p>
+ * When no class can be spun (public fields without accessors, classes invisible from this class loader) the binder
+ * falls back to calling the {@link MethodHandle} itself.
+ *
+ * @author sergey
+ *
+ */
+final class Binder
+{
+
+    /**
+     * Creates POJOs.
+     */
+    interface Instantiator
+    {
+
+        Object newInstance();
+
+    }
+
+    interface ObjectSetter
+    {
+
+        void set(Object target, Object value);
+
+    }
+
+    interface IntSetter
+    {
+
+        void set(Object target, int value);
+
+    }
+
+    interface LongSetter
+    {
+
+        void set(Object target, long value);
+
+    }
+
+    interface DoubleSetter
+    {
+
+        void set(Object target, double value);
+
+    }
+
+    interface BooleanSetter
+    {
+
+        void set(Object target, boolean value);
+
+    }
+
+    /**
+     * The setters of a field, only the one matching the type of the field is asked for.
+     */
+    interface Setters
+    {
+
+        ObjectSetter objectSetter();
+
+        IntSetter intSetter();
+
+        LongSetter longSetter();
+
+        DoubleSetter doubleSetter();
+
+        BooleanSetter booleanSetter();
+
+    }
+
+    interface ObjectGetter
+    {
+
+        Object get(Object target);
+
+    }
+
+    interface IntGetter
+    {
+
+        int get(Object target);
+
+    }
+
+    interface LongGetter
+    {
+
+        long get(Object target);
+
+    }
+
+    interface DoubleGetter
+    {
+
+        double get(Object target);
+
+    }
+
+    interface BooleanGetter
+    {
+
+        boolean get(Object target);
+
+    }
+
+    private Binder()
+    {}
+
+    /**
+     * @param setter a setter method or a field setter
+     * @return the setters calling it
+     */
+    static Setters setters(MethodHandle setter)
+    {
+        return new Setters()
+        {
+
+            @Override
+            public ObjectSetter objectSetter()
+            {
+                return Binder.objectSetter(setter);
+            }
+
+            @Override
+            public IntSetter intSetter()
+            {
+                return Binder.intSetter(setter);
+            }
+
+            @Override
+            public LongSetter longSetter()
+            {
+                return Binder.longSetter(setter);
+            }
+
+            @Override
+            public DoubleSetter doubleSetter()
+            {
+                return Binder.doubleSetter(setter);
+            }
+
+            @Override
+            public BooleanSetter booleanSetter()
+            {
+                return Binder.booleanSetter(setter);
+            }
+
+        };
+    }
+
+    /**
+     * @param constructor the no-args constructor
+     * @return the instantiator
+     */
+    static Instantiator instantiator(MethodHandle constructor)
+    {
+        Instantiator spun = spin(Instantiator.class, methodType(Object.class), constructor);
+        if (spun != null)
+        {
+            return spun;
+        }
+        MethodHandle handle = constructor.asType(methodType(Object.class));
+        return () -> {
+            try
+            {
+                return (Object) handle.invokeExact();
+            }
+            catch (Throwable e)
+            {
+                throw unchecked(e);
+            }
+        };
+    }
+
+    /**
+     * @param setter a setter method or a field setter accepting a reference type
+     * @return the setter
+     */
+    static ObjectSetter objectSetter(MethodHandle setter)
+    {
+        ObjectSetter spun = spin(ObjectSetter.class, methodType(void.class, Object.class, Object.class), setter);
+        if (spun != null)
+        {
+            return spun;
+        }
+        MethodHandle handle = setter.asType(methodType(void.class, Object.class, Object.class));
+        return (target, value) -> {
+            try
+            {
+                handle.invokeExact(target, value);
+            }
+            catch (Throwable e)
+            {
+                throw unchecked(e);
+            }
+        };
+    }
+
+    static IntSetter intSetter(MethodHandle setter)
+    {
+        IntSetter spun = spin(IntSetter.class, methodType(void.class, Object.class, int.class), setter);
+        if (spun != null)
+        {
+            return spun;
+        }
+        MethodHandle handle = setter.asType(methodType(void.class, Object.class, int.class));
+        return (target, value) -> {
+            try
+            {
+                handle.invokeExact(target, value);
+            }
+            catch (Throwable e)
+            {
+                throw unchecked(e);
+            }
+        };
+    }
+
+    static LongSetter longSetter(MethodHandle setter)
+    {
+        LongSetter spun = spin(LongSetter.class, methodType(void.class, Object.class, long.class), setter);
+        if (spun != null)
+        {
+            return spun;
+        }
+        MethodHandle handle = setter.asType(methodType(void.class, Object.class, long.class));
+        return (target, value) -> {
+            try
+            {
+                handle.invokeExact(target, value);
+            }
+            catch (Throwable e)
+            {
+                throw unchecked(e);
+            }
+        };
+    }
+
+    static DoubleSetter doubleSetter(MethodHandle setter)
+    {
+        DoubleSetter spun = spin(DoubleSetter.class, methodType(void.class, Object.class, double.class), setter);
+        if (spun != null)
+        {
+            return spun;
+        }
+        MethodHandle handle = setter.asType(methodType(void.class, Object.class, double.class));
+        return (target, value) -> {
+            try
+            {
+                handle.invokeExact(target, value);
+            }
+            catch (Throwable e)
+            {
+                throw unchecked(e);
+            }
+        };
+    }
+
+    static BooleanSetter booleanSetter(MethodHandle setter)
+    {
+        BooleanSetter spun = spin(BooleanSetter.class, methodType(void.class, Object.class, boolean.class), setter);
+        if (spun != null)
+        {
+            return spun;
+        }
+        MethodHandle handle = setter.asType(methodType(void.class, Object.class, boolean.class));
+        return (target, value) -> {
+            try
+            {
+                handle.invokeExact(target, value);
+            }
+            catch (Throwable e)
+            {
+                throw unchecked(e);
+            }
+        };
+    }
+
+    /**
+     * @param getter a getter method or a field getter returning a reference type
+     * @return the getter
+     */
+    static ObjectGetter objectGetter(MethodHandle getter)
+    {
+        ObjectGetter spun = spin(ObjectGetter.class, methodType(Object.class, Object.class), getter);
+        if (spun != null)
+        {
+            return spun;
+        }
+        MethodHandle handle = getter.asType(methodType(Object.class, Object.class));
+        return target -> {
+            try
+            {
+                return (Object) handle.invokeExact(target);
+            }
+            catch (Throwable e)
+            {
+                throw unchecked(e);
+            }
+        };
+    }
+
+    static IntGetter intGetter(MethodHandle getter)
+    {
+        IntGetter spun = spin(IntGetter.class, methodType(int.class, Object.class), getter);
+        if (spun != null)
+        {
+            return spun;
+        }
+        MethodHandle handle = getter.asType(methodType(int.class, Object.class));
+        return target -> {
+            try
+            {
+                return (int) handle.invokeExact(target);
+            }
+            catch (Throwable e)
+            {
+                throw unchecked(e);
+            }
+        };
+    }
+
+    static LongGetter longGetter(MethodHandle getter)
+    {
+        LongGetter spun = spin(LongGetter.class, methodType(long.class, Object.class), getter);
+        if (spun != null)
+        {
+            return spun;
+        }
+        MethodHandle handle = getter.asType(methodType(long.class, Object.class));
+        return target -> {
+            try
+            {
+                return (long) handle.invokeExact(target);
+            }
+            catch (Throwable e)
+            {
+                throw unchecked(e);
+            }
+        };
+    }
+
+    static DoubleGetter doubleGetter(MethodHandle getter)
+    {
+        DoubleGetter spun = spin(DoubleGetter.class, methodType(double.class, Object.class), getter);
+        if (spun != null)
+        {
+            return spun;
+        }
+        MethodHandle handle = getter.asType(methodType(double.class, Object.class));
+        return target -> {
+            try
+            {
+                return (double) handle.invokeExact(target);
+            }
+            catch (Throwable e)
+            {
+                throw unchecked(e);
+            }
+        };
+    }
+
+    static BooleanGetter booleanGetter(MethodHandle getter)
+    {
+        BooleanGetter spun = spin(BooleanGetter.class, methodType(boolean.class, Object.class), getter);
+        if (spun != null)
+        {
+            return spun;
+        }
+        MethodHandle handle = getter.asType(methodType(boolean.class, Object.class));
+        return target -> {
+            try
+            {
+                return (boolean) handle.invokeExact(target);
+            }
+            catch (Throwable e)
+            {
+                throw unchecked(e);
+            }
+        };
+    }
+
+    /*
+     * spins a class implementing the functional interface by calling the implementation directly, returns null if that
+     * is not possible
+     */
+    private static <T> T spin(Class<T> functionalInterface, MethodType samType, MethodHandle implementation)
+    {
+        Lookup lookup = MethodHandles.lookup();
+        try
+        {
+            MethodHandleInfo info = lookup.revealDirect(implementation);
+            int kind = info.getReferenceKind();
+            if (kind != MethodHandleInfo.REF_invokeVirtual && kind != MethodHandleInfo.REF_invokeInterface
+                    && kind != MethodHandleInfo.REF_newInvokeSpecial)
+            {
+                // field accessors cannot be the target of a lambda
+                return null;
+            }
+            if (!visible(info.getDeclaringClass()) || !visible(implementation.type()))
+            {
+                return null;
+            }
+            String name = functionalInterface.getMethods()[0].getName();
+            MethodHandle factory = LambdaMetafactory.metafactory(lookup, name, methodType(functionalInterface), samType,
+                    implementation, implementation.type()).getTarget();
+            return functionalInterface.cast(factory.invoke());
+        }
+        catch (LambdaConversionException | IllegalArgumentException | LinkageError e)
+        {
+            SomeCoolCsvReader.logger.debug("Unable to spin a {} for {}, using the method handle", functionalInterface,
+                    implementation, e);
+            return null;
+        }
+        catch (Throwable e)
+        {
+            throw unchecked(e);
+        }
+    }
+
+    private static boolean visible(MethodType type)
+    {
+        if (!visible(type.returnType()))
+        {
+            return false;
+        }
+        for (Class< ? > parameter : type.parameterArray())
+        {
+            if (!visible(parameter))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * the spun class lives in the package and the class loader of the binder, it can only link to classes which are
+     * reachable from there
+     */
+    private static boolean visible(Class< ? > type)
+    {
+        if (type.isPrimitive())
+        {
+            return true;
+        }
+        try
+        {
+            if (Class.forName(type.getName(), false, Binder.class.getClassLoader()) != type)
+            {
+                return false;
+            }
+        }
+        catch (ClassNotFoundException e)
+        {
+            return false;
+        }
+        for (Class< ? > c = type; c != null; c = c.getEnclosingClass())
+        {
+            if (!Modifier.isPublic(c.getModifiers()) && !samePackage(c))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean samePackage(Class< ? > type)
+    {
+        String name = type.getName();
+        String binder = Binder.class.getName();
+        int dot = binder.lastIndexOf('.');
+        return name.lastIndexOf('.') == dot && name.regionMatches(0, binder, 0, dot);
+    }
+
+}
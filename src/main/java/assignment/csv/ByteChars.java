@@ -0,0 +1,230 @@
+package assignment.csv;
+
+import static java.lang.Math.max;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * A re-usable character view over a range of raw bytes. Every byte is exposed as one character, which is exact for
+ * ASCII data and good enough for locating delimiters and parsing numbers in any ASCII compatible encoding (in UTF-8 no
+ * byte of a multi-byte sequence falls into the ASCII range). Strings are only decoded (with the proper charset) when
+ * somebody really asks for them, see {@link #toString(CharSequence, int, int)}.
+ *
+ * <p>
+ * Instances are not thread safe, each line scanner owns one.
+ *
+ * @author sergey
+ *
+ */
+final class ByteChars implements CharSequence
+{
+
+    private final Charset charset;
+
+    private ByteBuffer buffer;
+    private ByteBuffer reader;
+    private int offset;
+    private int length;
+    private byte[] scratch = new byte[64];
+
+    ByteChars(Charset charset)
+    {
+        this.charset = charset;
+    }
+
+    /**
+     * Points this view to a new range of bytes.
+     *
+     * @param buffer the data
+     * @param offset absolute index of the first byte in the buffer
+     * @param length number of bytes
+     * @return this view
+     */
+    ByteChars reset(ByteBuffer buffer, int offset, int length)
+    {
+        if (this.buffer != buffer)
+        {
+            this.buffer = buffer;
+            this.reader = null;
+        }
+        this.offset = offset;
+        this.length = length;
+        return this;
+    }
+
+    /**
+     * @return the charset used to decode the bytes
+     */
+    Charset charset()
+    {
+        return charset;
+    }
+
+    @Override
+    public int length()
+    {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index)
+    {
+        return (char) (buffer.get(offset + index) & 0xff);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end)
+    {
+        return new ByteChars(charset).reset(buffer, offset + start, end - start);
+    }
+
+    /**
+     * Decodes a part of this view. A part made of ASCII characters only, which is what most of the values of most files
+     * are, is not decoded at all: ASCII is ASCII in every charset whose bytes can be scanned, so the bytes are copied
+     * into a Latin-1 string, which is a plain array copy on runtimes with compact strings.
+     *
+     * @param start start index, inclusive
+     * @param end end index, exclusive
+     * @return the decoded string
+     */
+    String decode(int start, int end)
+    {
+        int count = end - start;
+        byte[] bytes;
+        int from;
+        if (buffer.hasArray())
+        {
+            bytes = buffer.array();
+            from = buffer.arrayOffset() + offset + start;
+        }
+        else
+        {
+            if (scratch.length < count)
+            {
+                scratch = new byte[max(count, scratch.length * 2)];
+            }
+            if (reader == null)
+            {
+                // a private cursor, the owner of the buffer keeps its own position
+                reader = buffer.duplicate();
+            }
+            reader.limit(offset + end).position(offset + start);
+            reader.get(scratch, 0, count);
+            bytes = scratch;
+            from = 0;
+        }
+        return new String(bytes, from, count, ascii(bytes, from, count) ? ISO_8859_1 : charset);
+    }
+
+    /*
+     * the bytes of a range or'ed together are negative if any of them is not ASCII, no branch per byte
+     */
+    private static boolean ascii(byte[] bytes, int from, int count)
+    {
+        int bits = 0;
+        for (int i = from, end = from + count; i < end; i++ )
+        {
+            bits |= bytes[i];
+        }
+        return bits >= 0;
+    }
+
+    /**
+     * Copies the raw bytes of a part of this view.
+     *
+     * @param start start index, inclusive
+     * @param end end index, exclusive
+     * @param target the buffer to copy to, must have enough room
+     */
+    void copyTo(int start, int end, ByteBuffer target)
+    {
+        if (reader == null)
+        {
+            reader = buffer.duplicate();
+        }
+        reader.limit(offset + end).position(offset + start);
+        target.put(reader);
+    }
+
+    /**
+     * Finds all the occurrences of either of two characters in a part of this view, see
+     * {@link ByteScanner#positions(ByteBuffer, int, int, int, int, int[])}.
+     *
+     * @param start start index, inclusive
+     * @param end end index, exclusive
+     * @param a a character
+     * @param b another character
+     * @param positions receives the indexes of the matching characters in ascending order
+     * @return the number of positions found, if it is the length of the array there might be more
+     */
+    int positions(int start, int end, int a, int b, int[] positions)
+    {
+        int count = ByteScanner.INSTANCE.positions(buffer, offset + start, offset + end, a, b, positions);
+        for (int i = 0; i < count; i++ )
+        {
+            positions[i] -= offset;
+        }
+        return count;
+    }
+
+    @Override
+    public String toString()
+    {
+        return decode(0, length);
+    }
+
+    /**
+     * Creates a string out of a range of characters, decoding it if the characters are backed by raw bytes.
+     *
+     * @param chars the characters
+     * @param start start index, inclusive
+     * @param end end index, exclusive
+     * @return the string
+     */
+    static String toString(CharSequence chars, int start, int end)
+    {
+        if (chars instanceof ByteChars)
+        {
+            return ((ByteChars) chars).decode(start, end);
+        }
+        return chars.subSequence(start, end).toString();
+    }
+
+    /**
+     * Tells whether the raw bytes of the charset can be scanned for delimiters and line terminators directly. This is
+     * true for UTF-8 and for the single byte encodings that keep the ASCII range as is (ISO-8859-x, windows-125x and so
+     * on).
+     *
+     * @param charset the charset of the file
+     * @return <code>true</code> if the data can be scanned as bytes
+     */
+    static boolean supports(Charset charset)
+    {
+        if (UTF_8.equals(charset))
+        {
+            return true;
+        }
+        if (!charset.canEncode() || charset.newEncoder().maxBytesPerChar() != 1.0f)
+        {
+            return false;
+        }
+        byte[] ascii = new byte[128];
+        for (int i = 0; i < ascii.length; i++ )
+        {
+            ascii[i] = (byte) i;
+        }
+        String decoded = new String(ascii, charset);
+        for (int i = 0; i < ascii.length; i++ )
+        {
+            if (decoded.charAt(i) != i)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
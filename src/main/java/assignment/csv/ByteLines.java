@@ -0,0 +1,350 @@
+package assignment.csv;
+
+import static java.lang.Math.max;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Splits the raw bytes of a {@link ByteSource} into lines without decoding them. Recognizes the same line terminators as
+ * {@link java.io.BufferedReader#readLine()} (<code>\n</code>, <code>\r</code> and <code>\r\n</code>) and skips blank
+ * lines, just like the {@link String} based engine of the {@link SomeCoolCsvReader} does. A line terminator within a
+ * quoted value does not end the line, so a line is in fact a record (see {@link Dialect}). The line terminators and
+ * quotes are searched for by the {@link ByteScanner}, many bytes at a time. The quoting state machine is only started
+ * by a quote at the start of a field.
+ *
+ * <p>
+ * A line is normally exposed as a view right into the block it was found in. Only a line that crosses a block boundary
+ * is copied into the carry-over buffer.
+ *
+ * @author sergey
+ *
+ */
+class ByteLines implements Closeable
+{
+
+    private final ByteSource source;
+    private final ByteChars line;
+    private final Dialect dialect;
+    private final int delimiter;
+    private final int quote;
+    private final boolean unterminated;
+    private final ParseStatistics statistics;
+
+    private ByteBuffer block;
+    /** absolute offset of index 0 of the current block */
+    private long blockOffset;
+    /** absolute offset of the end of the current block */
+    private long sourceOffset;
+
+    private byte[] carry = new byte[256];
+    private ByteBuffer carryBuffer = ByteBuffer.wrap(carry);
+    private int carryLength;
+    private boolean carryBlank = true;
+    /** the state of the quoting of the carried over part of a line */
+    private int carryState = Dialect.UNQUOTED;
+
+    private long lineOffset;
+    private long lineEnd;
+    /** whether the last line ended with a <code>\r</code>, a <code>\n</code> right after it is not a blank line */
+    private boolean afterCr;
+
+    /**
+     * @param source the data
+     * @param charset the charset used to decode the strings
+     * @param offset the absolute offset of the first byte the source returns
+     * @param dialect the delimiter and the quoting
+     */
+    ByteLines(ByteSource source, Charset charset, long offset, Dialect dialect)
+    {
+        this(source, charset, offset, dialect, true);
+    }
+
+    /**
+     * @param source the data
+     * @param charset the charset used to decode the strings
+     * @param offset the absolute offset of the first byte the source returns
+     * @param dialect the delimiter and the quoting
+     * @param unterminated <code>false</code> if a last line without a line terminator is not complete yet (it is still
+     *            being written) and must not be returned
+     */
+    ByteLines(ByteSource source, Charset charset, long offset, Dialect dialect, boolean unterminated)
+    {
+        this(source, charset, offset, dialect, unterminated, null);
+    }
+
+    /**
+     * @param source the data
+     * @param charset the charset used to decode the strings
+     * @param offset the absolute offset of the first byte the source returns
+     * @param dialect the delimiter and the quoting
+     * @param unterminated <code>false</code> if a last line without a line terminator is not complete yet
+     * @param statistics counts the bytes read and the blank lines skipped, <code>null</code> if nothing is counted
+     */
+    ByteLines(ByteSource source, Charset charset, long offset, Dialect dialect, boolean unterminated,
+            ParseStatistics statistics)
+    {
+        this.unterminated = unterminated;
+        this.statistics = statistics;
+        this.source = statistics == null ? source : statistics.meter(source);
+        this.line = new ByteChars(charset);
+        this.sourceOffset = offset;
+        this.dialect = dialect;
+        this.delimiter = dialect.delimiter;
+        this.quote = dialect.quote;
+    }
+
+    /**
+     * Advances to the next non blank line.
+     *
+     * @return <code>false</code> if the data is exhausted
+     * @throws IOException if reading fails
+     */
+    boolean next() throws IOException
+    {
+        while (true)
+        {
+            if (block == null || !block.hasRemaining())
+            {
+                if (!nextBlock())
+                {
+                    lineEnd = sourceOffset;
+                    if (unterminated && carryLength > 0)
+                    {
+                        if (emitCarry())
+                        {
+                            return true;
+                        }
+                        skipped();
+                    }
+                    return false;
+                }
+            }
+            int start = block.position();
+            int limit = block.limit();
+            boolean blank = carryBlank;
+            int state = carryState;
+            int i = start;
+            for (; i < limit; i++ )
+            {
+                if (state == Dialect.UNQUOTED)
+                {
+                    // jump to the next byte of interest
+                    int next = ByteScanner.INSTANCE.indexOf(block, i, limit, '\n', '\r', quote);
+                    if (blank)
+                    {
+                        blank = blank(i, next);
+                    }
+                    i = next;
+                    if (i == limit)
+                    {
+                        break;
+                    }
+                }
+                int b = block.get(i) & 0xff;
+                if (state != Dialect.UNQUOTED)
+                {
+                    int previous = state;
+                    state = dialect.next(state, b);
+                    if (Dialect.within(state))
+                    {
+                        // a line terminator within a quoted value is a part of the value
+                        continue;
+                    }
+                    state = Dialect.UNQUOTED;
+                    if (previous == Dialect.QUOTED)
+                    {
+                        // the closing quote
+                        continue;
+                    }
+                }
+                if (b == '\n' || b == '\r')
+                {
+                    break;
+                }
+                if (b > ' ')
+                {
+                    blank = false;
+                    if (b == quote && fieldStart(start, i))
+                    {
+                        state = Dialect.QUOTED;
+                    }
+                }
+            }
+            if (i == limit)
+            {
+                // the line continues in the next block
+                append(start, limit);
+                carryBlank = blank;
+                carryState = state;
+                block.position(limit);
+                continue;
+            }
+            carryState = Dialect.UNQUOTED;
+            block.position(i + 1);
+            lineEnd = blockOffset + i + 1;
+            boolean cr = block.get(i) == '\r';
+            boolean lf = afterCr && !cr && i == start && carryLength == 0;
+            afterCr = cr;
+            if (carryLength > 0)
+            {
+                append(start, i);
+                carryBlank = blank;
+                if (emitCarry())
+                {
+                    return true;
+                }
+                skipped();
+            }
+            else if (!blank)
+            {
+                lineOffset = blockOffset + start;
+                line.reset(block, start, i - start);
+                return true;
+            }
+            else if (!lf)
+            {
+                skipped();
+            }
+        }
+    }
+
+    /*
+     * tells whether a range of the block is blank
+     */
+    private boolean blank(int from, int to)
+    {
+        for (int i = from; i < to; i++ )
+        {
+            if ((block.get(i) & 0xff) > ' ')
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * tells whether the quote at the given index is the first non blank character of a field
+     */
+    private boolean fieldStart(int start, int index)
+    {
+        for (int i = index - 1; i >= start; i-- )
+        {
+            int b = block.get(i) & 0xff;
+            if (b == delimiter)
+            {
+                return true;
+            }
+            if (b > ' ')
+            {
+                return false;
+            }
+        }
+        for (int i = carryLength - 1; i >= 0; i-- )
+        {
+            int b = carry[i] & 0xff;
+            if (b == delimiter)
+            {
+                return true;
+            }
+            if (b > ' ')
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the current line, valid until the next call to {@link #next()}
+     */
+    ByteChars line()
+    {
+        return line;
+    }
+
+    /**
+     * @return the absolute offset of the first byte of the current line
+     */
+    long offset()
+    {
+        return lineOffset;
+    }
+
+    /**
+     * @return the absolute offset right after the line terminator of the current line
+     */
+    long end()
+    {
+        return lineEnd;
+    }
+
+    private boolean nextBlock() throws IOException
+    {
+        ByteBuffer next = source.next();
+        if (next == null)
+        {
+            block = null;
+            return false;
+        }
+        blockOffset = sourceOffset - next.position();
+        sourceOffset += next.remaining();
+        block = next;
+        return true;
+    }
+
+    private void append(int from, int to)
+    {
+        if (carryLength == 0)
+        {
+            lineOffset = blockOffset + from;
+        }
+        int count = to - from;
+        if (carry.length < carryLength + count)
+        {
+            byte[] grown = new byte[max(carryLength + count, carry.length * 2)];
+            System.arraycopy(carry, 0, grown, 0, carryLength);
+            carry = grown;
+            carryBuffer = ByteBuffer.wrap(carry);
+        }
+        for (int i = from; i < to; i++ )
+        {
+            carry[carryLength++ ] = block.get(i);
+        }
+    }
+
+    private void skipped()
+    {
+        if (statistics != null)
+        {
+            statistics.blankLines.increment();
+        }
+    }
+
+    /*
+     * exposes the carried over line unless it is blank, resets the carry over buffer either way
+     */
+    private boolean emitCarry()
+    {
+        boolean blank = carryBlank;
+        int length = carryLength;
+        carryLength = 0;
+        carryBlank = true;
+        if (blank)
+        {
+            return false;
+        }
+        line.reset(carryBuffer, 0, length);
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        source.close();
+    }
+
+}
@@ -0,0 +1,74 @@
+package assignment.csv;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Finds bytes of interest (delimiters, line terminators, quotes) many bytes at a time. The {@link #INSTANCE} is the
+ * implementation built on the <code>jdk.incubator.vector</code> API if the <code>csv-parser-vector</code> module is on
+ * the class path and the JVM runs with <code>--add-modules jdk.incubator.vector</code>, the portable
+ * {@link SwarByteScanner} otherwise. Setting the system property <code>assignment.csv.vector</code> to
+ * <code>false</code> forces the latter.
+ *
+ * <p>
+ * The bytes to look for are given as <code>int</code>s, a value outside of the byte range (like the quote of a
+ * {@link Dialect} without quoting) never matches.
+ *
+ * @author sergey
+ *
+ */
+abstract class ByteScanner
+{
+
+    static final ByteScanner INSTANCE = load();
+
+    private static ByteScanner load()
+    {
+        if (Boolean.parseBoolean(System.getProperty("assignment.csv.vector", "true")))
+        {
+            try
+            {
+                ByteScanner vector = (ByteScanner) Class.forName("assignment.csv.VectorByteScanner").newInstance();
+                // links the vector API, a JDK without it (or with a different version of it) fails right here
+                vector.indexOf(ByteBuffer.allocate(128), 0, 128, 1, 2, 3);
+                SomeCoolCsvReader.logger.debug("Scanning bytes with the vector API");
+                return vector;
+            }
+            catch (ClassNotFoundException e)
+            {
+                // the module is not there
+            }
+            catch (ReflectiveOperationException | LinkageError | RuntimeException e)
+            {
+                SomeCoolCsvReader.logger.debug("The vector API is not available, falling back to SWAR", e);
+            }
+        }
+        return new SwarByteScanner();
+    }
+
+    /**
+     * Finds the first of any of the three bytes.
+     *
+     * @param buffer the data
+     * @param from the absolute index to start at, inclusive
+     * @param to the absolute index to stop at, exclusive
+     * @param a a byte
+     * @param b another byte
+     * @param c yet another byte
+     * @return the absolute index of the first matching byte, <code>to</code> if there is none
+     */
+    abstract int indexOf(ByteBuffer buffer, int from, int to, int a, int b, int c);
+
+    /**
+     * Finds all the occurrences of either of the two bytes, as many as fit into the array.
+     *
+     * @param buffer the data
+     * @param from the absolute index to start at, inclusive
+     * @param to the absolute index to stop at, exclusive
+     * @param a a byte
+     * @param b another byte
+     * @param positions receives the absolute indexes of the matching bytes in ascending order
+     * @return the number of positions found, if it is the length of the array there might be more
+     */
+    abstract int positions(ByteBuffer buffer, int from, int to, int a, int b, int[] positions);
+
+}
@@ -0,0 +1,87 @@
+package assignment.csv;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Supplies the raw contents of a delimited file as a sequence of byte blocks. The blocks are consumed strictly one
+ * after the other, a block returned by {@link #next()} must not be used after the following call to {@link #next()}.
+ *
+ * @author sergey
+ *
+ */
+interface ByteSource extends Closeable
+{
+
+    /**
+     * Returns the next block of data, the readable bytes are between the position and the limit of the buffer.
+     *
+     * @return the next block or <code>null</code> if there is no more data
+     * @throws IOException if reading fails
+     */
+    ByteBuffer next() throws IOException;
+
+    @Override
+    default void close() throws IOException
+    {}
+
+    /**
+     * @return the data as a stream, closing the stream closes this source
+     */
+    default InputStream stream()
+    {
+        return new InputStream()
+        {
+
+            private ByteBuffer block;
+
+            @Override
+            public int read() throws IOException
+            {
+                return available() > 0 || refill() ? block.get() & 0xff : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException
+            {
+                if (len == 0)
+                {
+                    return 0;
+                }
+                if (available() == 0 && !refill())
+                {
+                    return -1;
+                }
+                int n = Math.min(len, block.remaining());
+                block.get(b, off, n);
+                return n;
+            }
+
+            @Override
+            public int available()
+            {
+                return block == null ? 0 : block.remaining();
+            }
+
+            private boolean refill() throws IOException
+            {
+                do
+                {
+                    block = next();
+                }
+                while (block != null && !block.hasRemaining());
+                return block != null;
+            }
+
+            @Override
+            public void close() throws IOException
+            {
+                ByteSource.this.close();
+            }
+
+        };
+    }
+
+}
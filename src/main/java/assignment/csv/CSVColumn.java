@@ -9,6 +9,11 @@ import java.lang.annotation.Target;
 /**
  * The column definition. Mark your POJOs' fields with this annotation in order to specify the position of your field in
  * the delimited file. Positions are 1 based (like in BASIC).
+ * <p>
+ * The annotated fields can be of type {@link String}, <code>int</code>, <code>long</code>, <code>double</code>,
+ * <code>boolean</code>, {@link java.math.BigDecimal} or an enum. Numbers are parsed straight from the data, without
+ * creating a string first. An empty value is set as <code>null</code>, or as zero (<code>false</code>) for the primitive
+ * types. Booleans follow {@link Boolean#parseBoolean(String)}, enums are looked up by their exact names.
  * 
  * @author sergey
  *
@@ -26,4 +31,14 @@ public @interface CSVColumn
      */
     int indx();
 
+    /**
+     * The number of distinct values of a {@link String} column to keep in a {@link StringCache}, so that equal values
+     * share one instance instead of a new string being created for every row. Meant for columns of few distinct values
+     * (countries, currencies, states), the cache is bounded so a column of many values only costs the lookups. The
+     * default, zero, turns the cache off.
+     * 
+     * @return the size of the cache
+     */
+    int dedup() default 0;
+
 }
@@ -0,0 +1,147 @@
+package assignment.csv;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.Properties;
+
+/**
+ * A position in a delimited file at which reading can be resumed: the byte offset of the start of a record and the
+ * number of records before it. Checkpoints are handed out by a {@link Cursor} and accepted by
+ * {@link SomeCoolCsvReader#cursor(Checkpoint)}, resuming at one costs a seek, nothing before the offset is read again.
+ *
+ * <p>
+ * A checkpoint is only meaningful for the file it has been taken from, and only as long as the contents of the file
+ * before the offset do not change (appending is fine).
+ *
+ * @author sergey
+ *
+ */
+public final class Checkpoint
+{
+
+    /**
+     * The start of a file.
+     */
+    public static final Checkpoint START = new Checkpoint(0, 0);
+
+    private static final String OFFSET = "offset";
+    private static final String ROW = "row";
+
+    private final long offset;
+    private final long row;
+
+    /**
+     * @param offset the byte offset of the start of a record (or of the end of the file)
+     * @param row the number of records before the offset
+     * @throws IllegalArgumentException if either number is negative
+     */
+    public Checkpoint(long offset, long row)
+    {
+        if (offset < 0 || row < 0)
+        {
+            throw new IllegalArgumentException(format("Invalid checkpoint: offset %d, row %d", offset, row));
+        }
+        this.offset = offset;
+        this.row = row;
+    }
+
+    /**
+     * @return the byte offset of the start of the next record
+     */
+    public long getOffset()
+    {
+        return offset;
+    }
+
+    /**
+     * @return the number of records before the offset, which is the (zero based) number of the next record
+     */
+    public long getRow()
+    {
+        return row;
+    }
+
+    /**
+     * Writes the checkpoint to a small sidecar file. The file is replaced atomically (where the file system supports
+     * it), so a crash while saving leaves either the old or the new checkpoint, never a broken one.
+     *
+     * @param sidecar the file
+     * @throws IOException if writing fails
+     */
+    public void save(Path sidecar) throws IOException
+    {
+        Properties properties = new Properties();
+        properties.setProperty(OFFSET, Long.toString(offset));
+        properties.setProperty(ROW, Long.toString(row));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (Writer writer = new OutputStreamWriter(bytes, ISO_8859_1))
+        {
+            properties.store(writer, null);
+        }
+        Utils.replace(sidecar, bytes.toByteArray());
+    }
+
+    /**
+     * Reads a checkpoint saved by {@link #save(Path)}.
+     *
+     * @param sidecar the file
+     * @return the checkpoint or an empty optional if the file does not exist (nothing has been saved yet)
+     * @throws IOException if reading fails
+     * @throws IllegalArgumentException if the file does not contain a checkpoint
+     */
+    public static Optional<Checkpoint> load(Path sidecar) throws IOException
+    {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(sidecar, ISO_8859_1))
+        {
+            properties.load(reader);
+        }
+        catch (NoSuchFileException e)
+        {
+            return Optional.empty();
+        }
+        try
+        {
+            return Optional.of(new Checkpoint(Long.parseLong(properties.getProperty(OFFSET)),
+                    Long.parseLong(properties.getProperty(ROW))));
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IllegalArgumentException(format("The file %s does not contain a checkpoint", sidecar), e);
+        }
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (!(obj instanceof Checkpoint))
+        {
+            return false;
+        }
+        Checkpoint other = (Checkpoint) obj;
+        return offset == other.offset && row == other.row;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Long.hashCode(offset) * 31 + Long.hashCode(row);
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("Checkpoint[offset=%d, row=%d]", offset, row);
+    }
+
+}
@@ -0,0 +1,232 @@
+package assignment.csv;
+
+import static assignment.csv.Utils.unchecked;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A splittable source of POJOs backed by a byte range of a file. Splitting halves the range and moves the split point
+ * forward to the start of the next line, so every line belongs to exactly one chunk and the chunks can be parsed
+ * independently by the workers of a {@link java.util.concurrent.ForkJoinPool}. The prefix is always handed out by
+ * {@link #trySplit()}, hence the encounter order is the order of the lines in the file.
+ *
+ * <p>
+ * A line break found in the middle of a range might be a part of a quoted value. If the values can be quoted the first
+ * half of the range is scanned (without being parsed) to find out where the next record really starts.
+ *
+ * @param <T> the type of the produced objects
+ *
+ * @author sergey
+ */
+class ChunkSpliterator<T> implements Spliterator<T>
+{
+
+    /**
+     * Chunks smaller than this are not split any further, the overhead of mapping and of the fork join task would
+     * dominate.
+     */
+    static final long DEFAULT_MIN_CHUNK = 1 << 20;
+
+    private final Path path;
+    private final Charset charset;
+    private final Dialect dialect;
+    private final int window;
+    private final long minChunk;
+    private final Supplier<Meter> meters;
+    private final Function<Meter, ? extends Function< ? super ByteChars, ? extends T>> parsers;
+
+    private long from;
+    private final long to;
+
+    private ByteLines lines;
+    private Function< ? super ByteChars, ? extends T> parser;
+    private Meter meter;
+
+    /**
+     * @param path the file
+     * @param charset the charset of the file, must be {@link ByteChars#supports(Charset) supported}
+     * @param dialect the delimiter and the quoting
+     * @param window the size of the mapped windows
+     * @param minChunk the size of a chunk which is not worth splitting
+     * @param from the start of the range, must be the start of a line
+     * @param to the end of the range, must be the end of the file or the start of a line
+     * @param parsers supplies a parser (which creates objects from lines) for every chunk
+     */
+    ChunkSpliterator(Path path, Charset charset, Dialect dialect, int window, long minChunk, long from, long to,
+            Supplier< ? extends Function< ? super ByteChars, ? extends T>> parsers)
+    {
+        this(path, charset, dialect, window, minChunk, from, to, () -> Meter.NONE, meter -> parsers.get());
+    }
+
+    /**
+     * @param path the file
+     * @param charset the charset of the file, must be {@link ByteChars#supports(Charset) supported}
+     * @param dialect the delimiter and the quoting
+     * @param window the size of the mapped windows
+     * @param minChunk the size of a chunk which is not worth splitting
+     * @param from the start of the range, must be the start of a line
+     * @param to the end of the range, must be the end of the file or the start of a line
+     * @param meters supplies a meter for every chunk
+     * @param parsers creates a parser (which creates objects from lines) reporting to the meter of a chunk
+     */
+    ChunkSpliterator(Path path, Charset charset, Dialect dialect, int window, long minChunk, long from, long to,
+            Supplier<Meter> meters, Function<Meter, ? extends Function< ? super ByteChars, ? extends T>> parsers)
+    {
+        this.meters = meters;
+        this.path = path;
+        this.charset = charset;
+        this.dialect = dialect;
+        this.window = window;
+        this.minChunk = minChunk;
+        this.from = from;
+        this.to = to;
+        this.parsers = parsers;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer< ? super T> action)
+    {
+        try
+        {
+            if (lines == null)
+            {
+                meter = meters.get();
+                // the scanning for the split points is not counted
+                lines = new ByteLines(new MappedByteSource(path, from, to, window), charset, from, dialect, true,
+                        meter.statistics());
+                parser = parsers.apply(meter);
+            }
+            while (lines.next())
+            {
+                T next = parser.apply(lines.line());
+                // null for a bad row which has been skipped
+                if (next != null)
+                {
+                    action.accept(next);
+                    return true;
+                }
+            }
+            meter.finish();
+            return false;
+        }
+        catch (IOException e)
+        {
+            SomeCoolCsvReader.logger.error("An IO error occurred while reading data from the file.", e);
+            throw unchecked(e);
+        }
+    }
+
+    @Override
+    public Spliterator<T> trySplit()
+    {
+        if (lines != null || to - from < 2 * minChunk)
+        {
+            return null;
+        }
+        long boundary;
+        try
+        {
+            long middle = from + (to - from) / 2;
+            boundary = dialect.quoting() ? nextRecordStart(middle) : nextLineStart(middle);
+        }
+        catch (IOException e)
+        {
+            SomeCoolCsvReader.logger.error("An IO error occurred while reading data from the file.", e);
+            throw unchecked(e);
+        }
+        if (boundary >= to)
+        {
+            // the second half is a single line
+            return null;
+        }
+        ChunkSpliterator<T> prefix =
+                new ChunkSpliterator<>(path, charset, dialect, window, minChunk, from, boundary, meters, parsers);
+        from = boundary;
+        return prefix;
+    }
+
+    /*
+     * returns the offset right after the first line terminator found at or after the position, or the end of the range,
+     * a \r\n pair counts as one terminator
+     */
+    private long nextLineStart(long position) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            while (position < to)
+            {
+                buffer.clear();
+                int read = channel.read(buffer, position);
+                if (read < 0)
+                {
+                    break;
+                }
+                for (int i = 0; i < read && position + i < to; i++ )
+                {
+                    byte b = buffer.get(i);
+                    if (b == '\n')
+                    {
+                        return position + i + 1;
+                    }
+                    if (b == '\r')
+                    {
+                        // a \r\n pair split in the middle would leave a blank line in the next chunk, which the
+                        // statistics would count
+                        long end = position + i + 1;
+                        buffer.clear().limit(1);
+                        return end < to && channel.read(buffer, end) == 1 && buffer.get(0) == '\n' ? end + 1 : end;
+                    }
+                }
+                position += read;
+            }
+        }
+        return to;
+    }
+
+    /*
+     * returns the offset of the first record starting at or after the position, or the end of the range
+     */
+    private long nextRecordStart(long position) throws IOException
+    {
+        try (ByteLines records = records(from))
+        {
+            while (records.next())
+            {
+                if (records.offset() >= position)
+                {
+                    return records.offset();
+                }
+            }
+        }
+        return to;
+    }
+
+    private ByteLines records(long start)
+    {
+        return new ByteLines(new MappedByteSource(path, start, to, window), charset, start, dialect);
+    }
+
+    @Override
+    public long estimateSize()
+    {
+        // the number of bytes is the best guess we have
+        return to - from;
+    }
+
+    @Override
+    public int characteristics()
+    {
+        return ORDERED | NONNULL;
+    }
+
+}
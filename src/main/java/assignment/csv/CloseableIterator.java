@@ -0,0 +1,16 @@
+package assignment.csv;
+
+import java.io.Closeable;
+import java.util.Iterator;
+
+/**
+ * An iterator which holds a file open until it is either exhausted or closed, see {@link SomeCoolCsvReader#rows()}.
+ *
+ * @param <T> the type of the elements
+ *
+ * @author sergey
+ *
+ */
+interface CloseableIterator<T> extends Iterator<T>, Closeable
+{
+}
@@ -0,0 +1,938 @@
+package assignment.csv;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.lang.String.format;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import assignment.csv.Binder.Instantiator;
+import assignment.csv.SomeCoolCsvReader.BooleanColumn;
+import assignment.csv.SomeCoolCsvReader.Column;
+import assignment.csv.SomeCoolCsvReader.CsvColumn;
+import assignment.csv.SomeCoolCsvReader.DecimalColumn;
+import assignment.csv.SomeCoolCsvReader.DoubleColumn;
+import assignment.csv.SomeCoolCsvReader.EnumColumn;
+import assignment.csv.SomeCoolCsvReader.IntColumn;
+import assignment.csv.SomeCoolCsvReader.LongColumn;
+
+/**
+ * The contents of a file kept in memory column by column, see {@link SomeCoolCsvReader#toColumnarTable(boolean)}.
+ * There is one vector per {@link CSVColumn}: numbers live in primitive arrays, booleans in a bit set, enums as their
+ * ordinals, decimals as an unscaled long and a scale. Strings are stored as their encoded bytes, one after the other, in
+ * pages of heap or direct (off-heap) buffers and a string object is only created when a value is read. This takes a
+ * fraction of the heap a list of POJOs would.
+ *
+ * <p>
+ * Rows can be read as POJOs ({@link #get(int)}), value by value (<code>getInt(row, indx)</code> and friends), or a
+ * whole column can be scanned as a primitive stream. Column indexes are 1 based, just like in {@link CSVColumn#indx()}.
+ * Tables are immutable and can be read by many threads at once.
+ *
+ * @param <Pojo> the type of the rows
+ *
+ * @author sergey
+ */
+public final class ColumnarTable<Pojo>
+{
+
+    private final Instantiator instantiator;
+    private final Vector[] vectors;
+    private int size;
+
+    ColumnarTable(Column[] columns, Instantiator instantiator, Charset charset, boolean offHeap)
+    {
+        this.instantiator = instantiator;
+        this.vectors = new Vector[columns.length];
+        for (int i = 0; i < columns.length; i++ )
+        {
+            vectors[i] = vector(columns[i], charset, offHeap);
+        }
+    }
+
+    private static Vector vector(Column column, Charset charset, boolean offHeap)
+    {
+        if (column instanceof IntColumn)
+        {
+            return new IntVector((IntColumn) column);
+        }
+        if (column instanceof LongColumn)
+        {
+            return new LongVector((LongColumn) column);
+        }
+        if (column instanceof DoubleColumn)
+        {
+            return new DoubleVector((DoubleColumn) column);
+        }
+        if (column instanceof BooleanColumn)
+        {
+            return new BooleanVector((BooleanColumn) column);
+        }
+        if (column instanceof DecimalColumn)
+        {
+            return new DecimalVector((DecimalColumn) column);
+        }
+        if (column instanceof EnumColumn)
+        {
+            return new EnumVector((EnumColumn) column);
+        }
+        if (column instanceof CsvColumn)
+        {
+            return new StringVector((CsvColumn) column, charset, offHeap);
+        }
+        // a skipped column
+        return null;
+    }
+
+    /*
+     * appends a line, called while loading
+     */
+    void append(Fields fields)
+    {
+        int count = fields.count();
+        try
+        {
+            for (int i = 0; i < vectors.length; i++ )
+            {
+                Vector vector = vectors[i];
+                if (vector != null)
+                {
+                    if (i < count)
+                    {
+                        vector.append(size, fields.chars(i), fields.start(i), fields.end(i));
+                    }
+                    else
+                    {
+                        vector.append(size, "", 0, 0);
+                    }
+                }
+            }
+        }
+        catch (RuntimeException e)
+        {
+            // the row is overwritten by the next one, but the bytes of its strings would stay in the pages
+            for (Vector vector : vectors)
+            {
+                if (vector != null)
+                {
+                    vector.discard(size);
+                }
+            }
+            throw e;
+        }
+        size++ ;
+    }
+
+    /*
+     * releases the spare capacity, called once loading is over
+     */
+    ColumnarTable<Pojo> trim()
+    {
+        for (Vector vector : vectors)
+        {
+            if (vector != null)
+            {
+                vector.trim(size);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * @return the number of rows
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Creates a POJO out of a row.
+     *
+     * @param row 0 based row number
+     * @return a new POJO
+     * @throws IndexOutOfBoundsException if there is no such row
+     */
+    @SuppressWarnings("unchecked")
+    public Pojo get(int row)
+    {
+        checkRow(row);
+        Object pojo = instantiator.newInstance();
+        for (Vector vector : vectors)
+        {
+            if (vector != null)
+            {
+                vector.copyTo(row, pojo);
+            }
+        }
+        return (Pojo) pojo;
+    }
+
+    /**
+     * @param row 0 based row number
+     * @param indx 1 based column index
+     * @return <code>true</code> if the value is <code>null</code>, always <code>false</code> for primitive columns
+     */
+    public boolean isNull(int row, int indx)
+    {
+        checkRow(row);
+        return vector(indx, Vector.class).isNull(row);
+    }
+
+    /**
+     * @param row 0 based row number
+     * @param indx 1 based column index
+     * @return the value of an int column
+     */
+    public int getInt(int row, int indx)
+    {
+        checkRow(row);
+        return vector(indx, IntVector.class).values[row];
+    }
+
+    /**
+     * @param row 0 based row number
+     * @param indx 1 based column index
+     * @return the value of a long column
+     */
+    public long getLong(int row, int indx)
+    {
+        checkRow(row);
+        return vector(indx, LongVector.class).values[row];
+    }
+
+    /**
+     * @param row 0 based row number
+     * @param indx 1 based column index
+     * @return the value of a double column
+     */
+    public double getDouble(int row, int indx)
+    {
+        checkRow(row);
+        return vector(indx, DoubleVector.class).values[row];
+    }
+
+    /**
+     * @param row 0 based row number
+     * @param indx 1 based column index
+     * @return the value of a boolean column
+     */
+    public boolean getBoolean(int row, int indx)
+    {
+        checkRow(row);
+        return vector(indx, BooleanVector.class).values.get(row);
+    }
+
+    /**
+     * @param row 0 based row number
+     * @param indx 1 based column index
+     * @return the value of a decimal column, or <code>null</code>
+     */
+    public BigDecimal getDecimal(int row, int indx)
+    {
+        checkRow(row);
+        return vector(indx, DecimalVector.class).get(row);
+    }
+
+    /**
+     * @param row 0 based row number
+     * @param indx 1 based column index
+     * @return the value of a string column, decoded, or <code>null</code>
+     */
+    public String getString(int row, int indx)
+    {
+        checkRow(row);
+        return vector(indx, StringVector.class).get(row);
+    }
+
+    /**
+     * Returns the value of an enum column.
+     *
+     * @param row 0 based row number
+     * @param indx 1 based column index
+     * @return the constant or <code>null</code>
+     */
+    @SuppressWarnings("unchecked")
+    public <E extends Enum<E>> E getEnum(int row, int indx)
+    {
+        checkRow(row);
+        return (E) vector(indx, EnumVector.class).get(row);
+    }
+
+    /**
+     * @param indx 1 based index of an int column
+     * @return the values of the column in the order of the rows
+     */
+    public IntStream ints(int indx)
+    {
+        return Arrays.stream(vector(indx, IntVector.class).values, 0, size);
+    }
+
+    /**
+     * @param indx 1 based index of a long column
+     * @return the values of the column in the order of the rows
+     */
+    public LongStream longs(int indx)
+    {
+        return Arrays.stream(vector(indx, LongVector.class).values, 0, size);
+    }
+
+    /**
+     * @param indx 1 based index of a double column
+     * @return the values of the column in the order of the rows
+     */
+    public DoubleStream doubles(int indx)
+    {
+        return Arrays.stream(vector(indx, DoubleVector.class).values, 0, size);
+    }
+
+    /**
+     * @param indx 1 based index of a string column
+     * @return the values of the column in the order of the rows, a string is decoded for every value
+     */
+    public Stream<String> strings(int indx)
+    {
+        StringVector vector = vector(indx, StringVector.class);
+        return IntStream.range(0, size).mapToObj(vector::get);
+    }
+
+    /**
+     * Finds the rows having a given value in a string column. The value is compared with the stored bytes, no string
+     * is decoded.
+     *
+     * @param indx 1 based index of a string column
+     * @param value the value to look for, <code>null</code> finds the <code>null</code> values
+     * @return the ascending row numbers
+     */
+    public IntStream rowsEqualTo(int indx, String value)
+    {
+        StringVector vector = vector(indx, StringVector.class);
+        if (value == null)
+        {
+            return IntStream.range(0, size).filter(vector::isNull);
+        }
+        byte[] encoded = value.getBytes(vector.charset);
+        return IntStream.range(0, size).filter(row -> vector.equalTo(row, encoded));
+    }
+
+    /**
+     * @return the number of bytes held in direct buffers, outside of the heap
+     */
+    public long offHeapBytes()
+    {
+        long bytes = 0;
+        for (Vector vector : vectors)
+        {
+            if (vector instanceof StringVector && ((StringVector) vector).store.direct)
+            {
+                bytes += ((StringVector) vector).store.capacity();
+            }
+        }
+        return bytes;
+    }
+
+    private void checkRow(int row)
+    {
+        if (row < 0 || row >= size)
+        {
+            throw new IndexOutOfBoundsException(format("Row %d, size %d", row, size));
+        }
+    }
+
+    private <V extends Vector> V vector(int indx, Class<V> type)
+    {
+        Vector vector = indx < 1 || indx > vectors.length ? null : vectors[indx - 1];
+        if (!type.isInstance(vector))
+        {
+            throw new IllegalArgumentException(format("Column %d is not a column of type %s", indx,
+                    vector == null ? type.getSimpleName() : type.getSimpleName() + " but " + vector));
+        }
+        return type.cast(vector);
+    }
+
+    /**
+     * The values of one column.
+     */
+    private static abstract class Vector
+    {
+
+        /**
+         * Appends a value, an empty range is an empty value.
+         */
+        abstract void append(int row, CharSequence chars, int start, int end);
+
+        /**
+         * Sets the value of a row to the POJO.
+         */
+        abstract void copyTo(int row, Object target);
+
+        boolean isNull(int row)
+        {
+            return false;
+        }
+
+        /**
+         * Drops what has been appended for a row which failed half way.
+         */
+        void discard(int row)
+        {}
+
+        abstract void trim(int size);
+
+        @Override
+        public String toString()
+        {
+            return getClass().getSimpleName();
+        }
+
+    }
+
+    private static final class IntVector extends Vector
+    {
+
+        private final IntColumn column;
+        int[] values = new int[16];
+
+        IntVector(IntColumn column)
+        {
+            this.column = column;
+        }
+
+        @Override
+        void append(int row, CharSequence chars, int start, int end)
+        {
+            if (row == values.length)
+            {
+                values = Arrays.copyOf(values, row * 2);
+            }
+            values[row] = start == end ? 0 : Numbers.parseInt(chars, start, end);
+        }
+
+        @Override
+        void copyTo(int row, Object target)
+        {
+            column.intSetter.set(target, values[row]);
+        }
+
+        @Override
+        void trim(int size)
+        {
+            values = Arrays.copyOf(values, size);
+        }
+
+    }
+
+    private static final class LongVector extends Vector
+    {
+
+        private final LongColumn column;
+        long[] values = new long[16];
+
+        LongVector(LongColumn column)
+        {
+            this.column = column;
+        }
+
+        @Override
+        void append(int row, CharSequence chars, int start, int end)
+        {
+            if (row == values.length)
+            {
+                values = Arrays.copyOf(values, row * 2);
+            }
+            values[row] = start == end ? 0 : Numbers.parseLong(chars, start, end);
+        }
+
+        @Override
+        void copyTo(int row, Object target)
+        {
+            column.longSetter.set(target, values[row]);
+        }
+
+        @Override
+        void trim(int size)
+        {
+            values = Arrays.copyOf(values, size);
+        }
+
+    }
+
+    private static final class DoubleVector extends Vector
+    {
+
+        private final DoubleColumn column;
+        double[] values = new double[16];
+
+        DoubleVector(DoubleColumn column)
+        {
+            this.column = column;
+        }
+
+        @Override
+        void append(int row, CharSequence chars, int start, int end)
+        {
+            if (row == values.length)
+            {
+                values = Arrays.copyOf(values, row * 2);
+            }
+            values[row] = start == end ? 0 : Numbers.parseDouble(chars, start, end);
+        }
+
+        @Override
+        void copyTo(int row, Object target)
+        {
+            column.doubleSetter.set(target, values[row]);
+        }
+
+        @Override
+        void trim(int size)
+        {
+            values = Arrays.copyOf(values, size);
+        }
+
+    }
+
+    private static final class BooleanVector extends Vector
+    {
+
+        private final BooleanColumn column;
+        final BitSet values = new BitSet();
+
+        BooleanVector(BooleanColumn column)
+        {
+            this.column = column;
+        }
+
+        @Override
+        void append(int row, CharSequence chars, int start, int end)
+        {
+            // a row which failed half way is overwritten, its bit may have been set
+            values.set(row, Numbers.parseBoolean(chars, start, end));
+        }
+
+        @Override
+        void copyTo(int row, Object target)
+        {
+            column.booleanSetter.set(target, values.get(row));
+        }
+
+        @Override
+        void trim(int size)
+        {}
+
+    }
+
+    /**
+     * Unscaled value and scale, decimals which do not fit are kept as they are.
+     */
+    private static final class DecimalVector extends Vector
+    {
+
+        private static final byte NULL = Byte.MIN_VALUE;
+        private static final byte OVERFLOW = Byte.MIN_VALUE + 1;
+
+        private final DecimalColumn column;
+        private long[] unscaled = new long[16];
+        private byte[] scales = new byte[16];
+        private final Map<Integer, BigDecimal> overflow = new HashMap<>();
+
+        DecimalVector(DecimalColumn column)
+        {
+            this.column = column;
+        }
+
+        @Override
+        void append(int row, CharSequence chars, int start, int end)
+        {
+            if (row == unscaled.length)
+            {
+                unscaled = Arrays.copyOf(unscaled, row * 2);
+            }
+            if (row == scales.length)
+            {
+                scales = Arrays.copyOf(scales, row * 2);
+            }
+            if (start == end)
+            {
+                scales[row] = NULL;
+                return;
+            }
+            BigDecimal value = Numbers.parseDecimal(chars, start, end);
+            int scale = value.scale();
+            if (value.precision() < 19 && scale > OVERFLOW && scale <= Byte.MAX_VALUE)
+            {
+                unscaled[row] = value.unscaledValue().longValue();
+                scales[row] = (byte) scale;
+            }
+            else
+            {
+                scales[row] = OVERFLOW;
+                overflow.put(row, value);
+            }
+        }
+
+        BigDecimal get(int row)
+        {
+            byte scale = scales[row];
+            if (scale == NULL)
+            {
+                return null;
+            }
+            if (scale == OVERFLOW)
+            {
+                return overflow.get(row);
+            }
+            return BigDecimal.valueOf(unscaled[row], scale);
+        }
+
+        @Override
+        boolean isNull(int row)
+        {
+            return scales[row] == NULL;
+        }
+
+        @Override
+        void copyTo(int row, Object target)
+        {
+            column.objectSetter.set(target, get(row));
+        }
+
+        @Override
+        void trim(int size)
+        {
+            unscaled = Arrays.copyOf(unscaled, size);
+            scales = Arrays.copyOf(scales, size);
+        }
+
+    }
+
+    /**
+     * Ordinal plus one, zero stands for <code>null</code>.
+     */
+    private static final class EnumVector extends Vector
+    {
+
+        private final EnumColumn column;
+        private final Object[] constants;
+        private short[] ordinals = new short[16];
+
+        EnumVector(EnumColumn column)
+        {
+            this.column = column;
+            this.constants = column.type.getEnumConstants();
+        }
+
+        @Override
+        void append(int row, CharSequence chars, int start, int end)
+        {
+            if (row == ordinals.length)
+            {
+                ordinals = Arrays.copyOf(ordinals, row * 2);
+            }
+            ordinals[row] = start == end ? 0 : (short) (((Enum< ? >) column.convert(chars, start, end)).ordinal() + 1);
+        }
+
+        Object get(int row)
+        {
+            int ordinal = ordinals[row];
+            return ordinal == 0 ? null : constants[ordinal - 1];
+        }
+
+        @Override
+        boolean isNull(int row)
+        {
+            return ordinals[row] == 0;
+        }
+
+        @Override
+        void copyTo(int row, Object target)
+        {
+            column.objectSetter.set(target, get(row));
+        }
+
+        @Override
+        void trim(int size)
+        {
+            ordinals = Arrays.copyOf(ordinals, size);
+        }
+
+    }
+
+    /**
+     * Encoded strings, one after the other. Values read by the byte level engine are copied as they are, without being
+     * decoded and encoded again.
+     */
+    private static final class StringVector extends Vector
+    {
+
+        private final CsvColumn column;
+        final Charset charset;
+        final ByteStore store;
+        private final CharsetEncoder encoder;
+        private ByteBuffer encoded;
+        /** the page in the high and the offset in the low half */
+        private long[] addresses = new long[16];
+        /** -1 for null */
+        private int[] lengths = new int[16];
+        /** the last row appended and where its bytes start */
+        private int appended = -1;
+        private long mark;
+
+        StringVector(CsvColumn column, Charset charset, boolean offHeap)
+        {
+            this.column = column;
+            this.charset = charset;
+            this.store = new ByteStore(offHeap);
+            this.encoder = charset.newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+
+        @Override
+        void append(int row, CharSequence chars, int start, int end)
+        {
+            if (row == addresses.length)
+            {
+                addresses = Arrays.copyOf(addresses, row * 2);
+            }
+            if (row == lengths.length)
+            {
+                lengths = Arrays.copyOf(lengths, row * 2);
+            }
+            appended = row;
+            mark = store.mark();
+            if (start == end)
+            {
+                lengths[row] = -1;
+                return;
+            }
+            if (chars instanceof ByteChars)
+            {
+                int length = end - start;
+                ByteBuffer page = store.reserve(length);
+                addresses[row] = store.address(page);
+                ((ByteChars) chars).copyTo(start, end, page);
+                lengths[row] = length;
+            }
+            else
+            {
+                ByteBuffer bytes = encode(chars, start, end);
+                ByteBuffer page = store.reserve(bytes.remaining());
+                addresses[row] = store.address(page);
+                lengths[row] = bytes.remaining();
+                page.put(bytes);
+            }
+        }
+
+        private ByteBuffer encode(CharSequence chars, int start, int end)
+        {
+            int maximum = (int) Math.ceil((end - start) * (double) encoder.maxBytesPerChar());
+            if (encoded == null || encoded.capacity() < maximum)
+            {
+                encoded = ByteBuffer.allocate(max(maximum, 256));
+            }
+            encoded.clear();
+            try
+            {
+                encoder.reset();
+                encoder.encode(CharBuffer.wrap(chars, start, end), encoded, true);
+                encoder.flush(encoded);
+            }
+            finally
+            {
+                encoded.flip();
+            }
+            return encoded;
+        }
+
+        String get(int row)
+        {
+            int length = lengths[row];
+            return length < 0 ? null : store.decode(addresses[row], length, charset);
+        }
+
+        @Override
+        void discard(int row)
+        {
+            if (appended == row)
+            {
+                store.reset(mark);
+                appended = -1;
+            }
+        }
+
+        boolean equalTo(int row, byte[] value)
+        {
+            return lengths[row] == value.length && store.equalTo(addresses[row], value);
+        }
+
+        @Override
+        boolean isNull(int row)
+        {
+            return lengths[row] < 0;
+        }
+
+        @Override
+        void copyTo(int row, Object target)
+        {
+            column.objectSetter.set(target, get(row));
+        }
+
+        @Override
+        void trim(int size)
+        {
+            addresses = Arrays.copyOf(addresses, size);
+            lengths = Arrays.copyOf(lengths, size);
+            encoded = null;
+            store.trim();
+        }
+
+    }
+
+    /**
+     * Pages of bytes on or off the heap. A value never spans two pages, values larger than a page get a page of their
+     * own. The pages start small and double up to {@link #PAGE}, so that a small table does not pin megabytes per
+     * column, and {@link #trim()} shrinks the last page to the bytes it holds.
+     */
+    static final class ByteStore
+    {
+
+        static final int FIRST_PAGE = 1 << 12;
+        static final int PAGE = 1 << 22;
+
+        final boolean direct;
+        private final List<ByteBuffer> pages = new ArrayList<>();
+
+        ByteStore(boolean direct)
+        {
+            this.direct = direct;
+        }
+
+        /**
+         * @return the page positioned where the value of the given length is to be written
+         */
+        ByteBuffer reserve(int length)
+        {
+            ByteBuffer last = pages.isEmpty() ? null : pages.get(pages.size() - 1);
+            if (last == null || last.remaining() < length)
+            {
+                int capacity = last == null ? FIRST_PAGE : min(PAGE, last.capacity() * 2);
+                last = allocate(max(capacity, length));
+                pages.add(last);
+            }
+            return last;
+        }
+
+        private ByteBuffer allocate(int capacity)
+        {
+            return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+        }
+
+        /**
+         * Shrinks the last page to the bytes written into it, no value can be reserved afterwards.
+         */
+        void trim()
+        {
+            if (pages.isEmpty())
+            {
+                return;
+            }
+            int index = pages.size() - 1;
+            ByteBuffer last = pages.get(index);
+            if (last.hasRemaining())
+            {
+                ByteBuffer trimmed = allocate(last.position());
+                last.flip();
+                trimmed.put(last);
+                pages.set(index, trimmed);
+            }
+        }
+
+        /**
+         * @return where the next value would be written, for {@link #reset(long)}
+         */
+        long mark()
+        {
+            return pages.isEmpty() ? -1 : address(pages.get(pages.size() - 1));
+        }
+
+        /**
+         * Drops the values written since the mark, along with the pages allocated for them.
+         */
+        void reset(long mark)
+        {
+            int page = mark < 0 ? -1 : (int) (mark >>> 32);
+            while (pages.size() - 1 > page)
+            {
+                pages.remove(pages.size() - 1);
+            }
+            if (page >= 0)
+            {
+                pages.get(page).position((int) mark);
+            }
+        }
+
+        /**
+         * @return the address of the current position of the last page
+         */
+        long address(ByteBuffer page)
+        {
+            return (long) (pages.size() - 1) << 32 | page.position();
+        }
+
+        String decode(long address, int length, Charset charset)
+        {
+            ByteBuffer page = pages.get((int) (address >>> 32));
+            int offset = (int) address;
+            if (page.hasArray())
+            {
+                return new String(page.array(), page.arrayOffset() + offset, length, charset);
+            }
+            byte[] bytes = new byte[length];
+            ByteBuffer reader = page.duplicate();
+            reader.limit(offset + length).position(offset);
+            reader.get(bytes);
+            return new String(bytes, charset);
+        }
+
+        boolean equalTo(long address, byte[] value)
+        {
+            ByteBuffer page = pages.get((int) (address >>> 32));
+            int offset = (int) address;
+            for (int i = 0; i < value.length; i++ )
+            {
+                if (page.get(offset + i) != value[i])
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        long capacity()
+        {
+            long capacity = 0;
+            for (ByteBuffer page : pages)
+            {
+                capacity += page.capacity();
+            }
+            return capacity;
+        }
+
+    }
+
+}
@@ -0,0 +1,71 @@
+package assignment.csv;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * The compression of an input file, see {@link SomeCoolCsvReader#withCompression(Compression)}. A compressed file is
+ * decompressed on the fly, by a background thread, the uncompressed data never touches the disk.
+ *
+ * @author sergey
+ *
+ */
+public enum Compression
+{
+
+    /**
+     * The compression is detected from the first bytes of the file: the magic number of gzip, or the header of zlib if
+     * the name of the file ends with <code>.zz</code>, <code>.zlib</code> or <code>.deflate</code> (the two bytes of
+     * a zlib header are too likely to start a text file by chance). Anything else is not compressed. This is the
+     * default.
+     */
+    AUTO,
+
+    /**
+     * The file is read as it is.
+     */
+    NONE,
+
+    /**
+     * The file is in the gzip format (RFC 1952), possibly of several members. The members of a blocked gzip file
+     * (BGZF, every member records its compressed size) are decompressed in parallel.
+     */
+    GZIP,
+
+    /**
+     * The file is a zlib stream (RFC 1950), which is what HTTP and most tools call deflate.
+     */
+    DEFLATE;
+
+    /**
+     * Tells the compression of a file from its first bytes (and its name), see {@link #AUTO}.
+     *
+     * @param path the file
+     * @return {@link #GZIP}, {@link #DEFLATE} or {@link #NONE}
+     * @throws IOException if reading fails
+     */
+    static Compression detect(Path path) throws IOException
+    {
+        try (InputStream in = Files.newInputStream(path))
+        {
+            int first = in.read();
+            int second = in.read();
+            if (first == 0x1f && second == 0x8b)
+            {
+                return GZIP;
+            }
+            String name = path.getFileName().toString();
+            boolean zlibName = name.endsWith(".zz") || name.endsWith(".zlib") || name.endsWith(".deflate");
+            // CM 8 (deflate) with a window of at most 32K and the check bits of the header, no preset dictionary
+            if (zlibName && second >= 0 && (first & 0x0f) == 8 && (first >>> 4) <= 7 && (first << 8 | second) % 31 == 0
+                    && (second & 0x20) == 0)
+            {
+                return DEFLATE;
+            }
+            return NONE;
+        }
+    }
+
+}
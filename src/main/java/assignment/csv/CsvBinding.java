@@ -0,0 +1,260 @@
+package assignment.csv;
+
+import static java.lang.String.format;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import assignment.csv.Binder.BooleanSetter;
+import assignment.csv.Binder.DoubleSetter;
+import assignment.csv.Binder.Instantiator;
+import assignment.csv.Binder.IntSetter;
+import assignment.csv.Binder.LongSetter;
+import assignment.csv.Binder.ObjectSetter;
+import assignment.csv.Binder.Setters;
+import assignment.csv.FileMetaData.Escape;
+import assignment.csv.SomeCoolCsvReader.Property;
+
+/**
+ * The columns of a POJO class, generated at compile time by the annotation processor of the
+ * <code>csv-parser-processor</code> module. The generated class lives in the package of the POJO class and is named
+ * after it, <code>Person_CsvBinding</code> for <code>Person</code>, <code>Outer_Person_CsvBinding</code> for a nested
+ * <code>Outer.Person</code>. Its constructor declares the columns, its methods create the POJO and call the setters
+ * directly, so a reader of a POJO class which has a binding needs no reflection, no method handles and no spun classes.
+ *
+ * <p>
+ * The {@link SomeCoolCsvReader} looks the binding up by its name and falls back to reflection if there is none. The
+ * processor reports the errors the reflection would report at runtime, duplicate indexes for example, as compile errors.
+ * The class is public for the generated code only, it is not meant to be extended by hand.
+ *
+ * @param <Pojo> the POJO class
+ *
+ * @author sergey
+ *
+ */
+public abstract class CsvBinding<Pojo> implements Instantiator
+{
+
+    static final String SUFFIX = "_CsvBinding";
+
+    final Class<Pojo> pojoClass;
+    final Dialect dialect;
+    final Charset charset;
+    final List<Property> properties = new ArrayList<>();
+
+    /**
+     * @param pojoClass the POJO class
+     * @param separator the delimiter, see {@link FileMetaData#separator()}
+     * @param quote the quote, see {@link FileMetaData#quote()}
+     * @param escape the escape style, see {@link FileMetaData#escape()}
+     * @param charset the name of the charset, see {@link FileMetaData#charset()}
+     */
+    protected CsvBinding(Class<Pojo> pojoClass, char separator, char quote, Escape escape, String charset)
+    {
+        this.pojoClass = pojoClass;
+        this.dialect = new Dialect(separator, quote, escape);
+        this.charset = SomeCoolCsvReader.charset(charset, pojoClass);
+    }
+
+    /**
+     * Declares an annotated field.
+     *
+     * @param indx the index of the column, see {@link CSVColumn#indx()}
+     * @param name the name of the field, qualified by the name of its class
+     * @param type the type of the field
+     * @param dedup the size of the string cache, see {@link CSVColumn#dedup()}
+     */
+    protected final void column(int indx, String name, Class< ? > type, int dedup)
+    {
+        properties.add(new Property(indx, name, type, dedup, new Setter(indx)));
+    }
+
+    /**
+     * @return a new POJO
+     */
+    @Override
+    public abstract Pojo newInstance();
+
+    /**
+     * Sets the value of a reference type column, a {@link String}, a {@link java.math.BigDecimal} or an enum.
+     *
+     * @param target the POJO
+     * @param indx the index of the column
+     * @param value the value, may be <code>null</code>
+     */
+    protected void setObject(Pojo target, int indx, Object value)
+    {
+        throw noColumn("object", indx);
+    }
+
+    /**
+     * @param target the POJO
+     * @param indx the index of the column
+     * @param value the value
+     */
+    protected void setInt(Pojo target, int indx, int value)
+    {
+        throw noColumn("int", indx);
+    }
+
+    /**
+     * @param target the POJO
+     * @param indx the index of the column
+     * @param value the value
+     */
+    protected void setLong(Pojo target, int indx, long value)
+    {
+        throw noColumn("long", indx);
+    }
+
+    /**
+     * @param target the POJO
+     * @param indx the index of the column
+     * @param value the value
+     */
+    protected void setDouble(Pojo target, int indx, double value)
+    {
+        throw noColumn("double", indx);
+    }
+
+    /**
+     * @param target the POJO
+     * @param indx the index of the column
+     * @param value the value
+     */
+    protected void setBoolean(Pojo target, int indx, boolean value)
+    {
+        throw noColumn("boolean", indx);
+    }
+
+    private IllegalArgumentException noColumn(String type, int indx)
+    {
+        return new IllegalArgumentException(format("%s has no %s column with index %d", pojoClass, type, indx));
+    }
+
+    /**
+     * Finds the binding generated for a POJO class.
+     *
+     * @param pojoClass the POJO class
+     * @return the binding, <code>null</code> if the class has been compiled without the processor
+     */
+    static CsvBinding< ? > find(Class< ? > pojoClass)
+    {
+        String name = bindingName(pojoClass.getName());
+        try
+        {
+            Class< ? > type = Class.forName(name, true, pojoClass.getClassLoader());
+            if (CsvBinding.class.isAssignableFrom(type))
+            {
+                CsvBinding< ? > binding = (CsvBinding< ? >) type.getConstructor().newInstance();
+                if (binding.pojoClass == pojoClass)
+                {
+                    return binding;
+                }
+            }
+            SomeCoolCsvReader.logger.warn("{} is not the binding of {}, using reflection", name, pojoClass);
+        }
+        catch (ClassNotFoundException e)
+        {
+            // compiled without the processor
+        }
+        catch (ReflectiveOperationException | LinkageError e)
+        {
+            SomeCoolCsvReader.logger.warn("Unable to create the binding {}, using reflection", name, e);
+        }
+        return null;
+    }
+
+    /**
+     * @param binaryName the binary name of a POJO class
+     * @return the binary name of its binding
+     */
+    static String bindingName(String binaryName)
+    {
+        int dot = binaryName.lastIndexOf('.');
+        return binaryName.substring(0, dot + 1) + binaryName.substring(dot + 1).replace('$', '_') + SUFFIX;
+    }
+
+    /**
+     * The setters of a column, all of them call the binding with the index of the column.
+     */
+    private final class Setter
+            implements Setters, ObjectSetter, IntSetter, LongSetter, DoubleSetter, BooleanSetter
+    {
+
+        private final int indx;
+
+        Setter(int indx)
+        {
+            this.indx = indx;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public void set(Object target, Object value)
+        {
+            setObject((Pojo) target, indx, value);
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public void set(Object target, int value)
+        {
+            setInt((Pojo) target, indx, value);
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public void set(Object target, long value)
+        {
+            setLong((Pojo) target, indx, value);
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public void set(Object target, double value)
+        {
+            setDouble((Pojo) target, indx, value);
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public void set(Object target, boolean value)
+        {
+            setBoolean((Pojo) target, indx, value);
+        }
+
+        @Override
+        public ObjectSetter objectSetter()
+        {
+            return this;
+        }
+
+        @Override
+        public IntSetter intSetter()
+        {
+            return this;
+        }
+
+        @Override
+        public LongSetter longSetter()
+        {
+            return this;
+        }
+
+        @Override
+        public DoubleSetter doubleSetter()
+        {
+            return this;
+        }
+
+        @Override
+        public BooleanSetter booleanSetter()
+        {
+            return this;
+        }
+
+    }
+
+}
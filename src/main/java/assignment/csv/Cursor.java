@@ -0,0 +1,210 @@
+package assignment.csv;
+
+import static assignment.csv.Utils.unchecked;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+/**
+ * An iterator which knows where it is in the file, see {@link SomeCoolCsvReader#cursor(Checkpoint)}. After every
+ * {@link #next()} the byte offset and the number of the record just returned are known, and {@link #checkpoint()}
+ * tells where to resume once that record has been processed.
+ *
+ * <p>
+ * A cursor can save its checkpoint to a sidecar file every so many records, see {@link #saveEvery(long, Path)}. The
+ * checkpoint is saved when the next record is asked for, so it never covers a record the caller may still be
+ * processing: after a crash at most the records since the last save are read again, none is lost.
+ *
+ * <p>
+ * Instances are not thread safe. Close the cursor to release the file.
+ *
+ * @param <Pojo> the type of the rows
+ *
+ * @author sergey
+ */
+public final class Cursor<Pojo> implements Iterator<Pojo>, Closeable
+{
+
+    private final ByteLines lines;
+    private final Function<CharSequence, Pojo> parser;
+
+    private long row;
+    private long offset;
+    private long end;
+    private boolean ready;
+    private boolean exhausted;
+    /** the next row, parsed ahead to skip the bad rows */
+    private Pojo next;
+
+    private long interval;
+    private Path sidecar;
+    private long saved;
+    private long limit = Long.MAX_VALUE;
+
+    Cursor(ByteLines lines, Function<CharSequence, Pojo> parser, Checkpoint checkpoint)
+    {
+        this.lines = lines;
+        this.parser = parser;
+        this.row = checkpoint.getRow() - 1;
+        this.offset = -1;
+        this.end = checkpoint.getOffset();
+        this.saved = checkpoint.getRow();
+    }
+
+    /**
+     * Saves the checkpoint to a sidecar file every time the given number of records has been processed, and once
+     * more when the cursor is exhausted.
+     *
+     * @param rows the number of records between two saves
+     * @param file the sidecar file, see {@link Checkpoint#save(Path)}
+     * @return this cursor
+     * @throws IllegalArgumentException if the number of records is not positive
+     */
+    public Cursor<Pojo> saveEvery(long rows, Path file)
+    {
+        if (rows <= 0)
+        {
+            throw new IllegalArgumentException(String.format("The number of rows must be positive: %d", rows));
+        }
+        this.interval = rows;
+        this.sidecar = file;
+        return this;
+    }
+
+    /*
+     * stops right before the record with the given number, bad rows skipped included
+     */
+    Cursor<Pojo> limit(long row)
+    {
+        this.limit = row;
+        return this;
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        while (next == null && row + 1 < limit && advance())
+        {
+            ready = false;
+            next = parser.apply(lines.line());
+            if (next == null)
+            {
+                // a bad row skipped by the reader counts as processed
+                row++ ;
+                offset = lines.offset();
+                end = lines.end();
+            }
+        }
+        return next != null;
+    }
+
+    /*
+     * moves to the next record without parsing it, saves the checkpoint before
+     */
+    private boolean advance()
+    {
+        if (!ready && !exhausted)
+        {
+            try
+            {
+                save(false);
+                ready = lines.next();
+                exhausted = !ready;
+                if (exhausted)
+                {
+                    save(true);
+                }
+            }
+            catch (IOException e)
+            {
+                SomeCoolCsvReader.logger.error("An IO error occurred while reading data from the file.", e);
+                throw unchecked(e);
+            }
+        }
+        return ready;
+    }
+
+    @Override
+    public Pojo next()
+    {
+        if (!hasNext())
+        {
+            throw new NoSuchElementException();
+        }
+        row++ ;
+        offset = lines.offset();
+        end = lines.end();
+        Pojo result = next;
+        next = null;
+        return result;
+    }
+
+    /*
+     * moves over records without parsing them, tells whether all of them have been there
+     */
+    boolean skip(long count)
+    {
+        for (long i = 0; i < count; i++ )
+        {
+            if (!advance())
+            {
+                return false;
+            }
+            ready = false;
+            row++ ;
+            offset = lines.offset();
+            end = lines.end();
+        }
+        return true;
+    }
+
+    private void save(boolean force) throws IOException
+    {
+        long done = row + 1;
+        if (sidecar != null && done > saved && (force || done - saved >= interval))
+        {
+            checkpoint().save(sidecar);
+            saved = done;
+        }
+    }
+
+    /**
+     * @return the zero based number of the record last returned by {@link #next()}, or -1 if no record has been
+     *         returned yet, one less than the row of the checkpoint the cursor started at
+     */
+    public long row()
+    {
+        return row;
+    }
+
+    /**
+     * @return the byte offset of the start of the record last returned by {@link #next()}, or -1 if no record has been
+     *         returned yet
+     */
+    public long offset()
+    {
+        return offset;
+    }
+
+    /**
+     * Returns the position right after the record last returned by {@link #next()}: resuming there continues with the
+     * record which follows it.
+     *
+     * @return the checkpoint
+     */
+    public Checkpoint checkpoint()
+    {
+        return new Checkpoint(end, row + 1);
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        lines.close();
+    }
+
+}
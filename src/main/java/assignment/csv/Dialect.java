@@ -0,0 +1,271 @@
+package assignment.csv;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import assignment.csv.FileMetaData.Escape;
+
+/**
+ * The delimiter and the quoting of a file, see {@link FileMetaData}. Also the state machine which tells whether a line
+ * break ends a record or belongs to a quoted value. The state machine only needs to run from the first quote of a
+ * record on, the scanners skip it entirely for records without quotes.
+ *
+ * @author sergey
+ *
+ */
+final class Dialect
+{
+
+    /** at the start of a field, before anything but blanks */
+    static final int FIELD_START = 0;
+    /** within a field which is not quoted */
+    static final int UNQUOTED = 1;
+    /** within a quoted value */
+    static final int QUOTED = 2;
+    /** a quote has been found within a quoted value, it either ends the value or is the first of a doubled quote */
+    static final int CLOSING = 3;
+    /** a backslash has been found within a quoted value, the next character is taken as it is */
+    static final int ESCAPED = 4;
+
+    final char delimiter;
+    /** the quote, -1 if quoting is off so that no character ever matches it */
+    final int quote;
+    final boolean backslash;
+
+    /**
+     * @param delimiter the delimiter
+     * @param quote the quote, <code>'\0'</code> if there is no quoting
+     * @param escape the escape style of quoted values
+     */
+    Dialect(char delimiter, char quote, Escape escape)
+    {
+        this.delimiter = delimiter;
+        this.quote = quote == '\0' ? -1 : quote;
+        this.backslash = escape == Escape.BACKSLASH;
+    }
+
+    /**
+     * @return <code>true</code> if values can be quoted
+     */
+    boolean quoting()
+    {
+        return quote >= 0;
+    }
+
+    /**
+     * Moves the state machine by one character.
+     *
+     * @param state the current state
+     * @param c the character
+     * @return the new state
+     */
+    int next(int state, int c)
+    {
+        switch (state)
+        {
+            case FIELD_START:
+                if (c == quote)
+                {
+                    return QUOTED;
+                }
+                if (c == delimiter || c <= ' ')
+                {
+                    return FIELD_START;
+                }
+                return UNQUOTED;
+            case QUOTED:
+                if (c == quote)
+                {
+                    return backslash ? UNQUOTED : CLOSING;
+                }
+                return backslash && c == '\\' ? ESCAPED : QUOTED;
+            case CLOSING:
+                if (c == quote)
+                {
+                    return QUOTED;
+                }
+                return c == delimiter ? FIELD_START : UNQUOTED;
+            case ESCAPED:
+                return QUOTED;
+            default:
+                return c == delimiter ? FIELD_START : UNQUOTED;
+        }
+    }
+
+    /**
+     * @param state a state
+     * @return <code>true</code> if a line break found in this state belongs to a value
+     */
+    static boolean open(int state)
+    {
+        return state == QUOTED || state == ESCAPED;
+    }
+
+    /**
+     * @param state a state
+     * @return <code>true</code> if the state is within a quoted value, which might be just about to end
+     */
+    static boolean within(int state)
+    {
+        return state == QUOTED || state == CLOSING || state == ESCAPED;
+    }
+
+    /**
+     * Runs the state machine over a range of characters.
+     *
+     * @param chars the characters
+     * @param state the state at the start of the range
+     * @return the state at the end of the range
+     */
+    int scan(CharSequence chars, int state)
+    {
+        for (int i = 0, length = chars.length(); i < length; i++ )
+        {
+            state = next(state, chars.charAt(i));
+        }
+        return state;
+    }
+
+    /**
+     * Splits the characters of a reader into records, like {@link BufferedReader#lines()} does into lines, except that
+     * a line break within a quoted value belongs to the value. Such a line break is kept as it is, <code>\r\n</code>
+     * and <code>\r</code> included, just like the byte scanners keep it.
+     *
+     * @param reader the reader
+     * @return the records, closing the stream closes the reader
+     */
+    Stream<String> records(BufferedReader reader)
+    {
+        Stream<String> records;
+        if (quoting())
+        {
+            Iterator<String> iterator = new Records(reader);
+            records = StreamSupport.stream(
+                    Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false);
+        }
+        else
+        {
+            // a record is a line then
+            records = reader.lines();
+        }
+        return records.onClose(() -> {
+            try
+            {
+                reader.close();
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Runs the state machine over every character, in blocks read from the reader.
+     */
+    private final class Records implements Iterator<String>
+    {
+
+        private final Reader reader;
+        private final char[] buffer = new char[8192];
+        private final StringBuilder record = new StringBuilder();
+        private int position;
+        private int limit;
+        private String next;
+
+        Records(Reader reader)
+        {
+            this.reader = reader;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            if (next == null)
+            {
+                try
+                {
+                    next = read();
+                }
+                catch (IOException e)
+                {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public String next()
+        {
+            if (!hasNext())
+            {
+                throw new NoSuchElementException();
+            }
+            String result = next;
+            next = null;
+            return result;
+        }
+
+        /*
+         * the next record without its line terminator, null at the end of the characters
+         */
+        private String read() throws IOException
+        {
+            record.setLength(0);
+            int state = FIELD_START;
+            int c = read(false);
+            if (c < 0)
+            {
+                return null;
+            }
+            while (c >= 0)
+            {
+                if ((c == '\n' || c == '\r') && !open(state))
+                {
+                    if (c == '\r')
+                    {
+                        read(true);
+                    }
+                    break;
+                }
+                record.append((char) c);
+                state = Dialect.this.next(state, c);
+                c = read(false);
+            }
+            return record.toString();
+        }
+
+        /*
+         * the next character, -1 at the end, or only a line feed if it is the next character
+         */
+        private int read(boolean lineFeed) throws IOException
+        {
+            if (position == limit)
+            {
+                limit = reader.read(buffer, 0, buffer.length);
+                position = 0;
+                if (limit <= 0)
+                {
+                    limit = 0;
+                    return -1;
+                }
+            }
+            if (lineFeed && buffer[position] != '\n')
+            {
+                return -1;
+            }
+            return buffer[position++ ];
+        }
+
+    }
+
+}
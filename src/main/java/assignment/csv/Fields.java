@@ -0,0 +1,406 @@
+package assignment.csv;
+
+import static java.lang.Math.max;
+import static java.lang.String.format;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Splits a line into fields. The trimmed bounds of the fields are written into a re-usable array, which is then walked
+ * by the column binding, or read through the {@link RowView} accessors. Nothing is allocated per line once the array
+ * has grown to the width of the file.
+ *
+ * <p>
+ * Quoted values (see {@link FileMetaData#quote()}) are handled by a small state machine which only takes over at the
+ * first quote of a line, lines without quotes are split exactly as fast as without quoting. The bounds of a quoted
+ * value exclude the quotes. A value containing escaped quotes is the only one which gets copied, unescaped, into a
+ * re-usable buffer, {@link #chars(int)} tells where the characters of a field are.
+ *
+ * <p>
+ * Instances are not thread safe, every iterator owns one.
+ *
+ * @author sergey
+ *
+ */
+final class Fields implements RowView
+{
+
+    private final char delimiter;
+    private final int quote;
+    private final boolean backslash;
+    private final int limit;
+
+    private CharSequence line;
+    /** start and end of every field, interleaved */
+    private int[] bounds = new int[32];
+    /** the delimiters and quotes found by the {@link ByteScanner} */
+    private int[] positions = new int[64];
+    /** tells which fields point to the unescaped characters */
+    private boolean[] unescaped = new boolean[16];
+    private int count;
+
+    /** the unescaped characters of a line of strings */
+    private StringBuilder text;
+    /** the unescaped characters of a line of raw bytes */
+    private byte[] bytes;
+    private ByteBuffer bytesBuffer;
+    private ByteChars bytesView;
+    private int bytesLength;
+
+    Fields(Dialect dialect)
+    {
+        this(dialect, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param dialect the delimiter and the quoting
+     * @param limit the number of fields after which the rest of a line is ignored
+     */
+    Fields(Dialect dialect, int limit)
+    {
+        this.delimiter = dialect.delimiter;
+        this.quote = dialect.quote;
+        this.backslash = dialect.backslash;
+        this.limit = limit;
+    }
+
+    /**
+     * Splits a line, the previous contents are discarded. Scanning stops as soon as the limit of fields is reached.
+     *
+     * @param line the line
+     * @return this instance
+     */
+    Fields split(CharSequence line)
+    {
+        this.line = line;
+        this.count = 0;
+        int length = line.length();
+        if (line instanceof ByteChars)
+        {
+            return split((ByteChars) line, length);
+        }
+        int start = 0;
+        for (int i = 0; i < length; i++ )
+        {
+            char c = line.charAt(i);
+            if (c == delimiter)
+            {
+                add(start, i);
+                start = i + 1;
+                if (count == limit)
+                {
+                    return this;
+                }
+            }
+            else if (c == quote)
+            {
+                lex(start, length);
+                return this;
+            }
+        }
+        add(start, length);
+        return this;
+    }
+
+    /*
+     * the same for raw bytes, the delimiters and quotes are found many bytes at a time
+     */
+    private Fields split(ByteChars line, int length)
+    {
+        int start = 0;
+        int from = 0;
+        while (true)
+        {
+            int found = line.positions(from, length, delimiter, quote, positions);
+            for (int k = 0; k < found; k++ )
+            {
+                int i = positions[k];
+                if (line.charAt(i) != delimiter)
+                {
+                    lex(start, length);
+                    return this;
+                }
+                add(start, i);
+                start = i + 1;
+                if (count == limit)
+                {
+                    return this;
+                }
+            }
+            if (found < positions.length)
+            {
+                break;
+            }
+            from = positions[found - 1] + 1;
+        }
+        add(start, length);
+        return this;
+    }
+
+    /*
+     * the slow path, splits the rest of the line starting with the field at the given index
+     */
+    private void lex(int i, int length)
+    {
+        if (line instanceof ByteChars)
+        {
+            bytesLength = 0;
+        }
+        else if (text != null)
+        {
+            text.setLength(0);
+        }
+        while (true)
+        {
+            int j = i;
+            while (j < length && line.charAt(j) <= ' ' && line.charAt(j) != delimiter)
+            {
+                j++ ;
+            }
+            int end;
+            if (j < length && line.charAt(j) == quote)
+            {
+                end = quoted(j + 1, length);
+                while (end < length && line.charAt(end) != delimiter)
+                {
+                    if (line.charAt(end) > ' ')
+                    {
+                        throw new IllegalArgumentException(
+                                format("Unexpected character '%s' after the quoted field %d", line.charAt(end), count));
+                    }
+                    end++ ;
+                }
+            }
+            else
+            {
+                end = j;
+                while (end < length && line.charAt(end) != delimiter)
+                {
+                    end++ ;
+                }
+                add(i, end);
+            }
+            if (end == length || count == limit)
+            {
+                return;
+            }
+            i = end + 1;
+        }
+    }
+
+    /*
+     * adds the quoted value starting at the given index, returns the index after the closing quote
+     */
+    private int quoted(int from, int length)
+    {
+        boolean escaped = false;
+        int i = from;
+        for (; i < length; i++ )
+        {
+            char c = line.charAt(i);
+            if (c == quote)
+            {
+                if (backslash || i + 1 == length || line.charAt(i + 1) != quote)
+                {
+                    break;
+                }
+                escaped = true;
+                i++ ;
+            }
+            else if (backslash && c == '\\')
+            {
+                escaped = true;
+                i++ ;
+            }
+        }
+        if (i >= length)
+        {
+            throw new IllegalArgumentException(format("The quoted field %d is not terminated", count + 1));
+        }
+        if (escaped)
+        {
+            unescape(from, i);
+        }
+        else
+        {
+            bounds(from, i, false);
+        }
+        return i + 1;
+    }
+
+    /*
+     * copies a quoted value without the escape characters
+     */
+    private void unescape(int from, int to)
+    {
+        boolean raw = line instanceof ByteChars;
+        int start = raw ? bytesLength : text == null ? 0 : text.length();
+        for (int i = from; i < to; i++ )
+        {
+            char c = line.charAt(i);
+            if (c == quote || c == '\\' && backslash)
+            {
+                // the first of the pair is the escape
+                c = line.charAt(++i);
+            }
+            if (raw)
+            {
+                if (bytes == null || bytesLength == bytes.length)
+                {
+                    bytes = bytes == null ? new byte[256] : Arrays.copyOf(bytes, max(256, bytes.length * 2));
+                    bytesBuffer = ByteBuffer.wrap(bytes);
+                }
+                bytes[bytesLength++ ] = (byte) c;
+            }
+            else
+            {
+                if (text == null)
+                {
+                    text = new StringBuilder();
+                }
+                text.append(c);
+            }
+        }
+        if (raw)
+        {
+            if (bytesView == null)
+            {
+                bytesView = new ByteChars(((ByteChars) line).charset());
+            }
+            bytesView.reset(bytesBuffer, 0, bytesLength);
+        }
+        bounds(start, raw ? bytesLength : text.length(), true);
+    }
+
+    private void add(int start, int end)
+    {
+        // the same as String.trim(), without creating the string
+        while (start < end && line.charAt(start) <= ' ')
+        {
+            start++ ;
+        }
+        while (end > start && line.charAt(end - 1) <= ' ')
+        {
+            end-- ;
+        }
+        bounds(start, end, false);
+    }
+
+    private void bounds(int start, int end, boolean escaped)
+    {
+        int i = count * 2;
+        if (i == bounds.length)
+        {
+            bounds = Arrays.copyOf(bounds, bounds.length * 2);
+            unescaped = Arrays.copyOf(unescaped, count * 2);
+        }
+        bounds[i] = start;
+        bounds[i + 1] = end;
+        unescaped[count] = escaped;
+        count++ ;
+    }
+
+    /**
+     * @return the current line
+     */
+    CharSequence line()
+    {
+        return line;
+    }
+
+    /**
+     * @param field 0 based index of the field
+     * @return the characters the bounds of the field refer to, the line unless the field had to be unescaped
+     */
+    CharSequence chars(int field)
+    {
+        if (!unescaped[field])
+        {
+            return line;
+        }
+        return line instanceof ByteChars ? bytesView : text;
+    }
+
+    /**
+     * @return the number of fields
+     */
+    int count()
+    {
+        return count;
+    }
+
+    /**
+     * @param field 0 based index of the field
+     * @return the start of the trimmed field, inclusive
+     */
+    int start(int field)
+    {
+        return bounds[field * 2];
+    }
+
+    /**
+     * @param field 0 based index of the field
+     * @return the end of the trimmed field, exclusive
+     */
+    int end(int field)
+    {
+        return bounds[field * 2 + 1];
+    }
+
+    @Override
+    public int getFieldCount()
+    {
+        return count;
+    }
+
+    @Override
+    public boolean isEmpty(int indx)
+    {
+        return indx < 1 || indx > count || start(indx - 1) == end(indx - 1);
+    }
+
+    @Override
+    public String getString(int indx)
+    {
+        return isEmpty(indx) ? null : ByteChars.toString(chars(indx - 1), start(indx - 1), end(indx - 1));
+    }
+
+    @Override
+    public int getInt(int indx)
+    {
+        return isEmpty(indx) ? 0 : Numbers.parseInt(chars(indx - 1), start(indx - 1), end(indx - 1));
+    }
+
+    @Override
+    public long getLong(int indx)
+    {
+        return isEmpty(indx) ? 0 : Numbers.parseLong(chars(indx - 1), start(indx - 1), end(indx - 1));
+    }
+
+    @Override
+    public double getDouble(int indx)
+    {
+        return isEmpty(indx) ? 0 : Numbers.parseDouble(chars(indx - 1), start(indx - 1), end(indx - 1));
+    }
+
+    @Override
+    public boolean getBoolean(int indx)
+    {
+        return !isEmpty(indx) && Numbers.parseBoolean(chars(indx - 1), start(indx - 1), end(indx - 1));
+    }
+
+    @Override
+    public BigDecimal getDecimal(int indx)
+    {
+        return isEmpty(indx) ? null : Numbers.parseDecimal(chars(indx - 1), start(indx - 1), end(indx - 1));
+    }
+
+    @Override
+    public String toString()
+    {
+        return line == null ? "" : ByteChars.toString(line, 0, line.length());
+    }
+
+}
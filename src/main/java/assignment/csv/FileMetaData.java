@@ -7,7 +7,8 @@ import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
 /**
- * Mark your POJOs with this annotation to define the token separator. Default is comma.
+ * Mark your POJOs with this annotation to define the token separator and the quoting of values. Default is comma and
+ * no quoting.
  * 
  * @author sergey
  *
@@ -25,4 +26,55 @@ public @interface FileMetaData
      */
     String separator() default ",";
 
+    /**
+     * The character enclosing the values which contain separators, line breaks or quotes, <code>'"'</code> for the
+     * quoting of RFC 4180. A quote only starts a quoted value if it is the first character of a field (blanks aside),
+     * elsewhere it is an ordinary character. The value of a quoted field is not trimmed. Default is <code>'\0'</code>,
+     * no quoting: every character is taken as it is and every line break ends a record.
+     * 
+     * <p>
+     * Quoting costs some parallelism: a line break may be part of a value, so a {@link SomeCoolCsvReader#stream()
+     * parallel stream} can only split a file where a record starts, which it finds by scanning the records from the
+     * start of the chunk being split.
+     * 
+     * @return the quote
+     */
+    char quote() default '\0';
+
+    /**
+     * The way a quote is written within a quoted value. Default is {@link Escape#DOUBLED}.
+     * 
+     * @return the escape style
+     */
+    Escape escape() default Escape.DOUBLED;
+
+    /**
+     * The name of the charset of the files, <code>"UTF-8"</code> for example. Default is the empty string, which stands
+     * for the default charset of the platform. Can be overridden with {@link SomeCoolCsvReader#withCharset(java.nio.charset.Charset)}.
+     * 
+     * @return the charset name
+     */
+    String charset() default "";
+
+    /**
+     * The escape styles of quoted values.
+     * 
+     * @author sergey
+     *
+     */
+    enum Escape
+    {
+
+        /**
+         * A quote is written twice, <code>"say ""hello"""</code>, as in RFC 4180.
+         */
+        DOUBLED,
+
+        /**
+         * A quote (or a backslash) is preceded by a backslash, <code>"say \"hello\""</code>.
+         */
+        BACKSLASH
+
+    }
+
 }
@@ -0,0 +1,315 @@
+package assignment.csv;
+
+import static assignment.csv.Utils.unchecked;
+import static java.lang.Math.max;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Follows a file which is being appended to, like <code>tail -f</code> does, see
+ * {@link SomeCoolCsvReader#follow(long, long, TimeUnit)}. The rows already in the file come first, then the rows as
+ * they are appended. Only the new bytes are read: the follower keeps the offset of the end of the last complete line
+ * and polls the size of the file. A last line without a line terminator (or a record with an open quote) is still
+ * being written, it is returned once it is complete.
+ *
+ * <p>
+ * A file which gets shorter has been truncated, it is read again from the start. A file which has been replaced by
+ * another one (rotated, detected by the file key where the file system has one) is read to its end, its last line
+ * counts as complete then, and the new file is followed from its start.
+ *
+ * <p>
+ * A bad row which is not skipped fails the call which would have returned it, the follower is past it then: the rows
+ * before it have been returned already and the next call goes on with the rows after it.
+ *
+ * <p>
+ * Instances are not thread safe, every consumer needs its own follower. Close the follower to release the file.
+ *
+ * @param <Pojo> the type of the rows
+ *
+ * @author sergey
+ */
+public final class Follower<Pojo> implements Closeable
+{
+
+    private static final int BLOCK = 1 << 16;
+
+    private final Path path;
+    private final Charset charset;
+    private final Dialect dialect;
+    private final Function<CharSequence, Pojo> parser;
+    private final long pollNanos;
+
+    // the rows and the failures of the bad rows, in the order of the file
+    private final ArrayDeque<Object> ready = new ArrayDeque<>();
+    private ByteBuffer buffer = ByteBuffer.allocate(BLOCK);
+    private FileChannel channel;
+    private Object fileKey;
+    private long position;
+    private boolean closed;
+
+    Follower(Path path, Charset charset, Dialect dialect, Function<CharSequence, Pojo> parser, long position,
+            long pollNanos)
+    {
+        this.path = path;
+        this.charset = charset;
+        this.dialect = dialect;
+        this.parser = parser;
+        this.position = position;
+        this.pollNanos = pollNanos;
+    }
+
+    /**
+     * Returns the next row if there is one, does not wait.
+     *
+     * @return the row or <code>null</code> if no complete row has been appended yet
+     * @throws IllegalStateException if the follower has been closed
+     */
+    public Pojo poll()
+    {
+        if (ready.isEmpty())
+        {
+            read();
+        }
+        Object next = ready.poll();
+        if (next instanceof Failure)
+        {
+            throw ((Failure) next).exception;
+        }
+        @SuppressWarnings("unchecked")
+        Pojo row = (Pojo) next;
+        return row;
+    }
+
+    /**
+     * Waits for the next row at most for the given time.
+     *
+     * @param timeout the time to wait
+     * @param unit the unit of the time
+     * @return the row or <code>null</code> if no row has been appended in time
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public Pojo poll(long timeout, TimeUnit unit) throws InterruptedException
+    {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        Pojo next = poll();
+        while (next == null)
+        {
+            long left = deadline - System.nanoTime();
+            if (left <= 0)
+            {
+                return null;
+            }
+            TimeUnit.NANOSECONDS.sleep(Math.min(left, pollNanos));
+            next = poll();
+        }
+        return next;
+    }
+
+    /**
+     * Waits for the next row.
+     *
+     * @return the row
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public Pojo take() throws InterruptedException
+    {
+        Pojo next = poll();
+        while (next == null)
+        {
+            TimeUnit.NANOSECONDS.sleep(pollNanos);
+            next = poll();
+        }
+        return next;
+    }
+
+    /**
+     * Returns the offset right after the line terminator of the last row read from the file. Note that the rows read
+     * are not necessarily consumed yet, the follower reads ahead as many lines as there are in a block of the file.
+     *
+     * @return the offset
+     */
+    public long position()
+    {
+        return position;
+    }
+
+    /*
+     * reads the complete lines appended since the last call
+     */
+    private void read()
+    {
+        if (closed)
+        {
+            throw new IllegalStateException("The follower has been closed");
+        }
+        try
+        {
+            if (channel == null)
+            {
+                if (!open())
+                {
+                    return;
+                }
+            }
+            else if (rotated())
+            {
+                // the rest of the old file, its last line is complete now
+                while (parse(false))
+                {}
+                parse(true);
+                channel.close();
+                channel = null;
+                position = 0;
+                SomeCoolCsvReader.logger.info("{} has been rotated, following the new file", path);
+                if (!open())
+                {
+                    return;
+                }
+            }
+            if (channel.size() < position)
+            {
+                SomeCoolCsvReader.logger.info("{} has been truncated, reading it from the start", path);
+                position = 0;
+            }
+            parse(false);
+        }
+        catch (IOException e)
+        {
+            SomeCoolCsvReader.logger.error("An IO error occurred while reading data from the file.", e);
+            throw unchecked(e);
+        }
+    }
+
+    private boolean open() throws IOException
+    {
+        try
+        {
+            fileKey = fileKey();
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+            return true;
+        }
+        catch (NoSuchFileException e)
+        {
+            // not there yet, or in the middle of a rotation
+            return false;
+        }
+    }
+
+    private boolean rotated() throws IOException
+    {
+        try
+        {
+            return fileKey != null && !Objects.equals(fileKey, fileKey());
+        }
+        catch (NoSuchFileException e)
+        {
+            // the old file is gone and the new one is not there yet, keep on reading the old one
+            return false;
+        }
+    }
+
+    private Object fileKey() throws IOException
+    {
+        return Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+    }
+
+    /*
+     * reads a block from the current position and parses its complete lines, tells whether anything has been read
+     */
+    private boolean parse(boolean unterminated) throws IOException
+    {
+        buffer.clear();
+        int read = channel.read(buffer, position);
+        if (read <= 0)
+        {
+            return false;
+        }
+        buffer.flip();
+        boolean full = !buffer.hasRemaining() || read == buffer.capacity();
+        long start = position;
+        ByteBuffer data = buffer;
+        ByteSource source = new ByteSource()
+        {
+
+            private boolean done;
+
+            @Override
+            public ByteBuffer next()
+            {
+                if (done)
+                {
+                    return null;
+                }
+                done = true;
+                return data;
+            }
+
+        };
+        try (ByteLines lines = new ByteLines(source, charset, start, dialect, unterminated))
+        {
+            while (lines.next())
+            {
+                Object row;
+                try
+                {
+                    row = parser.apply(lines.line());
+                }
+                catch (RuntimeException e)
+                {
+                    // thrown once the rows before it have been returned, the row itself is not read again
+                    row = new Failure(e);
+                }
+                // null for a bad row which has been skipped
+                if (row != null)
+                {
+                    ready.add(row);
+                }
+                position = lines.end();
+            }
+        }
+        if (position == start && full)
+        {
+            // a line longer than the buffer
+            buffer = ByteBuffer.allocate(max(BLOCK, buffer.capacity() * 2));
+            return true;
+        }
+        return position > start;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        closed = true;
+        ready.clear();
+        if (channel != null)
+        {
+            channel.close();
+        }
+    }
+
+    private static final class Failure
+    {
+
+        final RuntimeException exception;
+
+        Failure(RuntimeException exception)
+        {
+            this.exception = exception;
+        }
+
+    }
+
+}
@@ -0,0 +1,490 @@
+package assignment.csv;
+
+import static assignment.csv.Utils.unchecked;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Decompresses a gzip or zlib file on a background thread, see {@link Compression}. The thread fills a ring of buffers
+ * ahead of the parsing thread, which only waits when it is faster than the decompression.
+ *
+ * <p>
+ * The members of a blocked gzip file (BGZF, as written by <code>bgzip</code>: every member records its compressed size
+ * in an extra field) are independent of each other, the background thread then only cuts the file into members and
+ * the members are decompressed in parallel by the common {@link ForkJoinPool}. The members of any other gzip file can
+ * only be found by decompressing them, such a file is decompressed sequentially.
+ *
+ * <p>
+ * The background thread ends when the file has been read, when the source is closed or when the source is no longer
+ * reachable (an iterator abandoned half way through the file).
+ *
+ * @author sergey
+ *
+ */
+final class InflatingByteSource implements ByteSource
+{
+
+    /** the number of buffers of the ring */
+    static final int DEPTH = 4;
+    static final int BLOCK = 1 << 18;
+
+    private static final Future<ByteBuffer> END = CompletableFuture.completedFuture(null);
+    private static final AtomicInteger threads = new AtomicInteger();
+
+    /**
+     * One inflater per worker of the pool, inflaters hold native memory which is only released by
+     * {@link Inflater#end()} or finalization, creating one per member would be wasteful.
+     */
+    private static final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(() -> new Inflater(true));
+
+    private final BlockingQueue<Future<ByteBuffer>> filled;
+    private final BlockingQueue<ByteBuffer> free;
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final Thread thread;
+    private final boolean recycle;
+
+    private ByteBuffer current;
+    private boolean ended;
+
+    InflatingByteSource(Path path, Compression compression) throws IOException
+    {
+        this(path, compression, DEPTH, BLOCK);
+    }
+
+    /**
+     * @param path the file
+     * @param compression {@link Compression#GZIP} or {@link Compression#DEFLATE}
+     * @param depth the number of buffers of the ring
+     * @param block the size of a buffer
+     * @throws IOException if the file cannot be read
+     */
+    InflatingByteSource(Path path, Compression compression, int depth, int block) throws IOException
+    {
+        Producer producer;
+        if (compression == Compression.GZIP && blocked(path))
+        {
+            // enough members in flight to keep every worker busy
+            depth = Math.max(depth, 2 * ForkJoinPool.getCommonPoolParallelism());
+            this.filled = new ArrayBlockingQueue<>(depth);
+            this.free = null;
+            this.recycle = false;
+            producer = new BlockProducer(path, this);
+        }
+        else
+        {
+            this.filled = new ArrayBlockingQueue<>(depth);
+            this.free = new ArrayBlockingQueue<>(depth);
+            for (int i = 0; i < depth; i++ )
+            {
+                free.add(ByteBuffer.allocate(block));
+            }
+            this.recycle = true;
+            producer = new StreamProducer(path, compression, this);
+        }
+        this.thread = new Thread(producer, "csv-inflater-" + threads.incrementAndGet());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /*
+     * tells whether the first member of a gzip file is a BGZF member
+     */
+    private static boolean blocked(Path path) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            ByteBuffer header = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+            if (!read(channel, header, 0))
+            {
+                return false;
+            }
+            ByteBuffer extra = extra(channel, header, 0);
+            return extra != null && memberSize(extra) > 0;
+        }
+    }
+
+    private static boolean read(FileChannel channel, ByteBuffer buffer, long position) throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            if (channel.read(buffer, position + buffer.position()) < 0)
+            {
+                return false;
+            }
+        }
+        buffer.flip();
+        return true;
+    }
+
+    /*
+     * the extra field of a gzip member header, null if there is none
+     */
+    private static ByteBuffer extra(FileChannel channel, ByteBuffer header, long position) throws IOException
+    {
+        if ((header.get(0) & 0xff) != 0x1f || (header.get(1) & 0xff) != 0x8b || header.get(2) != 8
+                || (header.get(3) & 4) == 0)
+        {
+            return null;
+        }
+        ByteBuffer extra = ByteBuffer.allocate(header.getShort(10) & 0xffff).order(ByteOrder.LITTLE_ENDIAN);
+        return read(channel, extra, position + 12) ? extra : null;
+    }
+
+    /*
+     * the total size of a member from the BC subfield of the extra field, -1 if there is no such subfield
+     */
+    private static int memberSize(ByteBuffer extra)
+    {
+        int i = 0;
+        while (i + 4 <= extra.limit())
+        {
+            int length = extra.getShort(i + 2) & 0xffff;
+            if (extra.get(i) == 'B' && extra.get(i + 1) == 'C' && length == 2 && i + 6 <= extra.limit())
+            {
+                return (extra.getShort(i + 4) & 0xffff) + 1;
+            }
+            i += 4 + length;
+        }
+        return -1;
+    }
+
+    /*
+     * decompresses a whole gzip member
+     */
+    private static ByteBuffer inflate(byte[] member) throws ZipException
+    {
+        if (member.length < 18)
+        {
+            throw new ZipException("Corrupt gzip member");
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(member).order(ByteOrder.LITTLE_ENDIAN);
+        int flags = member[3];
+        int start = 10;
+        if ((flags & 4) != 0)
+        {
+            start += 2 + (bytes.getShort(10) & 0xffff);
+        }
+        for (int mask : new int[] { 8, 16 })
+        {
+            // the file name and the comment, zero terminated
+            if ((flags & mask) != 0)
+            {
+                while (start < member.length && member[start++ ] != 0)
+                {}
+            }
+        }
+        if ((flags & 2) != 0)
+        {
+            start += 2;
+        }
+        int end = member.length - 8;
+        int size = bytes.getInt(member.length - 4);
+        if (start > end || size < 0)
+        {
+            throw new ZipException("Corrupt gzip member");
+        }
+        byte[] data = new byte[size];
+        Inflater inflater = inflaters.get();
+        inflater.reset();
+        inflater.setInput(member, start, end - start);
+        try
+        {
+            int n = 0;
+            while (n < size && !inflater.finished())
+            {
+                int inflated = inflater.inflate(data, n, size - n);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                {
+                    break;
+                }
+                n += inflated;
+            }
+            if (n != size)
+            {
+                throw new ZipException("Corrupt gzip member, wrong uncompressed size");
+            }
+        }
+        catch (DataFormatException e)
+        {
+            throw new ZipException(e.getMessage());
+        }
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, size);
+        if ((int) crc.getValue() != bytes.getInt(end))
+        {
+            throw new ZipException("Corrupt gzip member, CRC mismatch");
+        }
+        return ByteBuffer.wrap(data);
+    }
+
+    @Override
+    public ByteBuffer next() throws IOException
+    {
+        if (current != null && recycle)
+        {
+            free.offer(current);
+        }
+        current = null;
+        while (!ended && !closed.get())
+        {
+            Future<ByteBuffer> next;
+            ByteBuffer block;
+            try
+            {
+                next = filled.take();
+                block = next.get();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for decompressed data");
+            }
+            catch (ExecutionException e)
+            {
+                Throwable cause = e.getCause();
+                throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+            }
+            if (next == END)
+            {
+                ended = true;
+            }
+            else if (block.hasRemaining())
+            {
+                current = block;
+                return block;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void close()
+    {
+        if (closed.compareAndSet(false, true))
+        {
+            thread.interrupt();
+            for (Future<ByteBuffer> future : filled)
+            {
+                future.cancel(false);
+            }
+            filled.clear();
+        }
+    }
+
+    /**
+     * The background thread. Does not refer to the source, so that an abandoned source can be collected (and the
+     * thread notices it).
+     */
+    private static abstract class Producer implements Runnable
+    {
+
+        final Path path;
+        final BlockingQueue<Future<ByteBuffer>> filled;
+        final BlockingQueue<ByteBuffer> free;
+        private final AtomicBoolean closed;
+        private final WeakReference<InflatingByteSource> owner;
+
+        Producer(Path path, InflatingByteSource owner)
+        {
+            this.path = path;
+            this.filled = owner.filled;
+            this.free = owner.free;
+            this.closed = owner.closed;
+            this.owner = new WeakReference<>(owner);
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                produce();
+                put(END);
+            }
+            catch (InterruptedException e)
+            {
+                // closed
+            }
+            catch (IOException | RuntimeException e)
+            {
+                if (!abandoned())
+                {
+                    SomeCoolCsvReader.logger.error("Unable to decompress {}", path, e);
+                    CompletableFuture<ByteBuffer> failed = new CompletableFuture<>();
+                    failed.completeExceptionally(e);
+                    try
+                    {
+                        put(failed);
+                    }
+                    catch (InterruptedException ignored)
+                    {
+                        // closed
+                    }
+                }
+            }
+        }
+
+        abstract void produce() throws IOException, InterruptedException;
+
+        boolean abandoned()
+        {
+            return closed.get() || owner.get() == null;
+        }
+
+        /*
+         * waits for room in the ring, gives up when the source is gone
+         */
+        boolean put(Future<ByteBuffer> block) throws InterruptedException
+        {
+            while (!filled.offer(block, 1, TimeUnit.SECONDS))
+            {
+                if (abandoned())
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        ByteBuffer take() throws InterruptedException
+        {
+            ByteBuffer buffer;
+            while ((buffer = free.poll(1, TimeUnit.SECONDS)) == null)
+            {
+                if (abandoned())
+                {
+                    return null;
+                }
+            }
+            return buffer;
+        }
+
+    }
+
+    /**
+     * Decompresses the whole file as one stream into the buffers of the ring.
+     */
+    private static final class StreamProducer extends Producer
+    {
+
+        private final Compression compression;
+
+        StreamProducer(Path path, Compression compression, InflatingByteSource owner)
+        {
+            super(path, owner);
+            this.compression = compression;
+        }
+
+        @Override
+        void produce() throws IOException, InterruptedException
+        {
+            InputStream file = Files.newInputStream(path);
+            Inflater inflater = new Inflater();
+            try (InputStream in = compression == Compression.GZIP ? new GZIPInputStream(file, 1 << 16)
+                    : new InflaterInputStream(file, inflater, 1 << 16))
+            {
+                while (!abandoned())
+                {
+                    ByteBuffer buffer = take();
+                    if (buffer == null)
+                    {
+                        return;
+                    }
+                    byte[] array = buffer.array();
+                    int n = 0;
+                    int read = 0;
+                    while (n < array.length && (read = in.read(array, n, array.length - n)) >= 0)
+                    {
+                        n += read;
+                    }
+                    buffer.clear();
+                    buffer.limit(n);
+                    if (!put(CompletableFuture.completedFuture(buffer)) || read < 0)
+                    {
+                        return;
+                    }
+                }
+            }
+            finally
+            {
+                inflater.end();
+            }
+        }
+
+    }
+
+    /**
+     * Cuts a BGZF file into members and hands them to the pool.
+     */
+    private static final class BlockProducer extends Producer
+    {
+
+        BlockProducer(Path path, InflatingByteSource owner)
+        {
+            super(path, owner);
+        }
+
+        @Override
+        void produce() throws IOException, InterruptedException
+        {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+            {
+                long size = channel.size();
+                long position = 0;
+                ByteBuffer header = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+                while (position < size && !abandoned())
+                {
+                    header.clear();
+                    ByteBuffer extra = read(channel, header, position) ? extra(channel, header, position) : null;
+                    int length = extra == null ? -1 : memberSize(extra);
+                    if (length < 0 || position + length > size)
+                    {
+                        throw new ZipException(String.format("No BGZF member at offset %d", position));
+                    }
+                    ByteBuffer member = ByteBuffer.allocate(length);
+                    read(channel, member, position);
+                    position += length;
+                    if (!put(CompletableFuture.supplyAsync(() -> {
+                        try
+                        {
+                            return inflate(member.array());
+                        }
+                        catch (ZipException e)
+                        {
+                            throw unchecked(e);
+                        }
+                    })))
+                    {
+                        return;
+                    }
+                }
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,70 @@
+package assignment.csv;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lets a few log messages of a kind through per period and counts the others, so that a dirty file cannot flood the
+ * disk with the same message for every row. Thread safe, without locks:
+ *
+ * <pre>
+ * if (limiter.allow())
+ * {
+ *     logger.warn("Something happened again ({} similar messages suppressed)", limiter.suppressed());
+ * }
+ * </pre>
+ *
+ * @author sergey
+ *
+ */
+final class LogLimiter
+{
+
+    private final int permits;
+    private final long period;
+
+    private final AtomicLong periodStart = new AtomicLong(System.nanoTime());
+    private final AtomicInteger used = new AtomicInteger();
+    private final LongAdder suppressed = new LongAdder();
+
+    /**
+     * @param permits the number of messages let through per period
+     * @param period the length of the period
+     * @param unit the unit of the period
+     */
+    LogLimiter(int permits, long period, TimeUnit unit)
+    {
+        this.permits = permits;
+        this.period = unit.toNanos(period);
+    }
+
+    /**
+     * @return whether the message may be logged, counts it as suppressed if not
+     */
+    boolean allow()
+    {
+        long start = periodStart.get();
+        long now = System.nanoTime();
+        if (now - start >= period && periodStart.compareAndSet(start, now))
+        {
+            used.set(0);
+        }
+        if (used.get() < permits && used.incrementAndGet() <= permits)
+        {
+            return true;
+        }
+        suppressed.increment();
+        return false;
+    }
+
+    /**
+     * @return the number of messages suppressed since the last call
+     */
+    long suppressed()
+    {
+        return suppressed.sumThenReset();
+    }
+
+}
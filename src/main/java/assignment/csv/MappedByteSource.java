@@ -0,0 +1,64 @@
+package assignment.csv;
+
+import static java.lang.Math.min;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Maps a byte range of a file into memory window by window. The channel is only open while a window is being mapped, a
+ * mapping stays valid after its channel is closed, so no file handle is held between the calls to {@link #next()}
+ * (and none is leaked if the client abandons an iterator half way through the file).
+ *
+ * @author sergey
+ *
+ */
+class MappedByteSource implements ByteSource
+{
+
+    /**
+     * 64 megabytes is large enough to make the cost of mapping negligible and small enough not to exhaust the address
+     * space when many files are read in parallel.
+     */
+    static final int DEFAULT_WINDOW = 1 << 26;
+
+    private final Path path;
+    private final long end;
+    private final int window;
+    private long position;
+
+    /**
+     * @param path the file to map
+     * @param from the offset of the first byte to read
+     * @param to the offset after the last byte to read
+     * @param window the maximum size of a single mapping
+     */
+    MappedByteSource(Path path, long from, long to, int window)
+    {
+        this.path = path;
+        this.position = from;
+        this.end = to;
+        this.window = window;
+    }
+
+    @Override
+    public ByteBuffer next() throws IOException
+    {
+        if (position >= end)
+        {
+            return null;
+        }
+        long size = min(window, end - position);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            ByteBuffer buffer = channel.map(MapMode.READ_ONLY, position, size);
+            position += size;
+            return buffer;
+        }
+    }
+
+}
@@ -0,0 +1,181 @@
+package assignment.csv;
+
+/**
+ * Counts the rows of a single iterator (or chunk) for the {@link ParseStatistics} and the {@link ParseEvents}. Not
+ * thread safe, every iterator gets its own. A row is metered like this:
+ *
+ * <pre>
+ * long start = meter.start(line);
+ * fields.split(line);
+ * long split = meter.tokenized(start);
+ * bind(target, fields);
+ * meter.bound(start, split);
+ * </pre>
+ *
+ * The clock is only read for one row in {@value #SAMPLE} if the statistics are on, and for every row if the slow rows
+ * are recorded. The methods return 0 for a row which is not timed. The {@link #NONE none} meter does nothing at all.
+ *
+ * <p>
+ * The last, incomplete batch is ended by {@link #finish()}, once the iterator is exhausted or closed. Iterators which
+ * are never exhausted (cursors and followers) only report complete batches.
+ *
+ * @author sergey
+ *
+ */
+final class Meter
+{
+
+    /** one row in this many is timed for the statistics, a power of 2 */
+    static final int SAMPLE = 16;
+    /** the number of rows of a batch */
+    static final int BATCH = 1 << 13;
+
+    static final Meter NONE = new Meter(null, null, null, 0);
+
+    private final ParseStatistics statistics;
+    private final ParseEvents events;
+    private final String file;
+    private final long slowRow;
+
+    private long rows;
+    private boolean sampled;
+
+    private boolean batching;
+    private Object batch;
+    private boolean timed;
+    private long batchRows;
+    private long batchLength;
+    private int length;
+
+    /**
+     * @param statistics the statistics, <code>null</code> if they are off
+     * @param events the events, <code>null</code> if there is nobody to receive them
+     * @param file the path of the file
+     * @param slowRow the time above which a row is slow, in nanoseconds
+     */
+    Meter(ParseStatistics statistics, ParseEvents events, String file, long slowRow)
+    {
+        this.statistics = statistics;
+        this.events = events;
+        this.file = file;
+        this.slowRow = slowRow;
+    }
+
+    /**
+     * @param line the row about to be parsed
+     * @return the start of a timed row, 0 if the row is not timed
+     */
+    long start(CharSequence line)
+    {
+        if (statistics == null && events == null)
+        {
+            return 0;
+        }
+        rows++;
+        if (statistics != null)
+        {
+            statistics.rows.increment();
+            sampled = (rows & (SAMPLE - 1)) == 1;
+        }
+        if (events != null)
+        {
+            if (batchRows >= BATCH)
+            {
+                endBatch();
+            }
+            if (!batching)
+            {
+                beginBatch();
+            }
+            length = line.length();
+            batchRows++;
+            batchLength += length;
+        }
+        return sampled || timed ? System.nanoTime() : 0;
+    }
+
+    /**
+     * @param start the value returned by {@link #start(CharSequence)}
+     * @return the end of the tokenizing of a timed row, 0 if the row is not timed
+     */
+    long tokenized(long start)
+    {
+        if (start == 0)
+        {
+            return 0;
+        }
+        long now = System.nanoTime();
+        if (sampled)
+        {
+            statistics.tokenizeNanos.add((now - start) * SAMPLE);
+        }
+        return now;
+    }
+
+    /**
+     * Ends a row.
+     *
+     * @param start the value returned by {@link #start(CharSequence)}
+     * @param split the value returned by {@link #tokenized(long)}
+     */
+    void bound(long start, long split)
+    {
+        if (split != 0)
+        {
+            long now = System.nanoTime();
+            if (sampled)
+            {
+                statistics.bindNanos.add((now - split) * SAMPLE);
+            }
+            if (timed && now - start >= slowRow)
+            {
+                events.slowRow(file, rows, length, now - start);
+            }
+        }
+        // a bad row is not bound, the batch ends with the next row
+        if (batchRows >= BATCH)
+        {
+            endBatch();
+        }
+    }
+
+    /**
+     * @return the statistics, <code>null</code> if they are off
+     */
+    ParseStatistics statistics()
+    {
+        return statistics;
+    }
+
+    /**
+     * Ends the current batch, if any.
+     */
+    void finish()
+    {
+        if (batching)
+        {
+            endBatch();
+        }
+    }
+
+    private void beginBatch()
+    {
+        batching = true;
+        batch = events.beginBatch();
+        timed = events.slowRowsEnabled();
+    }
+
+    private void endBatch()
+    {
+        if (batch != null)
+        {
+            events.endBatch(batch, file, batchRows, batchLength);
+        }
+        batching = false;
+        batch = null;
+        timed = false;
+        batchRows = 0;
+        batchLength = 0;
+    }
+
+}
@@ -0,0 +1,427 @@
+package assignment.csv;
+
+import static assignment.csv.Utils.checkNotNull;
+import static assignment.csv.Utils.unchecked;
+import static java.lang.String.format;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads all the files of a directory which match a glob pattern, for example <code>"*.csv"</code> or
+ * <code>"**&#47;*.csv.gz"</code>, into one stream. All the files are read with the same column setup and the same
+ * settings, see {@link #withReader(UnaryOperator)}.
+ *
+ * <p>
+ * The files are read concurrently, by at most {@link #withParallelism(int) parallelism} threads at a time: virtual
+ * threads on a runtime which has them, otherwise a fixed pool of daemon threads. The rows are handed over in batches
+ * through bounded queues, so a slow consumer holds up the reading instead of making the rows pile up in memory. The
+ * merged stream either keeps the order of the files (sorted by path), or interleaves the rows in the order they have
+ * been read, which is faster when the files differ in size.
+ *
+ * <p>
+ * A file which cannot be read (or parsed) does not abort the stream: the rows already read from it are kept, the error
+ * is passed to the {@link #withErrorHandler(BiConsumer) error handler} on the consuming thread and the stream goes on
+ * with the other files. An {@link Error} of a reading thread does end the stream, it is rethrown on the consuming
+ * thread. Streams should be closed when they are not read up to the end, closing a stream stops the
+ * reading threads.
+ *
+ * @param <Pojo> the type of the rows
+ *
+ * @author sergey
+ *
+ */
+public final class MultiFileCsvReader<Pojo>
+{
+
+    private static final int BATCH = 256;
+    private static final int QUEUED_BATCHES = 16;
+    private static final Object END = new Object();
+    private static final AtomicInteger threads = new AtomicInteger();
+    private static final Method virtualThreads = virtualThreads();
+
+    private final Path directory;
+    private final PathMatcher matcher;
+    private final SomeCoolCsvReader<Pojo> template;
+    private final int parallelism;
+    private final BiConsumer<Path, Exception> errorHandler;
+
+    /**
+     * Reads all the regular files of a directory and of its sub-directories.
+     *
+     * @param directory the directory
+     * @param pojoClass the class of the rows
+     * @throws IllegalArgumentException if a parameter is <code>null</code> or the class is not a valid CSV model, see
+     *             {@link SomeCoolCsvReader#SomeCoolCsvReader(java.io.File, Class)}
+     */
+    public MultiFileCsvReader(Path directory, Class<Pojo> pojoClass)
+    {
+        this(directory, "**", pojoClass);
+    }
+
+    /**
+     * Reads the regular files of a directory whose paths, relative to the directory, match a glob pattern. The pattern
+     * has the syntax of {@link java.nio.file.FileSystem#getPathMatcher(String)}, <code>"*.csv"</code> only matches the
+     * files of the directory itself, <code>"**&#47;*.csv"</code> those of its sub-directories as well.
+     *
+     * @param directory the directory
+     * @param glob the pattern
+     * @param pojoClass the class of the rows
+     * @throws IllegalArgumentException if a parameter is <code>null</code>, the pattern is invalid or the class is not
+     *             a valid CSV model, see {@link SomeCoolCsvReader#SomeCoolCsvReader(java.io.File, Class)}
+     */
+    public MultiFileCsvReader(Path directory, String glob, Class<Pojo> pojoClass)
+    {
+        this.directory = checkNotNull(directory, "Directory cannot be null");
+        this.matcher = FileSystems.getDefault().getPathMatcher("glob:" + checkNotNull(glob, "Glob cannot be null"));
+        this.template = new SomeCoolCsvReader<>(directory.toFile(), pojoClass);
+        this.parallelism = Runtime.getRuntime().availableProcessors();
+        this.errorHandler = (path, e) -> SomeCoolCsvReader.logger.error("Unable to read the file {}", path, e);
+    }
+
+    /*
+     * creates a re-configured copy of the prototype
+     */
+    private MultiFileCsvReader(MultiFileCsvReader<Pojo> prototype, SomeCoolCsvReader<Pojo> template, int parallelism,
+            BiConsumer<Path, Exception> errorHandler)
+    {
+        this.directory = prototype.directory;
+        this.matcher = prototype.matcher;
+        this.template = template;
+        this.parallelism = parallelism;
+        this.errorHandler = errorHandler;
+    }
+
+    /**
+     * Returns a copy of this reader which reads every file with a re-configured reader, for example
+     * <code>withReader(r -&gt; r.withEngine(Engine.BYTES).select(1, 3))</code>.
+     *
+     * @param configuration re-configures the reader of a file, the reader passed in is that of the directory
+     * @return the re-configured reader
+     * @throws IllegalArgumentException if the configuration is <code>null</code> or returns <code>null</code>
+     */
+    public MultiFileCsvReader<Pojo> withReader(UnaryOperator<SomeCoolCsvReader<Pojo>> configuration)
+    {
+        checkNotNull(configuration, "Configuration cannot be null");
+        SomeCoolCsvReader<Pojo> configured =
+                checkNotNull(configuration.apply(template), "The configuration returned no reader");
+        return new MultiFileCsvReader<>(this, configured, parallelism, errorHandler);
+    }
+
+    /**
+     * Returns a copy of this reader which reads at most the given number of files at a time, the number of available
+     * processors by default.
+     *
+     * @param parallelism the number of files read at a time
+     * @return the re-configured reader
+     * @throws IllegalArgumentException if the parallelism is not positive
+     */
+    public MultiFileCsvReader<Pojo> withParallelism(int parallelism)
+    {
+        if (parallelism < 1)
+        {
+            throw new IllegalArgumentException(format("The parallelism must be positive: %d", parallelism));
+        }
+        return new MultiFileCsvReader<>(this, template, parallelism, errorHandler);
+    }
+
+    /**
+     * Returns a copy of this reader which passes the errors of the files to the given handler, which is called on the
+     * thread which consumes the stream. By default the errors are logged.
+     *
+     * @param errorHandler the handler, called with the file and the error
+     * @return the re-configured reader
+     * @throws IllegalArgumentException if the handler is <code>null</code>
+     */
+    public MultiFileCsvReader<Pojo> withErrorHandler(BiConsumer<Path, Exception> errorHandler)
+    {
+        checkNotNull(errorHandler, "Error handler cannot be null");
+        return new MultiFileCsvReader<>(this, template, parallelism, errorHandler);
+    }
+
+    /**
+     * Lists the files to read, sorted by path.
+     *
+     * @return the files
+     * @throws java.io.UncheckedIOException if the directory cannot be listed
+     */
+    public List<Path> files()
+    {
+        try (Stream<Path> paths = Files.walk(directory))
+        {
+            return paths.filter(path -> matcher.matches(directory.relativize(path)))
+                    .filter(Files::isRegularFile)
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        catch (IOException e)
+        {
+            SomeCoolCsvReader.logger.error("An IO error occurred while listing the directory.", e);
+            throw unchecked(e);
+        }
+    }
+
+    /**
+     * Streams the rows of all the files, file by file in the order of {@link #files()}, the rows of a file in the
+     * order of the file. The files after the one being consumed are read ahead, up to the parallelism.
+     *
+     * @return the rows, to be closed if not consumed up to the end
+     */
+    public Stream<Pojo> stream()
+    {
+        return stream(true);
+    }
+
+    /**
+     * Streams the rows of all the files as they are read, the rows of a file keep their order but are interleaved with
+     * the rows of the other files being read at the same time.
+     *
+     * @return the rows, to be closed if not consumed up to the end
+     */
+    public Stream<Pojo> interleavedStream()
+    {
+        return stream(false);
+    }
+
+    private Stream<Pojo> stream(boolean ordered)
+    {
+        Merge<Pojo> merge = new Merge<>(this, files(), ordered);
+        int characteristics = ordered ? Spliterator.ORDERED | Spliterator.NONNULL : Spliterator.NONNULL;
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(merge, characteristics), false)
+                .onClose(merge::close);
+    }
+
+    /*
+     * Executors.newVirtualThreadPerTaskExecutor(), if the runtime has virtual threads
+     */
+    private static Method virtualThreads()
+    {
+        try
+        {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        }
+        catch (NoSuchMethodException e)
+        {
+            return null;
+        }
+    }
+
+    private static ExecutorService executor(int parallelism)
+    {
+        if (virtualThreads != null)
+        {
+            try
+            {
+                return (ExecutorService) virtualThreads.invoke(null);
+            }
+            catch (ReflectiveOperationException e)
+            {
+                SomeCoolCsvReader.logger.debug("Unable to create virtual threads, using platform threads", e);
+            }
+        }
+        return Executors.newFixedThreadPool(parallelism, task -> {
+            Thread thread = new Thread(task, "csv-files-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * A file which failed, in place of its remaining rows.
+     */
+    private static final class Failure
+    {
+
+        final Path path;
+        // an exception for the error handler or an error to rethrow
+        final Throwable error;
+
+        Failure(Path path, Throwable error)
+        {
+            this.path = path;
+            this.error = error;
+        }
+
+    }
+
+    /**
+     * One pass over the files. Exactly <code>parallelism</code> workers take the files in turn, each queues the
+     * batches of its file followed by {@link MultiFileCsvReader#END} or a {@link Failure}: into a queue of its own
+     * when the order of the files is kept, into a shared queue otherwise. Since the files are taken in order, the file
+     * being consumed is always one of those being read, so the workers blocked on the files ahead cannot starve it.
+     */
+    private static final class Merge<Pojo> implements Iterator<Pojo>
+    {
+
+        private final SomeCoolCsvReader<Pojo> template;
+        private final BiConsumer<Path, Exception> errorHandler;
+        private final List<Path> files;
+        private final List<BlockingQueue<Object>> queues;
+        private final AtomicInteger next = new AtomicInteger();
+        private final ExecutorService executor;
+
+        private volatile boolean closed;
+        private int finished;
+        private Iterator<Pojo> batch;
+
+        Merge(MultiFileCsvReader<Pojo> reader, List<Path> files, boolean ordered)
+        {
+            this.template = reader.template;
+            this.errorHandler = reader.errorHandler;
+            this.files = files;
+            this.queues = new ArrayList<>(ordered ? files.size() : 1);
+            for (int i = 0; i < (ordered ? files.size() : 1); i++ )
+            {
+                queues.add(new ArrayBlockingQueue<>(QUEUED_BATCHES));
+            }
+            int workers = Math.min(reader.parallelism, files.size());
+            this.executor = workers == 0 ? null : executor(workers);
+            for (int i = 0; i < workers; i++ )
+            {
+                executor.execute(this::work);
+            }
+            if (executor != null)
+            {
+                executor.shutdown();
+            }
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            while (batch == null || !batch.hasNext())
+            {
+                if (finished == files.size())
+                {
+                    return false;
+                }
+                Object element = take();
+                if (element instanceof List)
+                {
+                    @SuppressWarnings("unchecked")
+                    List<Pojo> rows = (List<Pojo>) element;
+                    batch = rows.iterator();
+                }
+                else
+                {
+                    finished++ ;
+                    if (element instanceof Failure)
+                    {
+                        Failure failure = (Failure) element;
+                        if (failure.error instanceof Error)
+                        {
+                            close();
+                            throw (Error) failure.error;
+                        }
+                        errorHandler.accept(failure.path, (Exception) failure.error);
+                    }
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public Pojo next()
+        {
+            if (!hasNext())
+            {
+                throw new NoSuchElementException();
+            }
+            return batch.next();
+        }
+
+        private Object take()
+        {
+            BlockingQueue<Object> queue = queues.get(queues.size() == 1 ? 0 : finished);
+            try
+            {
+                return queue.take();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                close();
+                throw new IllegalStateException("Interrupted while waiting for the rows", e);
+            }
+        }
+
+        void close()
+        {
+            closed = true;
+            if (executor != null)
+            {
+                executor.shutdownNow();
+            }
+        }
+
+        private void work()
+        {
+            int index;
+            while (!closed && (index = next.getAndIncrement()) < files.size())
+            {
+                BlockingQueue<Object> queue = queues.get(queues.size() == 1 ? 0 : index);
+                try
+                {
+                    queue.put(read(files.get(index), queue));
+                }
+                catch (InterruptedException e)
+                {
+                    // closed
+                    return;
+                }
+            }
+        }
+
+        /*
+         * queues the batches of a file, returns what ends it
+         */
+        private Object read(Path path, BlockingQueue<Object> queue) throws InterruptedException
+        {
+            try (CloseableIterator<Pojo> rows = template.withFile(path.toFile()).rows())
+            {
+                List<Pojo> batch = new ArrayList<>(BATCH);
+                while (rows.hasNext() && !closed)
+                {
+                    batch.add(rows.next());
+                    if (batch.size() == BATCH)
+                    {
+                        queue.put(batch);
+                        batch = new ArrayList<>(BATCH);
+                    }
+                }
+                if (!batch.isEmpty())
+                {
+                    queue.put(batch);
+                }
+                return END;
+            }
+            catch (Exception | Error e)
+            {
+                // whatever kills the reading of the file ends its queue, or the consumer would wait forever
+                return new Failure(path, e);
+            }
+        }
+
+    }
+
+}
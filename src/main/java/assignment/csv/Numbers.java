@@ -0,0 +1,278 @@
+package assignment.csv;
+
+import java.math.BigDecimal;
+
+/**
+ * Parses numbers straight out of a range of characters, without creating a string first. The accepted formats are the
+ * ones of {@link Integer#parseInt(String)}, {@link Long#parseLong(String)}, {@link Double#parseDouble(String)} and
+ * {@link BigDecimal#BigDecimal(String)}; the uncommon inputs (very long mantissas, hexadecimal doubles and such) are
+ * delegated to those methods, so are the error messages.
+ *
+ * @author sergey
+ *
+ */
+final class Numbers
+{
+
+    /** the powers of ten which are exactly representable as doubles */
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19,
+            1e20, 1e21, 1e22 };
+
+    /** mantissas up to this value are exactly representable as doubles */
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private Numbers()
+    {}
+
+    static int parseInt(CharSequence chars, int start, int end)
+    {
+        long value = parseLong(chars, start, end);
+        if (value != (int) value)
+        {
+            throw invalid(chars, start, end);
+        }
+        return (int) value;
+    }
+
+    static long parseLong(CharSequence chars, int start, int end)
+    {
+        int i = start;
+        boolean negative = false;
+        if (i < end)
+        {
+            char first = chars.charAt(i);
+            if (first == '-' || first == '+')
+            {
+                negative = first == '-';
+                i++ ;
+            }
+        }
+        if (i == end)
+        {
+            throw invalid(chars, start, end);
+        }
+        // accumulate negatively, the range of negative longs is larger by one
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long multiplicationLimit = limit / 10;
+        long result = 0;
+        for (; i < end; i++ )
+        {
+            int digit = chars.charAt(i) - '0';
+            if (digit < 0 || digit > 9 || result < multiplicationLimit)
+            {
+                throw invalid(chars, start, end);
+            }
+            result *= 10;
+            if (result < limit + digit)
+            {
+                throw invalid(chars, start, end);
+            }
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+
+    static double parseDouble(CharSequence chars, int start, int end)
+    {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (chars.charAt(i) == '-' || chars.charAt(i) == '+'))
+        {
+            negative = chars.charAt(i) == '-';
+            i++ ;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean point = false;
+        boolean any = false;
+        for (; i < end; i++ )
+        {
+            char c = chars.charAt(i);
+            if (c >= '0' && c <= '9')
+            {
+                any = true;
+                if (mantissa >= MAX_EXACT_MANTISSA / 10)
+                {
+                    return slowDouble(chars, start, end);
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                if (mantissa != 0)
+                {
+                    digits++ ;
+                }
+                if (point)
+                {
+                    scale++ ;
+                }
+            }
+            else if (c == '.' && !point)
+            {
+                point = true;
+            }
+            else
+            {
+                break;
+            }
+        }
+        if (!any)
+        {
+            return slowDouble(chars, start, end);
+        }
+        // a long, so that neither the negation nor the scale can overflow an extreme exponent
+        long exponent = 0;
+        if (i < end)
+        {
+            char c = chars.charAt(i);
+            if (c != 'e' && c != 'E' || i + 1 == end)
+            {
+                return slowDouble(chars, start, end);
+            }
+            try
+            {
+                exponent = parseInt(chars, i + 1, end);
+            }
+            catch (NumberFormatException e)
+            {
+                return slowDouble(chars, start, end);
+            }
+        }
+        exponent -= scale;
+        double value = mantissa;
+        if (exponent < 0 && -exponent < POWERS_OF_TEN.length)
+        {
+            value /= POWERS_OF_TEN[(int) -exponent];
+        }
+        else if (exponent >= 0 && exponent < POWERS_OF_TEN.length)
+        {
+            value *= POWERS_OF_TEN[(int) exponent];
+        }
+        else if (digits > 0)
+        {
+            // beyond the exact powers the result would not be correctly rounded
+            return slowDouble(chars, start, end);
+        }
+        return negative ? -value : value;
+    }
+
+    static BigDecimal parseDecimal(CharSequence chars, int start, int end)
+    {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (chars.charAt(i) == '-' || chars.charAt(i) == '+'))
+        {
+            negative = chars.charAt(i) == '-';
+            i++ ;
+        }
+        long unscaled = 0;
+        int scale = 0;
+        int digits = 0;
+        boolean point = false;
+        for (; i < end; i++ )
+        {
+            char c = chars.charAt(i);
+            if (c >= '0' && c <= '9' && digits < 18)
+            {
+                unscaled = unscaled * 10 + (c - '0');
+                digits++ ;
+                if (point)
+                {
+                    scale++ ;
+                }
+            }
+            else if (c == '.' && !point)
+            {
+                point = true;
+            }
+            else
+            {
+                // exponents, long mantissas and garbage
+                return new BigDecimal(ByteChars.toString(chars, start, end));
+            }
+        }
+        if (digits == 0)
+        {
+            throw invalid(chars, start, end);
+        }
+        return BigDecimal.valueOf(negative ? -unscaled : unscaled, scale);
+    }
+
+    /**
+     * Same as {@link Boolean#parseBoolean(String)}.
+     */
+    static boolean parseBoolean(CharSequence chars, int start, int end)
+    {
+        if (end - start != 4)
+        {
+            return false;
+        }
+        return (chars.charAt(start) | 0x20) == 't' && (chars.charAt(start + 1) | 0x20) == 'r'
+                && (chars.charAt(start + 2) | 0x20) == 'u' && (chars.charAt(start + 3) | 0x20) == 'e';
+    }
+
+    /**
+     * Computes the same hash code as {@link String#hashCode()} would for the range.
+     */
+    static int hash(CharSequence chars, int start, int end)
+    {
+        int hash = 0;
+        for (int i = start; i < end; i++ )
+        {
+            hash = 31 * hash + chars.charAt(i);
+        }
+        return hash;
+    }
+
+    /**
+     * Compares a range of characters to a string.
+     */
+    static boolean equals(CharSequence chars, int start, int end, String string)
+    {
+        if (end - start != string.length())
+        {
+            return false;
+        }
+        for (int i = start; i < end; i++ )
+        {
+            if (chars.charAt(i) != string.charAt(i - start))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static double slowDouble(CharSequence chars, int start, int end)
+    {
+        return Double.parseDouble(ByteChars.toString(chars, start, end));
+    }
+
+    private static NumberFormatException invalid(CharSequence chars, int start, int end)
+    {
+        return new InvalidNumber("For input string: \"" + ByteChars.toString(chars, start, end) + "\"");
+    }
+
+    /**
+     * A number format exception without a stack trace. A dirty file may have thousands of malformed values, the stack
+     * would be the same for all of them and filling it in would cost more than the parsing.
+     */
+    private static final class InvalidNumber extends NumberFormatException
+    {
+
+        private static final long serialVersionUID = 1L;
+
+        InvalidNumber(String message)
+        {
+            super(message);
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace()
+        {
+            return this;
+        }
+
+    }
+
+}
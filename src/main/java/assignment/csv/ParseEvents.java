@@ -0,0 +1,56 @@
+package assignment.csv;
+
+/**
+ * Receives the events of the parsing: a batch for every {@value Meter#BATCH} rows of an iterator (or of a chunk of a
+ * parallel stream) and a slow row for every row which takes longer to parse than the
+ * {@link SomeCoolCsvReader#withSlowRowThreshold(long, java.util.concurrent.TimeUnit) threshold} of the reader. The
+ * implementation is looked up with the {@link java.util.ServiceLoader} once, the <code>csv-parser-jfr</code> module
+ * provides one which emits Java Flight Recorder events. Without an implementation on the class path the reader does
+ * not even count the rows.
+ *
+ * <p>
+ * An implementation is asked whether the events are enabled once per batch, so a recording started in the middle of a
+ * file shows up with the next batch. The interface is public for the implementations only, it is not meant to be
+ * called by the clients of the reader.
+ *
+ * @author sergey
+ *
+ */
+public interface ParseEvents
+{
+
+    /**
+     * Begins a batch of rows.
+     *
+     * @return the batch, passed back to {@link #endBatch(Object, String, long, long)}, <code>null</code> if the batches
+     *         are not recorded right now
+     */
+    Object beginBatch();
+
+    /**
+     * Ends a batch of rows.
+     *
+     * @param batch the batch returned by {@link #beginBatch()}
+     * @param file the path of the file
+     * @param rows the number of rows of the batch
+     * @param length the length of the rows of the batch, in bytes for the {@link SomeCoolCsvReader.Engine#BYTES} engine
+     *            and in characters for the {@link SomeCoolCsvReader.Engine#LINES} engine, without line terminators
+     */
+    void endBatch(Object batch, String file, long rows, long length);
+
+    /**
+     * @return whether the slow rows are recorded right now, the rows of a batch are only timed if they are
+     */
+    boolean slowRowsEnabled();
+
+    /**
+     * Records a row which took longer to parse than the threshold.
+     *
+     * @param file the path of the file
+     * @param row the 1 based number of the row within its iterator (or chunk), blank lines are not counted
+     * @param length the length of the row, see {@link #endBatch(Object, String, long, long)}
+     * @param nanos the time spent parsing the row, in nanoseconds
+     */
+    void slowRow(String file, long row, int length, long nanos);
+
+}
@@ -0,0 +1,191 @@
+package assignment.csv;
+
+import static java.lang.String.format;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * What a reader has been doing, see {@link SomeCoolCsvReader#withStatistics()}. The numbers are summed up over all the
+ * iterators, streams and files of the reader (and of the copies made of it). The counters are {@link LongAdder}s, so
+ * the threads of a parallel stream do not contend on them.
+ *
+ * <p>
+ * Reading the clock for every row would cost as much as tokenizing a short row, so only one row in
+ * {@value Meter#SAMPLE} is timed and its times are multiplied: {@link #getTokenizeNanos()} and
+ * {@link #getBindNanos()} are estimates. The I/O time is the time spent waiting for the next block of the file. A mapped file is paged in while it
+ * is scanned, so most of its I/O shows up as tokenizing, read the file {@link SomeCoolCsvReader#withPrefetch() ahead}
+ * to tell them apart. The {@link SomeCoolCsvReader.Engine#LINES} engine decodes the bytes while reading them, so
+ * its decoding shows up as I/O.
+ *
+ * <p>
+ * The statistics can be {@link #register(String) registered} with the platform MBean server as
+ * <code>assignment.csv:type=ParseStatistics,name=...</code>.
+ *
+ * @author sergey
+ *
+ */
+public final class ParseStatistics implements ParseStatisticsMBean
+{
+
+    final LongAdder rows = new LongAdder();
+    final LongAdder bytes = new LongAdder();
+    final LongAdder blankLines = new LongAdder();
+    final LongAdder extraFields = new LongAdder();
+    final LongAdder badRows = new LongAdder();
+    final LongAdder ioNanos = new LongAdder();
+    final LongAdder tokenizeNanos = new LongAdder();
+    final LongAdder bindNanos = new LongAdder();
+
+    private ObjectName name;
+
+    ParseStatistics()
+    {}
+
+    @Override
+    public long getRows()
+    {
+        return rows.sum();
+    }
+
+    @Override
+    public long getBytes()
+    {
+        return bytes.sum();
+    }
+
+    @Override
+    public long getBlankLines()
+    {
+        return blankLines.sum();
+    }
+
+    @Override
+    public long getExtraFields()
+    {
+        return extraFields.sum();
+    }
+
+    @Override
+    public long getBadRows()
+    {
+        return badRows.sum();
+    }
+
+    @Override
+    public long getIoNanos()
+    {
+        return ioNanos.sum();
+    }
+
+    @Override
+    public long getTokenizeNanos()
+    {
+        return tokenizeNanos.sum();
+    }
+
+    @Override
+    public long getBindNanos()
+    {
+        return bindNanos.sum();
+    }
+
+    /**
+     * Registers the statistics with the platform MBean server.
+     *
+     * @param name the value of the <code>name</code> key of the object name, the file or the feed for example
+     * @throws IllegalArgumentException if the statistics are already registered or the name is taken
+     */
+    public synchronized void register(String name)
+    {
+        if (this.name != null)
+        {
+            throw new IllegalArgumentException(format("The statistics are already registered as %s", this.name));
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try
+        {
+            ObjectName objectName =
+                    new ObjectName("assignment.csv:type=ParseStatistics,name=" + ObjectName.quote(name));
+            server.registerMBean(this, objectName);
+            this.name = objectName;
+        }
+        catch (JMException e)
+        {
+            throw new IllegalArgumentException(format("Unable to register the statistics as %s", name), e);
+        }
+    }
+
+    /**
+     * Removes the statistics from the platform MBean server, does nothing if they are not registered.
+     */
+    public synchronized void unregister()
+    {
+        if (name == null)
+        {
+            return;
+        }
+        try
+        {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        }
+        catch (JMException e)
+        {
+            SomeCoolCsvReader.logger.warn("Unable to unregister {}", name, e);
+        }
+        name = null;
+    }
+
+    /**
+     * @return the object name the statistics are registered with, <code>null</code> if they are not registered
+     */
+    public synchronized ObjectName getObjectName()
+    {
+        return name;
+    }
+
+    /*
+     * counts the bytes returned by the source and the time spent waiting for them
+     */
+    ByteSource meter(ByteSource source)
+    {
+        return new ByteSource()
+        {
+
+            @Override
+            public ByteBuffer next() throws IOException
+            {
+                long start = System.nanoTime();
+                ByteBuffer block = source.next();
+                ioNanos.add(System.nanoTime() - start);
+                if (block != null)
+                {
+                    bytes.add(block.remaining());
+                }
+                return block;
+            }
+
+            @Override
+            public void close() throws IOException
+            {
+                source.close();
+            }
+
+        };
+    }
+
+    @Override
+    public String toString()
+    {
+        return format("ParseStatistics[rows=%d, bytes=%d, blankLines=%d, extraFields=%d, badRows=%d, io=%dns, "
+                + "tokenize=%dns, bind=%dns]", getRows(), getBytes(), getBlankLines(), getExtraFields(), getBadRows(),
+                getIoNanos(), getTokenizeNanos(), getBindNanos());
+    }
+
+}
@@ -0,0 +1,54 @@
+package assignment.csv;
+
+/**
+ * The management interface of the {@link ParseStatistics}, see {@link ParseStatistics#register(String)}. All the
+ * attributes are counters which only grow, a dashboard derives the throughput from their rates.
+ *
+ * @author sergey
+ *
+ */
+public interface ParseStatisticsMBean
+{
+
+    /**
+     * @return the number of rows parsed, the bad ones included
+     */
+    long getRows();
+
+    /**
+     * @return the number of bytes read from the files
+     */
+    long getBytes();
+
+    /**
+     * @return the number of blank lines skipped
+     */
+    long getBlankLines();
+
+    /**
+     * @return the number of fields found past the last column of a row, they are ignored
+     */
+    long getExtraFields();
+
+    /**
+     * @return the number of rows which could not be parsed and have been skipped, see
+     *         {@link SomeCoolCsvReader#withBadRowPolicy(SomeCoolCsvReader.BadRowPolicy)}
+     */
+    long getBadRows();
+
+    /**
+     * @return the time spent waiting for the data, in nanoseconds
+     */
+    long getIoNanos();
+
+    /**
+     * @return the (estimated) time spent splitting the rows into fields, in nanoseconds
+     */
+    long getTokenizeNanos();
+
+    /**
+     * @return the (estimated) time spent converting the fields and setting them to the POJOs, in nanoseconds
+     */
+    long getBindNanos();
+
+}
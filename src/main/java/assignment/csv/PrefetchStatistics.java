@@ -0,0 +1,70 @@
+package assignment.csv;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * What the read ahead of a reader has been doing, see {@link SomeCoolCsvReader#withPrefetch(int, int)}. The numbers
+ * are summed up over all the files read by the reader (and by the copies made of it), so they can be compared between
+ * runs with different settings:
+ *
+ * <ul>
+ * <li>a large {@link #getParseStallNanos() parse stall} means that the parsing waits for the disk, a larger block (or
+ * a faster disk) helps;</li>
+ * <li>a large {@link #getReadStallNanos() read stall} means that the reading waits for the parsing to free a buffer,
+ * which is fine: the disk is not the bottleneck, the depth may even be reduced.</li>
+ * </ul>
+ *
+ * @author sergey
+ *
+ */
+public final class PrefetchStatistics
+{
+
+    final LongAdder parseStall = new LongAdder();
+    final LongAdder readStall = new LongAdder();
+    final LongAdder blocks = new LongAdder();
+    final LongAdder bytes = new LongAdder();
+
+    PrefetchStatistics()
+    {}
+
+    /**
+     * @return the time the parsing threads have waited for a block to be read, in nanoseconds
+     */
+    public long getParseStallNanos()
+    {
+        return parseStall.sum();
+    }
+
+    /**
+     * @return the time the reading threads have waited for a free buffer, in nanoseconds
+     */
+    public long getReadStallNanos()
+    {
+        return readStall.sum();
+    }
+
+    /**
+     * @return the number of blocks read
+     */
+    public long getBlocks()
+    {
+        return blocks.sum();
+    }
+
+    /**
+     * @return the number of bytes read
+     */
+    public long getBytes()
+    {
+        return bytes.sum();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("PrefetchStatistics[blocks=%d, bytes=%d, parseStall=%dns, readStall=%dns]", getBlocks(),
+                getBytes(), getParseStallNanos(), getReadStallNanos());
+    }
+
+}
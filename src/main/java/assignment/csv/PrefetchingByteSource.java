@@ -0,0 +1,286 @@
+package assignment.csv;
+
+import static java.lang.Math.min;
+import static java.lang.String.format;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Reads a byte range of a file ahead of the parsing, on a dedicated thread, see
+ * {@link SomeCoolCsvReader#withPrefetch(int, int)}. The thread reads blocks into a fixed number of direct buffers and
+ * passes them on through a {@link SpscRing}; the parsing thread passes every buffer back once it is done with it. As
+ * long as the reading keeps ahead, handing over a block costs a few volatile loads and stores and nothing else.
+ *
+ * <p>
+ * A thread which finds its ring empty spins briefly and then parks for short periods, the other thread unparks it only
+ * if it has announced that it is waiting. The time the parsing thread waits for data (and the time the reading thread
+ * waits for a free buffer) is added to the {@link PrefetchStatistics}.
+ *
+ * <p>
+ * The reading thread ends when the range has been read, when the source is closed or when the source is no longer
+ * reachable (an iterator abandoned half way through the file). A file which ends before the range does has been
+ * truncated while it was read, the parsing thread gets an {@link EOFException} then.
+ *
+ * @author sergey
+ *
+ */
+final class PrefetchingByteSource implements ByteSource
+{
+
+    private static final int SPINS = 64;
+    private static final long PARK_NANOS = 50_000;
+    private static final AtomicInteger threads = new AtomicInteger();
+
+    private final Reader reader;
+    private final Thread thread;
+    private ByteBuffer current;
+    private boolean ended;
+
+    /**
+     * @param path the file
+     * @param from the offset of the first byte to read
+     * @param to the offset after the last byte to read
+     * @param depth the number of buffers
+     * @param block the size of a buffer
+     * @param statistics where to add the stall times to
+     */
+    PrefetchingByteSource(Path path, long from, long to, int depth, int block, PrefetchStatistics statistics)
+    {
+        this.reader = new Reader(path, from, to, depth, block, statistics, this);
+        this.thread = new Thread(reader, "csv-prefetch-" + threads.incrementAndGet());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public ByteBuffer next() throws IOException
+    {
+        if (current != null)
+        {
+            reader.free.offer(current);
+            current = null;
+            if (reader.readerWaiting)
+            {
+                LockSupport.unpark(thread);
+            }
+        }
+        if (ended)
+        {
+            return null;
+        }
+        ByteBuffer block = reader.filled.poll();
+        if (block == null)
+        {
+            block = await();
+        }
+        if (block == null)
+        {
+            ended = true;
+            Throwable failure = reader.failure;
+            if (failure != null)
+            {
+                throw failure instanceof IOException ? (IOException) failure : new IOException(failure);
+            }
+            return null;
+        }
+        current = block;
+        return block;
+    }
+
+    /*
+     * the slow path: waits for the reading thread, null at the end of the range
+     */
+    private ByteBuffer await() throws IOException
+    {
+        long start = System.nanoTime();
+        try
+        {
+            for (int i = 0; i < SPINS; i++ )
+            {
+                ByteBuffer block = reader.filled.poll();
+                if (block != null)
+                {
+                    return block;
+                }
+            }
+            reader.parser = Thread.currentThread();
+            while (true)
+            {
+                boolean done = reader.done;
+                ByteBuffer block = reader.filled.poll();
+                if (block != null || done)
+                {
+                    return block;
+                }
+                reader.parserWaiting = true;
+                if (reader.filled.poll() == null && !reader.done)
+                {
+                    LockSupport.parkNanos(this, PARK_NANOS);
+                }
+                reader.parserWaiting = false;
+                if (Thread.interrupted())
+                {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for data");
+                }
+            }
+        }
+        finally
+        {
+            reader.statistics.parseStall.add(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        reader.closed = true;
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * The reading thread. Does not refer to the source, so that an abandoned source can be collected (and the thread
+     * notices it).
+     */
+    private static final class Reader implements Runnable
+    {
+
+        final SpscRing<ByteBuffer> filled;
+        final SpscRing<ByteBuffer> free;
+        final PrefetchStatistics statistics;
+
+        private final Path path;
+        private final long from;
+        private final long to;
+        private final int depth;
+        private final int block;
+        private final WeakReference<PrefetchingByteSource> owner;
+        private int allocated;
+
+        volatile boolean closed;
+        volatile boolean done;
+        volatile Throwable failure;
+        volatile Thread parser;
+        volatile boolean parserWaiting;
+        volatile boolean readerWaiting;
+
+        Reader(Path path, long from, long to, int depth, int block, PrefetchStatistics statistics,
+                PrefetchingByteSource owner)
+        {
+            this.path = path;
+            this.from = from;
+            this.to = to;
+            this.depth = depth;
+            this.block = block;
+            this.statistics = statistics;
+            this.filled = new SpscRing<>(depth);
+            this.free = new SpscRing<>(depth);
+            this.owner = new WeakReference<>(owner);
+        }
+
+        @Override
+        public void run()
+        {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+            {
+                long position = from;
+                while (position < to && !abandoned())
+                {
+                    ByteBuffer buffer = buffer();
+                    if (buffer == null)
+                    {
+                        return;
+                    }
+                    buffer.clear();
+                    buffer.limit((int) min(block, to - position));
+                    int read = 0;
+                    while (buffer.hasRemaining() && (read = channel.read(buffer, position + buffer.position())) >= 0)
+                    {}
+                    if (read < 0)
+                    {
+                        // the parser must not take a shortened file for a complete one
+                        throw new EOFException(format("The file %s has been truncated, it ends at %d instead of %d",
+                                path, position + buffer.position(), to));
+                    }
+                    buffer.flip();
+                    position += buffer.remaining();
+                    statistics.blocks.increment();
+                    statistics.bytes.add(buffer.remaining());
+                    // there are never more buffers than slots
+                    filled.offer(buffer);
+                    wakeParser();
+                }
+            }
+            catch (IOException | RuntimeException e)
+            {
+                failure = e;
+            }
+            finally
+            {
+                done = true;
+                wakeParser();
+            }
+        }
+
+        private void wakeParser()
+        {
+            if (parserWaiting)
+            {
+                LockSupport.unpark(parser);
+            }
+        }
+
+        private boolean abandoned()
+        {
+            return closed || owner.get() == null;
+        }
+
+        /*
+         * a new buffer until there are enough of them, then one passed back by the parser
+         */
+        private ByteBuffer buffer()
+        {
+            if (allocated < depth)
+            {
+                allocated++ ;
+                return ByteBuffer.allocateDirect(block);
+            }
+            ByteBuffer buffer = free.poll();
+            if (buffer != null)
+            {
+                return buffer;
+            }
+            long start = System.nanoTime();
+            try
+            {
+                while (true)
+                {
+                    readerWaiting = true;
+                    buffer = free.poll();
+                    if (buffer != null || abandoned())
+                    {
+                        return buffer;
+                    }
+                    LockSupport.parkNanos(this, PARK_NANOS);
+                    readerWaiting = false;
+                }
+            }
+            finally
+            {
+                readerWaiting = false;
+                statistics.readStall.add(System.nanoTime() - start);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,24 @@
+package assignment.csv;
+
+/**
+ * Receives the rows which could not be parsed, see {@link SomeCoolCsvReader#withQuarantine(Quarantine)}. The threads
+ * of a parallel stream call it concurrently. An exception thrown by the quarantine ends the iteration.
+ *
+ * @author sergey
+ *
+ */
+@FunctionalInterface
+public interface Quarantine
+{
+
+    /**
+     * Called for every row which could not be parsed.
+     *
+     * @param line the raw line
+     * @param row the 1 based number of the row within its iterator, blank lines are not counted; the rows of a parallel
+     *            stream are numbered within their chunk
+     * @param cause why the row could not be parsed, without a stack trace if it is a malformed value
+     */
+    void accept(String line, long row, Exception cause);
+
+}
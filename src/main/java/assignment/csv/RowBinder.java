@@ -0,0 +1,491 @@
+package assignment.csv;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+
+import assignment.csv.SomeCoolCsvReader.BooleanColumn;
+import assignment.csv.SomeCoolCsvReader.Column;
+import assignment.csv.SomeCoolCsvReader.CsvColumn;
+import assignment.csv.SomeCoolCsvReader.DecimalColumn;
+import assignment.csv.SomeCoolCsvReader.DoubleColumn;
+import assignment.csv.SomeCoolCsvReader.EnumColumn;
+import assignment.csv.SomeCoolCsvReader.IntColumn;
+import assignment.csv.SomeCoolCsvReader.LongColumn;
+import assignment.csv.SomeCoolCsvReader.NoOpColumn;
+
+/**
+ * Sets the fields of a line to a POJO. A loop over the columns shares its call sites among all the POJO classes, so
+ * once a few of them have been read the calls of the setters are megamorphic and cannot be inlined any more. Therefore
+ * a class is spun for every set of columns, its single method sets the columns one after the other in straight-line
+ * code, every setter called from a call site of its own which only ever sees that setter. The JIT inlines each of them
+ * just like it would inline the setters called by handwritten code.
+ *
+ * <p>
+ * The class is written byte by byte, it has no branches so it needs no stack map frames, and it is defined as a hidden
+ * class (Java 15 and later) or an anonymous class (Java 8 to 16) in the package of this class, so that it can reach the
+ * package private columns and the class can be unloaded together with its reader. When neither is possible (or a line
+ * misses some of the columns) the binder falls back to the loop.
+ *
+ * @author sergey
+ *
+ */
+class RowBinder
+{
+
+    private static final String COLUMNS = "[L" + internalName(Column.class) + ";";
+    private static final String CHARS = "(I)Ljava/lang/CharSequence;";
+    private static final String RANGE = "(Ljava/lang/CharSequence;II)";
+
+    private static final Definer definer = definer();
+
+    final Column[] columns;
+
+    RowBinder(Column[] columns)
+    {
+        this.columns = columns;
+    }
+
+    /**
+     * @param columns the columns
+     * @return a binder spun for the columns, or the loop if none can be spun
+     */
+    static RowBinder of(Column[] columns)
+    {
+        if (definer != null)
+        {
+            try
+            {
+                byte[] bytes = spin(columns);
+                if (bytes != null)
+                {
+                    Class< ? > spun = definer.define(bytes);
+                    return (RowBinder) spun.getDeclaredConstructor(Column[].class).newInstance((Object) columns);
+                }
+            }
+            catch (ReflectiveOperationException | LinkageError e)
+            {
+                SomeCoolCsvReader.logger.debug("Unable to spin a binder for {}, looping over the columns",
+                        (Object) columns, e);
+            }
+        }
+        return new RowBinder(columns);
+    }
+
+    /**
+     * Sets the fields of a line.
+     *
+     * @param target the POJO
+     * @param fields the fields of the line
+     * @param bound the number of columns to set, all of them unless the line is short
+     */
+    final void bind(Object target, Fields fields, int bound)
+    {
+        if (bound == columns.length)
+        {
+            bindAll(target, fields);
+            return;
+        }
+        for (int i = 0; i < bound; i++ )
+        {
+            columns[i].set(target, fields.chars(i), fields.start(i), fields.end(i));
+        }
+    }
+
+    /**
+     * Sets all the columns, overridden by the spun classes.
+     *
+     * @param target the POJO
+     * @param fields the fields of the line, at least as many as there are columns
+     */
+    void bindAll(Object target, Fields fields)
+    {
+        for (int i = 0; i < columns.length; i++ )
+        {
+            columns[i].set(target, fields.chars(i), fields.start(i), fields.end(i));
+        }
+    }
+
+    /*
+     * writes the class file of a subclass overriding bindAll, returns null if the method would be too large
+     */
+    static byte[] spin(Column[] columns)
+    {
+        ClassFile file = new ClassFile();
+        String self = internalName(RowBinder.class);
+        String fields = internalName(Fields.class);
+        int columnsField = file.member(9, self, "columns", COLUMNS);
+
+        Code code = new Code();
+        for (int i = 0; i < columns.length; i++ )
+        {
+            Class< ? > type = columns[i].getClass();
+            if (type == NoOpColumn.class)
+            {
+                continue;
+            }
+            String setter;
+            String setterType;
+            String parse = null;
+            String value;
+            int slots;
+            if (type == IntColumn.class)
+            {
+                setter = "intSetter";
+                setterType = internalName(Binder.IntSetter.class);
+                value = "I";
+                slots = 3;
+            }
+            else if (type == LongColumn.class)
+            {
+                setter = "longSetter";
+                setterType = internalName(Binder.LongSetter.class);
+                value = "J";
+                slots = 4;
+            }
+            else if (type == DoubleColumn.class)
+            {
+                setter = "doubleSetter";
+                setterType = internalName(Binder.DoubleSetter.class);
+                value = "D";
+                slots = 4;
+            }
+            else if (type == BooleanColumn.class)
+            {
+                setter = "booleanSetter";
+                setterType = internalName(Binder.BooleanSetter.class);
+                value = "Z";
+                slots = 3;
+                parse = "parseBoolean";
+            }
+            else if (type == CsvColumn.class || type == DecimalColumn.class || type == EnumColumn.class)
+            {
+                setter = "objectSetter";
+                setterType = internalName(Binder.ObjectSetter.class);
+                value = "Ljava/lang/Object;";
+                slots = 3;
+            }
+            else
+            {
+                // a column of another kind sets itself
+                code.column(file, columnsField, i, internalName(Column.class));
+                code.op(0x2b); // aload_1
+                code.range(file, fields, i);
+                code.op(0xb9).u2(file.member(11, internalName(Column.class), "set",
+                        "(Ljava/lang/Object;Ljava/lang/CharSequence;II)V")).op(5).op(0);
+                continue;
+            }
+            // columns[i].setter.set(target, value of fields i)
+            String columnType = internalName(type);
+            code.column(file, columnsField, i, columnType);
+            code.op(0xb4).u2(file.member(9, columnType, setter, "L" + setterType + ";")); // getfield
+            code.op(0x2b); // aload_1
+            if (value.startsWith("L"))
+            {
+                // the column converts the value, called from a call site of its own too
+                code.column(file, columnsField, i, internalName(CsvColumn.class));
+                code.range(file, fields, i);
+                code.op(0xb6).u2(file.member(10, internalName(CsvColumn.class), "value", RANGE + value));
+            }
+            else
+            {
+                code.range(file, fields, i);
+                code.op(0xb8).u2(parse == null ? file.member(10, columnType, "parse", RANGE + value)
+                        : file.member(10, internalName(Numbers.class), parse, RANGE + value));
+            }
+            code.op(0xb9).u2(file.member(11, setterType, "set", "(Ljava/lang/Object;" + value + ")V")).op(slots).op(0);
+        }
+        code.op(0xb1); // return
+        if (code.length() > 0xffff)
+        {
+            return null;
+        }
+
+        Code constructor = new Code();
+        constructor.op(0x2a).op(0x2b).op(0xb7).u2(file.member(10, self, "<init>", "(" + COLUMNS + ")V")).op(0xb1);
+        return file.write(self + "$Spun", self, new String[] { "<init>", "bindAll" },
+                new String[] { "(" + COLUMNS + ")V", "(Ljava/lang/Object;L" + fields + ";)V" },
+                new Code[] { constructor, code }, new int[] { 2, 8 }, new int[] { 2, 3 });
+    }
+
+    private static String internalName(Class< ? > type)
+    {
+        return type.getName().replace('.', '/');
+    }
+
+    /**
+     * Defines a class in the package of the binder.
+     */
+    private interface Definer
+    {
+
+        Class< ? > define(byte[] bytes) throws ReflectiveOperationException;
+
+    }
+
+    /*
+     * hidden classes since Java 15, anonymous classes of the Unsafe before Java 17, null if neither is available
+     */
+    private static Definer definer()
+    {
+        Lookup lookup = MethodHandles.lookup();
+        try
+        {
+            Class< ? > option = Class.forName("java.lang.invoke.MethodHandles$Lookup$ClassOption");
+            Object noOptions = Array.newInstance(option, 0);
+            Method defineHidden = Lookup.class.getMethod("defineHiddenClass", byte[].class, boolean.class,
+                    noOptions.getClass());
+            return bytes -> ((Lookup) defineHidden.invoke(lookup, bytes, true, noOptions)).lookupClass();
+        }
+        catch (ReflectiveOperationException | LinkageError e)
+        {
+            // before Java 15
+        }
+        try
+        {
+            Class< ? > unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method defineAnonymous = unsafeClass.getMethod("defineAnonymousClass", Class.class, byte[].class,
+                    Object[].class);
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            Object unsafe = field.get(null);
+            return bytes -> (Class< ? >) defineAnonymous.invoke(unsafe, RowBinder.class, bytes, null);
+        }
+        catch (ReflectiveOperationException | LinkageError | RuntimeException e)
+        {
+            SomeCoolCsvReader.logger.debug("Unable to define classes, looping over the columns", e);
+            return null;
+        }
+    }
+
+    /**
+     * The bytecode of a method.
+     */
+    private static final class Code
+    {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        Code op(int op)
+        {
+            bytes.write(op);
+            return this;
+        }
+
+        Code u2(int value)
+        {
+            bytes.write(value >>> 8);
+            bytes.write(value);
+            return this;
+        }
+
+        int length()
+        {
+            return bytes.size();
+        }
+
+        byte[] toByteArray()
+        {
+            return bytes.toByteArray();
+        }
+
+        void push(ClassFile file, int value)
+        {
+            if (value <= 5)
+            {
+                op(0x03 + value); // iconst_n
+            }
+            else if (value <= Byte.MAX_VALUE)
+            {
+                op(0x10).op(value); // bipush
+            }
+            else if (value <= Short.MAX_VALUE)
+            {
+                op(0x11).u2(value); // sipush
+            }
+            else
+            {
+                op(0x13).u2(file.integer(value)); // ldc_w
+            }
+        }
+
+        /*
+         * pushes columns[i] cast to the type
+         */
+        void column(ClassFile file, int columnsField, int i, String type)
+        {
+            op(0x2a).op(0xb4).u2(columnsField); // aload_0, getfield
+            push(file, i);
+            op(0x32); // aaload
+            op(0xc0).u2(file.type(type)); // checkcast
+        }
+
+        /*
+         * pushes fields.chars(i), fields.start(i), fields.end(i)
+         */
+        void range(ClassFile file, String fields, int i)
+        {
+            String[] names = { "chars", "start", "end" };
+            String[] types = { CHARS, "(I)I", "(I)I" };
+            for (int n = 0; n < names.length; n++ )
+            {
+                op(0x2c); // aload_2
+                push(file, i);
+                op(0xb6).u2(file.member(10, fields, names[n], types[n])); // invokevirtual
+            }
+        }
+
+    }
+
+    /**
+     * The constant pool of a class and its layout, just what the spun binders need.
+     */
+    private static final class ClassFile
+    {
+
+        private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(pool);
+        private final Map<String, Integer> constants = new HashMap<>();
+        private int count = 1;
+
+        int utf8(String value)
+        {
+            return constant("1" + value, () -> {
+                out.writeByte(1);
+                out.writeUTF(value);
+            });
+        }
+
+        int integer(int value)
+        {
+            return constant("3" + value, () -> {
+                out.writeByte(3);
+                out.writeInt(value);
+            });
+        }
+
+        int type(String internalName)
+        {
+            int name = utf8(internalName);
+            return constant("7" + internalName, () -> {
+                out.writeByte(7);
+                out.writeShort(name);
+            });
+        }
+
+        /**
+         * @param tag 9 for a field, 10 for a method, 11 for an interface method
+         */
+        int member(int tag, String owner, String name, String descriptor)
+        {
+            int type = type(owner);
+            int nameIndex = utf8(name);
+            int descriptorIndex = utf8(descriptor);
+            int nameAndType = constant("12" + name + ":" + descriptor, () -> {
+                out.writeByte(12);
+                out.writeShort(nameIndex);
+                out.writeShort(descriptorIndex);
+            });
+            return constant(tag + owner + "." + name + ":" + descriptor, () -> {
+                out.writeByte(tag);
+                out.writeShort(type);
+                out.writeShort(nameAndType);
+            });
+        }
+
+        private int constant(String key, Entry entry)
+        {
+            Integer index = constants.get(key);
+            if (index != null)
+            {
+                return index;
+            }
+            try
+            {
+                entry.write();
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+            constants.put(key, count);
+            return count++ ;
+        }
+
+        /*
+         * a final class of Java 8 without fields, interfaces and attributes
+         */
+        byte[] write(String name, String superName, String[] methods, String[] descriptors, Code[] codes,
+                int[] maxStacks, int[] maxLocals)
+        {
+            int thisClass = type(name);
+            int superClass = type(superName);
+            int codeName = utf8("Code");
+            int[] names = new int[methods.length];
+            int[] types = new int[methods.length];
+            for (int m = 0; m < methods.length; m++ )
+            {
+                names[m] = utf8(methods[m]);
+                types[m] = utf8(descriptors[m]);
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream file = new DataOutputStream(bytes))
+            {
+                file.writeInt(0xcafebabe);
+                file.writeShort(0);
+                file.writeShort(52);
+                file.writeShort(count);
+                out.flush();
+                pool.writeTo(file);
+                // public final super
+                file.writeShort(0x0031);
+                file.writeShort(thisClass);
+                file.writeShort(superClass);
+                file.writeShort(0);
+                file.writeShort(0);
+                file.writeShort(methods.length);
+                for (int m = 0; m < methods.length; m++ )
+                {
+                    byte[] code = codes[m].toByteArray();
+                    // public
+                    file.writeShort(0x0001);
+                    file.writeShort(names[m]);
+                    file.writeShort(types[m]);
+                    file.writeShort(1);
+                    file.writeShort(codeName);
+                    file.writeInt(12 + code.length);
+                    file.writeShort(maxStacks[m]);
+                    file.writeShort(maxLocals[m]);
+                    file.writeInt(code.length);
+                    file.write(code);
+                    // no exception table, no attributes
+                    file.writeShort(0);
+                    file.writeShort(0);
+                }
+                file.writeShort(0);
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+            return bytes.toByteArray();
+        }
+
+        private interface Entry
+        {
+
+            void write() throws IOException;
+
+        }
+
+    }
+
+}
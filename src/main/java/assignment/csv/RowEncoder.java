@@ -0,0 +1,279 @@
+package assignment.csv;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+
+/**
+ * Encodes rows straight into a re-usable array of bytes, the opposite of the {@link Fields}. ASCII characters are
+ * copied into the array as they are, only the runs of other characters go through the {@link CharsetEncoder}, and
+ * integers are written digit by digit, so nothing is allocated per row for the values of those types once the array
+ * has grown to the size of a block.
+ *
+ * <p>
+ * A value is quoted only when the reader would not get it back otherwise: when it contains the delimiter, a quote or a
+ * line break, or starts or ends with a blank which the reader would trim.
+ *
+ * <p>
+ * Instances are not thread safe.
+ *
+ * @author sergey
+ *
+ */
+final class RowEncoder
+{
+
+    private static final byte[] MIN_LONG = Long.toString(Long.MIN_VALUE).getBytes(US_ASCII);
+
+    private final char delimiter;
+    private final int quote;
+    private final boolean backslash;
+    /** whether integers can be written as they are, which is not the case if the delimiter is a digit or a sign */
+    private final boolean plainNumbers;
+    private final CharsetEncoder encoder;
+
+    private byte[] bytes;
+    private int length;
+    private int rowStart;
+
+    /**
+     * @param dialect the delimiter and the quoting
+     * @param charset the charset, UTF-8 or another charset which keeps the ASCII range as is
+     * @param capacity the initial capacity of the array
+     */
+    RowEncoder(Dialect dialect, Charset charset, int capacity)
+    {
+        this.delimiter = dialect.delimiter;
+        this.quote = dialect.quote;
+        this.backslash = dialect.backslash;
+        this.plainNumbers = !number(delimiter) && !number(quote);
+        this.encoder = charset.newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.bytes = new byte[capacity];
+    }
+
+    private static boolean number(int c)
+    {
+        return c >= '0' && c <= '9' || c == '-';
+    }
+
+    /**
+     * @return the number of bytes encoded
+     */
+    int length()
+    {
+        return length;
+    }
+
+    /**
+     * Discards the bytes encoded.
+     */
+    void clear()
+    {
+        length = 0;
+    }
+
+    /**
+     * Writes the bytes encoded to the channel and discards them.
+     *
+     * @param channel the channel
+     * @throws IOException if writing fails
+     */
+    void writeTo(FileChannel channel) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, length);
+        while (buffer.hasRemaining())
+        {
+            channel.write(buffer);
+        }
+        length = 0;
+    }
+
+    /**
+     * Starts a row.
+     */
+    void begin()
+    {
+        rowStart = length;
+    }
+
+    void delimiter()
+    {
+        ensure(1);
+        bytes[length++ ] = (byte) delimiter;
+    }
+
+    /**
+     * Ends a row with a line feed.
+     *
+     * @throws IllegalArgumentException if the row is empty and cannot be quoted, the reader would skip it as a blank
+     *             line
+     */
+    void end()
+    {
+        ensure(3);
+        if (length == rowStart)
+        {
+            if (quote < 0)
+            {
+                throw new IllegalArgumentException(
+                        "An empty row cannot be written without quoting, it would be read as a blank line");
+            }
+            bytes[length++ ] = (byte) quote;
+            bytes[length++ ] = (byte) quote;
+        }
+        bytes[length++ ] = '\n';
+    }
+
+    void value(long value)
+    {
+        if (!plainNumbers)
+        {
+            value(Long.toString(value));
+            return;
+        }
+        if (value == Long.MIN_VALUE)
+        {
+            ensure(MIN_LONG.length);
+            System.arraycopy(MIN_LONG, 0, bytes, length, MIN_LONG.length);
+            length += MIN_LONG.length;
+            return;
+        }
+        ensure(20);
+        if (value < 0)
+        {
+            bytes[length++ ] = '-';
+            value = -value;
+        }
+        int end = length + digits(value);
+        for (int i = end - 1; i >= length; i-- )
+        {
+            bytes[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        length = end;
+    }
+
+    private static int digits(long value)
+    {
+        int digits = 1;
+        for (long limit = 10; digits < 19 && value >= limit; limit *= 10)
+        {
+            digits++ ;
+        }
+        return digits;
+    }
+
+    /**
+     * Writes a value, quoted if needed. The empty string is written as an empty field, which the reader reads as
+     * <code>null</code>.
+     *
+     * @param value the value
+     * @throws IllegalArgumentException if the value needs quotes but the quoting is off
+     */
+    void value(String value)
+    {
+        int length = value.length();
+        if (length == 0)
+        {
+            return;
+        }
+        if (!needsQuotes(value, length))
+        {
+            text(value, 0, length);
+            return;
+        }
+        if (quote < 0)
+        {
+            throw new IllegalArgumentException(format("The value \"%s\" needs quotes, but the quoting is off", value));
+        }
+        ensure(1);
+        bytes[this.length++ ] = (byte) quote;
+        int start = 0;
+        for (int i = 0; i < length; i++ )
+        {
+            char c = value.charAt(i);
+            if (c == quote || backslash && c == '\\')
+            {
+                text(value, start, i);
+                ensure(1);
+                bytes[this.length++ ] = (byte) (backslash ? '\\' : quote);
+                start = i;
+            }
+        }
+        text(value, start, length);
+        ensure(1);
+        bytes[this.length++ ] = (byte) quote;
+    }
+
+    private boolean needsQuotes(String value, int length)
+    {
+        if (value.charAt(0) <= ' ' || value.charAt(length - 1) <= ' ')
+        {
+            return true;
+        }
+        for (int i = 0; i < length; i++ )
+        {
+            char c = value.charAt(i);
+            if (c == delimiter || c == quote || c == '\n' || c == '\r')
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * copies the ASCII characters, encodes the runs of the others
+     */
+    private void text(String value, int from, int to)
+    {
+        ensure(to - from);
+        int i = from;
+        while (i < to)
+        {
+            char c = value.charAt(i);
+            if (c < 0x80)
+            {
+                bytes[length++ ] = (byte) c;
+                i++ ;
+                continue;
+            }
+            int end = i + 1;
+            while (end < to && value.charAt(end) >= 0x80)
+            {
+                end++ ;
+            }
+            encode(value, i, end);
+            ensure(to - end);
+            i = end;
+        }
+    }
+
+    private void encode(String value, int from, int to)
+    {
+        ensure((int) Math.ceil(encoder.maxBytesPerChar() * (to - from)));
+        ByteBuffer out = ByteBuffer.wrap(bytes, length, bytes.length - length);
+        encoder.reset();
+        encoder.encode(CharBuffer.wrap(value, from, to), out, true);
+        encoder.flush(out);
+        length = out.position();
+    }
+
+    private void ensure(int free)
+    {
+        if (bytes.length - length < free)
+        {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + free));
+        }
+    }
+
+}
@@ -0,0 +1,302 @@
+package assignment.csv;
+
+import static java.lang.String.format;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import assignment.csv.SomeCoolCsvReader.BadRowPolicy;
+
+/**
+ * The byte offsets of the records of a file, see {@link SomeCoolCsvReader#index(int, Path)}. Only the offset of every
+ * k-th record is kept: a row is found by a seek to the closest record before it which is indexed and by scanning (not
+ * parsing) at most k - 1 records from there. The index also knows the exact number of records.
+ *
+ * <p>
+ * The index is saved to a sidecar file as deltas of the offsets, in the variable length encoding of protocol buffers.
+ * Records are rarely longer than a few hundred bytes, so with the default of one offset every
+ * {@value #DEFAULT_EVERY} records an offset costs about three bytes and the index of a billion rows takes some 3 MB
+ * on disk (and 8 MB in memory). The sidecar file records the size and the modification time of the file (and the
+ * dialect, which decides where the records are), the index is built again when any of them differs.
+ *
+ * <p>
+ * Instances are immutable and thread safe. The index is meaningless once the file changes: rebuild it then.
+ *
+ * @param <Pojo> the type of the rows
+ *
+ * @author sergey
+ */
+public final class RowIndex<Pojo>
+{
+
+    /**
+     * The default number of records per indexed offset.
+     */
+    public static final int DEFAULT_EVERY = 1024;
+
+    private static final int MAGIC = 0x43535649; // CSVI
+    private static final int VERSION = 2;
+
+    private final SomeCoolCsvReader<Pojo> reader;
+    private final int every;
+    private final long size;
+    private final long[] offsets;
+
+    private RowIndex(SomeCoolCsvReader<Pojo> reader, int every, long size, long[] offsets)
+    {
+        this.reader = reader;
+        this.every = every;
+        this.size = size;
+        this.offsets = offsets;
+    }
+
+    /**
+     * Scans the records of a file.
+     */
+    static <Pojo> RowIndex<Pojo> build(SomeCoolCsvReader<Pojo> reader, ByteLines lines, int every) throws IOException
+    {
+        long[] offsets = new long[16];
+        int count = 0;
+        long size = 0;
+        try (ByteLines l = lines)
+        {
+            while (l.next())
+            {
+                if (size % every == 0)
+                {
+                    if (count == offsets.length)
+                    {
+                        offsets = Arrays.copyOf(offsets, count * 2);
+                    }
+                    offsets[count++ ] = l.offset();
+                }
+                size++ ;
+            }
+        }
+        return new RowIndex<>(reader, every, size, Arrays.copyOf(offsets, count));
+    }
+
+    /**
+     * Reads a sidecar file written by {@link #save(Path, long, long, Dialect)}.
+     *
+     * @return the index or <code>null</code> if there is no sidecar file or it does not match the file
+     */
+    static <Pojo> RowIndex<Pojo> load(SomeCoolCsvReader<Pojo> reader, Path sidecar, int every, long length,
+            long modified, Dialect dialect) throws IOException
+    {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(sidecar)))
+        {
+            if (in.readInt() != MAGIC || in.readUnsignedByte() != VERSION || in.readLong() != length
+                    || in.readLong() != modified || in.readChar() != dialect.delimiter || in.readInt() != dialect.quote
+                    || in.readBoolean() != dialect.backslash || in.readInt() != every)
+            {
+                return null;
+            }
+            long size = in.readLong();
+            long[] offsets = new long[(int) ((size + every - 1) / every)];
+            long offset = 0;
+            for (int i = 0; i < offsets.length; i++ )
+            {
+                offset += readVarLong(in);
+                offsets[i] = offset;
+            }
+            return new RowIndex<>(reader, every, size, offsets);
+        }
+        catch (NoSuchFileException e)
+        {
+            return null;
+        }
+        catch (EOFException e)
+        {
+            SomeCoolCsvReader.logger.warn("The index file {} is truncated", sidecar);
+            return null;
+        }
+    }
+
+    /**
+     * Writes the index to a sidecar file, along with what it is valid for.
+     */
+    void save(Path sidecar, long length, long modified, Dialect dialect) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32 + offsets.length * 3);
+        try (DataOutputStream out = new DataOutputStream(bytes))
+        {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(length);
+            out.writeLong(modified);
+            out.writeChar(dialect.delimiter);
+            out.writeInt(dialect.quote);
+            out.writeBoolean(dialect.backslash);
+            out.writeInt(every);
+            out.writeLong(size);
+            long previous = 0;
+            for (long offset : offsets)
+            {
+                writeVarLong(out, offset - previous);
+                previous = offset;
+            }
+        }
+        Utils.replace(sidecar, bytes.toByteArray());
+    }
+
+    private static void writeVarLong(OutputStream out, long value) throws IOException
+    {
+        while ((value & ~0x7fL) != 0)
+        {
+            out.write((int) (value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(InputStream in) throws IOException
+    {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7)
+        {
+            int b = in.read();
+            if (b < 0)
+            {
+                throw new EOFException();
+            }
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0)
+            {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable length number");
+    }
+
+    /**
+     * @return the exact number of records of the file
+     */
+    public long size()
+    {
+        return size;
+    }
+
+    /**
+     * @return the number of records per indexed offset
+     */
+    public int every()
+    {
+        return every;
+    }
+
+    /**
+     * Returns the checkpoint of a row, from which a {@link Cursor} can read on.
+     *
+     * @param row the zero based number of the record, {@link #size()} for the end of the file
+     * @return the checkpoint
+     * @throws IndexOutOfBoundsException if there is no such row
+     */
+    public Checkpoint checkpoint(long row)
+    {
+        check(row, size + 1);
+        try (Cursor<Pojo> cursor = seek(row))
+        {
+            return cursor.checkpoint();
+        }
+        catch (IOException e)
+        {
+            throw Utils.unchecked(e);
+        }
+    }
+
+    /**
+     * Parses a single row.
+     *
+     * @param row the zero based number of the record
+     * @return the POJO
+     * @throws IndexOutOfBoundsException if there is no such row
+     */
+    public Pojo get(long row)
+    {
+        check(row, size);
+        try (Cursor<Pojo> cursor = seek(row))
+        {
+            return cursor.next();
+        }
+        catch (IOException e)
+        {
+            throw Utils.unchecked(e);
+        }
+    }
+
+    /**
+     * Parses a range of rows. The stream should be closed, though not closing it only leaves the mapping of the file
+     * to the garbage collector. The bad rows of the range are left out when the reader skips them, the stream has
+     * fewer rows then.
+     *
+     * @param from the first row, inclusive
+     * @param to the last row, exclusive
+     * @return the rows
+     * @throws IndexOutOfBoundsException if the range is not within the rows of the file
+     */
+    public Stream<Pojo> range(long from, long to)
+    {
+        if (from < 0 || to > size || from > to)
+        {
+            throw new IndexOutOfBoundsException(format("Rows %d to %d, size %d", from, to, size));
+        }
+        Cursor<Pojo> cursor = seek(from).limit(to);
+        int characteristics = Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE;
+        // the size is exact only when every row of the range is returned
+        Spliterator<Pojo> rows = reader.settings.badRows == BadRowPolicy.FAIL
+                ? Spliterators.spliterator(cursor, to - from, characteristics)
+                : Spliterators.spliteratorUnknownSize(cursor, characteristics);
+        return StreamSupport.stream(rows, false).onClose(() -> {
+                    try
+                    {
+                        cursor.close();
+                    }
+                    catch (IOException e)
+                    {
+                        throw Utils.unchecked(e);
+                    }
+                });
+    }
+
+    /*
+     * a cursor right before a row
+     */
+    private Cursor<Pojo> seek(long row)
+    {
+        // the end of the file may be right after a last record which is indexed
+        int indx = (int) Math.min(row / every, offsets.length - 1);
+        Checkpoint start = indx < 0 ? Checkpoint.START : new Checkpoint(offsets[indx], (long) indx * every);
+        Cursor<Pojo> cursor = reader.cursor(start);
+        cursor.skip(row - start.getRow());
+        return cursor;
+    }
+
+    private void check(long row, long limit)
+    {
+        if (row < 0 || row >= limit)
+        {
+            throw new IndexOutOfBoundsException(format("Row %d, size %d", row, size));
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return format("RowIndex[size=%d, every=%d, offsets=%d]", size, every, offsets.length);
+    }
+
+}
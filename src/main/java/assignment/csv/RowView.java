@@ -0,0 +1,72 @@
+package assignment.csv;
+
+import java.math.BigDecimal;
+
+/**
+ * A read-only view of the current line of a file, see {@link SomeCoolCsvReader#forEachRow(RowVisitor)}. The values are
+ * parsed on demand, straight from the data of the line, and no POJO is involved at all. Indexes are 1 based, just like
+ * in {@link CSVColumn#indx()}. Values are trimmed, a missing or empty value is returned as <code>null</code>, or as
+ * zero (<code>false</code>) by the primitive accessors.
+ *
+ * <p>
+ * The view is a flyweight, it is only valid during the call of {@link RowVisitor#visit(RowView)} and must not be
+ * retained.
+ *
+ * @author sergey
+ *
+ */
+public interface RowView
+{
+
+    /**
+     * @return the number of fields in the current line
+     */
+    int getFieldCount();
+
+    /**
+     * @param indx the 1 based index of the field
+     * @return <code>true</code> if the field is empty or missing
+     */
+    boolean isEmpty(int indx);
+
+    /**
+     * @param indx the 1 based index of the field
+     * @return the field as a string or <code>null</code>
+     */
+    String getString(int indx);
+
+    /**
+     * @param indx the 1 based index of the field
+     * @return the field as an int
+     * @throws NumberFormatException if the field is not a number
+     */
+    int getInt(int indx);
+
+    /**
+     * @param indx the 1 based index of the field
+     * @return the field as a long
+     * @throws NumberFormatException if the field is not a number
+     */
+    long getLong(int indx);
+
+    /**
+     * @param indx the 1 based index of the field
+     * @return the field as a double
+     * @throws NumberFormatException if the field is not a number
+     */
+    double getDouble(int indx);
+
+    /**
+     * @param indx the 1 based index of the field
+     * @return the field as a boolean, see {@link Boolean#parseBoolean(String)}
+     */
+    boolean getBoolean(int indx);
+
+    /**
+     * @param indx the 1 based index of the field
+     * @return the field as a decimal or <code>null</code>
+     * @throws NumberFormatException if the field is not a number
+     */
+    BigDecimal getDecimal(int indx);
+
+}
@@ -0,0 +1,20 @@
+package assignment.csv;
+
+/**
+ * Receives the lines of a file one after another, see {@link SomeCoolCsvReader#forEachRow(RowVisitor)}.
+ *
+ * @author sergey
+ *
+ */
+@FunctionalInterface
+public interface RowVisitor
+{
+
+    /**
+     * Called for every non blank line of the file.
+     *
+     * @param row the current line, only valid during this call
+     */
+    void visit(RowView row);
+
+}
@@ -3,31 +3,55 @@ package assignment.csv;
 import static assignment.csv.Utils.checkNotNull;
 import static assignment.csv.Utils.unchecked;
 import static java.lang.Math.max;
+import static java.lang.Math.min;
 import static java.lang.String.format;
-import static java.nio.charset.Charset.defaultCharset;
-import static java.util.Arrays.stream;
 import static java.util.stream.Stream.concat;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import assignment.csv.Binder.BooleanSetter;
+import assignment.csv.Binder.DoubleSetter;
+import assignment.csv.Binder.Instantiator;
+import assignment.csv.Binder.IntSetter;
+import assignment.csv.Binder.LongSetter;
+import assignment.csv.Binder.ObjectSetter;
+import assignment.csv.Binder.Setters;
+
 /**
  * This reader is capable of reading CSV, TSV and other delimited files as long as the class used for initialization
  * conforms to the Javabeans standards (has a no-args constructor and has public get/set mutators or if mutators are not
@@ -37,7 +61,8 @@ import org.slf4j.LoggerFactory;
  * 
  * <p>
  * <b>Note that instances of this class are thread safe. A distinct iterator is created every time {@link #iterator()}
- * is called.</b>
+ * is called.</b> The methods named <code>with...</code> do not modify the reader, they return a re-configured copy of
+ * it which shares the (expensive to create) column setup with the original.
  * 
  * @param <Pojo> the type of objects produced by the instance of this reader
  *
@@ -48,11 +73,239 @@ public class SomeCoolCsvReader<Pojo> implements Iterable<Pojo>
 
     static final Logger logger = LoggerFactory.getLogger(SomeCoolCsvReader.class);
 
+    /**
+     * The way the reader turns the contents of a file into lines and fields.
+     *
+     * @author sergey
+     *
+     */
+    public enum Engine
+    {
+
+        /**
+         * Every line is decoded into a {@link String} which is then split into fields. Works with any charset. This is
+         * the default.
+         */
+        LINES,
+
+        /**
+         * The file is mapped into memory window by window, delimiters and line terminators are searched for directly in
+         * the raw bytes and a string is only decoded when a column needs one. Requires an ASCII compatible charset
+         * (UTF-8, ISO-8859-x and the like), falls back to {@link #LINES} otherwise.
+         */
+        BYTES
+
+    }
+
+    /**
+     * What the reader does with a row which cannot be parsed: a malformed number, an unknown enum constant or a setter
+     * which throws an exception.
+     *
+     * @author sergey
+     *
+     */
+    public enum BadRowPolicy
+    {
+
+        /**
+         * The exception is thrown to the caller, which ends the iteration. This is the default.
+         */
+        FAIL,
+
+        /**
+         * The row is skipped.
+         */
+        SKIP,
+
+        /**
+         * The row is skipped and handed to a {@link Quarantine}, see
+         * {@link SomeCoolCsvReader#withQuarantine(Quarantine)}.
+         */
+        QUARANTINE
+
+    }
+
+    /**
+     * The optional part of the configuration. Never modified once a reader has been created with it.
+     */
+    static final class Settings implements Cloneable
+    {
+
+        Engine engine = Engine.LINES;
+        Charset charset;
+        int window = MappedByteSource.DEFAULT_WINDOW;
+        Compression compression = Compression.AUTO;
+        /** the number of buffers read ahead, 0 if the file is not read ahead */
+        int prefetchDepth;
+        int prefetchBlock;
+        PrefetchStatistics prefetchStatistics;
+        ParseStatistics statistics;
+        long slowRowNanos = TimeUnit.MILLISECONDS.toNanos(10);
+        BadRowPolicy badRows = BadRowPolicy.FAIL;
+        Quarantine quarantine;
+
+        Settings copy()
+        {
+            try
+            {
+                return (Settings) clone();
+            }
+            catch (CloneNotSupportedException e)
+            {
+                throw unchecked(e);
+            }
+        }
+
+    }
+
+    /**
+     * Everything the reader derives from the POJO class. Creating it involves reflection and spinning of classes (see
+     * {@link Binder} and {@link RowBinder}), so it is done once per POJO class and shared by all the readers of that
+     * class. A POJO class compiled with the {@link CsvBinding binding} processor skips the reflection.
+     */
+    static final class Setup
+    {
+
+        final Dialect dialect;
+        final Charset charset;
+        final Column[] columns;
+        final Instantiator instantiator;
+        final RowBinder binder;
+
+        Setup(Class< ? > pojoClass)
+        {
+            CsvBinding< ? > binding = CsvBinding.find(pojoClass);
+            if (binding != null)
+            {
+                // generated at compile time, checked at compile time
+                this.dialect = binding.dialect;
+                this.charset = binding.charset;
+                this.columns = createCsvColumns(binding.properties.stream());
+                this.instantiator = binding;
+                this.binder = RowBinder.of(columns);
+                return;
+            }
+            FileMetaData metaData = determineMetaData(pojoClass).orElseThrow(() -> new IllegalArgumentException(
+                    format("Unable to find @FileMetaData in the hierarchy of %s", pojoClass)));
+            String delimiterString = metaData.separator().trim();
+            if (delimiterString.isEmpty())
+            {
+                throw new IllegalArgumentException(
+                        format("The determined field delimiter (found in %s) is empty. Please use something sensible, like a comma.",
+                                pojoClass));
+            }
+            if (delimiterString.length() > 1)
+            {
+                throw new IllegalArgumentException("Delimiter must be a single character");
+            }
+            char delimiter = delimiterString.charAt(0);
+            if (metaData.quote() == delimiter)
+            {
+                throw new IllegalArgumentException("The quote must differ from the delimiter");
+            }
+            this.dialect = new Dialect(delimiter, metaData.quote(), metaData.escape());
+            this.charset = charset(metaData.charset(), pojoClass);
+            this.columns = createCsvColumns(findReadableFields(pojoClass));
+
+            MethodHandle constructor;
+            try
+            {
+                // find the default constructor
+                constructor = MethodHandles.lookup().findConstructor(pojoClass, MethodType.methodType(void.class));
+            }
+            catch (NoSuchMethodException | IllegalAccessException e)
+            {
+                logger.error("Unable to find a no-args public constructor.", e);
+                throw new IllegalArgumentException(
+                        format("Unable to find a no-args public constructor for %s", pojoClass));
+            }
+            this.instantiator = Binder.instantiator(constructor);
+            this.binder = RowBinder.of(columns);
+        }
+
+    }
+
+    /**
+     * Looks a charset up by name.
+     * 
+     * @param name the name, empty for the default charset
+     * @param pojoClass the class which declares it
+     * @return the charset
+     * @throws IllegalArgumentException if the charset is unknown
+     */
+    static Charset charset(String name, Class< ? > pojoClass)
+    {
+        if (name.isEmpty())
+        {
+            return Charset.defaultCharset();
+        }
+        try
+        {
+            return Charset.forName(name);
+        }
+        catch (IllegalArgumentException e)
+        {
+            // IllegalCharsetNameException and UnsupportedCharsetException alike
+            throw new IllegalArgumentException(format("Unknown charset %s (found in %s)", name, pojoClass), e);
+        }
+    }
+
+    /** a few messages about the bad rows and the extra columns per minute are enough to tell what is going on */
+    private static final LogLimiter badRowLog = new LogLimiter(10, 1, TimeUnit.MINUTES);
+    private static final LogLimiter extraColumnLog = new LogLimiter(10, 1, TimeUnit.MINUTES);
+
+    /** the receiver of the events, <code>null</code> if there is none on the class path */
+    private static final ParseEvents events = loadEvents();
+
+    private static ParseEvents loadEvents()
+    {
+        try
+        {
+            for (ParseEvents events : ServiceLoader.load(ParseEvents.class, ParseEvents.class.getClassLoader()))
+            {
+                logger.debug("Parse events go to {}", events.getClass().getName());
+                return events;
+            }
+        }
+        catch (ServiceConfigurationError | LinkageError e)
+        {
+            // the JFR module on a JRE without JFR, for example
+            logger.warn("Unable to load the parse events, they are off", e);
+        }
+        return null;
+    }
+
+    private static final ClassValue<Setup> setups = new ClassValue<Setup>()
+    {
+
+        @Override
+        protected Setup computeValue(Class< ? > type)
+        {
+            return new Setup(type);
+        }
+
+    };
+
+    /**
+     * @param pojoClass the POJO class
+     * @return the setup of the class, shared by the readers and the {@link SomeCoolCsvWriter writers} of the class
+     * @throws IllegalArgumentException if the class is not a valid CSV model
+     */
+    static Setup setup(Class< ? > pojoClass)
+    {
+        return setups.get(pojoClass);
+    }
+
     private final File file;
-    private final char delimiter;
+    final Dialect dialect;
     final Column[] columns;
+    final Settings settings;
+    /** the number of fields of a line which are scanned, see {@link #select(int...)} */
+    private final int fieldLimit;
 
-    private MethodHandle constructor;
+    private final Instantiator instantiator;
+    /** sets the columns, spun for this set of columns */
+    private final RowBinder binder;
 
     /**
      * Creates new instance of the reader.
@@ -69,37 +322,296 @@ public class SomeCoolCsvReader<Pojo> implements Iterable<Pojo>
         this.file = checkNotNull(file, "Input file cannot be null");
         checkNotNull(pojoClass, "POJO class cannot be null. Please provide the model class.");
 
-        Optional<String> delimiter = determineDelimiter(pojoClass);
-        String delimiterString = delimiter.orElseThrow(() -> new IllegalArgumentException(
-                format("Unable to find @FileMetaData in the hierarchy of %s", pojoClass))).trim();
-        if (delimiterString.isEmpty())
+        Setup setup = setups.get(pojoClass);
+        this.dialect = setup.dialect;
+        this.columns = setup.columns;
+        this.instantiator = setup.instantiator;
+        this.binder = setup.binder;
+        this.settings = new Settings();
+        settings.charset = setup.charset;
+        this.fieldLimit = Integer.MAX_VALUE;
+    }
+
+    /*
+     * creates a re-configured copy of the prototype
+     */
+    private SomeCoolCsvReader(SomeCoolCsvReader<Pojo> prototype, Settings settings)
+    {
+        this(prototype, settings, prototype.columns, prototype.fieldLimit);
+    }
+
+    /*
+     * creates a copy of the prototype reading a different set of columns
+     */
+    private SomeCoolCsvReader(SomeCoolCsvReader<Pojo> prototype, Settings settings, Column[] columns, int fieldLimit)
+    {
+        this(prototype.file, prototype, settings, columns, fieldLimit);
+    }
+
+    /*
+     * creates a copy of the prototype reading a different file
+     */
+    private SomeCoolCsvReader(File file, SomeCoolCsvReader<Pojo> prototype, Settings settings, Column[] columns,
+            int fieldLimit)
+    {
+        this.file = file;
+        this.dialect = prototype.dialect;
+        this.columns = columns;
+        this.instantiator = prototype.instantiator;
+        this.binder = columns == prototype.columns ? prototype.binder : RowBinder.of(columns);
+        this.settings = settings;
+        this.fieldLimit = fieldLimit;
+    }
+
+    /**
+     * Returns a copy of this reader which uses the given engine.
+     *
+     * @param engine the engine
+     * @return the re-configured reader
+     * @throws IllegalArgumentException if the engine is <code>null</code>
+     */
+    public SomeCoolCsvReader<Pojo> withEngine(Engine engine)
+    {
+        Settings copy = settings.copy();
+        copy.engine = checkNotNull(engine, "Engine cannot be null");
+        return new SomeCoolCsvReader<>(this, copy);
+    }
+
+    /**
+     * Returns a copy of this reader which decodes the files with the given charset instead of the one of the
+     * {@link FileMetaData#charset() annotation}. With the {@link Engine#BYTES} engine the files of UTF-8, US-ASCII and
+     * the other ASCII compatible charsets are scanned as raw bytes, a string is only decoded for the columns which
+     * need one and a value made of ASCII characters only is copied into the string without decoding.
+     *
+     * @param charset the charset
+     * @return the re-configured reader
+     * @throws IllegalArgumentException if the charset is <code>null</code>
+     */
+    public SomeCoolCsvReader<Pojo> withCharset(Charset charset)
+    {
+        Settings copy = settings.copy();
+        copy.charset = checkNotNull(charset, "Charset cannot be null");
+        return new SomeCoolCsvReader<>(this, copy);
+    }
+
+    /**
+     * Returns a copy of this reader which reads files of the given compression. A compressed file is decompressed by a
+     * background thread while it is being parsed. Its byte offsets are not those of the data, so a compressed file is
+     * not split for parallel streams and cannot be read with a {@link #cursor(Checkpoint) cursor}, be
+     * {@link #index() indexed} or {@link #follow() followed}.
+     *
+     * @param compression the compression, {@link Compression#AUTO} by default
+     * @return the re-configured reader
+     * @throws IllegalArgumentException if the compression is <code>null</code>
+     */
+    public SomeCoolCsvReader<Pojo> withCompression(Compression compression)
+    {
+        Settings copy = settings.copy();
+        copy.compression = checkNotNull(compression, "Compression cannot be null");
+        return new SomeCoolCsvReader<>(this, copy);
+    }
+
+    /**
+     * Returns a copy of this reader which reads uncompressed files ahead, 4 blocks of 1 megabyte. Same as
+     * <code>withPrefetch(4, 1 &lt;&lt; 20)</code>.
+     *
+     * @return the re-configured reader
+     */
+    public SomeCoolCsvReader<Pojo> withPrefetch()
+    {
+        return withPrefetch(4, 1 << 20);
+    }
+
+    /**
+     * Returns a copy of this reader which reads uncompressed files ahead of the parsing. Every iterator (or stream)
+     * then has a dedicated thread which reads blocks of the file with plain reads, not through a mapping, into a fixed
+     * number of direct buffers, so the parsing only waits for the disk when it is faster than the disk. This pays off
+     * on network file systems, where a page fault in a mapped file stalls the parsing for a round trip. Compressed
+     * files are always read ahead, see {@link #withCompression(Compression)}, and parallel streams read their chunks
+     * in parallel anyway.
+     *
+     * <p>
+     * Whether the depth and the block size are right is told by the {@link #getPrefetchStatistics() statistics}.
+     *
+     * @param depth the number of buffers, 0 to turn the read ahead off, otherwise at least 2: one being parsed and one
+     *            being read
+     * @param blockSize the size of a buffer, at least 4 kilobytes
+     * @return the re-configured reader
+     * @throws IllegalArgumentException if the depth or the block size is out of range
+     */
+    public SomeCoolCsvReader<Pojo> withPrefetch(int depth, int blockSize)
+    {
+        if (depth < 0 || depth == 1)
+        {
+            throw new IllegalArgumentException(format("The prefetch depth must be 0 or at least 2: %d", depth));
+        }
+        if (blockSize < 4096)
         {
             throw new IllegalArgumentException(
-                    format("The determined field delimiter (found in %s) is empty. Please use something sensible, like a comma.",
-                            pojoClass));
+                    format("The prefetch block must have at least 4096 bytes: %d", blockSize));
         }
-        if (delimiterString.length() > 1)
+        Settings copy = settings.copy();
+        copy.prefetchDepth = depth;
+        copy.prefetchBlock = blockSize;
+        copy.prefetchStatistics = depth == 0 ? null : new PrefetchStatistics();
+        return new SomeCoolCsvReader<>(this, copy);
+    }
+
+    /**
+     * Returns the statistics of the read ahead, which are shared by this reader and all the copies made of it.
+     *
+     * @return the statistics or an empty optional if the read ahead is off
+     */
+    public Optional<PrefetchStatistics> getPrefetchStatistics()
+    {
+        return Optional.ofNullable(settings.prefetchStatistics);
+    }
+
+    /**
+     * Returns a copy of this reader which counts what it does: the rows, the bytes, the blank lines and the fields past
+     * the last column, and estimates where the time goes. The counting costs a few nanoseconds per row, see
+     * {@link ParseStatistics}.
+     *
+     * @return the re-configured reader, with new statistics
+     */
+    public SomeCoolCsvReader<Pojo> withStatistics()
+    {
+        Settings copy = settings.copy();
+        copy.statistics = new ParseStatistics();
+        return new SomeCoolCsvReader<>(this, copy);
+    }
+
+    /**
+     * Returns the statistics of the parsing, which are shared by this reader and all the copies made of it.
+     *
+     * @return the statistics or an empty optional if the reader has not been created {@link #withStatistics() with}
+     *         them
+     */
+    public Optional<ParseStatistics> getStatistics()
+    {
+        return Optional.ofNullable(settings.statistics);
+    }
+
+    /**
+     * Returns a copy of this reader which reports the rows taking longer than the threshold to parse as
+     * {@link ParseEvents slow rows}, the default is 10 milliseconds. The rows are only timed while the slow rows are
+     * recorded, by a Java Flight Recorder recording for example.
+     *
+     * @param threshold the threshold, 0 to report every row
+     * @param unit the unit of the threshold
+     * @return the re-configured reader
+     * @throws IllegalArgumentException if the threshold is negative
+     */
+    public SomeCoolCsvReader<Pojo> withSlowRowThreshold(long threshold, TimeUnit unit)
+    {
+        if (threshold < 0)
         {
-            throw new IllegalArgumentException("Delimiter must be a single character");
+            throw new IllegalArgumentException(format("The slow row threshold must not be negative: %d", threshold));
         }
-        this.delimiter = delimiterString.charAt(0);
-        this.columns = createCsvColumns(pojoClass);
+        Settings copy = settings.copy();
+        copy.slowRowNanos = unit.toNanos(threshold);
+        return new SomeCoolCsvReader<>(this, copy);
+    }
 
-        try
+    /**
+     * Returns a copy of this reader which handles the rows it cannot parse according to the policy. The policy applies
+     * to the POJOs, to {@link #forEachRow(Object, Consumer)} and to {@link #toColumnarTable()}, not to
+     * {@link #forEachRow(RowVisitor)} whose values are parsed by the visitor. The skipped rows are counted by the
+     * {@link #withStatistics() statistics} and logged at most a few times a minute.
+     *
+     * @param policy the policy
+     * @return the re-configured reader
+     * @throws IllegalArgumentException if the policy is <code>null</code> or {@link BadRowPolicy#QUARANTINE}, use
+     *             {@link #withQuarantine(Quarantine)} for that one
+     */
+    public SomeCoolCsvReader<Pojo> withBadRowPolicy(BadRowPolicy policy)
+    {
+        checkNotNull(policy, "Policy cannot be null");
+        if (policy == BadRowPolicy.QUARANTINE)
+        {
+            throw new IllegalArgumentException("The quarantine policy needs a quarantine, use withQuarantine");
+        }
+        Settings copy = settings.copy();
+        copy.badRows = policy;
+        copy.quarantine = null;
+        return new SomeCoolCsvReader<>(this, copy);
+    }
+
+    /**
+     * Returns a copy of this reader which skips the rows it cannot parse and hands them to the quarantine, see
+     * {@link #withBadRowPolicy(BadRowPolicy)}.
+     *
+     * @param quarantine the quarantine
+     * @return the re-configured reader
+     * @throws IllegalArgumentException if the quarantine is <code>null</code>
+     */
+    public SomeCoolCsvReader<Pojo> withQuarantine(Quarantine quarantine)
+    {
+        checkNotNull(quarantine, "Quarantine cannot be null");
+        Settings copy = settings.copy();
+        copy.badRows = BadRowPolicy.QUARANTINE;
+        copy.quarantine = quarantine;
+        return new SomeCoolCsvReader<>(this, copy);
+    }
+
+    /*
+     * the same setup and settings for another file, the settings are shared (they are never modified once built)
+     */
+    SomeCoolCsvReader<Pojo> withFile(File file)
+    {
+        return new SomeCoolCsvReader<>(file, this, settings, columns, fieldLimit);
+    }
+
+    /*
+     * package visible for tests that need to cross window boundaries without creating huge files
+     */
+    SomeCoolCsvReader<Pojo> withWindow(int window)
+    {
+        Settings copy = settings.copy();
+        copy.window = window;
+        return new SomeCoolCsvReader<>(this, copy);
+    }
+
+    /**
+     * Returns a copy of this reader which only reads the given columns, the other annotated fields are left untouched.
+     * The lines are only scanned up to the highest selected column, the rest of every line is skipped, which pays off
+     * for wide files of which only a few columns are needed. The same applies to the {@link RowView} passed to
+     * {@link #forEachRow(RowVisitor)}, the fields past the highest selected column are not available.
+     *
+     * @param indexes the 1 based indexes of the annotated columns to read
+     * @return the re-configured reader
+     * @throws IllegalArgumentException if no index is given or an index is not the index of a column of this reader
+     */
+    public SomeCoolCsvReader<Pojo> select(int... indexes)
+    {
+        if (indexes == null || indexes.length == 0)
+        {
+            throw new IllegalArgumentException("Select at least one column");
+        }
+        int highest = 0;
+        for (int indx : indexes)
         {
-            // find the default constructor
-            constructor = MethodHandles.lookup().findConstructor(pojoClass, MethodType.methodType(void.class));
+            if (indx < 1 || indx > columns.length || !(columns[indx - 1] instanceof CsvColumn))
+            {
+                throw new IllegalArgumentException(format("There is no column with index %d", indx));
+            }
+            highest = max(highest, indx);
+        }
+        Column[] selected = new Column[highest];
+        for (int i = 0; i < selected.length; i++ )
+        {
+            selected[i] = new NoOpColumn(i + 1);
         }
-        catch (NoSuchMethodException | IllegalAccessException e)
+        for (int indx : indexes)
         {
-            logger.error("Unable to find a no-args public constructor.", e);
-            throw new IllegalArgumentException(format("Unable to find a no-args public constructor for %s", pojoClass));
+            selected[indx - 1] = columns[indx - 1];
         }
+        return new SomeCoolCsvReader<>(this, settings, selected, highest);
     }
 
-    private static Column[] createCsvColumns(Class< ? > pojoClass)
+    private static Column[] createCsvColumns(Stream<Property> properties)
     {
-        Stream<CsvColumn> fields = findReadableFields(pojoClass);
+        Stream<CsvColumn> fields = properties.map(CsvColumn::of);
         Map<Integer, List<CsvColumn>> possibleDuplicates = fields.collect(Collectors.groupingBy(CsvColumn::getIndex));
         if (possibleDuplicates.containsKey(0))
         {
@@ -133,6 +645,22 @@ public class SomeCoolCsvReader<Pojo> implements Iterable<Pojo>
         return columns;
     }
 
+    /**
+     * Returns the cache of the values of a column annotated with a positive {@link CSVColumn#dedup()}. The cache, and
+     * so its hit and miss counts, is shared by all the readers of the POJO class.
+     *
+     * @param indx the 1 based index of the column
+     * @return the cache, empty if the column has none
+     */
+    public Optional<StringCache> getStringCache(int indx)
+    {
+        if (indx < 1 || indx > columns.length || !(columns[indx - 1] instanceof CsvColumn))
+        {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(((CsvColumn) columns[indx - 1]).cache);
+    }
+
     /**
      * Returns a list of objects parsed from the file provided in the constructor. Note that {@link SomeCoolCsvReader}
      * is also usable as an {@link Iterable} if the number of POJOs is too large to fit in memory.
@@ -146,11 +674,12 @@ public class SomeCoolCsvReader<Pojo> implements Iterable<Pojo>
         return result;
     }
 
-    private static Stream<CsvColumn> findReadableFields(Class< ? > pojoClass)
+    private static Stream<Property> findReadableFields(Class< ? > pojoClass)
     {
         Field[] fields = pojoClass.getDeclaredFields();
         // ignore fields without annotations
-        Stream<CsvColumn> s = stream(fields).filter(f -> f.getAnnotation(CSVColumn.class) != null).map(CsvColumn::new);
+        Stream<Property> s =
+                Arrays.stream(fields).filter(f -> f.getAnnotation(CSVColumn.class) != null).map(Property::of);
         if (pojoClass.getSuperclass() != null)
         {
             // look for readable fields in the superclass
@@ -185,6 +714,26 @@ public class SomeCoolCsvReader<Pojo> implements Iterable<Pojo>
         default void set(Object target, String value)
         {}
 
+        /**
+         * Sets the value of a column to a pojo. The value is a range of characters of the current line, an empty range
+         * stands for a missing value. Only the columns which really need a string create one.
+         * 
+         * @param target the target pojo
+         * @param chars the characters of the line
+         * @param start the start of the value, inclusive
+         * @param end the end of the value, exclusive
+         */
+        default void set(Object target, CharSequence chars, int start, int end)
+        {}
+
+        /**
+         * Sets the value a column has when it is missing from a line.
+         * 
+         * @param target the target pojo
+         */
+        default void reset(Object target)
+        {}
+
     }
 
     /**
@@ -213,32 +762,51 @@ public class SomeCoolCsvReader<Pojo> implements Iterable<Pojo>
     }
 
     /**
-     * The real setter, it will set the value of a csv field to the POJO using the setter method designated for the
-     * field.
+     * An annotated field: its index, its type and the way it is set. Found by reflection, see {@link #of(Field)}, or
+     * declared by a generated {@link CsvBinding}.
      * 
      * @author sergey
      *
      */
-    static class CsvColumn extends NoOpColumn
+    static final class Property
     {
 
-        private MethodHandle setter;
+        final int index;
+        final String name;
+        final Class< ? > type;
+        final int dedup;
+        final Setters setters;
 
-        private Field field;
+        Property(int index, String name, Class< ? > type, int dedup, Setters setters)
+        {
+            this.index = index;
+            this.name = name;
+            this.type = type;
+            this.dedup = dedup;
+            this.setters = setters;
+        }
 
-        private CsvColumn(Field field)
+        /**
+         * Looks up the setter of an annotated field.
+         * 
+         * @param field the annotated field
+         * @return the property
+         * @throws IllegalArgumentException if the field has neither a public setter nor is writable
+         */
+        static Property of(Field field)
         {
-            super(field.getAnnotation(CSVColumn.class).indx());
-            this.field = field;
             Class< ? > declaringClass = field.getDeclaringClass();
+            Class< ? > type = field.getType();
 
             Method method = setterMethodFor(field);
+            MethodHandle setter;
             try
             {
                 /*
                  * This is by far the fastest way of mutating an object's value, in essence it is the same as calling
                  * the setter or assigning a member field directly in the code. I could have used the javassist or cglib
                  * proxy here, however since java 8 it is not necessary for simple assignments and will perform better.
+                 * The Binder turns the handle into a spun class calling the setter directly whenever it can.
                  */
                 if (method != null)
                 {
@@ -246,7 +814,7 @@ public class SomeCoolCsvReader<Pojo> implements Iterable<Pojo>
                 }
                 else
                 {
-                    setter = MethodHandles.lookup().findSetter(declaringClass, field.getName(), String.class);
+                    setter = MethodHandles.lookup().findSetter(declaringClass, field.getName(), type);
                 }
             }
             catch (NoSuchFieldException | IllegalAccessException e)
@@ -255,19 +823,22 @@ public class SomeCoolCsvReader<Pojo> implements Iterable<Pojo>
                 throw new IllegalArgumentException(
                         "Unable to find a public setter method for the annotated field " + field, e);
             }
+            CSVColumn annotation = field.getAnnotation(CSVColumn.class);
+            return new Property(annotation.indx(), declaringClass.getTypeName() + "." + field.getName(), type,
+                    annotation.dedup(), Binder.setters(setter));
         }
 
         /*
          * Determines the public setter method for a field. Returns null if no accessor is found
          */
-        private Method setterMethodFor(Field field)
+        private static Method setterMethodFor(Field field)
         {
             char[] array = field.getName().toCharArray();
             array[0] = Character.toUpperCase(array[0]);
             String methodName = new StringBuilder().append("set").append(array).toString();
             try
             {
-                return field.getDeclaringClass().getMethod(methodName, String.class);
+                return field.getDeclaringClass().getMethod(methodName, field.getType());
             }
             catch (NoSuchMethodException | SecurityException e)
             {
@@ -276,126 +847,888 @@ public class SomeCoolCsvReader<Pojo> implements Iterable<Pojo>
             return null;
         }
 
-        public void set(Object target, String value)
-        {
-            try
-            {
-                setter.invoke(target, value);
-            }
-            catch (Throwable e)
-            {
-                logger.error("Calling a setter resulted in an error.", e);
-                // calling a humble setter should not really get us into trouble, but in any case let's just re-throw it
-                // to the caller.
-                unchecked(e);
-            }
+    }
+
+    /**
+     * The real setter, it will set the value of a csv field to the POJO using the setter method designated for the
+     * field. This class handles {@link String} fields, the subclasses handle the other supported types.
+     * 
+     * @author sergey
+     *
+     */
+    static class CsvColumn extends NoOpColumn
+    {
+
+        /** the type of the field */
+        final Class< ? > type;
+
+        /** the name of the field, qualified by the name of its class */
+        final String name;
+
+        final ObjectSetter objectSetter;
+
+        /**
+         * The cache of the values of a {@link String} column, see {@link CSVColumn#dedup()}, <code>null</code> if there
+         * is none.
+         */
+        final StringCache cache;
+
+        CsvColumn(Property property)
+        {
+            super(property.index);
+            this.type = property.type;
+            this.name = property.name;
+            objectSetter = type.isPrimitive() ? null : property.setters.objectSetter();
+
+            if (property.dedup < 0 || property.dedup > 0 && type != String.class)
+            {
+                throw new IllegalArgumentException(
+                        format("The dedup of the annotated field %s must be zero or, for a String, positive", name));
+            }
+            cache = property.dedup == 0 ? null : new StringCache(property.dedup);
+        }
+
+        /**
+         * Creates the column matching the type of the annotated field.
+         * 
+         * @param property the annotated field
+         * @return the column
+         * @throws IllegalArgumentException if the type of the field is not supported
+         */
+        static CsvColumn of(Property property)
+        {
+            Class< ? > type = property.type;
+            if (type == String.class)
+            {
+                return new CsvColumn(property);
+            }
+            if (type == int.class)
+            {
+                return new IntColumn(property);
+            }
+            if (type == long.class)
+            {
+                return new LongColumn(property);
+            }
+            if (type == double.class)
+            {
+                return new DoubleColumn(property);
+            }
+            if (type == boolean.class)
+            {
+                return new BooleanColumn(property);
+            }
+            if (type == BigDecimal.class)
+            {
+                return new DecimalColumn(property);
+            }
+            if (type.isEnum())
+            {
+                return new EnumColumn(property);
+            }
+            throw new IllegalArgumentException(format(
+                    "The type %s of the annotated field %s is not supported. Supported types are String, int, long, double, boolean, BigDecimal and enums.",
+                    type.getName(), property.name));
+        }
+
+        @Override
+        public void set(Object target, CharSequence chars, int start, int end)
+        {
+            setValue(target, start == end ? null : convert(chars, start, end));
+        }
+
+        public void set(Object target, String value)
+        {
+            setValue(target, value == null ? null : convert(value, 0, value.length()));
+        }
+
+        @Override
+        public void reset(Object target)
+        {
+            set(target, "", 0, 0);
+        }
+
+        /**
+         * Converts a non empty range of characters to the value of the field.
+         * 
+         * @param chars the characters
+         * @param start the start of the value, inclusive
+         * @param end the end of the value, exclusive
+         * @return the value
+         */
+        Object convert(CharSequence chars, int start, int end)
+        {
+            return cache == null ? ByteChars.toString(chars, start, end) : cache.get(chars, start, end);
+        }
+
+        /**
+         * Converts a range of characters to the value the field would be set to, boxed if the field is primitive.
+         * 
+         * @param chars the characters
+         * @param start the start of the value, inclusive
+         * @param end the end of the value, exclusive
+         * @return the value
+         */
+        Object value(CharSequence chars, int start, int end)
+        {
+            return start == end ? null : convert(chars, start, end);
+        }
+
+        final void setValue(Object target, Object value)
+        {
+            try
+            {
+                objectSetter.set(target, value);
+            }
+            catch (Throwable e)
+            {
+                throw failed(e);
+            }
+        }
+
+        static RuntimeException failed(Throwable e)
+        {
+            // calling a humble setter should not really get us into trouble, but in any case let's just re-throw it
+            // to the caller, the bad row policy decides what happens next
+            return unchecked(e);
         }
 
         @Override
         public String toString()
         {
-            return field.getDeclaringClass().getTypeName() + "." + field.getName();
+            return name;
+        }
+
+    }
+
+    /**
+     * A column of a primitive type. Empty values set the default value of the type (zero or <code>false</code>).
+     * 
+     * @author sergey
+     *
+     */
+    static abstract class PrimitiveColumn extends CsvColumn
+    {
+
+        PrimitiveColumn(Property property)
+        {
+            super(property);
+        }
+
+        @Override
+        public abstract void set(Object target, CharSequence chars, int start, int end);
+
+        @Override
+        public void set(Object target, String value)
+        {
+            if (value == null)
+            {
+                set(target, "", 0, 0);
+            }
+            else
+            {
+                set(target, value, 0, value.length());
+            }
+        }
+
+    }
+
+    static class IntColumn extends PrimitiveColumn
+    {
+
+        final IntSetter intSetter;
+
+        IntColumn(Property property)
+        {
+            super(property);
+            intSetter = property.setters.intSetter();
+        }
+
+        @Override
+        public void set(Object target, CharSequence chars, int start, int end)
+        {
+            int value = parse(chars, start, end);
+            try
+            {
+                intSetter.set(target, value);
+            }
+            catch (Throwable e)
+            {
+                throw failed(e);
+            }
+        }
+
+        @Override
+        Object value(CharSequence chars, int start, int end)
+        {
+            return parse(chars, start, end);
+        }
+
+        static int parse(CharSequence chars, int start, int end)
+        {
+            return start == end ? 0 : Numbers.parseInt(chars, start, end);
+        }
+
+    }
+
+    static class LongColumn extends PrimitiveColumn
+    {
+
+        final LongSetter longSetter;
+
+        LongColumn(Property property)
+        {
+            super(property);
+            longSetter = property.setters.longSetter();
+        }
+
+        @Override
+        public void set(Object target, CharSequence chars, int start, int end)
+        {
+            long value = parse(chars, start, end);
+            try
+            {
+                longSetter.set(target, value);
+            }
+            catch (Throwable e)
+            {
+                throw failed(e);
+            }
+        }
+
+        @Override
+        Object value(CharSequence chars, int start, int end)
+        {
+            return parse(chars, start, end);
+        }
+
+        static long parse(CharSequence chars, int start, int end)
+        {
+            return start == end ? 0 : Numbers.parseLong(chars, start, end);
+        }
+
+    }
+
+    static class DoubleColumn extends PrimitiveColumn
+    {
+
+        final DoubleSetter doubleSetter;
+
+        DoubleColumn(Property property)
+        {
+            super(property);
+            doubleSetter = property.setters.doubleSetter();
+        }
+
+        @Override
+        public void set(Object target, CharSequence chars, int start, int end)
+        {
+            double value = parse(chars, start, end);
+            try
+            {
+                doubleSetter.set(target, value);
+            }
+            catch (Throwable e)
+            {
+                throw failed(e);
+            }
+        }
+
+        @Override
+        Object value(CharSequence chars, int start, int end)
+        {
+            return parse(chars, start, end);
+        }
+
+        static double parse(CharSequence chars, int start, int end)
+        {
+            return start == end ? 0 : Numbers.parseDouble(chars, start, end);
+        }
+
+    }
+
+    static class BooleanColumn extends PrimitiveColumn
+    {
+
+        final BooleanSetter booleanSetter;
+
+        BooleanColumn(Property property)
+        {
+            super(property);
+            booleanSetter = property.setters.booleanSetter();
+        }
+
+        @Override
+        public void set(Object target, CharSequence chars, int start, int end)
+        {
+            boolean value = Numbers.parseBoolean(chars, start, end);
+            try
+            {
+                booleanSetter.set(target, value);
+            }
+            catch (Throwable e)
+            {
+                throw failed(e);
+            }
+        }
+
+        @Override
+        Object value(CharSequence chars, int start, int end)
+        {
+            return Numbers.parseBoolean(chars, start, end);
+        }
+
+    }
+
+    static class DecimalColumn extends CsvColumn
+    {
+
+        DecimalColumn(Property property)
+        {
+            super(property);
+        }
+
+        @Override
+        Object convert(CharSequence chars, int start, int end)
+        {
+            return Numbers.parseDecimal(chars, start, end);
+        }
+
+    }
+
+    /**
+     * Looks the constants up by the hash code of the name, so that no string is created for the lookup.
+     * 
+     * @author sergey
+     *
+     */
+    static class EnumColumn extends CsvColumn
+    {
+
+        private final int[] hashes;
+        private final Enum< ? >[] constants;
+
+        EnumColumn(Property property)
+        {
+            super(property);
+            Enum< ? >[] values = (Enum< ? >[]) type.getEnumConstants();
+            constants = values.clone();
+            Arrays.sort(constants, (a, b) -> Integer.compare(a.name().hashCode(), b.name().hashCode()));
+            hashes = new int[constants.length];
+            for (int i = 0; i < constants.length; i++ )
+            {
+                hashes[i] = constants[i].name().hashCode();
+            }
+        }
+
+        @Override
+        Object convert(CharSequence chars, int start, int end)
+        {
+            int hash = Numbers.hash(chars, start, end);
+            int i = Arrays.binarySearch(hashes, hash);
+            if (i >= 0)
+            {
+                // rewind to the first constant sharing the hash
+                while (i > 0 && hashes[i - 1] == hash)
+                {
+                    i-- ;
+                }
+                for (; i < hashes.length && hashes[i] == hash; i++ )
+                {
+                    if (Numbers.equals(chars, start, end, constants[i].name()))
+                    {
+                        return constants[i];
+                    }
+                }
+            }
+            throw new UnknownConstant(format("No enum constant %s.%s", type.getCanonicalName(),
+                    ByteChars.toString(chars, start, end)));
+        }
+
+    }
+
+    /**
+     * An unknown enum constant, without a stack trace for the same reason as the malformed numbers, see
+     * {@link Numbers}.
+     */
+    private static final class UnknownConstant extends IllegalArgumentException
+    {
+
+        private static final long serialVersionUID = 1L;
+
+        UnknownConstant(String message)
+        {
+            super(message);
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace()
+        {
+            return this;
+        }
+
+    }
+
+    /*
+     * recursively search for the FileMetaData annotation until something is found
+     */
+    private static Optional<FileMetaData> determineMetaData(Class< ? > pojoClass)
+    {
+        FileMetaData fileMetaData = pojoClass.getAnnotation(FileMetaData.class);
+        if (fileMetaData == null)
+        {
+            if (pojoClass.getSuperclass() != null)
+            {
+                return determineMetaData(pojoClass.getSuperclass());
+            }
+            else
+            {
+                return Optional.empty();
+            }
+        }
+        return Optional.of(fileMetaData);
+    }
+
+    /**
+     * Creates a parser which owns its own {@link Fields}. Every iterator (or chunk) gets one, this way nothing is shared
+     * between threads and nothing is allocated per line except the POJO.
+     * 
+     * @return the parser
+     */
+    Function<CharSequence, Pojo> parser()
+    {
+        return parser(meter());
+    }
+
+    /*
+     * a parser which reports to the meter of its iterator, it returns null for a bad row which is not to fail the
+     * iteration
+     */
+    Function<CharSequence, Pojo> parser(Meter meter)
+    {
+        Fields fields = new Fields(dialect, fieldLimit);
+        if (meter == Meter.NONE && settings.badRows == BadRowPolicy.FAIL)
+        {
+            return line -> newPojo(fields.split(line));
+        }
+        return new Function<CharSequence, Pojo>()
+        {
+
+            private long row;
+
+            @Override
+            public Pojo apply(CharSequence line)
+            {
+                row++ ;
+                long start = meter.start(line);
+                try
+                {
+                    fields.split(line);
+                    long split = meter.tokenized(start);
+                    Pojo result = newPojo(fields);
+                    meter.bound(start, split);
+                    return result;
+                }
+                catch (Exception e)
+                {
+                    badRow(line, row, e);
+                    return null;
+                }
+            }
+
+        };
+    }
+
+    /*
+     * applies the bad row policy to a row which could not be parsed, returns if the row is to be skipped
+     */
+    void badRow(CharSequence line, long row, Exception e)
+    {
+        if (settings.badRows == BadRowPolicy.FAIL)
+        {
+            throw unchecked(e);
+        }
+        if (settings.statistics != null)
+        {
+            settings.statistics.badRows.increment();
+        }
+        if (badRowLog.allow())
+        {
+            logger.warn("Skipping row {} of {}: {} ({} similar messages suppressed)", row, file, e,
+                    badRowLog.suppressed());
+        }
+        if (settings.badRows == BadRowPolicy.QUARANTINE)
+        {
+            settings.quarantine.accept(line.toString(), row, e);
+        }
+    }
+
+    /*
+     * a meter for a single iterator, does nothing if the statistics are off and there is nobody to receive the events
+     */
+    Meter meter()
+    {
+        if (settings.statistics == null && events == null)
+        {
+            return Meter.NONE;
+        }
+        return new Meter(settings.statistics, events, file.getPath(), settings.slowRowNanos);
+    }
+
+    /*
+     * parses a single line, for a sequence of lines use the parser()
+     */
+    Pojo newPojo(CharSequence line)
+    {
+        return newPojo(new Fields(dialect, fieldLimit).split(line));
+    }
+
+    private Pojo newPojo(Fields fields)
+    {
+        Object result;
+        try
+        {
+            result = instantiator.newInstance();
+        }
+        catch (Throwable e)
+        {
+            // I cannot imagine this happening other than as OutOfMemory error
+            logger.error("Unable to instantiate object", e);
+            throw unchecked(e);
+        }
+        bind(result, fields);
+        // the instantiator calls the constructor of the POJO class
+        @SuppressWarnings("unchecked")
+        Pojo pojo = (Pojo) result;
+        return pojo;
+    }
+
+    /*
+     * sets the fields of the line to the target, returns the number of columns set
+     */
+    private int bind(Object target, Fields fields)
+    {
+        int count = fields.count();
+        int bound = min(count, columns.length);
+        /*
+         * an empty value is set as null. This is not specified in the assignment and normally we would have some magic
+         * string defining a null value
+         */
+        binder.bind(target, fields, bound);
+        if (count > bound)
+        {
+            if (settings.statistics != null)
+            {
+                settings.statistics.extraFields.add(count - bound);
+            }
+            if (logger.isDebugEnabled() && extraColumnLog.allow())
+            {
+                logger.debug("Columns {} to {} are not defined for class {} ({} similar messages suppressed)",
+                        bound + 1, count, target.getClass(), extraColumnLog.suppressed());
+            }
         }
+        return bound;
+    }
 
+    /**
+     * Visits every line of the file through a flyweight {@link RowView}. No POJO is created, the values are parsed
+     * only when they are asked for. Use this to aggregate large files without producing any garbage per line.
+     * 
+     * @param visitor the visitor
+     * @throws IllegalArgumentException if the visitor is <code>null</code>
+     */
+    public void forEachRow(RowVisitor visitor)
+    {
+        checkNotNull(visitor, "Visitor cannot be null");
+        Fields fields = new Fields(dialect, fieldLimit);
+        Meter meter = meter();
+        forEachLine(meter, line -> {
+            long start = meter.start(line);
+            fields.split(line);
+            // the time spent by the visitor is not counted
+            meter.bound(start, meter.tokenized(start));
+            visitor.visit(fields);
+        });
     }
 
-    /*
-     * recursively search for the FileMetaData annotation until something is found
+    /**
+     * Refills the same POJO with every line of the file and passes it to the action. The columns which are missing in
+     * a line are reset to <code>null</code> (zero, <code>false</code>), so no value leaks from one line to the next.
+     * The action must not retain the POJO, it is overwritten as soon as the action returns.
+     * 
+     * @param pojo the instance to re-use
+     * @param action the action
+     * @throws IllegalArgumentException if either parameter is <code>null</code>
      */
-    private static Optional<String> determineDelimiter(Class< ? > pojoClass)
+    public void forEachRow(Pojo pojo, Consumer< ? super Pojo> action)
     {
-        FileMetaData fileMetaData = pojoClass.getAnnotation(FileMetaData.class);
-        if (fileMetaData == null)
-        {
-            if (pojoClass.getSuperclass() != null)
+        checkNotNull(pojo, "POJO cannot be null");
+        checkNotNull(action, "Action cannot be null");
+        Fields fields = new Fields(dialect, fieldLimit);
+        Meter meter = meter();
+        long[] row = new long[1];
+        forEachLine(meter, line -> {
+            row[0]++ ;
+            long start = meter.start(line);
+            try
             {
-                return determineDelimiter(pojoClass.getSuperclass());
+                fields.split(line);
+                long split = meter.tokenized(start);
+                for (int i = bind(pojo, fields); i < columns.length; i++ )
+                {
+                    columns[i].reset(pojo);
+                }
+                meter.bound(start, split);
             }
-            else
+            catch (Exception e)
             {
-                return Optional.empty();
+                // all the columns are set again by the next row
+                badRow(line, row[0], e);
+                return;
             }
-        }
-        return Optional.of(fileMetaData.separator());
+            action.accept(pojo);
+        });
+    }
+
+    /**
+     * Loads the whole file into a {@link ColumnarTable} kept on the heap. Same as
+     * <code>toColumnarTable(false)</code>.
+     *
+     * @return the table
+     */
+    public ColumnarTable<Pojo> toColumnarTable()
+    {
+        return toColumnarTable(false);
+    }
+
+    /**
+     * Loads the whole file into a {@link ColumnarTable}. Numbers, booleans and enums are parsed once and stored in
+     * primitive arrays, strings are stored as encoded bytes. With the {@link Engine#BYTES} engine the bytes of the
+     * strings are copied from the file without ever being decoded.
+     *
+     * @param offHeap <code>true</code> to store the strings in direct buffers outside of the heap
+     * @return the table
+     */
+    public ColumnarTable<Pojo> toColumnarTable(boolean offHeap)
+    {
+        ColumnarTable<Pojo> table = new ColumnarTable<>(columns, instantiator, settings.charset, offHeap);
+        Fields fields = new Fields(dialect, fieldLimit);
+        Meter meter = meter();
+        long[] row = new long[1];
+        forEachLine(meter, line -> {
+            row[0]++ ;
+            long start = meter.start(line);
+            try
+            {
+                fields.split(line);
+                long split = meter.tokenized(start);
+                table.append(fields);
+                meter.bound(start, split);
+            }
+            catch (Exception e)
+            {
+                // the row is not counted by the table, the next one overwrites it
+                badRow(line, row[0], e);
+            }
+        });
+        return table.trim();
     }
 
-    Pojo newPojo(String line)
+    /*
+     * feeds the non blank lines of the file to the action using the engine of this reader, closes the file and
+     * finishes the meter afterwards
+     */
+    void forEachLine(Meter meter, Consumer<CharSequence> action)
     {
-        Pojo result;
+        Charset charset = settings.charset;
         try
         {
-            result = (Pojo) constructor.invoke();
+            Compression compression = compression();
+            if (usesBytes(charset))
+            {
+                try (ByteLines lines = byteLines(charset, compression))
+                {
+                    while (lines.next())
+                    {
+                        action.accept(lines.line());
+                    }
+                }
+            }
+            else
+            {
+                try (Stream<String> records = records(charset, compression))
+                {
+                    records.filter(nonBlank()).forEach(action);
+                }
+            }
         }
-        catch (Throwable e)
+        catch (IOException e)
         {
-            // I cannot imagine this happening other than as OutOfMemory error
-            logger.error("Unable to instantiate object", e);
+            logger.error("An IO error occurred while reading data from the file.", e);
             throw unchecked(e);
         }
-        /*
-         * I chose not to re-implement the excellent https://commons.apache.org/proper/commons-csv/ and for this demo I
-         * do not support escaping of delimiters within value. For a production use I would definitely implement a
-         * proper lexer or better yet write a grammar with antlr and generate the lexer/parser.
-         */
-        int tokenIndex = 0;
-        int lastTokenStart = 0;
-        for (int i = 0; i < line.length(); i++ )
+        finally
+        {
+            meter.finish();
+        }
+    }
+
+    /*
+     * the filter of the lines of the String based engine, counts the blank lines if the statistics are on
+     */
+    private Predicate<String> nonBlank()
+    {
+        ParseStatistics statistics = settings.statistics;
+        if (statistics == null)
+        {
+            return line -> !line.trim().isEmpty();
+        }
+        return line -> {
+            if (line.trim().isEmpty())
+            {
+                statistics.blankLines.increment();
+                return false;
+            }
+            return true;
+        };
+    }
+
+    private boolean usesBytes(Charset charset)
+    {
+        if (settings.engine == Engine.BYTES)
         {
-            char charAt = line.charAt(i);
-            if (isDelimiter(charAt))
+            if (ByteChars.supports(charset))
             {
-                emitValue(tokenIndex++ , lastTokenStart, i, line, result);
-                lastTokenStart = i + 1;
+                return true;
             }
+            logger.debug("Charset {} is not ASCII compatible, falling back to engine {}", charset, Engine.LINES);
         }
-        emitValue(tokenIndex, lastTokenStart, line.length(), line, result);
+        return false;
+    }
 
-        return result;
+    /*
+     * the compression of the file, detected unless it has been set explicitly
+     */
+    private Compression compression() throws IOException
+    {
+        return settings.compression == Compression.AUTO ? Compression.detect(file.toPath()) : settings.compression;
     }
 
-    private void emitValue(int column, int valueOffset, int valueEndOffset, String line, Pojo result)
+    private void checkUncompressed(String operation)
     {
-        if (column < columns.length)
+        try
         {
-            String value = line.substring(valueOffset, valueEndOffset).trim();
-            if (value.isEmpty())
+            if (settings.compression != Compression.AUTO ? settings.compression != Compression.NONE
+                    : file.exists() && compression() != Compression.NONE)
             {
-                /*
-                 * this is not specified in the assignment and normally we would have some magic string defining a null
-                 * value
-                 */
-                value = null;
+                throw new UnsupportedOperationException(format("%s is compressed, it cannot be %s", file, operation));
             }
-            columns[column].set(result, value);
         }
-        else
+        catch (IOException e)
+        {
+            logger.error("An IO error occurred while reading data from the file.", e);
+            throw unchecked(e);
+        }
+    }
+
+    private ByteSource byteSource(Compression compression) throws IOException
+    {
+        if (compression == Compression.NONE)
+        {
+            return rangeSource(0, file.length());
+        }
+        return new InflatingByteSource(file.toPath(), compression);
+    }
+
+    private ByteSource rangeSource(long from, long to)
+    {
+        if (settings.prefetchDepth > 0)
         {
-            logger.debug("Column {} is not defined for class {}", column + 1, result.getClass());
+            return new PrefetchingByteSource(file.toPath(), from, to, settings.prefetchDepth, settings.prefetchBlock,
+                    settings.prefetchStatistics);
         }
+        return new MappedByteSource(file.toPath(), from, to, settings.window);
+    }
+
+    private ByteLines byteLines(Charset charset, Compression compression) throws IOException
+    {
+        return new ByteLines(byteSource(compression), charset, 0, dialect, true, settings.statistics);
     }
 
-    private boolean isDelimiter(char charAt)
+    private Stream<String> records(Charset charset, Compression compression) throws IOException
     {
-        return delimiter == charAt;
+        if (compression == Compression.NONE && settings.prefetchDepth == 0 && settings.statistics == null)
+        {
+            return dialect.records(Files.newBufferedReader(file.toPath(), charset));
+        }
+        ByteSource source = byteSource(compression);
+        if (settings.statistics != null)
+        {
+            source = settings.statistics.meter(source);
+        }
+        return dialect.records(new BufferedReader(new InputStreamReader(source.stream(), charset)));
     }
 
     @Override
     public Iterator<Pojo> iterator()
     {
+        return rows();
+    }
+
+    /**
+     * Same as {@link #iterator()}, but the iterator can be closed before it is exhausted, which releases the file right
+     * away. For the modules bridging the reader to other APIs, which must not leak the file when they are cancelled.
+     *
+     * @return the iterator
+     */
+    CloseableIterator<Pojo> rows()
+    {
+        Charset charset = settings.charset;
         try
         {
+            Compression compression = compression();
+            if (usesBytes(charset))
+            {
+                return new BytesIterator(byteLines(charset, compression));
+            }
             /*
-             * The default charset is not ideal, but the task does not require anything sophisticated I hope, in real
-             * life this would be configurable of course.
-             * 
-             * Also I assume that the client will read the stream to the end otherwise the file handle will be left open
+             * I assume that the client will read the stream to the end otherwise the file handle will be left open
              * forever. In a real life scenario if I have to let resources leak (through an iterator with an open db
              * connection, for example) I subclass the java.lang.ref.PhantomReference and place the resource to be
              * closed in it, register the reference with the java.lang.ref.ReferenceQueue; and upon entering
              * inaccessible state I close the resource. For the sake of the demo I guess this should suffice.
              */
-            return Files.lines(file.toPath(), defaultCharset()).filter(l -> !l.trim().isEmpty()).map(
-                    this::newPojo).iterator();
+            Stream<String> lines = records(charset, compression);
+            Meter meter = meter();
+            Iterator<Pojo> rows = lines.filter(nonBlank()).map(parser(meter)).filter(Objects::nonNull).iterator();
+            return new CloseableIterator<Pojo>()
+            {
+
+                @Override
+                public boolean hasNext()
+                {
+                    if (rows.hasNext())
+                    {
+                        return true;
+                    }
+                    meter.finish();
+                    return false;
+                }
+
+                @Override
+                public Pojo next()
+                {
+                    return rows.next();
+                }
+
+                @Override
+                public void close()
+                {
+                    meter.finish();
+                    lines.close();
+                }
+
+            };
         }
         catch (IOException e)
         {
@@ -408,4 +1741,296 @@ public class SomeCoolCsvReader<Pojo> implements Iterable<Pojo>
         }
     }
 
+    /**
+     * Returns a spliterator which splits the file into byte ranges aligned to line boundaries. Splitting needs the byte
+     * level scanner, so it is used whatever the {@link Engine} of this reader is, unless the charset is not ASCII
+     * compatible or the file is compressed (in which case the spliterator does not split at all).
+     */
+    @Override
+    public Spliterator<Pojo> spliterator()
+    {
+        Charset charset = settings.charset;
+        if (!ByteChars.supports(charset))
+        {
+            logger.debug("Charset {} is not ASCII compatible, the file will not be split", charset);
+            return Spliterators.spliteratorUnknownSize(iterator(), Spliterator.ORDERED | Spliterator.NONNULL);
+        }
+        try
+        {
+            if (compression() != Compression.NONE)
+            {
+                logger.debug("{} is compressed, it will not be split", file);
+                return Spliterators.spliteratorUnknownSize(iterator(), Spliterator.ORDERED | Spliterator.NONNULL);
+            }
+        }
+        catch (IOException e)
+        {
+            logger.error("An IO error occurred while reading data from the file.", e);
+            throw unchecked(e);
+        }
+        return new ChunkSpliterator<>(file.toPath(), charset, dialect, settings.window,
+                ChunkSpliterator.DEFAULT_MIN_CHUNK, 0, file.length(), this::meter, this::parser);
+    }
+
+    /**
+     * Returns a sequential stream of the objects parsed from the file. The stream is read ahead if the reader has been
+     * configured {@link #withPrefetch(int, int) so}.
+     * 
+     * @return the stream
+     */
+    public Stream<Pojo> stream()
+    {
+        if (settings.prefetchDepth > 0)
+        {
+            return StreamSupport.stream(
+                    Spliterators.spliteratorUnknownSize(iterator(), Spliterator.ORDERED | Spliterator.NONNULL), false);
+        }
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Returns a parallel stream of the objects parsed from the file, keeping the order of the lines. Same as
+     * <code>parallelStream(true)</code>.
+     * 
+     * @return the stream
+     */
+    public Stream<Pojo> parallelStream()
+    {
+        return parallelStream(true);
+    }
+
+    /**
+     * Returns a parallel stream of the objects parsed from the file. The file is split into chunks which are parsed by
+     * the workers of the common {@link java.util.concurrent.ForkJoinPool} (or of the pool the terminal operation is
+     * submitted to). An unordered stream is faster for operations like <code>collect</code> or <code>limit</code>
+     * because the results of the chunks do not have to be buffered to restore the order of the file.
+     * 
+     * @param ordered <code>true</code> if the encounter order must be the order of the lines in the file
+     * @return the stream
+     */
+    public Stream<Pojo> parallelStream(boolean ordered)
+    {
+        Stream<Pojo> stream = StreamSupport.stream(spliterator(), true);
+        return ordered ? stream : stream.unordered();
+    }
+
+    /**
+     * Returns a cursor over the records of the file, from its start. Same as <code>cursor(Checkpoint.START)</code>.
+     *
+     * @return the cursor, to be closed by the caller
+     */
+    public Cursor<Pojo> cursor()
+    {
+        return cursor(Checkpoint.START);
+    }
+
+    /**
+     * Returns a cursor which resumes reading at a checkpoint, see {@link Cursor}. The file is mapped from the offset of
+     * the checkpoint on, the records before it are not read at all. The cursor always uses the byte level scanner,
+     * whatever the {@link Engine} of this reader is.
+     *
+     * @param checkpoint where to start, taken from an earlier cursor over the same file (or
+     *            {@link Checkpoint#load(Path) loaded} from its sidecar file)
+     * @return the cursor, to be closed by the caller
+     * @throws IllegalArgumentException if the checkpoint lies beyond the end of the file
+     * @throws UnsupportedOperationException if the charset is not ASCII compatible or the file is compressed
+     */
+    public Cursor<Pojo> cursor(Checkpoint checkpoint)
+    {
+        checkNotNull(checkpoint, "The checkpoint cannot be null");
+        checkUncompressed("read from a checkpoint");
+        long length = file.length();
+        if (checkpoint.getOffset() > length)
+        {
+            throw new IllegalArgumentException(
+                    format("%s lies beyond the end of the file, which has %d bytes", checkpoint, length));
+        }
+        Charset charset = settings.charset;
+        if (!ByteChars.supports(charset))
+        {
+            throw new UnsupportedOperationException(
+                    format("Charset %s is not ASCII compatible, the file cannot be read from a checkpoint", charset));
+        }
+        ByteLines lines =
+                new ByteLines(rangeSource(checkpoint.getOffset(), length), charset, checkpoint.getOffset(), dialect,
+                        true, settings.statistics);
+        return new Cursor<>(lines, parser(), checkpoint);
+    }
+
+    /**
+     * Returns the row index of the file, kept in the sidecar file <code>&lt;file&gt;.idx</code>. Same as
+     * <code>index(RowIndex.DEFAULT_EVERY, sidecar)</code>.
+     *
+     * @return the index
+     */
+    public RowIndex<Pojo> index()
+    {
+        return index(RowIndex.DEFAULT_EVERY, file.toPath().resolveSibling(file.getName() + ".idx"));
+    }
+
+    /**
+     * Returns the row index of the file, see {@link RowIndex}. The index is loaded from the sidecar file if it matches
+     * the file, otherwise the records of the file are scanned (not parsed) and the new index is saved to the sidecar
+     * file. Failing to save it is logged, the index is still returned.
+     *
+     * @param every the number of records per indexed offset, a smaller number makes the lookup of a row faster and
+     *            the index larger
+     * @param sidecar the index file
+     * @return the index
+     * @throws IllegalArgumentException if the number of records is not positive
+     * @throws UnsupportedOperationException if the charset is not ASCII compatible or the file is compressed
+     */
+    public RowIndex<Pojo> index(int every, Path sidecar)
+    {
+        if (every <= 0)
+        {
+            throw new IllegalArgumentException(format("The number of records must be positive: %d", every));
+        }
+        checkUncompressed("indexed");
+        Charset charset = settings.charset;
+        if (!ByteChars.supports(charset))
+        {
+            throw new UnsupportedOperationException(
+                    format("Charset %s is not ASCII compatible, the file cannot be indexed", charset));
+        }
+        try
+        {
+            long length = file.length();
+            long modified = Files.getLastModifiedTime(file.toPath()).toMillis();
+            RowIndex<Pojo> index = RowIndex.load(this, sidecar, every, length, modified, dialect);
+            if (index != null)
+            {
+                return index;
+            }
+            logger.debug("Indexing {}", file);
+            index = RowIndex.build(this, byteLines(charset, Compression.NONE), every);
+            try
+            {
+                index.save(sidecar, length, modified, dialect);
+            }
+            catch (IOException e)
+            {
+                logger.warn("Unable to save the index of {} to {}", file, sidecar, e);
+            }
+            return index;
+        }
+        catch (IOException e)
+        {
+            logger.error("An IO error occurred while reading data from the file.", e);
+            throw unchecked(e);
+        }
+    }
+
+    /**
+     * Follows the file from its start, checking for appended lines every 100 milliseconds. Same as
+     * <code>follow(0, 100, TimeUnit.MILLISECONDS)</code>.
+     *
+     * @return the follower, to be closed by the caller
+     */
+    public Follower<Pojo> follow()
+    {
+        return follow(0, 100, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Follows a file which is being appended to, see {@link Follower}. The file does not have to exist yet.
+     *
+     * @param position the offset to start at, the start of a line (the {@link Follower#position()} of an earlier
+     *            follower, for example)
+     * @param interval how often the blocking methods of the follower check the file for new data
+     * @param unit the unit of the interval
+     * @return the follower, to be closed by the caller
+     * @throws IllegalArgumentException if the position is negative or the interval is not positive
+     * @throws UnsupportedOperationException if the charset is not ASCII compatible or the file is compressed
+     */
+    public Follower<Pojo> follow(long position, long interval, TimeUnit unit)
+    {
+        if (position < 0)
+        {
+            throw new IllegalArgumentException(format("The position must not be negative: %d", position));
+        }
+        if (interval <= 0)
+        {
+            throw new IllegalArgumentException(format("The interval must be positive: %d", interval));
+        }
+        checkUncompressed("followed");
+        Charset charset = settings.charset;
+        if (!ByteChars.supports(charset))
+        {
+            throw new UnsupportedOperationException(
+                    format("Charset %s is not ASCII compatible, the file cannot be followed", charset));
+        }
+        return new Follower<>(file.toPath(), charset, dialect, parser(), position, unit.toNanos(interval));
+    }
+
+    /**
+     * Turns the lines found by the {@link Engine#BYTES} engine into POJOs.
+     *
+     * @author sergey
+     *
+     */
+    private class BytesIterator implements CloseableIterator<Pojo>
+    {
+
+        private final ByteLines lines;
+        private final Meter meter = meter();
+        private final Function<CharSequence, Pojo> parser = parser(meter);
+        /** the next row, parsed ahead to skip the bad rows */
+        private Pojo next;
+        private boolean exhausted;
+
+        BytesIterator(ByteLines lines)
+        {
+            this.lines = lines;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            try
+            {
+                while (next == null && !exhausted)
+                {
+                    if (lines.next())
+                    {
+                        next = parser.apply(lines.line());
+                    }
+                    else
+                    {
+                        exhausted = true;
+                        meter.finish();
+                    }
+                }
+            }
+            catch (IOException e)
+            {
+                logger.error("An IO error occurred while reading data from the file.", e);
+                throw unchecked(e);
+            }
+            return next != null;
+        }
+
+        @Override
+        public Pojo next()
+        {
+            if (!hasNext())
+            {
+                throw new NoSuchElementException();
+            }
+            Pojo result = next;
+            next = null;
+            return result;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            next = null;
+            exhausted = true;
+            meter.finish();
+            lines.close();
+        }
+
+    }
+
 }
@@ -0,0 +1,828 @@
+package assignment.csv;
+
+import static assignment.csv.Utils.checkNotNull;
+import static assignment.csv.Utils.unchecked;
+import static java.lang.String.format;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import assignment.csv.SomeCoolCsvReader.CsvColumn;
+import assignment.csv.SomeCoolCsvReader.Engine;
+
+/**
+ * Sorts a file by one or more annotated columns within a bounded amount of memory, so files much larger than the heap
+ * can be sorted. The file is read with the setup and the settings of a {@link SomeCoolCsvReader} (compression, bad row
+ * policy and so on) and the keys are compared the way the values of the fields compare: numbers numerically, strings
+ * lexicographically, enums by their ordinals, an empty value (<code>null</code>) before all the others. The sort is
+ * stable, records with equal keys keep the order of the file.
+ *
+ * <p>
+ * The records are collected into runs which fit into a share of the {@link #withMemory(long) memory budget}, each run
+ * is sorted and spilled to a temporary file by a pool of {@link #withParallelism(int) parallelism} daemon threads while
+ * the next one is being read. The runs are then merged with a heap, at most a few hundred at a time so that the read
+ * buffers fit into the budget too: a file which makes more runs than that is merged in several passes, the runs of
+ * a pass are merged in parallel. A file which fits into a single run is sorted in memory and touches no temporary file.
+ *
+ * <p>
+ * The records themselves are kept as the raw bytes of the file, they are not bound to POJOs while they are sorted. So
+ * {@link #sortTo(File)} writes the records exactly as they are, the columns which are not annotated included, only
+ * terminated by line feeds. {@link #stream()} parses the sorted records into POJOs. The memory taken by a record is
+ * estimated from the length of the record and of its keys, the budget is met on average, not to the byte.
+ *
+ * <p>
+ * Only the files of UTF-8 and of the ASCII compatible charsets (see {@link SomeCoolCsvReader#withCharset}) can be
+ * sorted, they are always read with the {@link Engine#BYTES} engine.
+ *
+ * @param <Pojo> the type of the rows
+ *
+ * @author sergey
+ *
+ */
+public final class SomeCoolCsvSorter<Pojo>
+{
+
+    /** 64 megabytes */
+    static final long DEFAULT_MEMORY = 64L << 20;
+    static final long MIN_MEMORY = 1L << 20;
+    /** the buffer of a run file being written or read */
+    static final int RUN_BUFFER = 64 << 10;
+    static final int MAX_FAN_IN = 256;
+    /** the estimated heap taken by a record on top of its bytes and keys: the headers of the objects and arrays */
+    static final int RECORD_OVERHEAD = 64;
+
+    private static final AtomicInteger threads = new AtomicInteger();
+
+    private final SomeCoolCsvReader<Pojo> reader;
+    /** the 0 based indexes of the key fields */
+    private final int[] keys;
+    private final CsvColumn[] keyColumns;
+    private final long memory;
+    private final int parallelism;
+    private final Path tempDirectory;
+
+    /**
+     * Creates a new sorter.
+     *
+     * @param reader the reader of the file
+     * @param keys the 1 based indexes of the annotated columns to sort by, the most significant first
+     * @throws IllegalArgumentException if the reader is <code>null</code>, no index is given or an index is not the
+     *             index of a column of the reader
+     */
+    public SomeCoolCsvSorter(SomeCoolCsvReader<Pojo> reader, int... keys)
+    {
+        checkNotNull(reader, "Reader cannot be null");
+        if (keys == null || keys.length == 0)
+        {
+            throw new IllegalArgumentException("Sort by at least one column");
+        }
+        this.keys = new int[keys.length];
+        this.keyColumns = new CsvColumn[keys.length];
+        for (int k = 0; k < keys.length; k++ )
+        {
+            int indx = keys[k];
+            if (indx < 1 || indx > reader.columns.length || !(reader.columns[indx - 1] instanceof CsvColumn))
+            {
+                throw new IllegalArgumentException(format("There is no column with index %d", indx));
+            }
+            this.keys[k] = indx - 1;
+            this.keyColumns[k] = (CsvColumn) reader.columns[indx - 1];
+        }
+        this.reader = reader.withEngine(Engine.BYTES);
+        this.memory = DEFAULT_MEMORY;
+        this.parallelism = Runtime.getRuntime().availableProcessors();
+        this.tempDirectory = Paths.get(System.getProperty("java.io.tmpdir"));
+    }
+
+    /*
+     * creates a re-configured copy of the prototype
+     */
+    private SomeCoolCsvSorter(SomeCoolCsvSorter<Pojo> prototype, long memory, int parallelism, Path tempDirectory)
+    {
+        this.reader = prototype.reader;
+        this.keys = prototype.keys;
+        this.keyColumns = prototype.keyColumns;
+        this.memory = memory;
+        this.parallelism = parallelism;
+        this.tempDirectory = tempDirectory;
+    }
+
+    /**
+     * Returns a copy of this sorter which keeps about the given number of bytes of records in memory, 64 megabytes by
+     * default. The budget is shared by the run being read and the runs being sorted, a larger budget makes fewer and
+     * longer runs.
+     *
+     * @param bytes the budget, at least a megabyte
+     * @return the re-configured sorter
+     * @throws IllegalArgumentException if the budget is less than a megabyte
+     */
+    public SomeCoolCsvSorter<Pojo> withMemory(long bytes)
+    {
+        if (bytes < MIN_MEMORY)
+        {
+            throw new IllegalArgumentException(
+                    format("The memory budget must be at least %d bytes: %d", MIN_MEMORY, bytes));
+        }
+        return new SomeCoolCsvSorter<>(this, bytes, parallelism, tempDirectory);
+    }
+
+    /**
+     * Returns a copy of this sorter which sorts and merges the runs on the given number of threads, the number of
+     * available processors by default.
+     *
+     * @param parallelism the number of threads
+     * @return the re-configured sorter
+     * @throws IllegalArgumentException if the parallelism is not positive
+     */
+    public SomeCoolCsvSorter<Pojo> withParallelism(int parallelism)
+    {
+        if (parallelism < 1)
+        {
+            throw new IllegalArgumentException(format("The parallelism must be positive: %d", parallelism));
+        }
+        return new SomeCoolCsvSorter<>(this, memory, parallelism, tempDirectory);
+    }
+
+    /**
+     * Returns a copy of this sorter which spills the runs into the given directory, the <code>java.io.tmpdir</code> by
+     * default. It needs about as much free space as the file takes, twice as much while the runs of a pass are merged.
+     *
+     * @param directory the directory
+     * @return the re-configured sorter
+     * @throws IllegalArgumentException if the directory is <code>null</code>
+     */
+    public SomeCoolCsvSorter<Pojo> withTempDirectory(Path directory)
+    {
+        checkNotNull(directory, "Directory cannot be null");
+        return new SomeCoolCsvSorter<>(this, memory, parallelism, directory);
+    }
+
+    /**
+     * Sorts the file into another file, which is replaced.
+     *
+     * @param output the output file, it must not be the file being sorted
+     * @return the number of records written
+     * @throws IllegalArgumentException if the output file is <code>null</code> or the charset is not supported
+     */
+    public long sortTo(File output)
+    {
+        checkNotNull(output, "Output file cannot be null");
+        try (Session session = new Session())
+        {
+            Source sorted = session.sort();
+            try (OutputStream out =
+                    new BufferedOutputStream(Files.newOutputStream(output.toPath()), SomeCoolCsvWriter.BLOCK))
+            {
+                long count = 0;
+                while (sorted.next())
+                {
+                    out.write(sorted.current().bytes);
+                    out.write('\n');
+                    count++ ;
+                }
+                return count;
+            }
+        }
+        catch (IOException e)
+        {
+            SomeCoolCsvReader.logger.error("An IO error occurred while sorting the file.", e);
+            throw unchecked(e);
+        }
+    }
+
+    /**
+     * Sorts the file and returns a stream of the sorted rows. The file is read and the runs are sorted and spilled by
+     * this call, the final merge is done as the stream is consumed. The temporary files are deleted once the stream is
+     * exhausted or closed, so a stream which is not read up to the end should be closed.
+     *
+     * @return the stream
+     * @throws IllegalArgumentException if the charset is not supported
+     */
+    public Stream<Pojo> stream()
+    {
+        Session session = new Session();
+        Source sorted;
+        try
+        {
+            sorted = session.sort();
+        }
+        catch (IOException | RuntimeException e)
+        {
+            session.close();
+            if (e instanceof IOException)
+            {
+                SomeCoolCsvReader.logger.error("An IO error occurred while sorting the file.", e);
+            }
+            throw unchecked(e);
+        }
+        Iterator<Pojo> rows = new Rows(sorted, session);
+        return StreamSupport
+                .stream(Spliterators.spliteratorUnknownSize(rows, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(session::close);
+    }
+
+    /**
+     * A record of the file and its keys.
+     */
+    static final class Record
+    {
+
+        final byte[] bytes;
+        final Object[] keys;
+
+        Record(byte[] bytes, Object[] keys)
+        {
+            this.bytes = bytes;
+            this.keys = keys;
+        }
+
+    }
+
+    /**
+     * Compares the keys of records, an empty key first.
+     */
+    static final Comparator<Record> ORDER = (a, b) -> {
+        for (int k = 0; k < a.keys.length; k++ )
+        {
+            Object x = a.keys[k];
+            Object y = b.keys[k];
+            if (x != y)
+            {
+                if (x == null)
+                {
+                    return -1;
+                }
+                if (y == null)
+                {
+                    return 1;
+                }
+                @SuppressWarnings({ "unchecked", "rawtypes" })
+                int c = ((Comparable) x).compareTo(y);
+                if (c != 0)
+                {
+                    return c;
+                }
+            }
+        }
+        return 0;
+    };
+
+    /**
+     * Extracts the keys of records. Not thread safe, every reader of records owns one.
+     */
+    private final class Keys
+    {
+
+        private final Fields fields;
+        private final ByteChars chars = new ByteChars(reader.settings.charset);
+
+        Keys()
+        {
+            int highest = 0;
+            for (int key : keys)
+            {
+                highest = Math.max(highest, key + 1);
+            }
+            fields = new Fields(reader.dialect, highest);
+        }
+
+        Object[] of(CharSequence line)
+        {
+            fields.split(line);
+            Object[] values = new Object[keys.length];
+            for (int k = 0; k < keys.length; k++ )
+            {
+                int field = keys[k];
+                values[k] = field < fields.count()
+                        ? keyColumns[k].value(fields.chars(field), fields.start(field), fields.end(field))
+                        : keyColumns[k].value("", 0, 0);
+            }
+            return values;
+        }
+
+        Object[] of(byte[] bytes)
+        {
+            return of(chars.reset(ByteBuffer.wrap(bytes), 0, bytes.length));
+        }
+
+    }
+
+    /**
+     * The estimated heap taken by a record.
+     */
+    private static long footprint(Record record)
+    {
+        long size = RECORD_OVERHEAD + record.bytes.length;
+        for (Object key : record.keys)
+        {
+            size += key instanceof String ? 40 + 2 * ((String) key).length() : 24;
+        }
+        return size;
+    }
+
+    /**
+     * A sorted sequence of records.
+     */
+    private interface Source
+    {
+
+        /**
+         * @return <code>false</code> if there are no more records
+         */
+        boolean next() throws IOException;
+
+        /**
+         * @return the current record
+         */
+        Record current();
+
+    }
+
+    private static final class ArraySource implements Source
+    {
+
+        private final Record[] records;
+        private int index = -1;
+
+        ArraySource(Record[] records)
+        {
+            this.records = records;
+        }
+
+        @Override
+        public boolean next()
+        {
+            if (index + 1 < records.length)
+            {
+                // let the garbage collector have the record returned last
+                if (index >= 0)
+                {
+                    records[index] = null;
+                }
+                index++ ;
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public Record current()
+        {
+            return records[index];
+        }
+
+    }
+
+    /**
+     * A spilled run, a sequence of records prefixed with their lengths.
+     */
+    private static final class Run
+    {
+
+        final Path path;
+        final long count;
+
+        Run(Path path, long count)
+        {
+            this.path = path;
+            this.count = count;
+        }
+
+    }
+
+    private final class RunReader implements Source, Closeable
+    {
+
+        private final DataInputStream in;
+        private final Keys extractor = new Keys();
+        private long remaining;
+        private Record current;
+
+        RunReader(Run run) throws IOException
+        {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run.path), RUN_BUFFER));
+            this.remaining = run.count;
+        }
+
+        @Override
+        public boolean next() throws IOException
+        {
+            if (remaining == 0)
+            {
+                close();
+                return false;
+            }
+            remaining-- ;
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            current = new Record(bytes, extractor.of(bytes));
+            return true;
+        }
+
+        @Override
+        public Record current()
+        {
+            return current;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            in.close();
+        }
+
+    }
+
+    /**
+     * Merges sorted sources with a heap. A tie goes to the source which comes first, which keeps the merge stable.
+     */
+    private static final class Merge implements Source
+    {
+
+        private final PriorityQueue<Entry> heap;
+        private Entry last;
+
+        Merge(List< ? extends Source> sources) throws IOException
+        {
+            heap = new PriorityQueue<>(sources.size(), (a, b) -> {
+                int c = ORDER.compare(a.source.current(), b.source.current());
+                return c != 0 ? c : Integer.compare(a.index, b.index);
+            });
+            for (int i = 0; i < sources.size(); i++ )
+            {
+                Source source = sources.get(i);
+                if (source.next())
+                {
+                    heap.add(new Entry(source, i));
+                }
+            }
+        }
+
+        @Override
+        public boolean next() throws IOException
+        {
+            if (last != null && last.source.next())
+            {
+                heap.add(last);
+            }
+            last = heap.poll();
+            return last != null;
+        }
+
+        @Override
+        public Record current()
+        {
+            return last.source.current();
+        }
+
+        private static final class Entry
+        {
+
+            final Source source;
+            final int index;
+
+            Entry(Source source, int index)
+            {
+                this.source = source;
+                this.index = index;
+            }
+
+        }
+
+    }
+
+    /**
+     * One sort: the pool of threads and the temporary files, all of which are deleted when it is closed.
+     */
+    private final class Session implements Closeable
+    {
+
+        private final ExecutorService executor = Executors.newFixedThreadPool(parallelism, task -> {
+            Thread thread = new Thread(task, "csv-sort-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        private final Queue<Path> files = new ConcurrentLinkedQueue<>();
+        private final Queue<RunReader> readers = new ConcurrentLinkedQueue<>();
+
+        /*
+         * reads the file into runs and merges them down to a single source
+         */
+        Source sort() throws IOException
+        {
+            if (!ByteChars.supports(reader.settings.charset))
+            {
+                throw new IllegalArgumentException(format(
+                        "The charset %s is not supported, only UTF-8 and the ASCII compatible charsets are",
+                        reader.settings.charset));
+            }
+            Runs runs = new Runs(memory / (parallelism + 1));
+            reader.forEachLine(Meter.NONE, runs);
+            if (runs.spilled.isEmpty())
+            {
+                // the file fits into memory
+                Record[] records = runs.records.toArray(new Record[0]);
+                Arrays.sort(records, ORDER);
+                return new ArraySource(records);
+            }
+            runs.spill();
+            List<Run> spilled = new ArrayList<>(runs.spilled.size());
+            for (Future<Run> run : runs.spilled)
+            {
+                spilled.add(await(run));
+            }
+            int fanIn = (int) Math.max(2, Math.min(MAX_FAN_IN, memory / (2L * RUN_BUFFER * parallelism) - 1));
+            while (spilled.size() > fanIn)
+            {
+                spilled = mergePass(spilled, fanIn);
+            }
+            List<RunReader> sources = new ArrayList<>(spilled.size());
+            for (Run run : spilled)
+            {
+                sources.add(open(run));
+            }
+            return new Merge(sources);
+        }
+
+        /*
+         * merges consecutive groups of runs into longer runs, in parallel
+         */
+        private List<Run> mergePass(List<Run> runs, int fanIn) throws IOException
+        {
+            List<Future<Run>> merged = new ArrayList<>();
+            for (int from = 0; from < runs.size(); from += fanIn)
+            {
+                List<Run> group = runs.subList(from, Math.min(from + fanIn, runs.size()));
+                if (group.size() == 1)
+                {
+                    merged.add(CompletableFuture.completedFuture(group.get(0)));
+                    continue;
+                }
+                merged.add(executor.submit(() -> {
+                    List<RunReader> sources = new ArrayList<>(group.size());
+                    for (Run run : group)
+                    {
+                        sources.add(open(run));
+                    }
+                    Run result = spill(new Merge(sources));
+                    for (Run run : group)
+                    {
+                        delete(run.path);
+                    }
+                    return result;
+                }));
+            }
+            List<Run> result = new ArrayList<>(merged.size());
+            for (Future<Run> run : merged)
+            {
+                result.add(await(run));
+            }
+            return result;
+        }
+
+        private RunReader open(Run run) throws IOException
+        {
+            RunReader runReader = new RunReader(run);
+            readers.add(runReader);
+            return runReader;
+        }
+
+        /*
+         * writes the records of a source into a new temporary file
+         */
+        Run spill(Source source) throws IOException
+        {
+            Path path = Files.createTempFile(tempDirectory, "csv-sort-", ".run");
+            files.add(path);
+            long count = 0;
+            try (DataOutputStream out =
+                    new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), RUN_BUFFER)))
+            {
+                while (source.next())
+                {
+                    byte[] bytes = source.current().bytes;
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                    count++ ;
+                }
+            }
+            return new Run(path, count);
+        }
+
+        private void delete(Path path) throws IOException
+        {
+            Files.deleteIfExists(path);
+            files.remove(path);
+        }
+
+        @Override
+        public void close()
+        {
+            executor.shutdownNow();
+            for (RunReader runReader : readers)
+            {
+                try
+                {
+                    runReader.close();
+                }
+                catch (IOException e)
+                {
+                    SomeCoolCsvReader.logger.debug("Unable to close a run", e);
+                }
+            }
+            for (Path path : files)
+            {
+                try
+                {
+                    Files.deleteIfExists(path);
+                }
+                catch (IOException e)
+                {
+                    SomeCoolCsvReader.logger.warn("Unable to delete the temporary file {}", path, e);
+                }
+            }
+            files.clear();
+        }
+
+        /**
+         * Collects the records of the file into runs. A full run is sorted and spilled by the pool, the reading waits
+         * while all the threads of the pool are busy, so that at most <code>parallelism + 1</code> runs are in memory.
+         */
+        private final class Runs implements Consumer<CharSequence>
+        {
+
+            private final long runMemory;
+            private final Keys extractor = new Keys();
+            final List<Future<Run>> spilled = new ArrayList<>();
+            private int awaited;
+            List<Record> records = new ArrayList<>();
+            private long size;
+            private long row;
+
+            Runs(long runMemory)
+            {
+                this.runMemory = runMemory;
+            }
+
+            @Override
+            public void accept(CharSequence line)
+            {
+                row++ ;
+                Object[] values;
+                try
+                {
+                    values = extractor.of(line);
+                }
+                catch (Exception e)
+                {
+                    reader.badRow(line, row, e);
+                    return;
+                }
+                byte[] bytes = new byte[line.length()];
+                ((ByteChars) line).copyTo(0, bytes.length, ByteBuffer.wrap(bytes));
+                Record record = new Record(bytes, values);
+                records.add(record);
+                size += footprint(record);
+                if (size >= runMemory)
+                {
+                    try
+                    {
+                        spill();
+                    }
+                    catch (IOException e)
+                    {
+                        throw unchecked(e);
+                    }
+                }
+            }
+
+            void spill() throws IOException
+            {
+                if (records.isEmpty())
+                {
+                    return;
+                }
+                if (spilled.size() - awaited >= parallelism)
+                {
+                    await(spilled.get(awaited++ ));
+                }
+                Record[] run = records.toArray(new Record[0]);
+                records = new ArrayList<>();
+                size = 0;
+                spilled.add(executor.submit(() -> {
+                    Arrays.sort(run, ORDER);
+                    return Session.this.spill(new ArraySource(run));
+                }));
+            }
+
+        }
+
+    }
+
+    private static <T> T await(Future<T> future) throws IOException
+    {
+        try
+        {
+            return future.get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the runs to be sorted");
+        }
+        catch (ExecutionException e)
+        {
+            throw unchecked(e.getCause());
+        }
+    }
+
+    /**
+     * Parses the sorted records, skips the bad ones and closes the session once there are no more.
+     */
+    private final class Rows implements Iterator<Pojo>
+    {
+
+        private final Source source;
+        private final Session session;
+        private final Function<CharSequence, Pojo> parser = reader.parser();
+        private final ByteChars chars = new ByteChars(reader.settings.charset);
+        private Pojo next;
+
+        Rows(Source source, Session session)
+        {
+            this.source = source;
+            this.session = session;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            try
+            {
+                while (next == null && source.next())
+                {
+                    byte[] bytes = source.current().bytes;
+                    next = parser.apply(chars.reset(ByteBuffer.wrap(bytes), 0, bytes.length));
+                }
+            }
+            catch (IOException e)
+            {
+                session.close();
+                SomeCoolCsvReader.logger.error("An IO error occurred while sorting the file.", e);
+                throw unchecked(e);
+            }
+            if (next == null)
+            {
+                session.close();
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public Pojo next()
+        {
+            if (!hasNext())
+            {
+                throw new NoSuchElementException();
+            }
+            Pojo result = next;
+            next = null;
+            return result;
+        }
+
+    }
+
+}
@@ -0,0 +1,463 @@
+package assignment.csv;
+
+import static assignment.csv.Utils.checkNotNull;
+import static assignment.csv.Utils.unchecked;
+import static java.lang.String.format;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import assignment.csv.Binder.BooleanGetter;
+import assignment.csv.Binder.DoubleGetter;
+import assignment.csv.Binder.IntGetter;
+import assignment.csv.Binder.LongGetter;
+import assignment.csv.Binder.ObjectGetter;
+import assignment.csv.SomeCoolCsvReader.Setup;
+
+/**
+ * Writes POJOs into a CSV file which the {@link SomeCoolCsvReader} reads back into equal POJOs. The columns, the
+ * delimiter, the quoting and the charset are taken from the same {@link FileMetaData} and {@link CSVColumn}
+ * annotations, so a class can only be written if it can be read. The values are read through public getters
+ * (<code>getName</code>, <code>isName</code> for a boolean) or public fields, called by classes spun by the
+ * {@link Binder}.
+ *
+ * <p>
+ * The rows are encoded straight into a re-usable array of bytes which is written to a {@link FileChannel} in blocks of
+ * a megabyte, there are no writers, no string builders and no strings per row apart from those of the double and
+ * decimal values. A value is only quoted when it needs to be. Doubles are written as
+ * {@link Double#toString(double)} writes them, which the reader parses back into the same value.
+ *
+ * <p>
+ * With a {@link #withParallelism(int) parallelism} above one the rows are taken from the source in batches which are
+ * encoded by a pool of daemon threads, the blocks are written in the order of the rows. At most two batches per thread
+ * are held in memory at a time, so a slow disk holds up the source instead of making the rows pile up.
+ *
+ * <p>
+ * Some values do not survive the round trip: the empty string is written as an empty field and read back as
+ * <code>null</code>, and a value which needs quotes (it contains the delimiter or a line break, for example) cannot be
+ * written at all if the quoting is off, an {@link IllegalArgumentException} is thrown then. A line break within a
+ * quoted value, <code>\r\n</code> and <code>\r</code> included, is read back as it has been written by both engines.
+ *
+ * <p>
+ * Instances are immutable and thread safe, the <code>withX</code> methods return re-configured copies.
+ *
+ * @param <Pojo> the type of the rows
+ *
+ * @author sergey
+ *
+ */
+public final class SomeCoolCsvWriter<Pojo>
+{
+
+    /** the size of the blocks written to the file */
+    static final int BLOCK = 1 << 20;
+    /** the number of rows encoded by a task of the parallel mode */
+    static final int BATCH = 4096;
+
+    private static final AtomicInteger threads = new AtomicInteger();
+
+    private static final ClassValue<Cell[]> cellsOfClass = new ClassValue<Cell[]>()
+    {
+
+        @Override
+        protected Cell[] computeValue(Class< ? > type)
+        {
+            return createCells(type, SomeCoolCsvReader.setup(type).columns.length);
+        }
+
+    };
+
+    /**
+     * Writes the value of an annotated field of a POJO.
+     */
+    private interface Cell
+    {
+
+        void write(Object pojo, RowEncoder out);
+
+    }
+
+    private final File file;
+    private final Dialect dialect;
+    private final Charset charset;
+    /** the cells of the columns, <code>null</code> for the columns which no field is bound to */
+    private final Cell[] cells;
+    private final int parallelism;
+
+    /**
+     * Creates a new writer.
+     *
+     * @param file the output file, it is replaced
+     * @param pojoClass the class of the rows
+     * @throws IllegalArgumentException if a parameter is <code>null</code>, the class is not a valid CSV model (see
+     *             {@link SomeCoolCsvReader#SomeCoolCsvReader(File, Class)}) or an annotated field has neither a public
+     *             getter nor is public
+     */
+    public SomeCoolCsvWriter(File file, Class<Pojo> pojoClass)
+    {
+        this.file = checkNotNull(file, "Output file cannot be null");
+        checkNotNull(pojoClass, "POJO class cannot be null. Please provide the model class.");
+
+        Setup setup = SomeCoolCsvReader.setup(pojoClass);
+        this.dialect = setup.dialect;
+        this.charset = setup.charset;
+        this.cells = cellsOfClass.get(pojoClass);
+        this.parallelism = 1;
+    }
+
+    /*
+     * creates a re-configured copy of the prototype
+     */
+    private SomeCoolCsvWriter(SomeCoolCsvWriter<Pojo> prototype, Charset charset, int parallelism)
+    {
+        this.file = prototype.file;
+        this.dialect = prototype.dialect;
+        this.charset = charset;
+        this.cells = prototype.cells;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Returns a copy of this writer which encodes the values with the given charset instead of the one of the
+     * {@link FileMetaData#charset() annotation}.
+     *
+     * @param charset the charset, UTF-8 or another charset which keeps the ASCII range as is (US-ASCII, ISO-8859-x,
+     *            windows-125x and so on)
+     * @return the re-configured writer
+     * @throws IllegalArgumentException if the charset is <code>null</code>
+     */
+    public SomeCoolCsvWriter<Pojo> withCharset(Charset charset)
+    {
+        checkNotNull(charset, "Charset cannot be null");
+        return new SomeCoolCsvWriter<>(this, charset, parallelism);
+    }
+
+    /**
+     * Returns a copy of this writer which encodes the rows on the given number of threads, 1 (the calling thread
+     * only) by default.
+     *
+     * @param parallelism the number of threads
+     * @return the re-configured writer
+     * @throws IllegalArgumentException if the parallelism is not positive
+     */
+    public SomeCoolCsvWriter<Pojo> withParallelism(int parallelism)
+    {
+        if (parallelism < 1)
+        {
+            throw new IllegalArgumentException(format("The parallelism must be positive: %d", parallelism));
+        }
+        return new SomeCoolCsvWriter<>(this, charset, parallelism);
+    }
+
+    /**
+     * Replaces the contents of the file with the rows.
+     *
+     * @param rows the rows
+     * @return the number of rows written
+     * @throws IllegalArgumentException if a row is <code>null</code>, a value cannot be written (see above) or the
+     *             charset is not supported, see {@link #withCharset(Charset)}
+     */
+    public long write(Iterable< ? extends Pojo> rows)
+    {
+        checkNotNull(rows, "Rows cannot be null");
+        return write(rows.iterator());
+    }
+
+    /**
+     * Replaces the contents of the file with the rows of a stream, which is consumed but not closed.
+     *
+     * @param rows the rows
+     * @return the number of rows written
+     * @throws IllegalArgumentException if a row is <code>null</code>, a value cannot be written (see above) or the
+     *             charset is not supported, see {@link #withCharset(Charset)}
+     */
+    public long write(Stream< ? extends Pojo> rows)
+    {
+        checkNotNull(rows, "Rows cannot be null");
+        return write(rows.iterator());
+    }
+
+    private long write(Iterator< ? extends Pojo> rows)
+    {
+        if (!ByteChars.supports(charset))
+        {
+            throw new IllegalArgumentException(format(
+                    "The charset %s is not supported, only UTF-8 and the ASCII compatible charsets are", charset));
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+        {
+            return parallelism == 1 ? writeSequentially(rows, channel) : writeInParallel(rows, channel);
+        }
+        catch (IOException e)
+        {
+            SomeCoolCsvReader.logger.error("An IO error occurred while writing data to the file.", e);
+            throw unchecked(e);
+        }
+    }
+
+    private long writeSequentially(Iterator< ? extends Pojo> rows, FileChannel channel) throws IOException
+    {
+        RowEncoder out = new RowEncoder(dialect, charset, BLOCK + (BLOCK >> 3));
+        long count = 0;
+        while (rows.hasNext())
+        {
+            encode(rows.next(), out);
+            count++ ;
+            if (out.length() >= BLOCK)
+            {
+                out.writeTo(channel);
+            }
+        }
+        out.writeTo(channel);
+        return count;
+    }
+
+    /*
+     * the calling thread fills the batches and writes the encoded ones in order, the pool encodes them
+     */
+    private long writeInParallel(Iterator< ? extends Pojo> rows, FileChannel channel) throws IOException
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, task -> {
+            Thread thread = new Thread(task, "csv-writer-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Deque<Future<Batch>> pending = new ArrayDeque<>();
+        Deque<Batch> free = new ArrayDeque<>();
+        try
+        {
+            long count = 0;
+            while (rows.hasNext())
+            {
+                if (pending.size() == 2 * parallelism)
+                {
+                    free.add(writeNext(pending, channel));
+                }
+                Batch batch = free.isEmpty() ? new Batch(new RowEncoder(dialect, charset, BLOCK)) : free.poll();
+                while (batch.size < BATCH && rows.hasNext())
+                {
+                    batch.rows[batch.size++ ] = rows.next();
+                }
+                count += batch.size;
+                pending.add(executor.submit(() -> encode(batch)));
+            }
+            while (!pending.isEmpty())
+            {
+                writeNext(pending, channel);
+            }
+            return count;
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /*
+     * waits for the oldest batch, writes it and returns it emptied
+     */
+    private static Batch writeNext(Deque<Future<Batch>> pending, FileChannel channel) throws IOException
+    {
+        Batch batch;
+        try
+        {
+            batch = pending.poll().get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the rows to be encoded");
+        }
+        catch (ExecutionException e)
+        {
+            throw unchecked(e.getCause());
+        }
+        batch.out.writeTo(channel);
+        Arrays.fill(batch.rows, 0, batch.size, null);
+        batch.size = 0;
+        return batch;
+    }
+
+    private Batch encode(Batch batch)
+    {
+        for (int i = 0; i < batch.size; i++ )
+        {
+            encode(batch.rows[i], batch.out);
+        }
+        return batch;
+    }
+
+    private void encode(Object pojo, RowEncoder out)
+    {
+        checkNotNull(pojo, "Rows cannot be null");
+        out.begin();
+        for (int i = 0; i < cells.length; i++ )
+        {
+            if (i > 0)
+            {
+                out.delimiter();
+            }
+            if (cells[i] != null)
+            {
+                cells[i].write(pojo, out);
+            }
+        }
+        out.end();
+    }
+
+    /**
+     * The rows of a task of the parallel mode and their encoding, re-used once written.
+     */
+    private static final class Batch
+    {
+
+        final Object[] rows = new Object[BATCH];
+        final RowEncoder out;
+        int size;
+
+        Batch(RowEncoder out)
+        {
+            this.out = out;
+        }
+
+    }
+
+    private static Cell[] createCells(Class< ? > pojoClass, int width)
+    {
+        Cell[] cells = new Cell[width];
+        for (Class< ? > c = pojoClass; c != null; c = c.getSuperclass())
+        {
+            for (Field field : c.getDeclaredFields())
+            {
+                CSVColumn annotation = field.getAnnotation(CSVColumn.class);
+                if (annotation != null)
+                {
+                    // the reader has checked the indexes already
+                    cells[annotation.indx() - 1] = cell(field);
+                }
+            }
+        }
+        return cells;
+    }
+
+    /*
+     * looks up the getter of an annotated field and wraps it into the cell matching the type of the field
+     */
+    private static Cell cell(Field field)
+    {
+        Class< ? > type = field.getType();
+        MethodHandle getter;
+        try
+        {
+            Method method = getterMethodFor(field);
+            if (method != null)
+            {
+                getter = MethodHandles.lookup().unreflect(method);
+            }
+            else
+            {
+                getter = MethodHandles.lookup().findGetter(field.getDeclaringClass(), field.getName(), type);
+            }
+        }
+        catch (NoSuchFieldException | IllegalAccessException e)
+        {
+            SomeCoolCsvReader.logger.error("Unable to find neither a public getter nor public field", e);
+            throw new IllegalArgumentException("Unable to find a public getter method for the annotated field " + field,
+                    e);
+        }
+        if (type == int.class)
+        {
+            IntGetter intGetter = Binder.intGetter(getter);
+            return (pojo, out) -> out.value(intGetter.get(pojo));
+        }
+        if (type == long.class)
+        {
+            LongGetter longGetter = Binder.longGetter(getter);
+            return (pojo, out) -> out.value(longGetter.get(pojo));
+        }
+        if (type == double.class)
+        {
+            DoubleGetter doubleGetter = Binder.doubleGetter(getter);
+            return (pojo, out) -> out.value(Double.toString(doubleGetter.get(pojo)));
+        }
+        if (type == boolean.class)
+        {
+            BooleanGetter booleanGetter = Binder.booleanGetter(getter);
+            return (pojo, out) -> out.value(booleanGetter.get(pojo) ? "true" : "false");
+        }
+        ObjectGetter objectGetter = Binder.objectGetter(getter);
+        if (type.isEnum())
+        {
+            return (pojo, out) -> {
+                Enum< ? > value = (Enum< ? >) objectGetter.get(pojo);
+                if (value != null)
+                {
+                    out.value(value.name());
+                }
+            };
+        }
+        if (type == BigDecimal.class || type == String.class)
+        {
+            return (pojo, out) -> {
+                Object value = objectGetter.get(pojo);
+                if (value != null)
+                {
+                    out.value(value.toString());
+                }
+            };
+        }
+        // the reader has rejected the other types already
+        throw new IllegalArgumentException(format("The type %s of the annotated field %s is not supported",
+                type.getName(), field));
+    }
+
+    /*
+     * Determines the public getter method for a field. Returns null if no accessor is found
+     */
+    private static Method getterMethodFor(Field field)
+    {
+        char[] array = field.getName().toCharArray();
+        array[0] = Character.toUpperCase(array[0]);
+        String suffix = new String(array);
+        Class< ? > declaringClass = field.getDeclaringClass();
+        for (String prefix : field.getType() == boolean.class ? new String[] { "is", "get" } : new String[] { "get" })
+        {
+            try
+            {
+                Method method = declaringClass.getMethod(prefix + suffix);
+                if (method.getReturnType() == field.getType() && !Modifier.isStatic(method.getModifiers()))
+                {
+                    return method;
+                }
+            }
+            catch (NoSuchMethodException | SecurityException e)
+            {
+                SomeCoolCsvReader.logger.debug("Unable to find public getter method {}{} for field {}", prefix, suffix,
+                        field);
+            }
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,73 @@
+package assignment.csv;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded queue for exactly one producer thread and one consumer thread. Neither side ever takes a lock: the producer
+ * only writes the tail, the consumer only writes the head, and each publishes its writes with an ordered store which
+ * the other side reads with a volatile load.
+ *
+ * @param <T> the type of the elements
+ *
+ * @author sergey
+ *
+ */
+final class SpscRing<T>
+{
+
+    private final AtomicReferenceArray<T> slots;
+    private final int mask;
+    /** the index of the next element to take, written by the consumer only */
+    private final AtomicLong head = new AtomicLong();
+    /** the index of the next free slot, written by the producer only */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * @param capacity the maximal number of elements, rounded up to a power of two
+     */
+    SpscRing(int capacity)
+    {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * Adds an element, to be called by the producer only.
+     *
+     * @param element the element
+     * @return <code>false</code> if the ring is full
+     */
+    boolean offer(T element)
+    {
+        long t = tail.get();
+        if (t - head.get() == slots.length())
+        {
+            return false;
+        }
+        slots.lazySet((int) t & mask, element);
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    /**
+     * Takes an element, to be called by the consumer only.
+     *
+     * @return the element or <code>null</code> if the ring is empty
+     */
+    T poll()
+    {
+        long h = head.get();
+        if (h == tail.get())
+        {
+            return null;
+        }
+        int slot = (int) h & mask;
+        T element = slots.get(slot);
+        slots.lazySet(slot, null);
+        head.lazySet(h + 1);
+        return element;
+    }
+
+}
@@ -0,0 +1,216 @@
+package assignment.csv;
+
+import static java.lang.String.format;
+
+import java.nio.charset.Charset;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hands out one {@link String} instance per distinct value of a column, see {@link CSVColumn#dedup()}. The values are
+ * looked up by the hash and the characters of the raw range, so a hit allocates and decodes nothing. Raw bytes only
+ * match the bytes of the same charset, readers of the same class with different charsets do not share values.
+ *
+ * <p>
+ * The cache never holds more values than its capacity. A value is looked for in a small window of slots, and when the
+ * window is full the second chance (clock) policy picks the value to evict: a value used since the clock hand last
+ * passed it survives one more round. Columns of many distinct values therefore just keep evicting, they cannot make the
+ * cache grow.
+ *
+ * <p>
+ * The cache belongs to a column of a POJO class and is shared by all the readers (and threads) reading that class. It
+ * is lock free, two threads missing the same value at the same time at worst create two equal strings.
+ *
+ * @author sergey
+ *
+ */
+public final class StringCache
+{
+
+    private static final int WINDOW = 8;
+    /** the largest power of two an array can hold */
+    static final int MAX_CAPACITY = 1 << 30;
+
+    /**
+     * A cached value. Immutable but for the reference bit, which is only a hint.
+     */
+    private static final class Entry
+    {
+
+        final int hash;
+        /** the charset of the raw bytes (one character per byte) of the key, null if it holds decoded characters */
+        final Charset charset;
+        final String key;
+        final String value;
+        boolean referenced;
+
+        Entry(int hash, Charset charset, String key, String value)
+        {
+            this.hash = hash;
+            this.charset = charset;
+            this.key = key;
+            this.value = value;
+        }
+
+    }
+
+    private final AtomicReferenceArray<Entry> entries;
+    private final int mask;
+    private final int shift;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param size the maximal number of values, rounded up to a power of two (and at least the size of the window) but
+     *            at most {@link #MAX_CAPACITY}
+     * @throws IllegalArgumentException if the size is not positive
+     */
+    StringCache(int size)
+    {
+        if (size < 1)
+        {
+            throw new IllegalArgumentException(format("The size of a string cache must be positive: %d", size));
+        }
+        int capacity = capacity(size);
+        this.entries = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+        this.shift = Integer.numberOfLeadingZeros(capacity) + 1;
+    }
+
+    /*
+     * rounds a positive size up to a power of two, clamped so that the rounding cannot overflow
+     */
+    static int capacity(int size)
+    {
+        if (size > MAX_CAPACITY / 2)
+        {
+            return MAX_CAPACITY;
+        }
+        return Integer.highestOneBit(Math.max(WINDOW, size) - 1) << 1;
+    }
+
+    /**
+     * Returns the string of a non empty range of characters.
+     *
+     * @param chars the characters
+     * @param start start index, inclusive
+     * @param end end index, exclusive
+     * @return the cached or a newly created string
+     */
+    String get(CharSequence chars, int start, int end)
+    {
+        int hash = Numbers.hash(chars, start, end);
+        Charset charset = chars instanceof ByteChars ? ((ByteChars) chars).charset() : null;
+        int first = (hash * 0x9E3779B9) >>> shift;
+        for (int i = 0; i < WINDOW; i++ )
+        {
+            Entry entry = entries.get((first + i) & mask);
+            if (entry == null)
+            {
+                break;
+            }
+            if (entry.hash == hash && Objects.equals(entry.charset, charset) && Numbers.equals(chars, start, end, entry.key))
+            {
+                if (!entry.referenced)
+                {
+                    entry.referenced = true;
+                }
+                hits.increment();
+                return entry.value;
+            }
+        }
+        misses.increment();
+        String value = ByteChars.toString(chars, start, end);
+        String key = value;
+        if (charset != null && !Numbers.equals(chars, start, end, value))
+        {
+            // the key of a non ASCII value keeps the raw bytes
+            char[] bytes = new char[end - start];
+            for (int i = start; i < end; i++ )
+            {
+                bytes[i - start] = chars.charAt(i);
+            }
+            key = new String(bytes);
+        }
+        entries.set(victim(first), new Entry(hash, charset, key, value));
+        return value;
+    }
+
+    /*
+     * the first free slot of the window, or the first one whose value has not been used since the hand passed it
+     */
+    private int victim(int first)
+    {
+        for (int i = 0; i < WINDOW; i++ )
+        {
+            int slot = (first + i) & mask;
+            if (entries.get(slot) == null)
+            {
+                return slot;
+            }
+        }
+        for (int round = 0; round < 2; round++ )
+        {
+            for (int i = 0; i < WINDOW; i++ )
+            {
+                int slot = (first + i) & mask;
+                Entry entry = entries.get(slot);
+                if (entry == null || !entry.referenced)
+                {
+                    return slot;
+                }
+                entry.referenced = false;
+            }
+        }
+        return first;
+    }
+
+    /**
+     * @return the number of lookups which found the value
+     */
+    public long getHits()
+    {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of lookups which had to create the string
+     */
+    public long getMisses()
+    {
+        return misses.sum();
+    }
+
+    /**
+     * @return the maximal number of values the cache holds
+     */
+    public int getCapacity()
+    {
+        return entries.length();
+    }
+
+    /**
+     * @return the number of values currently cached
+     */
+    public int size()
+    {
+        int size = 0;
+        for (int i = 0; i < entries.length(); i++ )
+        {
+            if (entries.get(i) != null)
+            {
+                size++ ;
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("StringCache[size=%d, capacity=%d, hits=%d, misses=%d]", size(), getCapacity(), getHits(),
+                getMisses());
+    }
+
+}
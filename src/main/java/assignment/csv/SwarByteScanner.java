@@ -0,0 +1,113 @@
+package assignment.csv;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * SIMD within a register: eight bytes are read as one <code>long</code> and compared with the byte of interest
+ * repeated eight times, the matching bytes are then found with a few arithmetic operations and no branches. The
+ * remaining bytes of a range (less than eight) are compared one by one.
+ *
+ * @author sergey
+ *
+ */
+final class SwarByteScanner extends ByteScanner
+{
+
+    private static final long ONES = 0x0101010101010101L;
+    private static final long LOW_BITS = 0x7f7f7f7f7f7f7f7fL;
+
+    /*
+     * the byte repeated in every byte of a long, a byte which never occurs is mapped to the first byte
+     */
+    private static long pattern(int b, int fallback)
+    {
+        return ONES * ((b & ~0xff) == 0 ? b : fallback & 0xff);
+    }
+
+    /**
+     * Sets the highest bit of every zero byte of a word, and no other bit. Unlike the well known
+     * <code>(x - 0x01..) &amp; ~x &amp; 0x80..</code> this is exact for all the bytes, not only the lowest zero byte.
+     *
+     * @param x the word
+     * @return the mask
+     */
+    static long zeros(long x)
+    {
+        return ~(((x & LOW_BITS) + LOW_BITS) | x | LOW_BITS);
+    }
+
+    /*
+     * reads a word so that the byte at the lowest index is the lowest byte of the long
+     */
+    private static long word(ByteBuffer buffer, int index, boolean swap)
+    {
+        long word = buffer.getLong(index);
+        return swap ? Long.reverseBytes(word) : word;
+    }
+
+    private static boolean matches(int x, int a, int b, int c)
+    {
+        return x == a || x == b || x == c;
+    }
+
+    @Override
+    int indexOf(ByteBuffer buffer, int from, int to, int a, int b, int c)
+    {
+        long pa = pattern(a, a);
+        long pb = pattern(b, a);
+        long pc = pattern(c, a);
+        boolean swap = buffer.order() == ByteOrder.BIG_ENDIAN;
+        int i = from;
+        for (; i + 8 <= to; i += 8)
+        {
+            long word = word(buffer, i, swap);
+            long mask = zeros(word ^ pa) | zeros(word ^ pb) | zeros(word ^ pc);
+            if (mask != 0)
+            {
+                return i + (Long.numberOfTrailingZeros(mask) >>> 3);
+            }
+        }
+        for (; i < to; i++ )
+        {
+            if (matches(buffer.get(i) & 0xff, a, b, c))
+            {
+                return i;
+            }
+        }
+        return to;
+    }
+
+    @Override
+    int positions(ByteBuffer buffer, int from, int to, int a, int b, int[] positions)
+    {
+        long pa = pattern(a, a);
+        long pb = pattern(b, a);
+        boolean swap = buffer.order() == ByteOrder.BIG_ENDIAN;
+        int count = 0;
+        int i = from;
+        for (; i + 8 <= to; i += 8)
+        {
+            long word = word(buffer, i, swap);
+            long mask = zeros(word ^ pa) | zeros(word ^ pb);
+            while (mask != 0)
+            {
+                if (count == positions.length)
+                {
+                    return count;
+                }
+                positions[count++ ] = i + (Long.numberOfTrailingZeros(mask) >>> 3);
+                mask &= mask - 1;
+            }
+        }
+        for (; i < to && count < positions.length; i++ )
+        {
+            if (matches(buffer.get(i) & 0xff, a, b, b))
+            {
+                positions[count++ ] = i;
+            }
+        }
+        return count;
+    }
+
+}
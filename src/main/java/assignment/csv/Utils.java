@@ -1,5 +1,10 @@
 package assignment.csv;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
 /**
  * This class contains utilities usually imported from guava or apache commons, but for the sake of the demo are
  * included here to reduce the number of dependencies.
@@ -45,6 +50,37 @@ public class Utils
         return null;
     }
 
+    /**
+     * Replaces the contents of a (small) file atomically where the file system supports it: the contents are written
+     * to a temporary file next to it which is then moved over it. A crash leaves either the old or the new contents.
+     *
+     * @param file the file
+     * @param contents the new contents
+     * @throws IOException if writing fails
+     */
+    static void replace(Path file, byte[] contents) throws IOException
+    {
+        Path absolute = file.toAbsolutePath();
+        Path temp = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+        try
+        {
+            Files.write(temp, contents);
+            try
+            {
+                Files.move(temp, absolute, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+            catch (IOException e)
+            {
+                // the file system cannot move atomically
+                Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        finally
+        {
+            Files.deleteIfExists(temp);
+        }
+    }
+
     @SuppressWarnings("unchecked")
     private static <E extends Throwable> void throwAny(final Throwable e) throws E
     {
@@ -0,0 +1,189 @@
+package assignment.csv;
+
+import static java.lang.invoke.MethodType.methodType;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodHandles.Lookup;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+/**
+ * Checks both the spun implementations (accessor methods, constructors) and the method handle fallback (fields).
+ *
+ * @author sergey
+ *
+ */
+public class BinderTest
+{
+
+    @Rule
+    public ExpectedException ex = ExpectedException.none();
+
+    public static class Bean
+    {
+
+        public int i;
+        public long l;
+        public double d;
+        public boolean b;
+        public String s;
+
+        private int setterCalls;
+
+        public void setI(int i)
+        {
+            setterCalls++ ;
+            this.i = i;
+        }
+
+        public void setL(long l)
+        {
+            setterCalls++ ;
+            this.l = l;
+        }
+
+        public void setD(double d)
+        {
+            setterCalls++ ;
+            this.d = d;
+        }
+
+        public void setB(boolean b)
+        {
+            setterCalls++ ;
+            this.b = b;
+        }
+
+        public void setS(String s)
+        {
+            if (s.isEmpty())
+            {
+                throw new IllegalStateException("empty");
+            }
+            setterCalls++ ;
+            this.s = s;
+        }
+
+        public int getI()
+        {
+            return i + 1;
+        }
+
+        public long getL()
+        {
+            return l + 1;
+        }
+
+        public double getD()
+        {
+            return d + 1;
+        }
+
+        public boolean isB()
+        {
+            return !b;
+        }
+
+        public String getS()
+        {
+            return s + 1;
+        }
+
+    }
+
+    private final Lookup lookup = MethodHandles.lookup();
+
+    @Test
+    public void testSetterMethods() throws Throwable
+    {
+        Bean bean = (Bean) Binder.instantiator(lookup.findConstructor(Bean.class, methodType(void.class))).newInstance();
+
+        Binder.intSetter(method("setI", int.class)).set(bean, 42);
+        Binder.longSetter(method("setL", long.class)).set(bean, Long.MAX_VALUE);
+        Binder.doubleSetter(method("setD", double.class)).set(bean, 0.5);
+        Binder.booleanSetter(method("setB", boolean.class)).set(bean, true);
+        Binder.objectSetter(method("setS", String.class)).set(bean, "value");
+
+        assertEquals(42, bean.i);
+        assertEquals(Long.MAX_VALUE, bean.l);
+        assertEquals(0.5, bean.d, 0);
+        assertTrue(bean.b);
+        assertEquals("value", bean.s);
+        assertEquals(5, bean.setterCalls);
+    }
+
+    @Test
+    public void testFields() throws Throwable
+    {
+        Bean bean = new Bean();
+
+        Binder.intSetter(lookup.findSetter(Bean.class, "i", int.class)).set(bean, 42);
+        Binder.longSetter(lookup.findSetter(Bean.class, "l", long.class)).set(bean, -1);
+        Binder.doubleSetter(lookup.findSetter(Bean.class, "d", double.class)).set(bean, 0.5);
+        Binder.booleanSetter(lookup.findSetter(Bean.class, "b", boolean.class)).set(bean, true);
+        Binder.objectSetter(lookup.findSetter(Bean.class, "s", String.class)).set(bean, "value");
+
+        assertEquals(42, bean.i);
+        assertEquals(-1, bean.l);
+        assertEquals(0.5, bean.d, 0);
+        assertTrue(bean.b);
+        assertEquals("value", bean.s);
+        assertEquals(0, bean.setterCalls);
+    }
+
+    @Test
+    public void testGetters() throws Throwable
+    {
+        Bean bean = new Bean();
+        bean.i = 42;
+        bean.l = -1;
+        bean.d = 0.5;
+        bean.s = "value";
+
+        // the getter methods, which differ from the fields
+        assertEquals(43, Binder.intGetter(getter("getI")).get(bean));
+        assertEquals(0, Binder.longGetter(getter("getL")).get(bean));
+        assertEquals(1.5, Binder.doubleGetter(getter("getD")).get(bean), 0);
+        assertTrue(Binder.booleanGetter(getter("isB")).get(bean));
+        assertEquals("value1", Binder.objectGetter(getter("getS")).get(bean));
+
+        // the fields
+        assertEquals(42, Binder.intGetter(lookup.findGetter(Bean.class, "i", int.class)).get(bean));
+        assertEquals(-1, Binder.longGetter(lookup.findGetter(Bean.class, "l", long.class)).get(bean));
+        assertEquals(0.5, Binder.doubleGetter(lookup.findGetter(Bean.class, "d", double.class)).get(bean), 0);
+        assertFalse(Binder.booleanGetter(lookup.findGetter(Bean.class, "b", boolean.class)).get(bean));
+        assertEquals("value", Binder.objectGetter(lookup.findGetter(Bean.class, "s", String.class)).get(bean));
+    }
+
+    @Test
+    public void testExceptionsPassThrough() throws Throwable
+    {
+        ex.expect(IllegalStateException.class);
+        ex.expectMessage("empty");
+        Binder.objectSetter(method("setS", String.class)).set(new Bean(), "");
+    }
+
+    @Test
+    public void testWrongTargetType() throws Throwable
+    {
+        ex.expect(ClassCastException.class);
+        Binder.objectSetter(method("setS", String.class)).set(new Bean(), 1);
+    }
+
+    private MethodHandle getter(String name) throws ReflectiveOperationException
+    {
+        return lookup.unreflect(Bean.class.getMethod(name));
+    }
+
+    private MethodHandle method(String name, Class< ? > type) throws ReflectiveOperationException
+    {
+        return lookup.unreflect(Bean.class.getMethod(name, type));
+    }
+
+}
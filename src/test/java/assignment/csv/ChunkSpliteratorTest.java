@@ -0,0 +1,128 @@
+package assignment.csv;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import org.junit.Test;
+
+import assignment.csv.FileMetaData.Escape;
+
+/**
+ * Checks that the chunks produced by splitting cover every line exactly once and in the order of the file.
+ *
+ * @author sergey
+ *
+ */
+public class ChunkSpliteratorTest
+{
+
+    @Test
+    public void testSplitting() throws IOException
+    {
+        List<String> expected = new ArrayList<>();
+        StringBuilder contents = new StringBuilder();
+        for (int i = 0; i < 500; i++ )
+        {
+            String line = "line" + i + ",value" + (i * 31 % 17);
+            expected.add(line);
+            contents.append(line).append(i % 2 == 0 ? "\r\n" : "\n");
+            if (i % 50 == 0)
+            {
+                contents.append("\n  \n");
+            }
+        }
+        File file = file(contents.toString());
+
+        ChunkSpliterator<String> spliterator = spliterator(file, 16);
+        List<Spliterator<String>> chunks = new ArrayList<>();
+        split(spliterator, chunks);
+        assertTrue("The file must have been split", chunks.size() > 10);
+
+        List<String> actual = new ArrayList<>();
+        chunks.forEach(chunk -> chunk.forEachRemaining(actual::add));
+        assertEquals(expected, actual);
+
+        assertEquals(expected, StreamSupport.stream(spliterator(file, 16), true).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testCrLfIsNotSplit() throws IOException
+    {
+        // the middle falls on the \r
+        File file = file("abc\r\nde");
+        ParseStatistics statistics = new ParseStatistics();
+        ChunkSpliterator<String> spliterator = new ChunkSpliterator<>(file.toPath(), UTF_8,
+                new Dialect(',', '\0', Escape.DOUBLED), 7, 1, 0, file.length(),
+                () -> new Meter(statistics, null, file.getPath(), 0), meter -> ByteChars::toString);
+        Spliterator<String> prefix = spliterator.trySplit();
+        assertNotNull(prefix);
+        List<String> actual = new ArrayList<>();
+        prefix.forEachRemaining(actual::add);
+        spliterator.forEachRemaining(actual::add);
+        assertEquals(Arrays.asList("abc", "de"), actual);
+        assertEquals(0, statistics.getBlankLines());
+    }
+
+    @Test
+    public void testSingleLineIsNotSplit() throws IOException
+    {
+        File file = file("a single line which is much longer than the minimal chunk");
+        ChunkSpliterator<String> spliterator = spliterator(file, 4);
+        assertNull(spliterator.trySplit());
+        List<String> actual = new ArrayList<>();
+        spliterator.forEachRemaining(actual::add);
+        assertEquals(1, actual.size());
+    }
+
+    @Test
+    public void testStartedChunkIsNotSplit() throws IOException
+    {
+        File file = file("a\nb\nc\nd\ne\nf\ng\nh\n");
+        ChunkSpliterator<String> spliterator = spliterator(file, 1);
+        assertNotNull(spliterator.trySplit());
+        assertTrue(spliterator.tryAdvance(s -> {}));
+        assertNull(spliterator.trySplit());
+    }
+
+    private static void split(Spliterator<String> spliterator, List<Spliterator<String>> chunks)
+    {
+        Spliterator<String> prefix = spliterator.trySplit();
+        if (prefix == null)
+        {
+            chunks.add(spliterator);
+        }
+        else
+        {
+            split(prefix, chunks);
+            split(spliterator, chunks);
+        }
+    }
+
+    private static ChunkSpliterator<String> spliterator(File file, long minChunk)
+    {
+        return new ChunkSpliterator<>(file.toPath(), UTF_8, new Dialect(',', '"', Escape.DOUBLED), 7, minChunk, 0,
+                file.length(), () -> ByteChars::toString);
+    }
+
+    private static File file(String contents) throws IOException
+    {
+        File temp = File.createTempFile("test", ".csv");
+        temp.deleteOnExit();
+        Files.write(temp.toPath(), contents.getBytes(UTF_8));
+        return temp;
+    }
+
+}
@@ -0,0 +1,223 @@
+package assignment.csv;
+
+import static java.nio.charset.Charset.defaultCharset;
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import assignment.csv.ColumnarTable.ByteStore;
+import assignment.csv.SomeCoolCsvReader.BadRowPolicy;
+import assignment.csv.SomeCoolCsvReader.Engine;
+import assignment.csv.SomeCoolCsvReaderTest.Currency;
+import assignment.csv.SomeCoolCsvReaderTest.Person;
+import assignment.csv.SomeCoolCsvReaderTest.Trade;
+
+/**
+ * @author sergey
+ *
+ */
+public class ColumnarTableTest
+{
+
+    @Rule
+    public ExpectedException ex = ExpectedException.none();
+
+    /**
+     * A string column before a number column.
+     */
+    @FileMetaData
+    public static class Named
+    {
+
+        @CSVColumn(indx = 1)
+        public String name;
+        @CSVColumn(indx = 2)
+        public int number;
+
+    }
+
+    @Test
+    public void testTypedColumns() throws IOException
+    {
+        SomeCoolCsvReader<Trade> reader = reader(
+                " 7 | 10000000000 | 1.25 | TRUE | 12.50 | EUR\n-8|0|-3e2|false|-0.001|USD\n||||\n1|1|1|true|123456789012345678901234.5|GBP\n",
+                Trade.class);
+        for (SomeCoolCsvReader<Trade> r : Arrays.asList(reader, reader.withEngine(Engine.BYTES)))
+        {
+            for (boolean offHeap : new boolean[] { false, true })
+            {
+                ColumnarTable<Trade> table = r.toColumnarTable(offHeap);
+                assertEquals(4, table.size());
+                assertEquals(0, table.offHeapBytes());
+                assertEquals(Arrays.asList(7, -8, 0, 1), table.ints(1).boxed().collect(toList()));
+                assertEquals(10000000001L, table.longs(2).sum());
+                assertEquals(-297.75, table.doubles(3).sum(), 0);
+                assertTrue(table.getBoolean(0, 4));
+                assertFalse(table.getBoolean(2, 4));
+                assertEquals(new BigDecimal("12.50"), table.getDecimal(0, 5));
+                assertEquals(new BigDecimal("123456789012345678901234.5"), table.getDecimal(3, 5));
+                assertTrue(table.isNull(2, 5));
+                assertFalse(table.isNull(2, 1));
+                assertEquals(Currency.USD, table.<Currency> getEnum(1, 6));
+                assertTrue(table.isNull(2, 6));
+
+                Trade trade = table.get(1);
+                assertEquals(-8, trade.id);
+                assertEquals(-300, trade.price, 0);
+                assertEquals(new BigDecimal("-0.001"), trade.amount);
+                assertEquals(Currency.USD, trade.getCurrency());
+                trade = table.get(2);
+                assertNull(trade.amount);
+                assertNull(trade.getCurrency());
+            }
+        }
+    }
+
+    @Test
+    public void testStrings() throws IOException
+    {
+        SomeCoolCsvReader<Person> reader = reader("John, jr, Doe\nJane\n\nJim,,Brown,x,y\nJurgen,,Doe\n", Person.class);
+        for (SomeCoolCsvReader<Person> r : Arrays.asList(reader, reader.withEngine(Engine.BYTES)))
+        {
+            for (boolean offHeap : new boolean[] { false, true })
+            {
+                ColumnarTable<Person> table = r.toColumnarTable(offHeap);
+                assertEquals(4, table.size());
+                assertEquals(Arrays.asList("John", "Jane", "Jim", "Jurgen"), table.strings(1).collect(toList()));
+                assertEquals(Arrays.asList("Doe", null, "Brown", "Doe"), table.strings(3).collect(toList()));
+                assertEquals(Arrays.asList(0, 3), table.rowsEqualTo(3, "Doe").boxed().collect(toList()));
+                assertEquals(Arrays.asList(1), table.rowsEqualTo(3, null).boxed().collect(toList()));
+                assertEquals(Arrays.asList(3), table.rowsEqualTo(1, "Jurgen").boxed().collect(toList()));
+                assertEquals("Jim", table.get(2).getFirstName());
+                assertEquals("Brown", table.get(2).getSecondName());
+                assertEquals(offHeap, table.offHeapBytes() > 0);
+            }
+        }
+    }
+
+    @Test
+    public void testBadRow() throws IOException
+    {
+        SomeCoolCsvReader<Named> reader =
+                reader("ab,1\nxyz,bad\ncd,2\n", Named.class).withBadRowPolicy(BadRowPolicy.SKIP);
+        for (SomeCoolCsvReader<Named> r : Arrays.asList(reader, reader.withEngine(Engine.BYTES)))
+        {
+            ColumnarTable<Named> table = r.toColumnarTable(true);
+            assertEquals(Arrays.asList("ab", "cd"), table.strings(1).collect(toList()));
+            // the trimmed page holds the bytes of the rows kept only
+            assertEquals(4, table.offHeapBytes());
+        }
+    }
+
+    @Test
+    public void testEmptyFile() throws IOException
+    {
+        ColumnarTable<Person> table = reader("", Person.class).toColumnarTable();
+        assertEquals(0, table.size());
+        assertEquals(0, table.strings(1).count());
+    }
+
+    @Test
+    public void testManyRows() throws IOException
+    {
+        StringBuilder contents = new StringBuilder();
+        for (int i = 0; i < 1000; i++ )
+        {
+            contents.append(i).append('|').append(i * 10L).append("|0.5|true|1.5|GBP\n");
+        }
+        ColumnarTable<Trade> table = reader(contents.toString(), Trade.class).withEngine(Engine.BYTES).toColumnarTable();
+        assertEquals(1000, table.size());
+        assertEquals(999 * 1000 / 2, table.ints(1).sum());
+        assertEquals(9990, table.getLong(999, 2));
+    }
+
+    @Test
+    public void testPages()
+    {
+        for (boolean direct : new boolean[] { false, true })
+        {
+            ByteStore store = new ByteStore(direct);
+            List<Long> addresses = new ArrayList<>();
+            // small values fill doubling pages, a large value gets a page of its own
+            for (int i = 0; i < 3000; i++ )
+            {
+                byte[] value = value(i, i == 1000 ? ByteStore.PAGE + 1 : 10);
+                ByteBuffer page = store.reserve(value.length);
+                addresses.add(store.address(page));
+                page.put(value);
+            }
+            // 4 KB, 8 KB, the large value, then a full page
+            assertEquals(3 * ByteStore.FIRST_PAGE + 2 * ByteStore.PAGE + 1, store.capacity());
+            store.trim();
+            assertEquals(3 * ByteStore.FIRST_PAGE + ByteStore.PAGE + 1 + 1999 * 10, store.capacity());
+            for (int i = 0; i < addresses.size(); i++ )
+            {
+                assertTrue(store.equalTo(addresses.get(i), value(i, i == 1000 ? ByteStore.PAGE + 1 : 10)));
+            }
+        }
+
+        // a table of a few rows only takes a few bytes
+        ByteStore store = new ByteStore(true);
+        store.reserve(3).put(new byte[] { 1, 2, 3 });
+        assertEquals(ByteStore.FIRST_PAGE, store.capacity());
+        store.trim();
+        assertEquals(3, store.capacity());
+
+        // a value which got a page of its own is dropped along with its page
+        store = new ByteStore(false);
+        store.reserve(3).put(new byte[] { 1, 2, 3 });
+        long mark = store.mark();
+        store.reserve(ByteStore.FIRST_PAGE).put(new byte[ByteStore.FIRST_PAGE]);
+        assertEquals(3 * ByteStore.FIRST_PAGE, store.capacity());
+        store.reset(mark);
+        assertEquals(ByteStore.FIRST_PAGE, store.capacity());
+        assertEquals(mark, store.address(store.reserve(1)));
+    }
+
+    private static byte[] value(int i, int length)
+    {
+        byte[] value = new byte[length];
+        Arrays.fill(value, (byte) i);
+        return value;
+    }
+
+    @Test
+    public void testWrongColumnType() throws IOException
+    {
+        ex.expect(IllegalArgumentException.class);
+        ex.expectMessage("Column 1 is not a column of type LongVector but IntVector");
+        reader("1|1\n", Trade.class).toColumnarTable().getLong(0, 1);
+    }
+
+    @Test
+    public void testRowOutOfBounds() throws IOException
+    {
+        ex.expect(IndexOutOfBoundsException.class);
+        ex.expectMessage("Row 1, size 1");
+        reader("1|1\n", Trade.class).toColumnarTable().get(1);
+    }
+
+    private static <T> SomeCoolCsvReader<T> reader(String contents, Class<T> pojo) throws IOException
+    {
+        File temp = File.createTempFile("test", ".csv");
+        temp.deleteOnExit();
+        Files.write(temp.toPath(), contents.getBytes(defaultCharset()));
+        return new SomeCoolCsvReader<>(temp, pojo);
+    }
+
+}
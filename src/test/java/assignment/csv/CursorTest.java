@@ -0,0 +1,151 @@
+package assignment.csv;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import assignment.csv.SomeCoolCsvReaderTest.Person;
+import assignment.csv.SomeCoolCsvReaderTest.QuotedPerson;
+
+/**
+ * Interrupts and resumes reading at checkpoints.
+ *
+ * @author sergey
+ *
+ */
+public class CursorTest
+{
+
+    @Rule
+    public ExpectedException ex = ExpectedException.none();
+
+    @Test
+    public void testPositions() throws IOException
+    {
+        File file = file("John,jr,Doe\n\n\"Jane\",,\"Smi\nth\"\r\nBob,,Brown");
+        SomeCoolCsvReader<QuotedPerson> reader = new SomeCoolCsvReader<>(file, QuotedPerson.class);
+        try (Cursor<QuotedPerson> cursor = reader.cursor())
+        {
+            assertEquals(-1, cursor.row());
+            assertEquals(Checkpoint.START, cursor.checkpoint());
+
+            assertEquals("Doe", cursor.next().getSecondName());
+            assertEquals(0, cursor.row());
+            assertEquals(0, cursor.offset());
+            assertEquals(new Checkpoint(12, 1), cursor.checkpoint());
+
+            assertEquals("Smi\nth", cursor.next().getSecondName());
+            assertEquals(1, cursor.row());
+            assertEquals(13, cursor.offset());
+            assertEquals(new Checkpoint(30, 2), cursor.checkpoint());
+
+            assertEquals("Brown", cursor.next().getSecondName());
+            assertEquals(new Checkpoint(file.length(), 3), cursor.checkpoint());
+            assertFalse(cursor.hasNext());
+        }
+    }
+
+    @Test
+    public void testResume() throws IOException
+    {
+        StringBuilder contents = new StringBuilder();
+        for (int i = 0; i < 100; i++ )
+        {
+            contents.append("first").append(i).append(",,second").append(i).append('\n');
+        }
+        File file = file(contents.toString());
+        SomeCoolCsvReader<Person> reader = new SomeCoolCsvReader<>(file, Person.class);
+
+        Checkpoint checkpoint;
+        try (Cursor<Person> cursor = reader.cursor())
+        {
+            for (int i = 0; i < 42; i++ )
+            {
+                cursor.next();
+            }
+            checkpoint = cursor.checkpoint();
+        }
+        List<String> rest = new ArrayList<>();
+        try (Cursor<Person> cursor = reader.cursor(checkpoint))
+        {
+            assertEquals(41, cursor.row());
+            Person first = cursor.next();
+            assertEquals(42, cursor.row());
+            assertEquals("second42", first.getSecondName());
+            rest.add(first.getSecondName());
+            cursor.forEachRemaining(p -> rest.add(p.getSecondName()));
+            assertEquals(99, cursor.row());
+        }
+        assertEquals(58, rest.size());
+        assertEquals("second99", rest.get(57));
+    }
+
+    @Test
+    public void testSaveEvery() throws IOException
+    {
+        File file = file("a,,1\nb,,2\nc,,3\nd,,4\ne,,5\n");
+        Path sidecar = Files.createTempFile("test", ".checkpoint");
+        Files.delete(sidecar);
+        sidecar.toFile().deleteOnExit();
+        SomeCoolCsvReader<Person> reader = new SomeCoolCsvReader<>(file, Person.class);
+
+        assertEquals(Optional.empty(), Checkpoint.load(sidecar));
+        try (Cursor<Person> cursor = reader.cursor().saveEvery(2, sidecar))
+        {
+            cursor.next();
+            cursor.next();
+            assertEquals(Optional.empty(), Checkpoint.load(sidecar));
+            // asking for the third row means the first two have been processed
+            cursor.next();
+            assertEquals(Optional.of(new Checkpoint(10, 2)), Checkpoint.load(sidecar));
+        }
+
+        // the crash: rows 3 and 4 are read again
+        try (Cursor<Person> cursor =
+                reader.cursor(Checkpoint.load(sidecar).orElse(Checkpoint.START)).saveEvery(2, sidecar))
+        {
+            assertEquals("3", cursor.next().getSecondName());
+            cursor.forEachRemaining(p -> {});
+        }
+        assertEquals(Optional.of(new Checkpoint(file.length(), 5)), Checkpoint.load(sidecar));
+    }
+
+    @Test
+    public void testBeyondTheEnd() throws IOException
+    {
+        File file = file("a,,1\n");
+        ex.expect(IllegalArgumentException.class);
+        ex.expectMessage("Checkpoint[offset=6, row=1] lies beyond the end of the file, which has 5 bytes");
+        new SomeCoolCsvReader<>(file, Person.class).cursor(new Checkpoint(6, 1));
+    }
+
+    @Test
+    public void testBrokenSidecar() throws IOException
+    {
+        File sidecar = file("offset=12\n");
+        ex.expect(IllegalArgumentException.class);
+        ex.expectMessage("does not contain a checkpoint");
+        Checkpoint.load(sidecar.toPath());
+    }
+
+    private static File file(String contents) throws IOException
+    {
+        File temp = File.createTempFile("test", ".csv");
+        temp.deleteOnExit();
+        Files.write(temp.toPath(), contents.getBytes(US_ASCII));
+        return temp;
+    }
+
+}
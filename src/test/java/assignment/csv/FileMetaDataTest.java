@@ -38,6 +38,8 @@ public class FileMetaDataTest
         FileMetaData annotation = TestPojo.class.getAnnotation(FileMetaData.class);
         assertNotNull(annotation);
         assertEquals(",", annotation.separator());
+        assertEquals('\0', annotation.quote());
+        assertEquals(FileMetaData.Escape.DOUBLED, annotation.escape());
 
         CSVColumn csvColumn = TestPojo.class.getDeclaredField("prop1").getAnnotation(CSVColumn.class);
         assertNotNull(csvColumn);
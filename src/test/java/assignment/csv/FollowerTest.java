@@ -0,0 +1,164 @@
+package assignment.csv;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import assignment.csv.SomeCoolCsvReaderTest.Person;
+import assignment.csv.SomeCoolCsvReaderTest.QuotedPerson;
+import assignment.csv.SomeCoolCsvReaderTest.Trade;
+
+/**
+ * Appends to, truncates and replaces a file while it is being followed.
+ *
+ * @author sergey
+ *
+ */
+public class FollowerTest
+{
+
+    @Test
+    public void testAppendedRows() throws IOException
+    {
+        File file = file("John,jr,Doe\n\nJane,sr,Smi");
+        try (Follower<Person> follower = new SomeCoolCsvReader<>(file, Person.class).follow())
+        {
+            assertEquals("Doe", follower.poll().getSecondName());
+            // the last line is still being written
+            assertNull(follower.poll());
+            assertEquals(12, follower.position());
+
+            append(file, "th\nBob,,Brown\n");
+            assertEquals("Smith", follower.poll().getSecondName());
+            assertEquals("Brown", follower.poll().getSecondName());
+            assertNull(follower.poll());
+            assertEquals(file.length(), follower.position());
+        }
+    }
+
+    @Test
+    public void testQuotedRecordSpanningAppends() throws IOException
+    {
+        File file = file("\"John\",,\"Doe\n");
+        try (Follower<QuotedPerson> follower = new SomeCoolCsvReader<>(file, QuotedPerson.class).follow())
+        {
+            assertNull(follower.poll());
+            append(file, "Jr\"\n");
+            assertEquals("Doe\nJr", follower.poll().getSecondName());
+        }
+    }
+
+    @Test
+    public void testStartPosition() throws IOException, InterruptedException
+    {
+        File file = file("John,jr,Doe\nJane,sr,Smith\n");
+        try (Follower<Person> follower =
+                new SomeCoolCsvReader<>(file, Person.class).follow(12, 1, TimeUnit.MILLISECONDS))
+        {
+            assertEquals("Smith", follower.take().getSecondName());
+            assertNull(follower.poll(5, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    @Test
+    public void testTruncation() throws IOException
+    {
+        File file = file("John,jr,Doe\nJane,sr,Smith\n");
+        try (Follower<Person> follower = new SomeCoolCsvReader<>(file, Person.class).follow())
+        {
+            assertEquals("Doe", follower.poll().getSecondName());
+            assertEquals("Smith", follower.poll().getSecondName());
+            Files.write(file.toPath(), "Bob,,Brown\n".getBytes(US_ASCII));
+            assertEquals("Brown", follower.poll().getSecondName());
+            assertNull(follower.poll());
+        }
+    }
+
+    @Test
+    public void testRotation() throws IOException
+    {
+        File file = file("John,jr,Doe\n");
+        try (Follower<Person> follower = new SomeCoolCsvReader<>(file, Person.class).follow())
+        {
+            assertEquals("Doe", follower.poll().getSecondName());
+            append(file, "Jane,sr,Smith");
+
+            Path rotated = file("Bob,,Brown\n").toPath();
+            Files.move(rotated, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            // the old file is read to its end first
+            assertEquals("Smith", follower.poll().getSecondName());
+            assertEquals("Brown", follower.poll().getSecondName());
+            assertNull(follower.poll());
+        }
+    }
+
+    @Test
+    public void testMissingFile() throws IOException
+    {
+        File file = file("");
+        file.delete();
+        try (Follower<Person> follower = new SomeCoolCsvReader<>(file, Person.class).follow())
+        {
+            assertNull(follower.poll());
+            append(file, "John,jr,Doe\n");
+            assertEquals("Doe", follower.poll().getSecondName());
+        }
+    }
+
+    @Test
+    public void testBadRow() throws IOException
+    {
+        File file = file("1|2|0.5\nx|3|1.5\n");
+        try (Follower<Trade> follower = new SomeCoolCsvReader<>(file, Trade.class).follow())
+        {
+            assertEquals(1, follower.poll().id);
+            assertBad(follower);
+            assertNull(follower.poll());
+            assertEquals(file.length(), follower.position());
+
+            // the bad row is not read again
+            append(file, "y|4|2.5\n5|6|3.5\n");
+            assertBad(follower);
+            assertEquals(5, follower.poll().id);
+            assertNull(follower.poll());
+        }
+    }
+
+    private static void assertBad(Follower<Trade> follower)
+    {
+        try
+        {
+            follower.poll();
+            fail("The bad row has been returned");
+        }
+        catch (NumberFormatException e)
+        {
+            // expected
+        }
+    }
+
+    private static void append(File file, String contents) throws IOException
+    {
+        Files.write(file.toPath(), contents.getBytes(US_ASCII), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private static File file(String contents) throws IOException
+    {
+        File temp = File.createTempFile("test", ".csv");
+        temp.deleteOnExit();
+        Files.write(temp.toPath(), contents.getBytes(US_ASCII));
+        return temp;
+    }
+
+}
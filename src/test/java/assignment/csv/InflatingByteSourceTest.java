@@ -0,0 +1,208 @@
+package assignment.csv;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import assignment.csv.SomeCoolCsvReader.Engine;
+import assignment.csv.SomeCoolCsvReaderTest.QuotedPerson;
+
+/**
+ * Reads gzip, multi member gzip, BGZF and zlib files.
+ *
+ * @author sergey
+ *
+ */
+public class InflatingByteSourceTest
+{
+
+    private static final int ROWS = 5000;
+
+    @Rule
+    public ExpectedException ex = ExpectedException.none();
+
+    @Test
+    public void testGzip() throws IOException
+    {
+        File file = file(".csv.gz", gzip(contents()));
+        assertEquals(Compression.GZIP, Compression.detect(file.toPath()));
+        assertRows(file);
+    }
+
+    @Test
+    public void testMultipleMembers() throws IOException
+    {
+        byte[] contents = contents();
+        int half = contents.length / 2;
+        ByteArrayOutputStream members = new ByteArrayOutputStream();
+        members.write(gzip(slice(contents, 0, half)));
+        members.write(gzip(slice(contents, half, contents.length)));
+        assertRows(file(".csv.gz", members.toByteArray()));
+    }
+
+    @Test
+    public void testBgzf() throws IOException
+    {
+        File file = file(".csv.gz", bgzf(contents(), 1000));
+        assertRows(file);
+        assertEquals(ROWS, new SomeCoolCsvReader<>(file, QuotedPerson.class).parallelStream().count());
+    }
+
+    @Test
+    public void testBgzfCorrupt() throws IOException
+    {
+        byte[] bgzf = bgzf(contents(), 1000);
+        // the CRC of the last member with data, the empty end of file member takes 28 bytes
+        bgzf[bgzf.length - 28 - 8] ^= 1;
+        ex.expect(ZipException.class);
+        ex.expectMessage("CRC mismatch");
+        new SomeCoolCsvReader<>(file(".csv.gz", bgzf), QuotedPerson.class).withEngine(Engine.BYTES).getObjects();
+    }
+
+    @Test
+    public void testZlib() throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = new DeflaterOutputStream(bytes))
+        {
+            out.write(contents());
+        }
+        File file = file(".csv.zz", bytes.toByteArray());
+        assertEquals(Compression.DEFLATE, Compression.detect(file.toPath()));
+        assertRows(file);
+        // a plain file is not mistaken for a compressed one
+        assertEquals(Compression.NONE, Compression.detect(file(".csv", contents()).toPath()));
+    }
+
+    @Test
+    public void testSmallRing() throws IOException
+    {
+        byte[] contents = contents();
+        File file = file(".csv.gz", gzip(contents));
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        try (InflatingByteSource source = new InflatingByteSource(file.toPath(), Compression.GZIP, 2, 100))
+        {
+            ByteBuffer block;
+            while ((block = source.next()) != null)
+            {
+                byte[] bytes = new byte[block.remaining()];
+                block.get(bytes);
+                actual.write(bytes);
+            }
+        }
+        assertArrayEquals(contents, actual.toByteArray());
+    }
+
+    @Test
+    public void testNoCursor() throws IOException
+    {
+        File file = file(".csv.gz", gzip(contents()));
+        ex.expect(UnsupportedOperationException.class);
+        ex.expectMessage("is compressed, it cannot be read from a checkpoint");
+        new SomeCoolCsvReader<>(file, QuotedPerson.class).cursor();
+    }
+
+    private static void assertRows(File file)
+    {
+        for (Engine engine : Engine.values())
+        {
+            SomeCoolCsvReader<QuotedPerson> reader =
+                    new SomeCoolCsvReader<>(file, QuotedPerson.class).withEngine(engine);
+            List<String> names = reader.stream().map(QuotedPerson::getSecondName).collect(Collectors.toList());
+            assertEquals(ROWS, names.size());
+            for (int i = 0; i < ROWS; i++ )
+            {
+                assertEquals("second" + i, names.get(i));
+            }
+            assertEquals(ROWS, reader.toColumnarTable().size());
+        }
+    }
+
+    private static byte[] contents()
+    {
+        StringBuilder contents = new StringBuilder();
+        for (int i = 0; i < ROWS; i++ )
+        {
+            contents.append("first").append(i).append(",\"x\ny\",second").append(i).append('\n');
+        }
+        return contents.toString().getBytes(US_ASCII);
+    }
+
+    private static byte[] gzip(byte[] contents) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(bytes))
+        {
+            out.write(contents);
+        }
+        return bytes.toByteArray();
+    }
+
+    /*
+     * the blocked gzip format of bgzip, including its empty end of file member
+     */
+    private static byte[] bgzf(byte[] contents, int block)
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (int i = 0; i < contents.length; i += block)
+        {
+            member(bytes, slice(contents, i, Math.min(contents.length, i + block)));
+        }
+        member(bytes, new byte[0]);
+        return bytes.toByteArray();
+    }
+
+    private static void member(ByteArrayOutputStream out, byte[] data)
+    {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        deflater.setInput(data);
+        deflater.finish();
+        byte[] compressed = new byte[data.length + 64];
+        int length = deflater.deflate(compressed);
+        deflater.end();
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        ByteBuffer member = ByteBuffer.allocate(18 + length + 8).order(ByteOrder.LITTLE_ENDIAN);
+        member.put(new byte[] { 0x1f, (byte) 0x8b, 8, 4, 0, 0, 0, 0, 0, (byte) 0xff, 6, 0, 'B', 'C', 2, 0 });
+        member.putShort((short) (member.capacity() - 1));
+        member.put(compressed, 0, length);
+        member.putInt((int) crc.getValue());
+        member.putInt(data.length);
+        out.write(member.array(), 0, member.capacity());
+    }
+
+    private static byte[] slice(byte[] bytes, int from, int to)
+    {
+        byte[] slice = new byte[to - from];
+        System.arraycopy(bytes, from, slice, 0, slice.length);
+        return slice;
+    }
+
+    private static File file(String suffix, byte[] contents) throws IOException
+    {
+        File temp = File.createTempFile("test", suffix);
+        temp.deleteOnExit();
+        Files.write(temp.toPath(), contents);
+        return temp;
+    }
+
+}
@@ -0,0 +1,207 @@
+package assignment.csv;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import assignment.csv.SomeCoolCsvReader.Engine;
+import assignment.csv.SomeCoolCsvReaderTest.Person;
+
+/**
+ * Reads the files of a directory into one stream, in order and interleaved.
+ *
+ * @author sergey
+ *
+ */
+public class MultiFileCsvReaderTest
+{
+
+    private static final int FILES = 5;
+    private static final int ROWS = 1000;
+
+    private Path directory;
+
+    /**
+     * Fails hard on one row of the third file.
+     */
+    @FileMetaData
+    public static class Exploding
+    {
+
+        @CSVColumn(indx = 3)
+        private String name;
+
+        public void setName(String name)
+        {
+            if (name.equals("file2-5"))
+            {
+                throw new AssertionError("boom");
+            }
+            this.name = name;
+        }
+
+    }
+
+    @Before
+    public void setUp() throws IOException
+    {
+        directory = Files.createTempDirectory("test");
+        for (int i = 0; i < FILES; i++ )
+        {
+            StringBuilder contents = new StringBuilder();
+            for (int j = 0; j < ROWS * (i + 1); j++ )
+            {
+                contents.append("first,x,file").append(i).append('-').append(j).append('\n');
+            }
+            Files.write(directory.resolve("data" + i + ".csv"), contents.toString().getBytes(US_ASCII));
+        }
+        Files.write(directory.resolve("notes.txt"), "first,x,notes\n".getBytes(US_ASCII));
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        try (Stream<Path> paths = Files.walk(directory))
+        {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList()))
+            {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    public void testOrdered()
+    {
+        MultiFileCsvReader<Person> reader =
+                new MultiFileCsvReader<>(directory, "*.csv", Person.class).withParallelism(2);
+        assertEquals(FILES, reader.files().size());
+        List<String> names = names(reader.stream());
+        assertEquals(expected(), names);
+    }
+
+    @Test
+    public void testInterleaved()
+    {
+        MultiFileCsvReader<Person> reader = new MultiFileCsvReader<>(directory, "*.csv", Person.class)
+                .withReader(r -> r.withEngine(Engine.BYTES))
+                .withParallelism(3);
+        List<String> names = names(reader.interleavedStream());
+        // every file keeps its own order
+        for (int i = 0; i < FILES; i++ )
+        {
+            String prefix = "file" + i + "-";
+            List<String> file = names.stream().filter(name -> name.startsWith(prefix)).collect(Collectors.toList());
+            assertEquals(ROWS * (i + 1), file.size());
+            assertEquals(prefix + (file.size() - 1), file.get(file.size() - 1));
+        }
+        names.sort(null);
+        List<String> expected = expected();
+        expected.sort(null);
+        assertEquals(expected, names);
+    }
+
+    @Test
+    public void testGlob() throws IOException
+    {
+        Files.createDirectory(directory.resolve("sub"));
+        Files.write(directory.resolve("sub/more.csv"), "first,x,more\n".getBytes(US_ASCII));
+        assertEquals(FILES + 2, new MultiFileCsvReader<>(directory, Person.class).files().size());
+        assertEquals(FILES, new MultiFileCsvReader<>(directory, "*.csv", Person.class).files().size());
+        assertEquals(FILES + 1, new MultiFileCsvReader<>(directory, "**.csv", Person.class).files().size());
+        assertEquals(Arrays.asList("notes"),
+                names(new MultiFileCsvReader<>(directory, "*.txt", Person.class).stream()));
+    }
+
+    @Test
+    public void testFailedFile() throws IOException
+    {
+        // a gzip header followed by garbage
+        Files.write(directory.resolve("data2.csv"), new byte[] { 0x1f, (byte) 0x8b, 8, 0, 1, 2, 3, 4, 5, 6, 7 });
+        List<Path> failed = new ArrayList<>();
+        for (boolean ordered : new boolean[] { true, false })
+        {
+            failed.clear();
+            MultiFileCsvReader<Person> reader = new MultiFileCsvReader<>(directory, "*.csv", Person.class)
+                    .withErrorHandler((path, e) -> failed.add(path));
+            List<String> names = names(ordered ? reader.stream() : reader.interleavedStream());
+            assertEquals(Arrays.asList(directory.resolve("data2.csv")), failed);
+            assertEquals(ROWS * (1 + 2 + 4 + 5), names.size());
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testFailedThread()
+    {
+        for (boolean ordered : new boolean[] { true, false })
+        {
+            MultiFileCsvReader<Exploding> reader = new MultiFileCsvReader<>(directory, "*.csv", Exploding.class);
+            try (Stream<Exploding> stream = ordered ? reader.stream() : reader.interleavedStream())
+            {
+                stream.count();
+                fail("The error has been lost");
+            }
+            catch (AssertionError e)
+            {
+                assertEquals("boom", e.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void testClose()
+    {
+        MultiFileCsvReader<Person> reader =
+                new MultiFileCsvReader<>(directory, "*.csv", Person.class).withParallelism(1);
+        try (Stream<Person> stream = reader.stream())
+        {
+            Iterator<Person> rows = stream.iterator();
+            assertEquals("file0-0", rows.next().getSecondName());
+            assertTrue(rows.hasNext());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParallelism()
+    {
+        new MultiFileCsvReader<>(directory, Person.class).withParallelism(0);
+    }
+
+    private static List<String> names(Stream<Person> rows)
+    {
+        try (Stream<Person> stream = rows)
+        {
+            return stream.map(Person::getSecondName).collect(Collectors.toList());
+        }
+    }
+
+    private static List<String> expected()
+    {
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < FILES; i++ )
+        {
+            for (int j = 0; j < ROWS * (i + 1); j++ )
+            {
+                expected.add("file" + i + "-" + j);
+            }
+        }
+        return expected;
+    }
+
+}
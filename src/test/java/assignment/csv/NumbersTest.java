@@ -0,0 +1,138 @@
+package assignment.csv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.math.BigDecimal;
+
+import org.junit.Test;
+
+/**
+ * Compares the results of the parsers with the ones of the JDK.
+ *
+ * @author sergey
+ *
+ */
+public class NumbersTest
+{
+
+    @Test
+    public void testParseLong()
+    {
+        for (String s : new String[] { "0", "-0", "+7", "42", "-42", "9223372036854775807", "-9223372036854775808",
+                "000123" })
+        {
+            assertEquals(s, Long.parseLong(s), Numbers.parseLong(pad(s), 2, s.length() + 2));
+        }
+        for (String s : new String[] { "", "-", "+", "1a", "9223372036854775808", "-9223372036854775809", "1.0",
+                "99999999999999999999" })
+        {
+            try
+            {
+                Numbers.parseLong(s, 0, s.length());
+                fail("Expected a failure for " + s);
+            }
+            catch (NumberFormatException e)
+            {
+                assertEquals("For input string: \"" + s + "\"", e.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void testParseInt()
+    {
+        for (String s : new String[] { "0", "-1", "2147483647", "-2147483648" })
+        {
+            assertEquals(Integer.parseInt(s), Numbers.parseInt(s, 0, s.length()));
+        }
+        for (String s : new String[] { "2147483648", "-2147483649", "x" })
+        {
+            try
+            {
+                Numbers.parseInt(s, 0, s.length());
+                fail("Expected a failure for " + s);
+            }
+            catch (NumberFormatException e)
+            {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testParseDouble()
+    {
+        for (String s : new String[] { "0", "-0", "-0.0", "1", "1.5", "-2.25", ".5", "5.", "3.14159", "1e10", "1E-5",
+                "-1.25e+3", "0.1", "0.30000000000000004", "123456789012345678901234567890", "4.9e-324",
+                "1.7976931348623157E308", "1e400", "NaN", "-Infinity", "1d", "0x1p3", "0.000001", "2.5e-30",
+                // extreme exponents, which must neither overflow when negated nor wrap when scaled
+                "0e-2147483648", "1.0e-2147483647", "0.1e-2147483648", "-0.5e-2147483648", "1e2147483647",
+                "0e2147483647", "1e-2147483649" })
+        {
+            assertEquals(s, Double.doubleToLongBits(Double.parseDouble(s)),
+                    Double.doubleToLongBits(Numbers.parseDouble(s, 0, s.length())));
+        }
+        for (String s : new String[] { ".", "-", "1e", "1.2.3", "abc" })
+        {
+            try
+            {
+                Numbers.parseDouble(s, 0, s.length());
+                fail("Expected a failure for " + s);
+            }
+            catch (NumberFormatException e)
+            {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testParseDecimal()
+    {
+        for (String s : new String[] { "0", "-0.0", "1.50", "+3", ".5", "1.", "-123456789.123456789",
+                "12345678901234567890.5", "1e3", "-2.5E-2" })
+        {
+            assertEquals(s, new BigDecimal(s), Numbers.parseDecimal(s, 0, s.length()));
+        }
+        for (String s : new String[] { ".", "-", "1.2.3", "x" })
+        {
+            try
+            {
+                Numbers.parseDecimal(s, 0, s.length());
+                fail("Expected a failure for " + s);
+            }
+            catch (NumberFormatException e)
+            {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testParseBoolean()
+    {
+        assertTrue(Numbers.parseBoolean("true", 0, 4));
+        assertTrue(Numbers.parseBoolean("xTrUe", 1, 5));
+        assertFalse(Numbers.parseBoolean("false", 0, 5));
+        assertFalse(Numbers.parseBoolean("yes", 0, 3));
+        assertFalse(Numbers.parseBoolean("", 0, 0));
+        assertFalse(Numbers.parseBoolean("tru$", 0, 4));
+    }
+
+    @Test
+    public void testHash()
+    {
+        assertEquals("USD".hashCode(), Numbers.hash("xUSDx", 1, 4));
+        assertTrue(Numbers.equals("xUSDx", 1, 4, "USD"));
+        assertFalse(Numbers.equals("xUSDx", 1, 5, "USD"));
+    }
+
+    private static String pad(String s)
+    {
+        return "ab" + s + "cd";
+    }
+
+}
@@ -0,0 +1,141 @@
+package assignment.csv;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import assignment.csv.SomeCoolCsvReader.Engine;
+import assignment.csv.SomeCoolCsvReaderTest.Person;
+
+/**
+ * Counts what the readers do and exposes the counters as an MBean.
+ *
+ * @author sergey
+ *
+ */
+public class ParseStatisticsTest
+{
+
+    private static final int ROWS = 1000;
+
+    @Test
+    public void testCounters() throws IOException
+    {
+        File file = file();
+        for (Engine engine : Engine.values())
+        {
+            // a small window makes the lines cross block boundaries
+            SomeCoolCsvReader<Person> reader =
+                    new SomeCoolCsvReader<>(file, Person.class).withEngine(engine).withWindow(64).withStatistics();
+            List<String> names = reader.stream().map(Person::getSecondName).collect(Collectors.toList());
+            assertEquals(ROWS, names.size());
+            assertEquals("second" + (ROWS - 1), names.get(ROWS - 1));
+            ParseStatistics statistics = reader.getStatistics().get();
+            assertEquals(engine.toString(), ROWS, statistics.getRows());
+            assertEquals(engine.toString(), file.length(), statistics.getBytes());
+            // every tenth row is followed by two blank lines, every fifth row has two more fields
+            assertEquals(engine.toString(), ROWS / 10 * 2, statistics.getBlankLines());
+            assertEquals(engine.toString(), ROWS / 5 * 2, statistics.getExtraFields());
+            assertTrue(statistics.getTokenizeNanos() > 0);
+            assertTrue(statistics.getBindNanos() > 0);
+
+            // the copies share the statistics
+            SomeCoolCsvReader<Person> copy = reader.withEngine(engine);
+            copy.forEachRow(new Person(), person -> {});
+            copy.forEachRow(row -> {});
+            assertEquals(engine.toString(), 3 * ROWS, statistics.getRows());
+            assertEquals(engine.toString(), 3 * ROWS / 10 * 2, statistics.getBlankLines());
+        }
+    }
+
+    @Test
+    public void testParallel() throws IOException
+    {
+        File file = file();
+        SomeCoolCsvReader<Person> reader = new SomeCoolCsvReader<>(file, Person.class).withStatistics();
+        assertEquals(ROWS, StreamSupport.stream(reader.spliterator(), true).count());
+        ParseStatistics statistics = reader.getStatistics().get();
+        assertEquals(ROWS, statistics.getRows());
+        assertEquals(file.length(), statistics.getBytes());
+        assertEquals(ROWS / 5 * 2, statistics.getExtraFields());
+    }
+
+    @Test
+    public void testOff() throws IOException
+    {
+        SomeCoolCsvReader<Person> reader = new SomeCoolCsvReader<>(file(), Person.class);
+        assertFalse(reader.getStatistics().isPresent());
+        assertEquals(ROWS, reader.getObjects().size());
+    }
+
+    @Test
+    public void testMBean() throws Exception
+    {
+        SomeCoolCsvReader<Person> reader = new SomeCoolCsvReader<>(file(), Person.class).withStatistics();
+        ParseStatistics statistics = reader.getStatistics().get();
+        statistics.register("test, \"quoted\"");
+        ObjectName name = statistics.getObjectName();
+        try
+        {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            assertTrue(server.isRegistered(name));
+            reader.getObjects();
+            assertEquals((long) ROWS, server.getAttribute(name, "Rows"));
+            assertEquals(statistics.getBytes(), server.getAttribute(name, "Bytes"));
+            try
+            {
+                new SomeCoolCsvReader<>(file(), Person.class).withStatistics().getStatistics().get()
+                        .register("test, \"quoted\"");
+                throw new AssertionError("registered twice");
+            }
+            catch (IllegalArgumentException e)
+            {
+                // the name is taken
+            }
+        }
+        finally
+        {
+            statistics.unregister();
+        }
+        assertNull(statistics.getObjectName());
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+    }
+
+    private static File file() throws IOException
+    {
+        StringBuilder contents = new StringBuilder();
+        for (int i = 0; i < ROWS; i++ )
+        {
+            contents.append("first").append(i).append(",x,second").append(i);
+            if (i % 5 == 0)
+            {
+                contents.append(",y,z");
+            }
+            contents.append("\r\n");
+            if (i % 10 == 0)
+            {
+                contents.append("  \r\n\n");
+            }
+        }
+        File file = File.createTempFile("test", ".csv");
+        file.deleteOnExit();
+        Files.write(file.toPath(), contents.toString().getBytes(US_ASCII));
+        return file;
+    }
+
+}
@@ -0,0 +1,186 @@
+package assignment.csv;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import assignment.csv.SomeCoolCsvReader.Engine;
+import assignment.csv.SomeCoolCsvReaderTest.QuotedPerson;
+
+/**
+ * Reads files through the read ahead thread and hands elements over the lock free ring.
+ *
+ * @author sergey
+ *
+ */
+public class PrefetchingByteSourceTest
+{
+
+    private static final int ROWS = 20000;
+
+    @Test
+    public void testBlocks() throws IOException
+    {
+        byte[] contents = contents();
+        File file = file(contents);
+        PrefetchStatistics statistics = new PrefetchStatistics();
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        try (PrefetchingByteSource source =
+                new PrefetchingByteSource(file.toPath(), 10, contents.length - 10, 2, 4096, statistics))
+        {
+            ByteBuffer block;
+            while ((block = source.next()) != null)
+            {
+                assertTrue(block.isDirect());
+                byte[] bytes = new byte[block.remaining()];
+                block.get(bytes);
+                actual.write(bytes);
+            }
+            assertNull(source.next());
+        }
+        byte[] expected = new byte[contents.length - 20];
+        System.arraycopy(contents, 10, expected, 0, expected.length);
+        assertArrayEquals(expected, actual.toByteArray());
+        assertEquals(expected.length, statistics.getBytes());
+        assertEquals((expected.length + 4095) / 4096, statistics.getBlocks());
+    }
+
+    @Test
+    public void testTruncated() throws IOException
+    {
+        byte[] contents = contents();
+        File file = file(contents);
+        // sized before the file shrank
+        try (PrefetchingByteSource source = new PrefetchingByteSource(file.toPath(), 0, contents.length + 100, 2,
+                4096, new PrefetchStatistics()))
+        {
+            long read = 0;
+            try
+            {
+                ByteBuffer block;
+                while ((block = source.next()) != null)
+                {
+                    read += block.remaining();
+                }
+                fail("The end of the file has been taken for the end of the range");
+            }
+            catch (EOFException e)
+            {
+                assertEquals(format("The file %s has been truncated, it ends at %d instead of %d", file,
+                        contents.length, contents.length + 100), e.getMessage());
+            }
+            // only complete blocks
+            assertEquals(0, read % 4096);
+        }
+    }
+
+    @Test
+    public void testReader() throws IOException
+    {
+        File file = file(contents());
+        for (Engine engine : Engine.values())
+        {
+            SomeCoolCsvReader<QuotedPerson> reader =
+                    new SomeCoolCsvReader<>(file, QuotedPerson.class).withEngine(engine).withPrefetch(3, 4096);
+            List<String> names = reader.stream().map(QuotedPerson::getSecondName).collect(Collectors.toList());
+            assertEquals(ROWS, names.size());
+            for (int i = 0; i < ROWS; i++ )
+            {
+                assertEquals("second" + i, names.get(i));
+            }
+            PrefetchStatistics statistics = reader.getPrefetchStatistics().get();
+            assertEquals(file.length(), statistics.getBytes());
+        }
+        assertFalse(new SomeCoolCsvReader<>(file, QuotedPerson.class).getPrefetchStatistics().isPresent());
+    }
+
+    @Test
+    public void testCursor() throws IOException
+    {
+        File file = file(contents());
+        SomeCoolCsvReader<QuotedPerson> reader =
+                new SomeCoolCsvReader<>(file, QuotedPerson.class).withPrefetch(2, 4096);
+        try (Cursor<QuotedPerson> cursor = reader.cursor(reader.index(100, sidecar()).checkpoint(12345)))
+        {
+            assertEquals("second12345", cursor.next().getSecondName());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDepthOfOne() throws IOException
+    {
+        new SomeCoolCsvReader<>(file(contents()), QuotedPerson.class).withPrefetch(1, 4096);
+    }
+
+    @Test
+    public void testRing() throws InterruptedException
+    {
+        SpscRing<Integer> ring = new SpscRing<>(5);
+        int count = 200000;
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < count; i++ )
+            {
+                while (!ring.offer(i))
+                {
+                    Thread.yield();
+                }
+            }
+        });
+        producer.start();
+        for (int i = 0; i < count; i++ )
+        {
+            Integer next;
+            while ((next = ring.poll()) == null)
+            {
+                Thread.yield();
+            }
+            assertEquals(i, next.intValue());
+        }
+        producer.join();
+        assertNull(ring.poll());
+    }
+
+    private static Path sidecar() throws IOException
+    {
+        Path sidecar = Files.createTempFile("test", ".idx");
+        sidecar.toFile().deleteOnExit();
+        Files.delete(sidecar);
+        return sidecar;
+    }
+
+    private static byte[] contents()
+    {
+        StringBuilder contents = new StringBuilder();
+        for (int i = 0; i < ROWS; i++ )
+        {
+            contents.append("first").append(i).append(",\"x\ny\",second").append(i).append('\n');
+        }
+        return contents.toString().getBytes(US_ASCII);
+    }
+
+    private static File file(byte[] contents) throws IOException
+    {
+        File temp = File.createTempFile("test", ".csv");
+        temp.deleteOnExit();
+        Files.write(temp.toPath(), contents);
+        return temp;
+    }
+
+}
@@ -0,0 +1,139 @@
+package assignment.csv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+
+import org.junit.Test;
+
+import assignment.csv.SomeCoolCsvReader.Column;
+import assignment.csv.SomeCoolCsvReader.Setup;
+
+/**
+ * Binds lines through the spun binders, full and short lines, every kind of column.
+ *
+ * @author sergey
+ *
+ */
+public class RowBinderTest
+{
+
+    public enum Color
+    {
+        RED, GREEN
+    }
+
+    /**
+     * Column 3 is not bound, the string column is deduplicated.
+     */
+    @FileMetaData
+    public static class Row
+    {
+
+        @CSVColumn(indx = 1)
+        public int i;
+        @CSVColumn(indx = 2)
+        public long l;
+        @CSVColumn(indx = 4)
+        public double d;
+        @CSVColumn(indx = 5)
+        public boolean b;
+        @CSVColumn(indx = 6, dedup = 16)
+        public String s;
+        @CSVColumn(indx = 7)
+        public BigDecimal decimal;
+        @CSVColumn(indx = 8)
+        private Color color = Color.GREEN;
+
+        public void setColor(Color color)
+        {
+            this.color = color;
+        }
+
+    }
+
+    @Test
+    public void testSpun()
+    {
+        Setup setup = SomeCoolCsvReader.setup(Row.class);
+        // the JDK running the tests can define hidden or anonymous classes
+        assertNotEquals(RowBinder.class, setup.binder.getClass());
+
+        Row row = bind(setup, "1,-2,skipped, 0.5 ,TRUE,text,1.50,RED");
+        assertEquals(1, row.i);
+        assertEquals(-2, row.l);
+        assertEquals(0.5, row.d, 0);
+        assertTrue(row.b);
+        assertEquals("text", row.s);
+        assertEquals(new BigDecimal("1.50"), row.decimal);
+        assertSame(Color.RED, row.color);
+
+        row = bind(setup, ",,,,,,,");
+        assertEquals(0, row.i);
+        assertEquals(0, row.d, 0);
+        assertNull(row.s);
+        assertNull(row.color);
+    }
+
+    @Test
+    public void testShortLine()
+    {
+        Row row = bind(SomeCoolCsvReader.setup(Row.class), "7,8");
+        assertEquals(7, row.i);
+        assertEquals(8, row.l);
+        // the missing columns are left alone
+        assertSame(Color.GREEN, row.color);
+    }
+
+    @Test
+    public void testOtherColumns()
+    {
+        StringBuilder seen = new StringBuilder();
+        Column column = new Column()
+        {
+
+            @Override
+            public int getIndex()
+            {
+                return 1;
+            }
+
+            @Override
+            public void set(Object target, CharSequence chars, int start, int end)
+            {
+                seen.append(chars, start, end);
+            }
+
+        };
+        RowBinder binder = RowBinder.of(new Column[] { column, new SomeCoolCsvReader.NoOpColumn(2), column });
+        assertNotEquals(RowBinder.class, binder.getClass());
+        Fields fields = new Fields(new Dialect(',', '"', FileMetaData.Escape.DOUBLED)).split("a,b,c");
+        binder.bind(null, fields, 3);
+        assertEquals("ac", seen.toString());
+    }
+
+    @Test
+    public void testLoop()
+    {
+        Setup setup = SomeCoolCsvReader.setup(Row.class);
+        RowBinder loop = new RowBinder(setup.columns);
+        Row row = new Row();
+        loop.bind(row, new Fields(setup.dialect).split("3,4,,,true,x,,GREEN"), setup.columns.length);
+        assertEquals(3, row.i);
+        assertTrue(row.b);
+        assertEquals("x", row.s);
+    }
+
+    private static Row bind(Setup setup, String line)
+    {
+        Row row = new Row();
+        Fields fields = new Fields(setup.dialect).split(line);
+        setup.binder.bind(row, fields, Math.min(fields.count(), setup.columns.length));
+        return row;
+    }
+
+}
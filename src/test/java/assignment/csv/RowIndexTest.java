@@ -0,0 +1,174 @@
+package assignment.csv;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import assignment.csv.FileMetaData.Escape;
+import assignment.csv.SomeCoolCsvReader.BadRowPolicy;
+import assignment.csv.SomeCoolCsvReaderTest.Person;
+import assignment.csv.SomeCoolCsvReaderTest.Trade;
+
+/**
+ * Looks rows up through the index and checks that a stale sidecar file is not used.
+ *
+ * @author sergey
+ *
+ */
+public class RowIndexTest
+{
+
+    private static final int ROWS = 1000;
+
+    @Test
+    public void testGet() throws IOException
+    {
+        File file = file();
+        SomeCoolCsvReader<Person> reader = new SomeCoolCsvReader<>(file, Person.class);
+        for (int every : new int[] { 1, 7, 64, 2000 })
+        {
+            RowIndex<Person> index = reader.index(every, sidecar());
+            assertEquals(ROWS, index.size());
+            for (long row : new long[] { 0, 1, 6, 7, 8, 63, 64, 500, 998, 999 })
+            {
+                assertEquals("second" + row, index.get(row).getSecondName());
+            }
+        }
+    }
+
+    @Test
+    public void testRange() throws IOException
+    {
+        RowIndex<Person> index = new SomeCoolCsvReader<>(file(), Person.class).index(16, sidecar());
+        try (Stream<Person> rows = index.range(30, 35))
+        {
+            assertEquals(Arrays.asList("second30", "second31", "second32", "second33", "second34"),
+                    rows.map(Person::getSecondName).collect(Collectors.toList()));
+        }
+        try (Stream<Person> rows = index.range(990, 1000))
+        {
+            assertEquals(10, rows.count());
+        }
+        try (Stream<Person> rows = index.range(5, 5))
+        {
+            assertEquals(0, rows.count());
+        }
+    }
+
+    @Test
+    public void testRange_SkippedRows() throws IOException
+    {
+        File file = File.createTempFile("test", ".csv");
+        file.deleteOnExit();
+        Files.write(file.toPath(), "0|1|1\nx|2|2\n2|3|3\n3|4|4\n".getBytes(US_ASCII));
+        SomeCoolCsvReader<Trade> reader =
+                new SomeCoolCsvReader<>(file, Trade.class).withBadRowPolicy(BadRowPolicy.SKIP);
+        RowIndex<Trade> index = reader.index(2, sidecar());
+        // the bad row counts, the row after the range is not returned in its place
+        try (Stream<Trade> rows = index.range(0, 3))
+        {
+            assertEquals(Arrays.asList(0, 2), rows.map(trade -> trade.id).collect(Collectors.toList()));
+        }
+        try (Stream<Trade> rows = index.range(1, 2))
+        {
+            assertEquals(0, rows.count());
+        }
+    }
+
+    @Test
+    public void testCheckpoint() throws IOException
+    {
+        File file = file();
+        RowIndex<Person> index = new SomeCoolCsvReader<>(file, Person.class).index(16, sidecar());
+        Checkpoint checkpoint = index.checkpoint(20);
+        assertEquals(20, checkpoint.getRow());
+        try (Cursor<Person> cursor = new SomeCoolCsvReader<>(file, Person.class).cursor(checkpoint))
+        {
+            assertEquals("second20", cursor.next().getSecondName());
+        }
+        try (Cursor<Person> cursor = new SomeCoolCsvReader<>(file, Person.class).cursor(index.checkpoint(ROWS)))
+        {
+            assertEquals(ROWS - 1, cursor.row());
+            assertFalse(cursor.hasNext());
+        }
+    }
+
+    @Test
+    public void testSidecar() throws IOException
+    {
+        File file = file();
+        Path sidecar = sidecar();
+        SomeCoolCsvReader<Person> reader = new SomeCoolCsvReader<>(file, Person.class);
+        reader.index(100, sidecar);
+        long indexSize = Files.size(sidecar);
+        assertTrue("The offsets must be delta encoded: " + indexSize, indexSize < 64);
+        assertEquals(ROWS, reader.index(100, sidecar).size());
+
+        long length = file.length();
+        long modified = Files.getLastModifiedTime(file.toPath()).toMillis();
+        assertNotNull(RowIndex.load(reader, sidecar, 100, length, modified, reader.dialect));
+        // the same records, split into other fields
+        assertNull(RowIndex.load(reader, sidecar, 100, length, modified, new Dialect(';', '\0', Escape.DOUBLED)));
+
+        Files.write(file.toPath(), "extra,,row\n".getBytes(US_ASCII), StandardOpenOption.APPEND);
+        RowIndex<Person> index = reader.index(100, sidecar);
+        assertEquals(ROWS + 1, index.size());
+        assertEquals("row", index.get(ROWS).getSecondName());
+    }
+
+    @Test
+    public void testEmptyFile() throws IOException
+    {
+        File file = File.createTempFile("test", ".csv");
+        file.deleteOnExit();
+        RowIndex<Person> index = new SomeCoolCsvReader<>(file, Person.class).index(8, sidecar());
+        assertEquals(0, index.size());
+        assertEquals(Checkpoint.START, index.checkpoint(0));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testNoSuchRow() throws IOException
+    {
+        new SomeCoolCsvReader<>(file(), Person.class).index(8, sidecar()).get(ROWS);
+    }
+
+    private static Path sidecar() throws IOException
+    {
+        Path sidecar = Files.createTempFile("test", ".idx");
+        sidecar.toFile().deleteOnExit();
+        Files.delete(sidecar);
+        return sidecar;
+    }
+
+    private static File file() throws IOException
+    {
+        StringBuilder contents = new StringBuilder();
+        for (int i = 0; i < ROWS; i++ )
+        {
+            contents.append("first").append(i).append(",,second").append(i).append(i % 3 == 0 ? "\r\n" : "\n");
+            if (i % 100 == 0)
+            {
+                contents.append("\n");
+            }
+        }
+        File temp = File.createTempFile("test", ".csv");
+        temp.deleteOnExit();
+        Files.write(temp.toPath(), contents.toString().getBytes(US_ASCII));
+        return temp;
+    }
+
+}
@@ -1,21 +1,35 @@
 package assignment.csv;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import assignment.csv.FileMetaData.Escape;
+import assignment.csv.SomeCoolCsvReader.BadRowPolicy;
 import assignment.csv.SomeCoolCsvReader.CsvColumn;
+import assignment.csv.SomeCoolCsvReader.Engine;
 import assignment.csv.SomeCoolCsvReader.NoOpColumn;
 
 /**
@@ -280,6 +294,13 @@ public class SomeCoolCsvReaderTest
 
     }
 
+    /**
+     * The same columns, quoted as in RFC 4180.
+     */
+    @FileMetaData(quote = '"')
+    public static class QuotedPerson extends Person
+    {}
+
     @Test
     public void testNewPojo() throws Exception
     {
@@ -357,6 +378,573 @@ public class SomeCoolCsvReaderTest
         assertTrue(objects.isEmpty());
     }
 
+    @Test
+    public void testBytesEngine() throws IOException
+    {
+        String contents = "John, jr, Doe , student\r\n \t \nJane, ,Smith,,hello\rJim\n\n  ,x, Brown";
+        SomeCoolCsvReader<Person> reader = reader(contents, Person.class);
+
+        List<Person> expected = reader.getObjects();
+        List<Person> objects = reader.withEngine(Engine.BYTES).getObjects();
+
+        assertEquals(4, objects.size());
+        assertPeople(expected, objects);
+        assertNull(objects.get(3).getFirstName());
+        assertEquals("Brown", objects.get(3).getSecondName());
+    }
+
+    /**
+     * Lines crossing the boundaries of the mapped windows must be stitched together.
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void testBytesEngine_SmallWindows() throws IOException
+    {
+        StringBuilder contents = new StringBuilder();
+        for (int i = 0; i < 100; i++ )
+        {
+            contents.append("first").append(i).append(",middle,second").append(i).append(i % 3 == 0 ? "\r\n" : "\n");
+        }
+        SomeCoolCsvReader<Person> reader = reader(contents.toString(), Person.class);
+
+        List<Person> expected = reader.getObjects();
+        for (int window : new int[] { 1, 2, 7, 64 })
+        {
+            assertPeople(expected, reader.withEngine(Engine.BYTES).withWindow(window).getObjects());
+        }
+    }
+
+    @Test
+    public void testBytesEngine_EmptyFile() throws IOException
+    {
+        SomeCoolCsvReader<Person> reader = reader("", Person.class).withEngine(Engine.BYTES);
+        assertTrue(reader.getObjects().isEmpty());
+    }
+
+    @Test
+    public void testParallelStream() throws IOException
+    {
+        StringBuilder contents = new StringBuilder();
+        for (int i = 0; contents.length() < 3 * ChunkSpliterator.DEFAULT_MIN_CHUNK; i++ )
+        {
+            contents.append("first").append(i).append(",middle,second").append(i).append('\n');
+        }
+        SomeCoolCsvReader<Person> reader = reader(contents.toString(), Person.class);
+        List<Person> expected = reader.getObjects();
+
+        assertPeople(expected, reader.parallelStream().collect(Collectors.toList()));
+        assertPeople(expected, reader.stream().collect(Collectors.toList()));
+
+        Set<String> unordered =
+                reader.parallelStream(false).map(Person::getFirstName).collect(Collectors.toCollection(HashSet::new));
+        assertEquals(expected.size(), unordered.size());
+        assertTrue(unordered.containsAll(expected.stream().map(Person::getFirstName).collect(Collectors.toList())));
+    }
+
+    enum Currency
+    {
+        USD, EUR, GBP
+    }
+
+    @FileMetaData(separator = "|")
+    public static class Trade
+    {
+
+        @CSVColumn(indx = 1)
+        public int id;
+
+        @CSVColumn(indx = 2)
+        public long volume;
+
+        @CSVColumn(indx = 3)
+        public double price;
+
+        @CSVColumn(indx = 4)
+        public boolean settled;
+
+        @CSVColumn(indx = 5)
+        public BigDecimal amount;
+
+        @CSVColumn(indx = 6)
+        private Currency currency;
+
+        public Currency getCurrency()
+        {
+            return currency;
+        }
+
+        public void setCurrency(Currency currency)
+        {
+            this.currency = currency;
+        }
+
+    }
+
+    @Test
+    public void testTypedColumns() throws IOException
+    {
+        SomeCoolCsvReader<Trade> reader =
+                reader(" 7 | 10000000000 | 1.25 | TRUE | 12.50 | EUR\n-8|0|-3e2|false|-0.001|USD\n||||\n", Trade.class);
+        for (SomeCoolCsvReader<Trade> r : Arrays.asList(reader, reader.withEngine(Engine.BYTES)))
+        {
+            List<Trade> trades = r.getObjects();
+            assertEquals(3, trades.size());
+            Trade trade = trades.get(0);
+            assertEquals(7, trade.id);
+            assertEquals(10000000000L, trade.volume);
+            assertEquals(1.25, trade.price, 0);
+            assertTrue(trade.settled);
+            assertEquals(new BigDecimal("12.50"), trade.amount);
+            assertEquals(Currency.EUR, trade.getCurrency());
+
+            trade = trades.get(1);
+            assertEquals(-8, trade.id);
+            assertEquals(0, trade.volume);
+            assertEquals(-300, trade.price, 0);
+            assertFalse(trade.settled);
+            assertEquals(new BigDecimal("-0.001"), trade.amount);
+            assertEquals(Currency.USD, trade.getCurrency());
+
+            trade = trades.get(2);
+            assertEquals(0, trade.id);
+            assertEquals(0, trade.price, 0);
+            assertNull(trade.amount);
+            assertNull(trade.getCurrency());
+        }
+    }
+
+    @Test
+    public void testTypedColumns_Malformed() throws IOException
+    {
+        ex.expect(NumberFormatException.class);
+        ex.expectMessage("For input string: \"12x\"");
+        reader("12x|1\n", Trade.class).getObjects();
+    }
+
+    @Test
+    public void testTypedColumns_UnknownConstant() throws IOException
+    {
+        ex.expect(IllegalArgumentException.class);
+        ex.expectMessage("No enum constant assignment.csv.SomeCoolCsvReaderTest.Currency.CHF");
+        reader("1|1|1|true|1|CHF\n", Trade.class).withEngine(Engine.BYTES).getObjects();
+    }
+
+    @Test
+    public void testBadRows_Skip() throws IOException
+    {
+        SomeCoolCsvReader<Trade> reader = reader("1|1\n12x|1\n\n3|1|1|true|1|CHF\n4|1|1|true\n5|x\n", Trade.class)
+                .withBadRowPolicy(BadRowPolicy.SKIP).withStatistics();
+        for (Engine engine : Engine.values())
+        {
+            SomeCoolCsvReader<Trade> r = reader.withEngine(engine);
+            assertEquals(Arrays.asList(1, 4), r.getObjects().stream().map(t -> t.id).collect(Collectors.toList()));
+            assertEquals(Arrays.asList(1, 4), r.stream().parallel().map(t -> t.id).collect(Collectors.toList()));
+
+            List<Integer> ids = new ArrayList<>();
+            r.forEachRow(new Trade(), t -> ids.add(t.id));
+            assertEquals(Arrays.asList(1, 4), ids);
+
+            ColumnarTable<Trade> table = r.toColumnarTable();
+            assertEquals(2, table.size());
+            assertEquals(4, table.get(1).id);
+            assertTrue(table.get(1).settled);
+            assertFalse(table.get(0).settled);
+        }
+        assertEquals(2 * 4 * 3, reader.getStatistics().get().getBadRows());
+    }
+
+    @Test
+    public void testBadRows_Quarantine() throws IOException
+    {
+        List<String> quarantined = new ArrayList<>();
+        SomeCoolCsvReader<Trade> reader = reader("1|1\n12x|1\n\n3|1|1|true|1|CHF\n4\n", Trade.class)
+                .withQuarantine((line, row, cause) -> quarantined.add(row + ": " + line + " " + cause.getMessage()));
+        for (Engine engine : Engine.values())
+        {
+            quarantined.clear();
+            assertEquals(2, reader.withEngine(engine).getObjects().size());
+            assertEquals(Arrays.asList("2: 12x|1 For input string: \"12x\"",
+                    "3: 3|1|1|true|1|CHF No enum constant assignment.csv.SomeCoolCsvReaderTest.Currency.CHF"),
+                    quarantined);
+        }
+
+        // the quarantine is dropped by the other policies
+        quarantined.clear();
+        assertEquals(2, reader.withBadRowPolicy(BadRowPolicy.SKIP).getObjects().size());
+        assertTrue(quarantined.isEmpty());
+    }
+
+    @Test
+    public void testBadRows_Cursor() throws IOException
+    {
+        String contents = "1|1\n12x|1\n3|1\n4|x\n";
+        SomeCoolCsvReader<Trade> reader = reader(contents, Trade.class).withBadRowPolicy(BadRowPolicy.SKIP);
+        try (Cursor<Trade> cursor = reader.cursor(Checkpoint.START))
+        {
+            assertEquals(1, cursor.next().id);
+            assertEquals(3, cursor.next().id);
+            assertEquals(2, cursor.row());
+            assertFalse(cursor.hasNext());
+            // the checkpoint moves past the bad rows at the end
+            assertEquals(new Checkpoint(contents.length(), 4), cursor.checkpoint());
+        }
+    }
+
+    @Test
+    public void testBadRows_Stackless() throws IOException
+    {
+        List<Exception> causes = new ArrayList<>();
+        reader("12x\n1|1|1|true|1|CHF\n", Trade.class).withQuarantine((line, row, cause) -> causes.add(cause))
+                .getObjects();
+        assertEquals(2, causes.size());
+        assertTrue(causes.get(0) instanceof NumberFormatException);
+        assertEquals(0, causes.get(0).getStackTrace().length);
+        assertTrue(causes.get(1) instanceof IllegalArgumentException);
+        assertEquals(0, causes.get(1).getStackTrace().length);
+    }
+
+    @Test
+    public void testBadRows_QuarantineWithoutSink() throws IOException
+    {
+        ex.expect(IllegalArgumentException.class);
+        ex.expectMessage("The quarantine policy needs a quarantine");
+        reader("1\n", Trade.class).withBadRowPolicy(BadRowPolicy.QUARANTINE);
+    }
+
+    @Test
+    public void testUnsupportedType()
+    {
+        ex.expect(IllegalArgumentException.class);
+        ex.expectMessage("The type java.lang.Integer of the annotated field");
+
+        @FileMetaData
+        class Boxed
+        {
+
+            @CSVColumn(indx = 1)
+            Integer i;
+
+        }
+        new SomeCoolCsvReader<>(new File("dummy"), Boxed.class);
+    }
+
+    @Test
+    public void testForEachRow_ReusedPojo() throws IOException
+    {
+        SomeCoolCsvReader<Person> reader = reader("John, jr, Doe\nJane\n\nJim,,Brown,x,y\n", Person.class);
+        for (SomeCoolCsvReader<Person> r : Arrays.asList(reader, reader.withEngine(Engine.BYTES)))
+        {
+            Person reused = new Person();
+            List<String> names = new ArrayList<>();
+            r.forEachRow(reused, person -> {
+                assertSame(reused, person);
+                names.add(person.getFirstName() + " " + person.getSecondName());
+            });
+            // the second name of John must not leak into Jane
+            assertEquals(Arrays.asList("John Doe", "Jane null", "Jim Brown"), names);
+        }
+    }
+
+    @Test
+    public void testForEachRow_View() throws IOException
+    {
+        SomeCoolCsvReader<Trade> reader =
+                reader(" 7 | 10000000000 | 1.25 | TRUE | 12.50 | EUR\n-8|0|-3e2|false||USD|extra\n", Trade.class);
+        for (SomeCoolCsvReader<Trade> r : Arrays.asList(reader, reader.withEngine(Engine.BYTES)))
+        {
+            long[] sums = new long[3];
+            BigDecimal[] amount = { BigDecimal.ZERO };
+            List<String> currencies = new ArrayList<>();
+            r.forEachRow(row -> {
+                sums[0] += row.getInt(1);
+                sums[1] += row.getLong(2);
+                sums[2] += (long) row.getDouble(3);
+                if (!row.isEmpty(5))
+                {
+                    amount[0] = amount[0].add(row.getDecimal(5));
+                }
+                currencies.add(row.getString(6) + row.getFieldCount() + row.getBoolean(4));
+                assertTrue(row.isEmpty(42));
+                assertNull(row.getString(42));
+            });
+            assertEquals(-1, sums[0]);
+            assertEquals(10000000000L, sums[1]);
+            assertEquals(-299, sums[2]);
+            assertEquals(new BigDecimal("12.50"), amount[0]);
+            assertEquals(Arrays.asList("EUR6true", "USD7false"), currencies);
+        }
+    }
+
+    @Test
+    public void testSelect() throws IOException
+    {
+        SomeCoolCsvReader<Trade> reader =
+                reader(" 7 | 10000000000 | 1.25 | TRUE | 12.50 | EUR\n-8|0|-3e2|false|not a number\n", Trade.class);
+        for (SomeCoolCsvReader<Trade> r : Arrays.asList(reader, reader.withEngine(Engine.BYTES)))
+        {
+            SomeCoolCsvReader<Trade> selected = r.select(3, 1);
+            // the malformed 5th column is never scanned
+            List<Trade> trades = selected.getObjects();
+            assertEquals(2, trades.size());
+            assertEquals(7, trades.get(0).id);
+            assertEquals(1.25, trades.get(0).price, 0);
+            assertEquals(0, trades.get(0).volume);
+            assertNull(trades.get(0).getCurrency());
+            assertEquals(-8, trades.get(1).id);
+
+            assertEquals(Arrays.asList(7, -8), selected.parallelStream().map(t -> t.id).collect(Collectors.toList()));
+            selected.forEachRow(row -> assertEquals(3, row.getFieldCount()));
+        }
+    }
+
+    @Test
+    public void testSelect_Unknown() throws IOException
+    {
+        ex.expect(IllegalArgumentException.class);
+        ex.expectMessage("There is no column with index 2");
+        reader("", Person.class).select(1, 2);
+    }
+
+    @Test
+    public void testSelect_Nothing() throws IOException
+    {
+        ex.expect(IllegalArgumentException.class);
+        ex.expectMessage("Select at least one column");
+        reader("", Person.class).select();
+    }
+
+    @Test
+    public void testQuotedFields() throws IOException
+    {
+        SomeCoolCsvReader<QuotedPerson> reader = reader(
+                "\"Doe, John\",x, \" Doe \" \n\"say \"\"hi\"\"\",,\"two\r\nlines\n\n and\r a blank one\"\nun\"quoted,,\"\"\na\"b,,\"\",\"\"\"\"\n",
+                QuotedPerson.class);
+        for (SomeCoolCsvReader<QuotedPerson> r : Arrays.asList(reader, reader.withEngine(Engine.BYTES),
+                reader.withEngine(Engine.BYTES).withWindow(3)))
+        {
+            List<QuotedPerson> people = r.getObjects();
+            assertEquals(4, people.size());
+            assertEquals("Doe, John", people.get(0).getFirstName());
+            assertEquals(" Doe ", people.get(0).getSecondName());
+            assertEquals("say \"hi\"", people.get(1).getFirstName());
+            assertEquals("un\"quoted", people.get(2).getFirstName());
+            assertNull(people.get(2).getSecondName());
+            assertEquals("a\"b", people.get(3).getFirstName());
+            assertNull(people.get(3).getSecondName());
+
+            List<String> views = new ArrayList<>();
+            r.forEachRow(row -> views.add(row.getString(1) + "|" + row.getFieldCount()));
+            assertEquals(Arrays.asList("Doe, John|3", "say \"hi\"|3", "un\"quoted|3", "a\"b|4"), views);
+        }
+        // the line breaks within a value are kept as they are, whatever the engine
+        for (SomeCoolCsvReader<QuotedPerson> r : Arrays.asList(reader, reader.withEngine(Engine.BYTES)))
+        {
+            assertEquals("two\r\nlines\n\n and\r a blank one", r.getObjects().get(1).getSecondName());
+            try (Stream<QuotedPerson> people = r.stream())
+            {
+                assertEquals("two\r\nlines\n\n and\r a blank one",
+                        people.skip(1).findFirst().get().getSecondName());
+            }
+        }
+    }
+
+    @FileMetaData(separator = ";", quote = '\'', escape = Escape.BACKSLASH)
+    public static class Backslashed
+    {
+
+        @CSVColumn(indx = 1)
+        public String text;
+
+        @CSVColumn(indx = 2)
+        public int number;
+
+    }
+
+    @Test
+    public void testQuotedFields_Backslash() throws IOException
+    {
+        SomeCoolCsvReader<Backslashed> reader =
+                reader("'it\\'s; a \\\\ test';1\n'a;\nb';2\n\"x\";3\n';';4\n", Backslashed.class);
+        for (SomeCoolCsvReader<Backslashed> r : Arrays.asList(reader, reader.withEngine(Engine.BYTES)))
+        {
+            List<Backslashed> rows = r.getObjects();
+            assertEquals(Arrays.asList("it's; a \\ test", "a;\nb", "\"x\"", ";"),
+                    rows.stream().map(b -> b.text).collect(Collectors.toList()));
+            assertEquals(Arrays.asList(1, 2, 3, 4), rows.stream().map(b -> b.number).collect(Collectors.toList()));
+        }
+    }
+
+    /**
+     * Quoting is off by default.
+     */
+    @FileMetaData
+    public static class Unquoted
+    {
+
+        @CSVColumn(indx = 1)
+        public String first;
+
+        @CSVColumn(indx = 2)
+        public String second;
+
+    }
+
+    @Test
+    public void testQuotedFields_Off() throws IOException
+    {
+        SomeCoolCsvReader<Unquoted> reader = reader("\"a,b\"\n", Unquoted.class);
+        for (SomeCoolCsvReader<Unquoted> r : Arrays.asList(reader, reader.withEngine(Engine.BYTES)))
+        {
+            Unquoted row = r.getObjects().get(0);
+            assertEquals("\"a", row.first);
+            assertEquals("b\"", row.second);
+        }
+    }
+
+    @Test
+    public void testQuotedFields_Unterminated() throws IOException
+    {
+        ex.expect(IllegalArgumentException.class);
+        ex.expectMessage("The quoted field 2 is not terminated");
+        reader("a,\"b\nc\n", QuotedPerson.class).withEngine(Engine.BYTES).getObjects();
+    }
+
+    @Test
+    public void testQuotedFields_Garbage() throws IOException
+    {
+        ex.expect(IllegalArgumentException.class);
+        ex.expectMessage("Unexpected character 'x' after the quoted field 1");
+        reader("\"a\" x,b\n", QuotedPerson.class).getObjects();
+    }
+
+    @Test
+    public void testQuotedFields_Parallel() throws IOException
+    {
+        StringBuilder contents = new StringBuilder();
+        List<Person> expected = new ArrayList<>();
+        for (int i = 0; i < 3000; i++ )
+        {
+            Person person = new Person();
+            person.setFirstName("first" + i);
+            person.setSecondName("second,\n" + i);
+            expected.add(person);
+            contents.append(person.getFirstName()).append(",,\"second,\n").append(i).append("\"\n");
+        }
+        SomeCoolCsvReader<QuotedPerson> reader = reader(contents.toString(), QuotedPerson.class).withWindow(1024);
+        assertPeople(expected, reader.parallelStream().collect(Collectors.toList()));
+    }
+
+    @FileMetaData
+    public static class Deduplicated
+    {
+
+        @CSVColumn(indx = 1, dedup = 4)
+        public String currency;
+
+        @CSVColumn(indx = 2)
+        public String name;
+
+    }
+
+    @Test
+    public void testDedup() throws IOException
+    {
+        SomeCoolCsvReader<Deduplicated> reader = reader("USD,a\nEUR,b\nUSD,c\n,d\nEUR,e\n", Deduplicated.class);
+        StringCache cache = reader.getStringCache(1).get();
+        assertFalse(reader.getStringCache(2).isPresent());
+        assertFalse(reader.getStringCache(3).isPresent());
+        for (SomeCoolCsvReader<Deduplicated> r : Arrays.asList(reader, reader.withEngine(Engine.BYTES)))
+        {
+            long misses = cache.getMisses();
+            List<Deduplicated> rows = r.getObjects();
+            assertEquals("USD", rows.get(0).currency);
+            assertSame(rows.get(0).currency, rows.get(2).currency);
+            assertSame(rows.get(1).currency, rows.get(4).currency);
+            assertNull(rows.get(3).currency);
+            assertNotSame(rows.get(0).name, rows.get(2).name);
+            assertEquals(2, cache.getMisses() - misses);
+        }
+        assertEquals(4, cache.getHits());
+    }
+
+    @Test
+    public void testDedup_NotAString()
+    {
+        ex.expect(IllegalArgumentException.class);
+        ex.expectMessage("must be zero or, for a String, positive");
+
+        @FileMetaData
+        class Wrong
+        {
+
+            @CSVColumn(indx = 1, dedup = 10)
+            public int i;
+
+        }
+        new SomeCoolCsvReader<>(new File("dummy"), Wrong.class);
+    }
+
+    @FileMetaData(charset = "UTF-8")
+    public static class Unicode
+    {
+
+        @CSVColumn(indx = 1)
+        public String name;
+
+        @CSVColumn(indx = 2)
+        public String city;
+
+    }
+
+    @Test
+    public void testCharset() throws IOException
+    {
+        File temp = File.createTempFile("test", ".csv");
+        temp.deleteOnExit();
+        Files.write(temp.toPath(), "Jos\u00e9,M\u00fcnchen\nplain,ascii\n".getBytes(StandardCharsets.UTF_8));
+        SomeCoolCsvReader<Unicode> reader = new SomeCoolCsvReader<>(temp, Unicode.class);
+        for (SomeCoolCsvReader<Unicode> r : Arrays.asList(reader, reader.withEngine(Engine.BYTES)))
+        {
+            List<Unicode> rows = r.getObjects();
+            assertEquals("Jos\u00e9", rows.get(0).name);
+            assertEquals("M\u00fcnchen", rows.get(0).city);
+            assertEquals("plain", rows.get(1).name);
+            assertEquals("ascii", rows.get(1).city);
+        }
+        // the same bytes taken for Latin-1
+        List<Unicode> rows = reader.withCharset(StandardCharsets.ISO_8859_1).withEngine(Engine.BYTES).getObjects();
+        assertEquals("M\u00c3\u00bcnchen", rows.get(0).city);
+        assertEquals("ascii", rows.get(1).city);
+    }
+
+    @Test
+    public void testCharset_Unknown()
+    {
+        ex.expect(IllegalArgumentException.class);
+        ex.expectMessage("Unknown charset nonsense");
+
+        @FileMetaData(charset = "nonsense")
+        class Wrong
+        {
+
+            @CSVColumn(indx = 1)
+            public String s;
+
+        }
+        new SomeCoolCsvReader<>(new File("dummy"), Wrong.class);
+    }
+
+    private static void assertPeople(List<Person> expected, List< ? extends Person> actual)
+    {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++ )
+        {
+            assertEquals(expected.get(i).getFirstName(), actual.get(i).getFirstName());
+            assertEquals(expected.get(i).getSecondName(), actual.get(i).getSecondName());
+        }
+    }
+
     /*
      * creates test files on the fly using the specified contents and returs a parser
      */
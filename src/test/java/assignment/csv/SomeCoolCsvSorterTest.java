@@ -0,0 +1,202 @@
+package assignment.csv;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import assignment.csv.SomeCoolCsvReader.BadRowPolicy;
+
+/**
+ * Sorts files in memory and through temporary files, checks the result against a sort of the lines in memory.
+ *
+ * @author sergey
+ *
+ */
+public class SomeCoolCsvSorterTest
+{
+
+    @Rule
+    public ExpectedException ex = ExpectedException.none();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Column 4 is not bound, it is kept by the sort anyway.
+     */
+    @FileMetaData(quote = '"')
+    public static class Row
+    {
+
+        @CSVColumn(indx = 1)
+        public int group;
+        @CSVColumn(indx = 2)
+        public String name;
+        @CSVColumn(indx = 3)
+        public long sequence;
+
+    }
+
+    @Test
+    public void testSortTo_InMemory() throws IOException
+    {
+        File file = file("3,b,1,x", "1,\"c, quoted\",2,y", "", "3,a,3,z", "1,,4,w", ",b,5,v", "1,\"multi\nline\",6,u");
+        File sorted = folder.newFile();
+        Path spill = folder.newFolder().toPath();
+        long count = new SomeCoolCsvSorter<>(new SomeCoolCsvReader<>(file, Row.class), 1, 2).withTempDirectory(spill)
+                .sortTo(sorted);
+        assertEquals(6, count);
+        // an empty int is zero, an empty string comes first
+        assertEquals(",b,5,v\n1,,4,w\n1,\"c, quoted\",2,y\n1,\"multi\nline\",6,u\n3,a,3,z\n3,b,1,x\n",
+                new String(Files.readAllBytes(sorted.toPath()), UTF_8));
+        // small enough to be sorted in memory
+        try (Stream<Path> left = Files.list(spill))
+        {
+            assertEquals(0, left.count());
+        }
+    }
+
+    @Test
+    public void testSortTo_External() throws IOException
+    {
+        List<String> lines = lines(100000);
+        File file = file(lines.toArray(new String[0]));
+        // the order of the file among equal keys is kept
+        List<String> expected = new ArrayList<>(lines);
+        expected.sort(Comparator.comparingInt(SomeCoolCsvSorterTest::group));
+        for (int parallelism : new int[] { 1, 3 })
+        {
+            Path spill = folder.newFolder().toPath();
+            File sorted = folder.newFile();
+            SomeCoolCsvSorter<Row> sorter = new SomeCoolCsvSorter<>(new SomeCoolCsvReader<>(file, Row.class), 1)
+                    .withMemory(SomeCoolCsvSorter.MIN_MEMORY).withParallelism(parallelism).withTempDirectory(spill);
+            assertEquals(lines.size(), sorter.sortTo(sorted));
+            assertEquals(expected, Files.readAllLines(sorted.toPath(), UTF_8));
+            try (Stream<Path> left = Files.list(spill))
+            {
+                assertEquals(0, left.count());
+            }
+        }
+    }
+
+    @Test
+    public void testStream() throws IOException
+    {
+        List<String> lines = lines(50000);
+        File file = file(lines.toArray(new String[0]));
+        Path spill = folder.newFolder().toPath();
+        SomeCoolCsvSorter<Row> sorter = new SomeCoolCsvSorter<>(new SomeCoolCsvReader<>(file, Row.class), 1, 3)
+                .withMemory(SomeCoolCsvSorter.MIN_MEMORY).withTempDirectory(spill);
+
+        List<Row> rows = sorter.stream().collect(Collectors.toList());
+        assertEquals(lines.size(), rows.size());
+        for (int i = 1; i < rows.size(); i++ )
+        {
+            Row previous = rows.get(i - 1);
+            Row row = rows.get(i);
+            assertTrue(previous.group < row.group
+                    || previous.group == row.group && previous.sequence < row.sequence);
+        }
+        try (Stream<Path> left = Files.list(spill))
+        {
+            assertEquals(0, left.count());
+        }
+
+        // closed before the end
+        try (Stream<Row> stream = sorter.stream())
+        {
+            Iterator<Row> iterator = stream.iterator();
+            assertEquals(0, iterator.next().group);
+            try (Stream<Path> left = Files.list(spill))
+            {
+                assertTrue(left.count() > 0);
+            }
+        }
+        try (Stream<Path> left = Files.list(spill))
+        {
+            assertEquals(0, left.count());
+        }
+    }
+
+    @Test
+    public void testBadRows() throws IOException
+    {
+        File file = file("2,b,1", "x,bad,2", "1,a,3");
+        SomeCoolCsvReader<Row> reader = new SomeCoolCsvReader<>(file, Row.class).withBadRowPolicy(BadRowPolicy.SKIP);
+        File sorted = folder.newFile();
+        assertEquals(2, new SomeCoolCsvSorter<>(reader, 1).sortTo(sorted));
+        assertEquals(Arrays.asList("1,a,3", "2,b,1"), Files.readAllLines(sorted.toPath()));
+
+        ex.expect(NumberFormatException.class);
+        new SomeCoolCsvSorter<>(new SomeCoolCsvReader<>(file, Row.class), 1).sortTo(sorted);
+    }
+
+    @Test
+    public void testNoKeys()
+    {
+        ex.expect(IllegalArgumentException.class);
+        ex.expectMessage("Sort by at least one column");
+        new SomeCoolCsvSorter<>(new SomeCoolCsvReader<>(new File("dummy"), Row.class));
+    }
+
+    @Test
+    public void testUnboundKey()
+    {
+        ex.expect(IllegalArgumentException.class);
+        ex.expectMessage("There is no column with index 4");
+        new SomeCoolCsvSorter<>(new SomeCoolCsvReader<>(new File("dummy"), Row.class), 1, 4);
+    }
+
+    @Test
+    public void testMemoryTooSmall()
+    {
+        ex.expect(IllegalArgumentException.class);
+        ex.expectMessage("The memory budget must be at least 1048576 bytes: 1024");
+        new SomeCoolCsvSorter<>(new SomeCoolCsvReader<>(new File("dummy"), Row.class), 1).withMemory(1024);
+    }
+
+    private static int group(String line)
+    {
+        return Integer.parseInt(line.substring(0, line.indexOf(',')));
+    }
+
+    /*
+     * few distinct groups, so that the stability shows, the sequence is the number of the line
+     */
+    private static List<String> lines(int count)
+    {
+        Random random = new Random(42);
+        List<String> lines = new ArrayList<>(count);
+        for (int i = 0; i < count; i++ )
+        {
+            lines.add(random.nextInt(100) + ",name" + random.nextInt() + "," + i + ",extra " + i);
+        }
+        return lines;
+    }
+
+    private File file(String... lines) throws IOException
+    {
+        File file = folder.newFile();
+        Files.write(file.toPath(), (String.join("\n", lines) + "\n").getBytes(UTF_8));
+        return file;
+    }
+
+}
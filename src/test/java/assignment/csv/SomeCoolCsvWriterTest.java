@@ -0,0 +1,373 @@
+package assignment.csv;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import assignment.csv.FileMetaData.Escape;
+import assignment.csv.SomeCoolCsvReader.Engine;
+
+/**
+ * Writes rows and reads them back with both engines.
+ *
+ * @author sergey
+ *
+ */
+public class SomeCoolCsvWriterTest
+{
+
+    @Rule
+    public ExpectedException ex = ExpectedException.none();
+
+    public enum Color
+    {
+        RED, GREEN
+    }
+
+    /**
+     * Private fields with getters and setters, column 4 is not bound.
+     */
+    @FileMetaData(quote = '"', charset = "UTF-8")
+    public static class Row
+    {
+
+        @CSVColumn(indx = 1)
+        private String text;
+        @CSVColumn(indx = 2)
+        private int i;
+        @CSVColumn(indx = 3)
+        private long l;
+        @CSVColumn(indx = 5)
+        private double d;
+        @CSVColumn(indx = 6)
+        private boolean b;
+        @CSVColumn(indx = 7)
+        private BigDecimal decimal;
+        @CSVColumn(indx = 8)
+        private Color color;
+
+        public String getText()
+        {
+            return text;
+        }
+
+        public void setText(String text)
+        {
+            this.text = text;
+        }
+
+        public int getI()
+        {
+            return i;
+        }
+
+        public void setI(int i)
+        {
+            this.i = i;
+        }
+
+        public long getL()
+        {
+            return l;
+        }
+
+        public void setL(long l)
+        {
+            this.l = l;
+        }
+
+        public double getD()
+        {
+            return d;
+        }
+
+        public void setD(double d)
+        {
+            this.d = d;
+        }
+
+        public boolean isB()
+        {
+            return b;
+        }
+
+        public void setB(boolean b)
+        {
+            this.b = b;
+        }
+
+        public BigDecimal getDecimal()
+        {
+            return decimal;
+        }
+
+        public void setDecimal(BigDecimal decimal)
+        {
+            this.decimal = decimal;
+        }
+
+        public Color getColor()
+        {
+            return color;
+        }
+
+        public void setColor(Color color)
+        {
+            this.color = color;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (!(obj instanceof Row))
+            {
+                return false;
+            }
+            Row other = (Row) obj;
+            return Objects.equals(text, other.text) && i == other.i && l == other.l
+                    && Double.compare(d, other.d) == 0 && b == other.b && Objects.equals(decimal, other.decimal)
+                    && color == other.color;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(text, i, l);
+        }
+
+        @Override
+        public String toString()
+        {
+            return Arrays.asList(text, i, l, d, b, decimal, color).toString();
+        }
+
+    }
+
+    /**
+     * Public fields, another delimiter, backslash escapes and a single byte charset.
+     */
+    @FileMetaData(separator = ";", quote = '\'', escape = Escape.BACKSLASH, charset = "ISO-8859-1")
+    public static class Latin
+    {
+
+        @CSVColumn(indx = 1)
+        public String a;
+        @CSVColumn(indx = 2)
+        public String b;
+
+    }
+
+    @FileMetaData
+    public static class Unquoted
+    {
+
+        @CSVColumn(indx = 1)
+        public String a;
+
+    }
+
+    @FileMetaData(quote = '"')
+    public static class Single
+    {
+
+        @CSVColumn(indx = 1)
+        public String a;
+
+    }
+
+    @FileMetaData
+    public static class WriteOnly
+    {
+
+        @CSVColumn(indx = 1)
+        private String a;
+
+        public void setA(String a)
+        {
+            this.a = a;
+        }
+
+    }
+
+    private static final String[] TEXTS = { "plain", "with,comma", "with \"quotes\"", "\"starts with a quote",
+            " leading blank", "trailing blank ", "line\nbreak", "two\n\nline breaks", "back\\slash",
+            "\u00e9t\u00e9 \u65e5\u672c", "surrogate \ud83d\ude00 pair", "\t", "'single'", null };
+
+    private static final double[] DOUBLES = { 0, -0.0, 0.1, -1.5, 1e-300, 4.9E-324, Double.MAX_VALUE, 1e21, Double.NaN,
+            Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY };
+
+    private static final String[] DECIMALS = { "0", "-0.00", "123.4500", "1E+3", "-9.87654321E-12",
+            "12345678901234567890.123456789", null };
+
+    @Test
+    public void testRoundTrip() throws IOException
+    {
+        List<Row> rows = rows(1000);
+        File file = temp();
+        assertEquals(rows.size(), new SomeCoolCsvWriter<>(file, Row.class).write(rows));
+        for (Engine engine : Engine.values())
+        {
+            assertRows(rows, new SomeCoolCsvReader<>(file, Row.class).withEngine(engine).getObjects());
+        }
+        // the unbound column stays empty
+        assertEquals("plain,0,0,,0.0,true,0,RED", Files.readAllLines(file.toPath()).get(0));
+    }
+
+    @Test
+    public void testRoundTrip_Parallel() throws IOException
+    {
+        // several blocks, batches and a partial one
+        List<Row> rows = rows(5 * SomeCoolCsvWriter.BATCH + 123);
+        File sequential = temp();
+        File parallel = temp();
+        new SomeCoolCsvWriter<>(sequential, Row.class).write(rows);
+        assertEquals(rows.size(), new SomeCoolCsvWriter<>(parallel, Row.class).withParallelism(3).write(rows.stream()));
+        assertArrayEquals(Files.readAllBytes(sequential.toPath()), Files.readAllBytes(parallel.toPath()));
+        assertRows(rows, new SomeCoolCsvReader<>(parallel, Row.class).withEngine(Engine.BYTES).stream().parallel()
+                .collect(Collectors.toList()));
+
+        // empty
+        assertEquals(0, new SomeCoolCsvWriter<>(parallel, Row.class).withParallelism(3).write(new ArrayList<>()));
+        assertEquals(0, parallel.length());
+    }
+
+    @Test
+    public void testRoundTrip_Backslash() throws IOException
+    {
+        List<Latin> rows = new ArrayList<>();
+        for (String a : Arrays.asList(TEXTS))
+        {
+            // the texts ISO-8859-1 can encode, and one with the delimiter
+            if (a == null || StandardCharsets.ISO_8859_1.newEncoder().canEncode(a))
+            {
+                Latin row = new Latin();
+                row.a = a;
+                row.b = "it's";
+                rows.add(row);
+            }
+        }
+        Latin semicolon = new Latin();
+        semicolon.a = "semi;colon \u00e9";
+        semicolon.b = "it's";
+        rows.add(semicolon);
+        File file = temp();
+        new SomeCoolCsvWriter<>(file, Latin.class).withParallelism(2).write(rows);
+        assertEquals("plain;'it\\'s'", Files.readAllLines(file.toPath(), StandardCharsets.ISO_8859_1).get(0));
+        for (Engine engine : Engine.values())
+        {
+            List<Latin> read = new SomeCoolCsvReader<>(file, Latin.class).withEngine(engine).getObjects();
+            assertEquals(rows.size(), read.size());
+            for (int i = 0; i < rows.size(); i++ )
+            {
+                assertEquals(rows.get(i).a, read.get(i).a);
+                assertEquals("it's", read.get(i).b);
+            }
+        }
+    }
+
+    @Test
+    public void testEmptyRow() throws IOException
+    {
+        File file = temp();
+        Unquoted unquoted = new Unquoted();
+        unquoted.a = "a";
+        new SomeCoolCsvWriter<>(file, Unquoted.class).write(Arrays.asList(unquoted, unquoted));
+        assertEquals(2, new SomeCoolCsvReader<>(file, Unquoted.class).getObjects().size());
+
+        // quoted, so that it is not read as a blank line
+        new SomeCoolCsvWriter<>(file, Single.class).write(Arrays.asList(new Single(), new Single()));
+        assertEquals(Arrays.asList("\"\"", "\"\""), Files.readAllLines(file.toPath()));
+        List<Single> read = new SomeCoolCsvReader<>(file, Single.class).getObjects();
+        assertEquals(2, read.size());
+        assertNull(read.get(0).a);
+
+        ex.expect(IllegalArgumentException.class);
+        ex.expectMessage("An empty row cannot be written without quoting");
+        new SomeCoolCsvWriter<>(file, Unquoted.class).write(Arrays.asList(new Unquoted()));
+    }
+
+    @Test
+    public void testNeedsQuotes() throws IOException
+    {
+        Unquoted row = new Unquoted();
+        row.a = "a,b";
+        ex.expect(IllegalArgumentException.class);
+        ex.expectMessage("The value \"a,b\" needs quotes, but the quoting is off");
+        new SomeCoolCsvWriter<>(temp(), Unquoted.class).withParallelism(2).write(Arrays.asList(row));
+    }
+
+    @Test
+    public void testUnsupportedCharset() throws IOException
+    {
+        ex.expect(IllegalArgumentException.class);
+        ex.expectMessage("The charset UTF-16 is not supported");
+        new SomeCoolCsvWriter<>(temp(), Row.class).withCharset(StandardCharsets.UTF_16).write(rows(1));
+    }
+
+    @Test
+    public void testNoGetter() throws IOException
+    {
+        ex.expect(IllegalArgumentException.class);
+        ex.expectMessage("Unable to find a public getter method for the annotated field");
+        new SomeCoolCsvWriter<>(temp(), WriteOnly.class);
+    }
+
+    @Test
+    public void testNullRow() throws IOException
+    {
+        ex.expect(IllegalArgumentException.class);
+        ex.expectMessage("Rows cannot be null");
+        new SomeCoolCsvWriter<>(temp(), Row.class).write(Arrays.asList((Row) null));
+    }
+
+    private static void assertRows(List<Row> expected, List<Row> actual)
+    {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++ )
+        {
+            assertEquals("row " + i, expected.get(i), actual.get(i));
+        }
+    }
+
+    private static List<Row> rows(int count)
+    {
+        Random random = new Random(42);
+        return IntStream.range(0, count).mapToObj(n -> {
+            Row row = new Row();
+            row.text = TEXTS[n % TEXTS.length];
+            row.i = n < 3 ? new int[] { 0, Integer.MIN_VALUE, Integer.MAX_VALUE }[n] : random.nextInt();
+            row.l = n < 3 ? new long[] { 0, Long.MIN_VALUE, Long.MAX_VALUE }[n] : random.nextLong();
+            row.d = n < DOUBLES.length ? DOUBLES[n] : random.nextGaussian() * 1e6;
+            row.b = n % 3 == 0;
+            String decimal = DECIMALS[n % DECIMALS.length];
+            row.decimal = decimal == null ? null : new BigDecimal(decimal);
+            row.color = n % 5 == 4 ? null : Color.values()[n % 2];
+            return row;
+        }).collect(Collectors.toList());
+    }
+
+    private static File temp() throws IOException
+    {
+        File file = File.createTempFile("test", ".csv");
+        file.deleteOnExit();
+        return file;
+    }
+
+}
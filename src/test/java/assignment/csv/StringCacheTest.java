@@ -0,0 +1,108 @@
+package assignment.csv;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+/**
+ * @author sergey
+ *
+ */
+public class StringCacheTest
+{
+
+    @Rule
+    public ExpectedException ex = ExpectedException.none();
+
+    @Test
+    public void testHitsAndMisses()
+    {
+        StringCache cache = new StringCache(16);
+        String line = "USD,EUR,USD";
+        String usd = cache.get(line, 0, 3);
+        assertEquals("USD", usd);
+        assertEquals("EUR", cache.get(line, 4, 7));
+        assertSame(usd, cache.get(line, 8, 11));
+        assertSame(usd, cache.get("USD", 0, 3));
+        assertEquals(2, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        assertEquals(2, cache.size());
+        assertEquals(16, cache.getCapacity());
+    }
+
+    @Test
+    public void testRawBytes()
+    {
+        StringCache cache = new StringCache(8);
+        byte[] bytes = "Z\u00fcrich,Z\u00fcrich".getBytes(UTF_8);
+        ByteChars chars = new ByteChars(UTF_8).reset(ByteBuffer.wrap(bytes), 0, bytes.length);
+        String zurich = cache.get(chars, 0, 7);
+        assertEquals("Z\u00fcrich", zurich);
+        assertSame(zurich, cache.get(chars, 8, 15));
+        // the decoded characters are a different key than the raw bytes
+        assertNotSame(zurich, cache.get("Z\u00fcrich", 0, 6));
+        assertEquals("Z\u00fcrich", cache.get("Z\u00fcrich", 0, 6));
+    }
+
+    @Test
+    public void testCharsets()
+    {
+        StringCache cache = new StringCache(8);
+        // the same bytes, two different strings
+        byte[] bytes = "Z\u00fcrich".getBytes(UTF_8);
+        ByteChars utf8 = new ByteChars(UTF_8).reset(ByteBuffer.wrap(bytes), 0, bytes.length);
+        ByteChars latin1 = new ByteChars(ISO_8859_1).reset(ByteBuffer.wrap(bytes), 0, bytes.length);
+        assertEquals("Z\u00fcrich", cache.get(utf8, 0, bytes.length));
+        assertEquals("Z\u00c3\u00bcrich", cache.get(latin1, 0, bytes.length));
+        assertEquals("Z\u00fcrich", cache.get(utf8, 0, bytes.length));
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void testCapacity()
+    {
+        assertEquals(8, StringCache.capacity(1));
+        assertEquals(1 << 29, StringCache.capacity(1 << 29));
+        assertEquals(1 << 30, StringCache.capacity((1 << 29) + 1));
+        assertEquals(1 << 30, StringCache.capacity(1 << 30));
+        // no overflow into a negative size
+        assertEquals(1 << 30, StringCache.capacity((1 << 30) + 1));
+        assertEquals(1 << 30, StringCache.capacity(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void testNotPositive()
+    {
+        ex.expect(IllegalArgumentException.class);
+        ex.expectMessage("The size of a string cache must be positive: 0");
+        new StringCache(0);
+    }
+
+    @Test
+    public void testBounded()
+    {
+        StringCache cache = new StringCache(10);
+        assertEquals(16, cache.getCapacity());
+        String frequent = "frequent";
+        for (int i = 0; i < 10000; i++ )
+        {
+            String value = "value" + i;
+            cache.get(value, 0, value.length());
+            cache.get(frequent, 0, frequent.length());
+        }
+        assertTrue(cache.size() <= cache.getCapacity());
+        assertEquals(10000 + 1, cache.getMisses(), 100);
+        // the clock keeps the value which is used all the time
+        assertTrue(cache.getHits() > 9900);
+    }
+
+}
@@ -0,0 +1,89 @@
+package assignment.csv;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Compares as many bytes at a time as the widest vector register of the CPU holds (16, 32 or 64). Loaded by the
+ * {@link ByteScanner} through reflection, it lives in the same package so that it can extend the package private
+ * scanner.
+ *
+ * @author sergey
+ *
+ */
+final class VectorByteScanner extends ByteScanner
+{
+
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+
+    private static final SwarByteScanner tail = new SwarByteScanner();
+
+    /*
+     * a byte which never occurs is mapped to the first byte
+     */
+    private static byte pattern(int b, int fallback)
+    {
+        return (byte) ((b & ~0xff) == 0 ? b : fallback);
+    }
+
+    @Override
+    int indexOf(ByteBuffer buffer, int from, int to, int a, int b, int c)
+    {
+        byte pa = pattern(a, a);
+        byte pb = pattern(b, a);
+        byte pc = pattern(c, a);
+        int length = SPECIES.length();
+        int i = from;
+        for (; i + length <= to; i += length)
+        {
+            ByteVector vector = ByteVector.fromByteBuffer(SPECIES, buffer, i, ByteOrder.nativeOrder());
+            VectorMask<Byte> mask = vector.compare(VectorOperators.EQ, pa)
+                    .or(vector.compare(VectorOperators.EQ, pb))
+                    .or(vector.compare(VectorOperators.EQ, pc));
+            if (mask.anyTrue())
+            {
+                return i + mask.firstTrue();
+            }
+        }
+        return tail.indexOf(buffer, i, to, a, b, c);
+    }
+
+    @Override
+    int positions(ByteBuffer buffer, int from, int to, int a, int b, int[] positions)
+    {
+        byte pa = pattern(a, a);
+        byte pb = pattern(b, a);
+        int length = SPECIES.length();
+        int count = 0;
+        int i = from;
+        for (; i + length <= to; i += length)
+        {
+            ByteVector vector = ByteVector.fromByteBuffer(SPECIES, buffer, i, ByteOrder.nativeOrder());
+            long bits = vector.compare(VectorOperators.EQ, pa).or(vector.compare(VectorOperators.EQ, pb)).toLong();
+            while (bits != 0)
+            {
+                if (count == positions.length)
+                {
+                    return count;
+                }
+                positions[count++ ] = i + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+            }
+        }
+        for (; i < to && count < positions.length; i++ )
+        {
+            int x = buffer.get(i) & 0xff;
+            if (x == a || x == b)
+            {
+                positions[count++ ] = i;
+            }
+        }
+        return count;
+    }
+
+}
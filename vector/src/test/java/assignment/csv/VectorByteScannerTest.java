@@ -0,0 +1,113 @@
+package assignment.csv;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Compares the vector scanning with the obvious byte by byte loop.
+ *
+ * @author sergey
+ *
+ */
+public class VectorByteScannerTest
+{
+
+    // the instance picked up by the scanner itself, creating one here would initialize the classes in the wrong order
+    private final ByteScanner scanner = ByteScanner.INSTANCE;
+
+    @Test
+    public void testPickedUp()
+    {
+        assertEquals(VectorByteScanner.class, ByteScanner.INSTANCE.getClass());
+    }
+
+    @Test
+    public void testIndexOf()
+    {
+        Random random = new Random(42);
+        for (ByteBuffer buffer : buffers(random))
+        {
+            for (int from = 0; from < 20; from++ )
+            {
+                for (int to = from; to < buffer.capacity(); to += 7)
+                {
+                    assertEquals(indexOf(buffer, from, to, ',', '\n', '"'),
+                            scanner.indexOf(buffer, from, to, ',', '\n', '"'));
+                    assertEquals(indexOf(buffer, from, to, 0xe9, '\r', -1),
+                            scanner.indexOf(buffer, from, to, 0xe9, '\r', -1));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testPositions()
+    {
+        Random random = new Random(7);
+        for (ByteBuffer buffer : buffers(random))
+        {
+            int[] expected = new int[buffer.capacity()];
+            int count = 0;
+            for (int i = 3; i < buffer.capacity(); i++ )
+            {
+                int b = buffer.get(i) & 0xff;
+                if (b == ',' || b == '"')
+                {
+                    expected[count++ ] = i;
+                }
+            }
+            // a small array is refilled, just like the fields do it
+            int[] positions = new int[5];
+            int from = 3;
+            int total = 0;
+            while (true)
+            {
+                int found = scanner.positions(buffer, from, buffer.capacity(), ',', '"', positions);
+                for (int i = 0; i < found; i++ )
+                {
+                    assertEquals(expected[total++ ], positions[i]);
+                }
+                if (found < positions.length)
+                {
+                    break;
+                }
+                from = positions[found - 1] + 1;
+            }
+            assertEquals(count, total);
+        }
+    }
+
+    private static ByteBuffer[] buffers(Random random)
+    {
+        byte[] data = new byte[300];
+        byte[] alphabet = "abc,\"\n\r \u00e9".getBytes(ISO_8859_1);
+        for (int i = 0; i < data.length; i++ )
+        {
+            data[i] = alphabet[random.nextInt(alphabet.length)];
+        }
+        ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+        direct.put(data);
+        ByteBuffer little = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        return new ByteBuffer[] { ByteBuffer.wrap(data), little, direct };
+    }
+
+    private static int indexOf(ByteBuffer buffer, int from, int to, int a, int b, int c)
+    {
+        for (int i = from; i < to; i++ )
+        {
+            int x = buffer.get(i) & 0xff;
+            if (x == a || x == b || x == c)
+            {
+                return i;
+            }
+        }
+        return to;
+    }
+
+}